@@ -0,0 +1,79 @@
+package cp2024.benchmarks;
+
+import cp2024.circuit.*;
+import cp2024.demo.SequentialSolver;
+import cp2024.maxtests.CircuitGenerator.BalancedRandomCircuitGenerator;
+import cp2024.solution.BatchEvaluator;
+import cp2024.solution.LeafAssignments;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares evaluating a circuit under 64 leaf assignments with {@link BatchEvaluator}
+ * against solving it 64 times with the {@link SequentialSolver}, one pregenerated circuit per operation.
+ * The circuits and the assignments are generated from a fixed seed, so both get the same ones.
+ * <p>
+ * <code>height</code> is the height of the balanced circuits, whose nodes have up to 10 children.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchEvaluationBenchmark {
+    private static final int CIRCUITS = 200;
+    private static final long SEED = 42;
+
+    @Param({"4", "7"})
+    public int height;
+
+    private SequentialSolver solver;
+    private CompiledCircuit[] circuits;
+    private LeafAssignments[] assignments;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        solver = new SequentialSolver();
+        Random random = new Random(SEED);
+        BalancedRandomCircuitGenerator generator = new BalancedRandomCircuitGenerator(height, random, 10);
+        circuits = new CompiledCircuit[CIRCUITS];
+        assignments = new LeafAssignments[CIRCUITS];
+        for (int i = 0; i < CIRCUITS; i++) {
+            circuits[i] = CircuitCompiler.compile(generator.generateCircuit().getCircuit());
+            assignments[i] = new LeafAssignments(Long.SIZE);
+            for (int leaf = 0; leaf < circuits[i].getLeafCount(); leaf++) {
+                for (int a = 0; a < Long.SIZE; a++) {
+                    assignments[i].set(circuits[i].getLeaf(leaf), a, random.nextBoolean());
+                }
+            }
+        }
+        next = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        solver.stop();
+    }
+
+    @Benchmark
+    public int sequential() throws InterruptedException {
+        CompiledCircuit circuit = circuits[next];
+        next = (next + 1) % CIRCUITS;
+        int trueCount = 0;
+        for (int a = 0; a < Long.SIZE; a++) {
+            trueCount += solver.solve(circuit).getValue() ? 1 : 0;
+        }
+        return trueCount;
+    }
+
+    @Benchmark
+    public long batch() throws InterruptedException {
+        int i = next;
+        next = (next + 1) % CIRCUITS;
+        return BatchEvaluator.evaluateBatch(circuits[i], assignments[i])[0];
+    }
+}
@@ -0,0 +1,124 @@
+package cp2024.benchmarks;
+
+import cp2024.circuit.*;
+import cp2024.demo.SequentialSolver;
+import cp2024.maxtests.CircuitGenerator.BalancedRandomCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.DeepRandomCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.DeterministicNodeGenerator;
+import cp2024.maxtests.CircuitGenerator.RandomCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.WorkloadCorpus;
+import cp2024.solution.EventDrivenCircuitSolver;
+import cp2024.solution.ForkJoinCircuitSolver;
+import cp2024.solution.ParallelCircuitSolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solves pregenerated circuits one at a time with every solver, reporting the throughput and, in sample mode,
+ * the latency percentiles of a single solve. The circuits are generated from a fixed seed,
+ * so every solver gets the same ones.
+ * <p>
+ * <code>size</code> is the height of the balanced circuits; deep circuits get about as many nodes
+ * as a balanced one of that height (3 children on average).
+ * <code>leafDelayMillis</code> turns every leaf into one that sleeps that long before returning.
+ * <p>
+ * <code>corpus</code> names one of the {@link WorkloadCorpus#STANDARD} corpora, e.g.
+ * <code>-p corpus=balanced-lognormal,deep-heavy-tailed</code>, whose saved circuits are solved instead,
+ * with their own leaf delays, so that the results of different commits are comparable. The corpora are read from
+ * {@link WorkloadCorpus#directory()}, so the benchmarks are run from the root of the repository
+ * or with <code>-Dcorpora=DIRECTORY</code>. The generator parameters don't apply to them, so pass a single value
+ * of each along.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolverBenchmark {
+    private static final int CIRCUITS = 64;
+    private static final long SEED = 42;
+
+    @Param({"sequential", "parallel", "event-driven", "fork-join"})
+    public String solver;
+
+    @Param({"balanced", "deep", "deterministic"})
+    public String generator;
+
+    @Param({"4", "6"})
+    public int size;
+
+    @Param({"0", "1"})
+    public int leafDelayMillis;
+
+    @Param({"generated"})
+    public String corpus;
+
+    private CircuitSolver circuitSolver;
+    private Circuit[] circuits;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException, IOException {
+        circuitSolver = switch (solver) {
+            case "sequential" -> new SequentialSolver();
+            case "parallel" -> new ParallelCircuitSolver();
+            case "event-driven" -> new EventDrivenCircuitSolver();
+            case "fork-join" -> new ForkJoinCircuitSolver();
+            default -> throw new IllegalArgumentException("Unknown solver " + solver);
+        };
+
+        next = 0;
+        if (!corpus.equals("generated")) {
+            List<Circuit> saved = WorkloadCorpus.loadStandard(corpus).getCircuits();
+            circuits = saved.toArray(new Circuit[0]);
+            return;
+        }
+
+        Random random = new Random(SEED);
+        RandomCircuitGenerator circuitGenerator = switch (generator) {
+            case "balanced" -> new BalancedRandomCircuitGenerator(size, random);
+            case "deep" -> new DeepRandomCircuitGenerator((int) Math.pow(3, size), random);
+            // no short-circuits, every node is needed
+            case "deterministic" -> new DeterministicNodeGenerator(random, size, NodeType.AND, true);
+            default -> throw new IllegalArgumentException("Unknown generator " + generator);
+        };
+        Duration leafDelay = Duration.ofMillis(leafDelayMillis);
+        circuits = new Circuit[CIRCUITS];
+        for (int i = 0; i < CIRCUITS; i++) {
+            Circuit circuit = circuitGenerator.generateCircuit().getCircuit();
+            circuits[i] = leafDelay.isZero() ? circuit : new Circuit(withLeafDelay(circuit.getRoot(), leafDelay));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        circuitSolver.stop();
+    }
+
+    @Benchmark
+    public boolean solve() throws InterruptedException {
+        Circuit circuit = circuits[next];
+        next = (next + 1) % circuits.length;
+        return circuitSolver.solve(circuit).getValue();
+    }
+
+    private static CircuitNode withLeafDelay(CircuitNode node, Duration delay) throws InterruptedException {
+        if (node.getType() == NodeType.LEAF) {
+            return CircuitNode.mk(((LeafNode) node).getValue(), delay);
+        }
+        CircuitNode[] args = node.getArgs();
+        CircuitNode[] delayed = new CircuitNode[args.length];
+        for (int i = 0; i < args.length; i++) {
+            delayed[i] = withLeafDelay(args[i], delay);
+        }
+        return node instanceof ThresholdNode threshold
+                ? CircuitNode.mk(node.getType(), threshold.getThreshold(), delayed)
+                : CircuitNode.mk(node.getType(), delayed);
+    }
+}
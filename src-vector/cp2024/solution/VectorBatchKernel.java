@@ -0,0 +1,125 @@
+package cp2024.solution;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Processes as many words at once as fit in the SIMD registers, through the incubating Vector API.
+ * Needs <code>--add-modules jdk.incubator.vector</code> both to compile and to run, so it's kept out of
+ * <code>src/</code> and only compiled with the <code>vector</code> profile; without it this class is missing
+ * or fails to load, and {@link BatchBackend} falls back to the {@link ScalarBatchKernel}.
+ * The words past the last full vector are processed one by one.
+ */
+final class VectorBatchKernel implements BatchKernel {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    @Override
+    public int width() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public void and(long[] target, long[] arg) {
+        int bound = SPECIES.loopBound(target.length);
+        for (int w = 0; w < bound; w += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, target, w).and(LongVector.fromArray(SPECIES, arg, w)).intoArray(target, w);
+        }
+        for (int w = bound; w < target.length; w++) {
+            target[w] &= arg[w];
+        }
+    }
+
+    @Override
+    public void or(long[] target, long[] arg) {
+        int bound = SPECIES.loopBound(target.length);
+        for (int w = 0; w < bound; w += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, target, w).or(LongVector.fromArray(SPECIES, arg, w)).intoArray(target, w);
+        }
+        for (int w = bound; w < target.length; w++) {
+            target[w] |= arg[w];
+        }
+    }
+
+    @Override
+    public void not(long[] target, long[] arg) {
+        int bound = SPECIES.loopBound(target.length);
+        for (int w = 0; w < bound; w += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, arg, w).not().intoArray(target, w);
+        }
+        for (int w = bound; w < target.length; w++) {
+            target[w] = ~arg[w];
+        }
+    }
+
+    @Override
+    public void select(long[] target, long[] condition, long[] ifTrue, long[] ifFalse) {
+        int bound = SPECIES.loopBound(target.length);
+        for (int w = 0; w < bound; w += SPECIES.length()) {
+            LongVector c = LongVector.fromArray(SPECIES, condition, w);
+            LongVector t = LongVector.fromArray(SPECIES, ifTrue, w);
+            LongVector f = LongVector.fromArray(SPECIES, ifFalse, w);
+            // BITWISE_BLEND takes the bits of the second operand where the mask is set
+            f.lanewise(VectorOperators.BITWISE_BLEND, t, c).intoArray(target, w);
+        }
+        for (int w = bound; w < target.length; w++) {
+            target[w] = (condition[w] & ifTrue[w]) | (~condition[w] & ifFalse[w]);
+        }
+    }
+
+    @Override
+    public void add(long[][] counter, long[] arg) {
+        int bound = SPECIES.loopBound(arg.length);
+        for (int w = 0; w < bound; w += SPECIES.length()) {
+            LongVector c = LongVector.fromArray(SPECIES, arg, w);
+            for (long[] plane : counter) {
+                LongVector bits = LongVector.fromArray(SPECIES, plane, w);
+                bits.lanewise(VectorOperators.XOR, c).intoArray(plane, w);
+                c = bits.and(c);
+            }
+        }
+        for (int w = bound; w < arg.length; w++) {
+            long c = arg[w];
+            for (int b = 0; b < counter.length && c != 0; b++) {
+                long overflow = counter[b][w] & c;
+                counter[b][w] ^= c;
+                c = overflow;
+            }
+        }
+    }
+
+    @Override
+    public void compare(long[][] counter, int threshold, long[] greater, long[] equal) {
+        int bound = SPECIES.loopBound(greater.length);
+        for (int w = 0; w < bound; w += SPECIES.length()) {
+            LongVector g = LongVector.zero(SPECIES);
+            LongVector e = LongVector.broadcast(SPECIES, -1L);
+            // from the most significant bit
+            for (int b = counter.length - 1; b >= 0; b--) {
+                LongVector bits = LongVector.fromArray(SPECIES, counter[b], w);
+                if ((threshold >>> b & 1) != 0) {
+                    e = e.and(bits);
+                } else {
+                    g = g.or(e.and(bits));
+                    e = e.and(bits.not());
+                }
+            }
+            g.intoArray(greater, w);
+            e.intoArray(equal, w);
+        }
+        for (int w = bound; w < greater.length; w++) {
+            long g = 0;
+            long e = -1L;
+            for (int b = counter.length - 1; b >= 0; b--) {
+                if ((threshold >>> b & 1) != 0) {
+                    e &= counter[b][w];
+                } else {
+                    g |= e & counter[b][w];
+                    e &= ~counter[b][w];
+                }
+            }
+            greater[w] = g;
+            equal[w] = e;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package cp2024.circuit;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/** A CircuitSolver whose results can be composed without a thread waiting for each of them. */
+public interface AsyncCircuitSolver extends CircuitSolver {
+    public AsyncCircuitValue solveAsync(Circuit c);
+
+    /**
+     * Like <code>solveAsync</code>, but once the deadline passes, the whole computation is cancelled
+     * and its stage completes with <code>TimeoutException</code>, which {@link AsyncCircuitValue#getValue(java.time.Duration)}
+     * throws, while <code>getValue()</code> can only throw <code>InterruptedException</code>.
+     */
+    public default AsyncCircuitValue solve(Circuit c, Instant deadline) {
+        return DeadlineCircuitValue.withDeadline(solveAsync(c), deadline);
+    }
+
+    /**
+     * Solves all the circuits at once, handing them out in the order their computations finish.
+     */
+    public default CircuitResults solveAll(Collection<Circuit> circuits) {
+        return solveAll(circuits, 0);
+    }
+
+    /**
+     * Solves the circuits in the order of the collection, handing them out in the order their computations finish.
+     * At most <code>maxInFlight</code> circuits are submitted, but not handed out yet, at once,
+     * the next one is submitted when one is handed out.
+     *
+     * @param maxInFlight the bound, zero or less if all the circuits are submitted right away
+     * A circuit that <code>solveAsync()</code> rejects is dropped, and <code>next()</code> throws its
+     * <code>RejectedExecutionException</code>, see {@link CircuitResults#next()}.
+     */
+    public default CircuitResults solveAll(Collection<Circuit> circuits, int maxInFlight) {
+        return new CircuitResults(this, circuits, maxInFlight);
+    }
+}
@@ -0,0 +1,50 @@
+package cp2024.circuit;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/** A CircuitValue that can also be observed without blocking a thread. */
+public interface AsyncCircuitValue extends CircuitValue {
+    /**
+     * The returned stage completes with the value of the circuit, or exceptionally with
+     * <code>CancellationException</code> if the computation was cancelled or interrupted.
+     * Cancelling the stage (e.g. through <code>toCompletableFuture().cancel(true)</code>) cancels the computation,
+     * after which <code>getValue()</code> throws <code>InterruptedException</code>.
+     * A computation cancelled by its deadline (see {@link AsyncCircuitSolver#solve(Circuit, java.time.Instant)})
+     * completes it with <code>TimeoutException</code> instead.
+     */
+    public CompletionStage<Boolean> asCompletionStage();
+
+    /**
+     * Cancels the stage, see {@link #asCompletionStage()}.
+     */
+    @Override
+    public default boolean cancel() {
+        // unlike CompletableFuture.cancel(), tells whether this call was the one to complete the stage
+        return asCompletionStage().toCompletableFuture()
+                .completeExceptionally(new CancellationException("The computation was cancelled."));
+    }
+
+    /**
+     * Waits for the value at most <code>timeout</code>. Giving up on the wait doesn't cancel the computation.
+     *
+     * @throws TimeoutException     if the wait timed out, or the deadline of the computation passed
+     * @throws InterruptedException if the computation was cancelled or interrupted, or the wait was interrupted
+     */
+    public default boolean getValue(Duration timeout) throws InterruptedException, TimeoutException {
+        try {
+            return asCompletionStage().toCompletableFuture().get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (CancellationException e) {
+            throw new InterruptedException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException timeoutException) {
+                throw timeoutException;
+            }
+            throw new InterruptedException();
+        }
+    }
+}
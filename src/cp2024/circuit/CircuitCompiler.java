@@ -0,0 +1,144 @@
+package cp2024.circuit;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns a {@link Circuit} into a {@link CompiledCircuit}, calling <code>getArgs()</code> once per distinct node.
+ * Nodes are told apart by identity, so a node instance that is an argument of several nodes is compiled once.
+ * The circuit is walked without recursion, so deep circuits don't overflow the stack.
+ */
+public final class CircuitCompiler {
+    private CircuitCompiler() {
+    }
+
+    /**
+     * A node whose arguments are being compiled.
+     */
+    private static final class Frame {
+        final CircuitNode node;
+        final CircuitNode[] args;
+
+        /**
+         * The compiled arguments, a leaf <code>k</code> as <code>-(k + 1)</code>
+         * and the <code>k</code>-th compiled inner node as <code>k</code>.
+         */
+        final int[] compiledArgs;
+        int next;
+
+        Frame(CircuitNode node, CircuitNode[] args) {
+            this.node = node;
+            this.args = args;
+            this.compiledArgs = new int[args.length];
+            this.next = 0;
+        }
+    }
+
+    /**
+     * @throws InterruptedException if <code>getArgs()</code> of some node was interrupted
+     */
+    public static CompiledCircuit compile(Circuit c) throws InterruptedException {
+        List<LeafNode> leaves = new ArrayList<>();
+        // the compiled nodes, encoded like in Frame.compiledArgs
+        Map<CircuitNode, Integer> compiled = new IdentityHashMap<>();
+        // the inner nodes in the order in which they are compiled, i.e. every one after its arguments
+        byte[] innerTypes = new byte[16];
+        int[] innerThresholds = new int[16];
+        int[] innerArgOffsets = new int[17];
+        int[] innerArgs = new int[16];
+        int innerCount = 0;
+        int argCount = 0;
+
+        if (c.getRoot().getType() == NodeType.LEAF) {
+            leaves.add((LeafNode) c.getRoot());
+        } else {
+            Deque<Frame> stack = new ArrayDeque<>();
+            stack.push(new Frame(c.getRoot(), c.getRoot().getArgs()));
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                if (frame.next < frame.args.length) {
+                    CircuitNode arg = frame.args[frame.next];
+                    Integer compiledArg = compiled.get(arg);
+                    if (compiledArg != null) {
+                        frame.compiledArgs[frame.next++] = compiledArg;
+                    } else if (arg.getType() == NodeType.LEAF) {
+                        leaves.add((LeafNode) arg);
+                        compiled.put(arg, -leaves.size());
+                        frame.compiledArgs[frame.next++] = -leaves.size();
+                    } else {
+                        stack.push(new Frame(arg, arg.getArgs()));
+                    }
+                    continue;
+                }
+
+                stack.pop();
+                if (innerCount == innerTypes.length) {
+                    innerTypes = Arrays.copyOf(innerTypes, 2 * innerCount);
+                    innerThresholds = Arrays.copyOf(innerThresholds, 2 * innerCount);
+                    innerArgOffsets = Arrays.copyOf(innerArgOffsets, 2 * innerCount + 1);
+                }
+                while (argCount + frame.compiledArgs.length > innerArgs.length) {
+                    innerArgs = Arrays.copyOf(innerArgs, 2 * innerArgs.length);
+                }
+                innerTypes[innerCount] = (byte) frame.node.getType().ordinal();
+                if (frame.node instanceof ThresholdNode thresholdNode) {
+                    innerThresholds[innerCount] = thresholdNode.getThreshold();
+                }
+                System.arraycopy(frame.compiledArgs, 0, innerArgs, argCount, frame.compiledArgs.length);
+                argCount += frame.compiledArgs.length;
+                innerArgOffsets[innerCount + 1] = argCount;
+                compiled.put(frame.node, innerCount);
+
+                Frame parent = stack.peek();
+                if (parent != null) {
+                    parent.compiledArgs[parent.next++] = innerCount;
+                }
+                innerCount++;
+            }
+        }
+
+        // the leaves go first, so the inner nodes are shifted by the number of leaves
+        int leafCount = leaves.size();
+        int size = leafCount + innerCount;
+        byte[] types = new byte[size];
+        int[] thresholds = new int[size];
+        int[] argOffsets = new int[size + 1];
+        int[] args = new int[argCount];
+
+        Arrays.fill(types, 0, leafCount, (byte) NodeType.LEAF.ordinal());
+        System.arraycopy(innerTypes, 0, types, leafCount, innerCount);
+        System.arraycopy(innerThresholds, 0, thresholds, leafCount, innerCount);
+        System.arraycopy(innerArgOffsets, 0, argOffsets, leafCount, innerCount + 1);
+        for (int i = 0; i < argCount; i++) {
+            int compiledArg = innerArgs[i];
+            args[i] = compiledArg < 0 ? -compiledArg - 1 : leafCount + compiledArg;
+        }
+
+        // the uses are the arguments, grouped by the argument instead of by the user
+        int[] useOffsets = new int[size + 1];
+        for (int arg : args) {
+            useOffsets[arg + 1]++;
+        }
+        for (int node = 0; node < size; node++) {
+            useOffsets[node + 1] += useOffsets[node];
+        }
+        int[] users = new int[argCount];
+        int[] usePositions = new int[argCount];
+        int[] nextUse = Arrays.copyOf(useOffsets, size);
+        for (int user = leafCount; user < size; user++) {
+            for (int i = argOffsets[user]; i < argOffsets[user + 1]; i++) {
+                int use = nextUse[args[i]]++;
+                users[use] = user;
+                usePositions[use] = i - argOffsets[user];
+            }
+        }
+
+        return new CompiledCircuit(types, argOffsets, args, thresholds, useOffsets, users, usePositions,
+                leaves.toArray(new LeafNode[0]), size - 1);
+    }
+}
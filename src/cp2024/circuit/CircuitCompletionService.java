@@ -0,0 +1,132 @@
+package cp2024.circuit;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves circuits submitted one by one and hands them out in the order their computations finish,
+ * like <code>ExecutorCompletionService</code> does with tasks, so that a slow circuit doesn't hold back
+ * the consumer of the ones solved after it.
+ * <p>
+ * If bounded, at most <code>maxInFlight</code> circuits are submitted, but not taken yet, at once:
+ * <code>submit()</code> waits for room, so a producer can't get ahead of the consumer by more than that.
+ * Safe to use from many producers and consumers.
+ */
+public final class CircuitCompletionService {
+    private final AsyncCircuitSolver solver;
+
+    /**
+     * The room for circuits submitted, but not taken yet, or <code>null</code> if unbounded.
+     */
+    private final Semaphore room;
+
+    private final BlockingQueue<SolvedCircuit> completed;
+
+    /**
+     * The computations that haven't finished yet, to cancel them.
+     */
+    private final Map<Integer, AsyncCircuitValue> running;
+
+    private final AtomicInteger indices;
+    private final AtomicInteger submitted;
+    private final AtomicInteger taken;
+
+    public CircuitCompletionService(AsyncCircuitSolver solver) {
+        this(solver, 0);
+    }
+
+    /**
+     * @param maxInFlight the highest number of circuits submitted, but not taken yet, zero or less if unbounded
+     */
+    public CircuitCompletionService(AsyncCircuitSolver solver, int maxInFlight) {
+        this.solver = solver;
+        this.room = maxInFlight > 0 ? new Semaphore(maxInFlight, true) : null;
+        this.completed = new LinkedBlockingQueue<>();
+        this.running = new ConcurrentHashMap<>();
+        this.indices = new AtomicInteger();
+        this.submitted = new AtomicInteger();
+        this.taken = new AtomicInteger();
+    }
+
+    /**
+     * Starts solving the circuit, once there's room for it.
+     *
+     * @return the index of the circuit, see {@link SolvedCircuit#getIndex()}
+     * @throws InterruptedException if interrupted while waiting for room, then nothing was submitted
+     */
+    public int submit(Circuit c) throws InterruptedException {
+        if (room != null) {
+            room.acquire();
+        }
+        try {
+            return start(c);
+        } catch (RuntimeException e) {
+            // e.g. rejected by the admission limits of the solver
+            if (room != null) {
+                room.release();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Starts solving the circuit without waiting for room.
+     */
+    int start(Circuit c) {
+        // a rejected circuit keeps its index, so that the indices are positions in the order of submission,
+        // but it's counted as submitted only once it's started
+        int index = indices.getAndIncrement();
+        AsyncCircuitValue value = solver.solveAsync(c);
+        submitted.incrementAndGet();
+        running.put(index, value);
+        value.asCompletionStage().whenComplete((result, exception) -> {
+            running.remove(index);
+            completed.add(new SolvedCircuit(index, c, value));
+        });
+        return index;
+    }
+
+    /**
+     * Waits for the next circuit to finish, and makes room for another one.
+     */
+    public SolvedCircuit take() throws InterruptedException {
+        return taken(completed.take());
+    }
+
+    /**
+     * @return the next finished circuit, or <code>null</code> if none has finished yet
+     */
+    public SolvedCircuit poll() {
+        SolvedCircuit solved = completed.poll();
+        return solved == null ? null : taken(solved);
+    }
+
+    private SolvedCircuit taken(SolvedCircuit solved) {
+        taken.incrementAndGet();
+        if (room != null) {
+            room.release();
+        }
+        return solved;
+    }
+
+    /**
+     * @return the number of circuits submitted, but not taken yet
+     */
+    public int getPending() {
+        return submitted.get() - taken.get();
+    }
+
+    /**
+     * Cancels all the computations that haven't finished yet. They can still be taken,
+     * then their <code>getValue()</code> throws <code>InterruptedException</code>.
+     */
+    public void cancel() {
+        for (AsyncCircuitValue value : running.values()) {
+            value.cancel();
+        }
+    }
+}
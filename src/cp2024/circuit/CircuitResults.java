@@ -0,0 +1,121 @@
+package cp2024.circuit;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The circuits of a batch, handed out in the order their computations finish, see
+ * {@link AsyncCircuitSolver#solveAll(Collection, int)}. Like an iterator, but <code>next()</code> may wait,
+ * so it can be interrupted. Meant for a single consumer.
+ */
+public final class CircuitResults {
+    private final CircuitCompletionService service;
+    private final Iterator<Circuit> remaining;
+
+    /**
+     * The number of circuits of the batch, less the ones that were rejected.
+     */
+    private int size;
+    private int taken;
+
+    /**
+     * The rejection of the last circuit submitted, if it wasn't reported yet.
+     */
+    private RuntimeException rejection;
+
+    CircuitResults(AsyncCircuitSolver solver, Collection<Circuit> circuits, int maxInFlight) {
+        this.service = new CircuitCompletionService(solver);
+        this.remaining = circuits.iterator();
+        this.size = circuits.size();
+        this.taken = 0;
+        this.rejection = null;
+
+        int inFlight = maxInFlight > 0 ? maxInFlight : size;
+        try {
+            for (int i = 0; i < inFlight && remaining.hasNext(); i++) {
+                startNext();
+            }
+        } catch (RuntimeException e) {
+            // the circuits started so far are still handed out, the rest are submitted as they are
+            rejection = e;
+        }
+    }
+
+    /**
+     * @return whether there are circuits left to hand out, or a rejection left to report
+     */
+    public boolean hasNext() {
+        return taken < size || rejection != null;
+    }
+
+    /**
+     * Waits for the next circuit to finish, and submits the next one of the batch in its place.
+     * A circuit the solver rejects is dropped from the batch, and its rejection is thrown by the call
+     * after the one that submitted it, so that the circuit taken before isn't lost.
+     *
+     * @throws NoSuchElementException if all the circuits were already handed out
+     * @throws InterruptedException   if interrupted while waiting, the computations go on
+     * @throws java.util.concurrent.RejectedExecutionException if the solver rejected a circuit,
+     *                                                         the next call goes on with the rest of the batch
+     */
+    public SolvedCircuit next() throws InterruptedException {
+        if (rejection != null) {
+            RuntimeException e = rejection;
+            rejection = null;
+            throw e;
+        }
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        // a rejected circuit left no computation in its place, so there may be none to wait for
+        if (service.getPending() == 0) {
+            startNext();
+        }
+        SolvedCircuit solved = service.take();
+        taken++;
+        try {
+            startNext();
+        } catch (RuntimeException e) {
+            rejection = e;
+        }
+        return solved;
+    }
+
+    /**
+     * Submits the next circuit of the batch, if any, and drops it if rejected.
+     */
+    private void startNext() {
+        if (!remaining.hasNext()) {
+            return;
+        }
+        Circuit c = remaining.next();
+        try {
+            service.start(c);
+        } catch (RuntimeException e) {
+            size--;
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of circuits submitted, but not handed out yet
+     */
+    public int getPending() {
+        return service.getPending();
+    }
+
+    /**
+     * Cancels the computations that haven't finished yet, and doesn't submit the rest of the batch.
+     * Called by the consumer.
+     * The cancelled circuits are still handed out, see {@link CircuitCompletionService#cancel()}.
+     */
+    public void cancel() {
+        // the consumer would submit the rest on every next(), so it's dropped first
+        while (remaining.hasNext()) {
+            remaining.next();
+            taken++;
+        }
+        service.cancel();
+    }
+}
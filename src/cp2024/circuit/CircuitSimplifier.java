@@ -0,0 +1,320 @@
+package cp2024.circuit;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites a {@link Circuit} into an equivalent one that is cheaper to evaluate, before any leaf is evaluated:
+ * <ul>
+ *     <li>GT with a threshold of at least its arity is false, and LT with a threshold above its arity is true,
+ *     <li>GT 0 is an OR and LT 1 is a NOR of its arguments,
+ *     <li><code>NOT(NOT x)</code> is <code>x</code>,
+ *     <li>AND arguments of an AND, and OR arguments of an OR, are flattened into it,
+ *     <li>the values folded this way are propagated, e.g. to the conditions of IF nodes and to the counts of GT and LT.
+ * </ul>
+ * Leaves are never evaluated, so only values implied by the structure of the circuit are folded.
+ * Nodes that don't change are kept, and a node shared by several nodes is simplified once.
+ */
+public final class CircuitSimplifier {
+    private CircuitSimplifier() {
+    }
+
+    /**
+     * A simplified circuit, with the number of nodes it lost.
+     */
+    public static final class Simplification {
+        private final Circuit circuit;
+        private final int originalSize;
+        private final int simplifiedSize;
+
+        private Simplification(Circuit circuit, int originalSize, int simplifiedSize) {
+            this.circuit = circuit;
+            this.originalSize = originalSize;
+            this.simplifiedSize = simplifiedSize;
+        }
+
+        public Circuit getCircuit() {
+            return circuit;
+        }
+
+        /**
+         * @return the number of distinct nodes of the original circuit
+         */
+        public int getOriginalSize() {
+            return originalSize;
+        }
+
+        /**
+         * @return the number of distinct nodes of the simplified circuit
+         */
+        public int getSimplifiedSize() {
+            return simplifiedSize;
+        }
+
+        /**
+         * @return the number of nodes removed, negative in the rare case where turning LT 1 into a NOR
+         * added more nodes than the other rules removed
+         */
+        public int getRemovedNodes() {
+            return originalSize - simplifiedSize;
+        }
+    }
+
+    /**
+     * A value folded by the simplifier. Immediate, so solvers evaluate it inline.
+     */
+    private static final class Constant extends LeafNode {
+        private static final Constant TRUE = new Constant(true);
+        private static final Constant FALSE = new Constant(false);
+
+        private final boolean value;
+
+        private Constant(boolean value) {
+            this.value = value;
+        }
+
+        static Constant of(boolean value) {
+            return value ? TRUE : FALSE;
+        }
+
+        @Override
+        public Duration getCostHint() {
+            return Duration.ZERO;
+        }
+
+        @Override
+        public Object getDeterministicKey() {
+            return value;
+        }
+
+        @Override
+        public boolean getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * @throws InterruptedException if <code>getArgs()</code> of some node was interrupted
+     */
+    public static Simplification simplify(Circuit c) throws InterruptedException {
+        // every node of the original circuit is visited, so this also counts them
+        Map<CircuitNode, CircuitNode> simplified = new IdentityHashMap<>();
+        CircuitNode root = simplify(c.getRoot(), simplified);
+        return new Simplification(new Circuit(root), simplified.size(), countNodes(root));
+    }
+
+    private static int countNodes(CircuitNode root) throws InterruptedException {
+        Set<CircuitNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<CircuitNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        visited.add(root);
+        while (!stack.isEmpty()) {
+            for (CircuitNode arg : stack.pop().getArgs()) {
+                if (visited.add(arg)) {
+                    stack.push(arg);
+                }
+            }
+        }
+        return visited.size();
+    }
+
+    /**
+     * A node whose arguments are being simplified.
+     */
+    private static final class Frame {
+        final CircuitNode node;
+        final CircuitNode[] args;
+        final CircuitNode[] simplifiedArgs;
+
+        /**
+         * The index of the first argument that isn't simplified yet.
+         */
+        int next;
+
+        Frame(CircuitNode node, CircuitNode[] args) {
+            this.node = node;
+            this.args = args;
+            this.simplifiedArgs = new CircuitNode[args.length];
+        }
+    }
+
+    /**
+     * Simplifies the subtree in post-order, with an explicit stack, so that deep circuits don't overflow
+     * the stack of the calling thread.
+     */
+    private static CircuitNode simplify(CircuitNode root, Map<CircuitNode, CircuitNode> simplified)
+            throws InterruptedException {
+        Deque<Frame> stack = new ArrayDeque<>();
+        CircuitNode known = visit(root, simplified, stack);
+        if (known != null) {
+            return known;
+        }
+        while (true) {
+            Frame frame = stack.peek();
+            if (frame.next < frame.args.length) {
+                CircuitNode simplifiedArg = visit(frame.args[frame.next], simplified, stack);
+                if (simplifiedArg != null) {
+                    frame.simplifiedArgs[frame.next++] = simplifiedArg;
+                }
+                continue;
+            }
+            stack.pop();
+            CircuitNode node = frame.node;
+            CircuitNode result = switch (node.getType()) {
+                case NOT -> not(node, frame.simplifiedArgs[0]);
+                case AND, OR -> junction(node, node.getType(), List.of(frame.simplifiedArgs));
+                case IF -> ifNode(node, frame.args, frame.simplifiedArgs);
+                case GT, LT -> threshold(node, ((ThresholdNode) node).getThreshold(), frame.simplifiedArgs);
+                default -> throw new IllegalStateException("Unexpected value: " + node.getType());
+            };
+            simplified.put(node, result);
+            if (stack.isEmpty()) {
+                return result;
+            }
+            Frame parent = stack.peek();
+            parent.simplifiedArgs[parent.next++] = result;
+        }
+    }
+
+    /**
+     * @return the simplified node if it's already known or it's a leaf, otherwise <code>null</code>,
+     * and the node is pushed on the stack to have its arguments simplified first
+     */
+    private static CircuitNode visit(CircuitNode node, Map<CircuitNode, CircuitNode> simplified,
+                                     Deque<Frame> stack) throws InterruptedException {
+        CircuitNode known = simplified.get(node);
+        if (known != null) {
+            return known;
+        }
+        if (node.getType() == NodeType.LEAF) {
+            simplified.put(node, node);
+            return node;
+        }
+        stack.push(new Frame(node, node.getArgs()));
+        return null;
+    }
+
+    private static Boolean constantValue(CircuitNode node) {
+        return node instanceof Constant constant ? constant.value : null;
+    }
+
+    /**
+     * @param original the original NOT node, kept if its argument didn't change, or <code>null</code>
+     */
+    private static CircuitNode not(CircuitNode original, CircuitNode arg) throws InterruptedException {
+        Boolean value = constantValue(arg);
+        if (value != null) {
+            return Constant.of(!value);
+        }
+        if (arg.getType() == NodeType.NOT) {
+            return arg.getArgs()[0];
+        }
+        if (original != null && original.getArgs()[0] == arg) {
+            return original;
+        }
+        return CircuitNode.mk(NodeType.NOT, arg);
+    }
+
+    /**
+     * Simplifies an AND or an OR of simplified arguments, which are never constants,
+     * or nodes of the same type, so flattening them once is enough.
+     *
+     * @param original the original node, kept if its arguments didn't change, or <code>null</code>
+     */
+    private static CircuitNode junction(CircuitNode original, NodeType type, List<CircuitNode> args)
+            throws InterruptedException {
+        boolean absorbing = type == NodeType.OR;
+        List<CircuitNode> kept = new ArrayList<>(args.size());
+        for (CircuitNode arg : args) {
+            Boolean value = constantValue(arg);
+            if (value != null) {
+                if (value == absorbing) {
+                    return Constant.of(absorbing);
+                }
+            } else if (arg.getType() == type) {
+                Collections.addAll(kept, arg.getArgs());
+            } else {
+                kept.add(arg);
+            }
+        }
+        if (kept.isEmpty()) {
+            return Constant.of(!absorbing);
+        }
+        if (kept.size() == 1) {
+            return kept.get(0);
+        }
+        if (original != null && original.getType() == type && sameArgs(original, kept)) {
+            return original;
+        }
+        return CircuitNode.mk(type, kept.toArray(new CircuitNode[0]));
+    }
+
+    private static CircuitNode ifNode(CircuitNode original, CircuitNode[] args, CircuitNode[] simplifiedArgs) {
+        Boolean condition = constantValue(simplifiedArgs[0]);
+        if (condition != null) {
+            return condition ? simplifiedArgs[1] : simplifiedArgs[2];
+        }
+        if (sameArgs(args, simplifiedArgs)) {
+            return original;
+        }
+        return CircuitNode.mk(NodeType.IF, simplifiedArgs);
+    }
+
+    private static CircuitNode threshold(CircuitNode original, int threshold, CircuitNode[] args)
+            throws InterruptedException {
+        // the constant arguments are dropped, the true ones lowering the threshold
+        List<CircuitNode> rest = new ArrayList<>(args.length);
+        for (CircuitNode arg : args) {
+            Boolean value = constantValue(arg);
+            if (value == null) {
+                rest.add(arg);
+            } else if (value) {
+                threshold--;
+            }
+        }
+
+        int arity = rest.size();
+        if (original.getType() == NodeType.GT) {
+            if (threshold < 0 || threshold >= arity) {
+                return Constant.of(threshold < 0);
+            }
+            if (threshold == 0) {
+                return junction(null, NodeType.OR, rest);
+            }
+        } else {
+            if (threshold <= 0 || threshold > arity) {
+                return Constant.of(threshold > 0);
+            }
+            if (threshold == 1) {
+                return not(null, junction(null, NodeType.OR, rest));
+            }
+        }
+        if (threshold == ((ThresholdNode) original).getThreshold() && sameArgs(original, rest)) {
+            return original;
+        }
+        return CircuitNode.mk(original.getType(), threshold, rest.toArray(new CircuitNode[0]));
+    }
+
+    private static boolean sameArgs(CircuitNode original, List<CircuitNode> args) throws InterruptedException {
+        return sameArgs(original.getArgs(), args.toArray(new CircuitNode[0]));
+    }
+
+    private static boolean sameArgs(CircuitNode[] args, CircuitNode[] otherArgs) {
+        if (args.length != otherArgs.length) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] != otherArgs[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -3,4 +3,15 @@ package cp2024.circuit;
 /** Interface for a deferred (future) value returned by a CircuitSolver. */
 public interface CircuitValue {
     public boolean getValue() throws InterruptedException;
+
+    /**
+     * Cancels the computation of this circuit only, freeing its threads; the other computations of the solver go on.
+     * Then <code>getValue()</code> throws <code>InterruptedException</code>. Doesn't wait for the cancellation to finish.
+     *
+     * @return whether the computation was cancelled by this call, <code>false</code> if it had already finished
+     *         or can't be cancelled
+     */
+    public default boolean cancel() {
+        return false;
+    }
 }
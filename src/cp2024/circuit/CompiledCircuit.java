@@ -0,0 +1,117 @@
+package cp2024.circuit;
+
+/**
+ * A circuit flattened by {@link CircuitCompiler} into arrays indexed by node.
+ * Every distinct node instance gets a single index, even if it is an argument of several nodes,
+ * so the nodes form a DAG and a shared subcircuit can be evaluated once.
+ * Leaves come first, so the index of a leaf is also its index in the leaf table,
+ * and every inner node comes after all of its arguments.
+ * Immutable, so a compiled circuit can be solved any number of times, also concurrently.
+ */
+public final class CompiledCircuit {
+    private static final NodeType[] TYPES = NodeType.values();
+
+    /**
+     * The ordinal of the type of every node.
+     */
+    private final byte[] types;
+
+    /**
+     * The arguments of node <code>i</code> are <code>args[argOffsets[i]]</code>
+     * up to (excluding) <code>args[argOffsets[i + 1]]</code>.
+     */
+    private final int[] argOffsets;
+    private final int[] args;
+
+    /**
+     * The threshold of every GT and LT node, zero for the other nodes.
+     */
+    private final int[] thresholds;
+
+    /**
+     * The uses of node <code>i</code> as an argument are <code>users[useOffsets[i]]</code>
+     * up to (excluding) <code>users[useOffsets[i + 1]]</code>, each with its position among the arguments
+     * of the user in <code>usePositions</code>. A node used twice by the same user has two uses.
+     */
+    private final int[] useOffsets;
+    private final int[] users;
+    private final int[] usePositions;
+
+    private final LeafNode[] leaves;
+    private final int root;
+
+    CompiledCircuit(byte[] types, int[] argOffsets, int[] args, int[] thresholds,
+                    int[] useOffsets, int[] users, int[] usePositions, LeafNode[] leaves, int root) {
+        this.types = types;
+        this.argOffsets = argOffsets;
+        this.args = args;
+        this.thresholds = thresholds;
+        this.useOffsets = useOffsets;
+        this.users = users;
+        this.usePositions = usePositions;
+        this.leaves = leaves;
+        this.root = root;
+    }
+
+    /**
+     * @return the number of nodes
+     */
+    public int size() {
+        return types.length;
+    }
+
+    public int getLeafCount() {
+        return leaves.length;
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    public NodeType getType(int node) {
+        return TYPES[types[node]];
+    }
+
+    public int getThreshold(int node) {
+        return thresholds[node];
+    }
+
+    /**
+     * @param node the index of a leaf, which is also its index in the leaf table
+     */
+    public LeafNode getLeaf(int node) {
+        return leaves[node];
+    }
+
+    public int getArgCount(int node) {
+        return argOffsets[node + 1] - argOffsets[node];
+    }
+
+    /**
+     * @return the index of the argument at the given position among the arguments of the node
+     */
+    public int getArg(int node, int position) {
+        return args[argOffsets[node] + position];
+    }
+
+    /**
+     * @return the number of times the node is an argument of another node, zero for the root
+     */
+    public int getUseCount(int node) {
+        return useOffsets[node + 1] - useOffsets[node];
+    }
+
+    /**
+     * @return the index of the node that has the given node as an argument in its given use
+     */
+    public int getUser(int node, int use) {
+        return users[useOffsets[node] + use];
+    }
+
+    /**
+     * @return the position of the given node among the arguments of its user in its given use
+     */
+    public int getUsePosition(int node, int use) {
+        return usePositions[useOffsets[node] + use];
+    }
+}
@@ -0,0 +1,225 @@
+package cp2024.circuit;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the least time in which any solver can evaluate a circuit of {@link SleepyLeafNode}s, whose delays
+ * and values are known up front: every leaf starts at once, as with unlimited threads, scheduling and cancelling
+ * cost nothing, and every node short-circuits as soon as the values of its children received so far imply its value.
+ * An IF node whose branches have equal values doesn't wait for its condition.
+ * <p>
+ * The gap between that bound and the wall time of a solver is the overhead the solver pays.
+ * Leaves are never evaluated, and a node shared by several nodes is analyzed once.
+ */
+public final class CriticalPathAnalyzer {
+    private CriticalPathAnalyzer() {
+    }
+
+    /**
+     * The bound of a circuit, with the chain of nodes that sets it.
+     */
+    public static final class Analysis {
+        private final boolean value;
+        private final Duration criticalPath;
+        private final Duration work;
+        private final List<CircuitNode> criticalPathNodes;
+        private final int leafCount;
+
+        private Analysis(boolean value, Duration criticalPath, Duration work, List<CircuitNode> criticalPathNodes,
+                         int leafCount) {
+            this.value = value;
+            this.criticalPath = criticalPath;
+            this.work = work;
+            this.criticalPathNodes = criticalPathNodes;
+            this.leafCount = leafCount;
+        }
+
+        public boolean getValue() {
+            return value;
+        }
+
+        /**
+         * @return the least time in which the value of the circuit can be known
+         */
+        public Duration getCriticalPath() {
+            return criticalPath;
+        }
+
+        /**
+         * @return the sum of the delays of all the distinct leaves, the time of evaluating them one by one
+         */
+        public Duration getWork() {
+            return work;
+        }
+
+        /**
+         * @return the nodes from the root to the last value the root waits for, which is a leaf
+         * unless the root is known before any leaf, e.g. a GT whose threshold is at least its arity
+         */
+        public List<CircuitNode> getCriticalPathNodes() {
+            return criticalPathNodes;
+        }
+
+        public int getLeafCount() {
+            return leafCount;
+        }
+
+        /**
+         * @return the work divided by the critical path, the speedup over evaluating every leaf one by one
+         * that no number of threads can beat, or infinity if the critical path is 0
+         */
+        public double getIdealSpeedup() {
+            if (criticalPath.isZero()) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return (double) work.toNanos() / criticalPath.toNanos();
+        }
+
+        /**
+         * @param wallTime the time a solver took to evaluate the circuit
+         * @return how much longer than the critical path the solver took
+         */
+        public Duration getOverhead(Duration wallTime) {
+            return wallTime.minus(criticalPath);
+        }
+    }
+
+    /**
+     * The earliest time the value of a node is known, and the child that it waits for last.
+     */
+    private static final class Timing {
+        final boolean value;
+        final long nanos;
+        final CircuitNode decisive;
+
+        Timing(boolean value, long nanos, CircuitNode decisive) {
+            this.value = value;
+            this.nanos = nanos;
+            this.decisive = decisive;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if some leaf isn't a {@link SleepyLeafNode}
+     * @throws InterruptedException     if <code>getArgs()</code> of some node was interrupted
+     */
+    public static Analysis analyze(Circuit c) throws InterruptedException {
+        Map<CircuitNode, Timing> timings = new IdentityHashMap<>();
+        Timing root = analyze(c.getRoot(), timings);
+
+        long workNanos = 0;
+        int leafCount = 0;
+        for (Map.Entry<CircuitNode, Timing> entry : timings.entrySet()) {
+            if (entry.getKey().getType() == NodeType.LEAF) {
+                workNanos += entry.getValue().nanos;
+                leafCount++;
+            }
+        }
+
+        List<CircuitNode> path = new ArrayList<>();
+        for (CircuitNode node = c.getRoot(); node != null; node = timings.get(node).decisive) {
+            path.add(node);
+        }
+        return new Analysis(root.value, Duration.ofNanos(root.nanos), Duration.ofNanos(workNanos),
+                Collections.unmodifiableList(path), leafCount);
+    }
+
+    private static Timing analyze(CircuitNode node, Map<CircuitNode, Timing> timings) throws InterruptedException {
+        Timing known = timings.get(node);
+        if (known != null) {
+            return known;
+        }
+        Timing timing;
+        if (node.getType() == NodeType.LEAF) {
+            if (!(node instanceof SleepyLeafNode leaf)) {
+                throw new IllegalArgumentException("Only the delays of SleepyLeafNodes are known, not of "
+                        + node.getClass().getName() + ".");
+            }
+            timing = new Timing(leaf.peekValue(), leaf.getDelay().toNanos(), null);
+        } else {
+            CircuitNode[] args = node.getArgs();
+            Timing[] argTimings = new Timing[args.length];
+            for (int i = 0; i < args.length; i++) {
+                argTimings[i] = analyze(args[i], timings);
+            }
+            timing = switch (node.getType()) {
+                case NOT -> new Timing(!argTimings[0].value, argTimings[0].nanos, args[0]);
+                case IF -> ifNode(args, argTimings);
+                case AND, OR, GT, LT -> counting(node, args, argTimings);
+                default -> throw new IllegalStateException("Unexpected value: " + node.getType());
+            };
+        }
+        timings.put(node, timing);
+        return timing;
+    }
+
+    /**
+     * The condition and its branch, or both branches if they are equal, whichever are known first.
+     */
+    private static Timing ifNode(CircuitNode[] args, Timing[] argTimings) {
+        Timing condition = argTimings[0];
+        int branch = condition.value ? 1 : 2;
+        Timing chosen = argTimings[branch];
+        Timing timing = condition.nanos >= chosen.nanos
+                ? new Timing(chosen.value, condition.nanos, args[0])
+                : new Timing(chosen.value, chosen.nanos, args[branch]);
+
+        Timing ifTrue = argTimings[1];
+        Timing ifFalse = argTimings[2];
+        if (ifTrue.value == ifFalse.value && Math.max(ifTrue.nanos, ifFalse.nanos) < timing.nanos) {
+            timing = ifTrue.nanos >= ifFalse.nanos
+                    ? new Timing(chosen.value, ifTrue.nanos, args[1])
+                    : new Timing(chosen.value, ifFalse.nanos, args[2]);
+        }
+        return timing;
+    }
+
+    /**
+     * Receives the values of the children in the order they are known, until the number of true values so far
+     * implies the value of the node whatever the values of the rest are.
+     */
+    private static Timing counting(CircuitNode node, CircuitNode[] args, Timing[] argTimings) {
+        Integer[] order = new Integer[args.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> argTimings[i].nanos));
+
+        int trues = 0;
+        for (int received = 0; ; received++) {
+            int remaining = args.length - received;
+            boolean lowest = valueOfCount(node, args.length, trues);
+            if (lowest == valueOfCount(node, args.length, trues + remaining)) {
+                if (received == 0) {
+                    return new Timing(lowest, 0, null);
+                }
+                int last = order[received - 1];
+                return new Timing(lowest, argTimings[last].nanos, args[last]);
+            }
+            if (argTimings[order[received]].value) {
+                trues++;
+            }
+        }
+    }
+
+    /**
+     * @return the value of the node if exactly <code>trues</code> of its children were true,
+     * which only grows or only falls with <code>trues</code>
+     */
+    private static boolean valueOfCount(CircuitNode node, int arity, int trues) {
+        return switch (node.getType()) {
+            case AND -> trues == arity;
+            case OR -> trues > 0;
+            case GT -> trues > ((ThresholdNode) node).getThreshold();
+            case LT -> trues < ((ThresholdNode) node).getThreshold();
+            default -> throw new IllegalStateException("Unexpected value: " + node.getType());
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package cp2024.circuit;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The value of a computation that is cancelled once its deadline passes.
+ * Its stage then completes exceptionally with <code>TimeoutException</code> instead of <code>CancellationException</code>.
+ */
+final class DeadlineCircuitValue implements AsyncCircuitValue {
+    /**
+     * Shared by all the deadlines, it only cancels computations. A finished computation takes its deadline
+     * off the queue, so that long deadlines don't keep the values of short computations alive.
+     */
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "circuit-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private final AsyncCircuitValue computation;
+    private final CompletableFuture<Boolean> completion;
+
+    private DeadlineCircuitValue(AsyncCircuitValue computation) {
+        this.computation = computation;
+        this.completion = new CompletableFuture<>();
+    }
+
+    /**
+     * @param computation the value of a computation that was just started
+     */
+    static AsyncCircuitValue withDeadline(AsyncCircuitValue computation, Instant deadline) {
+        DeadlineCircuitValue result = new DeadlineCircuitValue(computation);
+        long delay = Duration.between(Instant.now(), deadline).toNanos();
+        ScheduledFuture<?> timeout = TIMER.schedule(result::timeOut, Math.max(delay, 0), TimeUnit.NANOSECONDS);
+
+        computation.asCompletionStage().whenComplete((value, exception) -> {
+            timeout.cancel(false);
+            if (exception == null) {
+                result.completion.complete(value);
+            } else {
+                result.completion.completeExceptionally(exception);
+            }
+        });
+        // the stage was cancelled by the user, or the deadline passed
+        result.completion.whenComplete((value, exception) -> {
+            if (exception != null) {
+                computation.cancel();
+            }
+        });
+        return result;
+    }
+
+    private void timeOut() {
+        completion.completeExceptionally(new TimeoutException("The deadline of the computation passed."));
+    }
+
+    /**
+     * @throws InterruptedException also if the deadline passed, see {@link #getValue(Duration)}
+     */
+    @Override
+    public boolean getValue() throws InterruptedException {
+        if (completion.isCompletedExceptionally()) {
+            throw new InterruptedException();
+        }
+        boolean value = computation.getValue();
+        // the computation might have finished just after the deadline passed
+        if (completion.isCompletedExceptionally()) {
+            throw new InterruptedException();
+        }
+        return value;
+    }
+
+    @Override
+    public CompletionStage<Boolean> asCompletionStage() {
+        return completion;
+    }
+}
@@ -1,9 +1,45 @@
 package cp2024.circuit;
 
+import java.time.Duration;
+
 public abstract non-sealed class LeafNode extends CircuitNode {
     protected LeafNode() {
         super(NodeType.LEAF, new CircuitNode[0]);
     }
 
     abstract public boolean getValue() throws InterruptedException;
+
+    /**
+     * A hint of how long <code>getValue()</code> takes, used by solvers to decide where to evaluate the leaf.
+     * Leaves don't give any hint unless they opt in by overriding this method.
+     *
+     * @return the expected duration of <code>getValue()</code>, or <code>null</code> if it's unknown
+     */
+    public Duration getCostHint() {
+        return null;
+    }
+
+    /**
+     * Immediate leaves may be evaluated by solvers on the calling thread, instead of a thread of their own.
+     *
+     * @return whether the cost hint promises that <code>getValue()</code> returns immediately
+     */
+    public final boolean isImmediate() {
+        Duration costHint = getCostHint();
+        return costHint != null && costHint.isZero();
+    }
+
+    /**
+     * Deterministic leaves always give the same value, so solvers may reuse it across solves,
+     * also for other leaves with an equal key. Leaves aren't deterministic unless they opt in by overriding this method.
+     *
+     * @return a key equal only to the keys of leaves giving the same value, or <code>null</code> if the leaf isn't deterministic
+     */
+    public Object getDeterministicKey() {
+        return null;
+    }
+
+    public final boolean isDeterministic() {
+        return getDeterministicKey() != null;
+    }
 }
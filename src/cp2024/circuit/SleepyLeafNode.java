@@ -5,15 +5,49 @@ import java.time.Duration;
 public class SleepyLeafNode extends LeafNode {
     private final boolean value;
     private final Duration delay;
+    private final boolean isDeterministic;
 
     public SleepyLeafNode(boolean value) {
-        this.value = value;
-        this.delay = Duration.ZERO;
+        this(value, Duration.ZERO);
     }
 
     public SleepyLeafNode(boolean value, Duration delay) {
+        this(value, delay, false);
+    }
+
+    /**
+     * @param isDeterministic whether the leaf stands for a computation that always gives the same value,
+     *                        so that solvers may reuse it, see {@link LeafNode#getDeterministicKey()}
+     */
+    public SleepyLeafNode(boolean value, Duration delay, boolean isDeterministic) {
         this.value = value;
         this.delay = delay;
+        this.isDeterministic = isDeterministic;
+    }
+
+    public Duration getDelay() {
+        return this.delay;
+    }
+
+    /**
+     * @return the value that <code>getValue()</code> returns, without its delay
+     */
+    public boolean peekValue() {
+        return this.value;
+    }
+
+    @Override
+    public Duration getCostHint() {
+        return this.delay;
+    }
+
+    /**
+     * Only if the leaf was made deterministic, since a sleepy leaf usually stands for a computation
+     * whose value isn't known to be the same every time. Then the value itself is the key.
+     */
+    @Override
+    public Object getDeterministicKey() {
+        return this.isDeterministic ? this.value : null;
     }
 
     @Override
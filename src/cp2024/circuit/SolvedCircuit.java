@@ -0,0 +1,36 @@
+package cp2024.circuit;
+
+/**
+ * A circuit of a batch whose computation has finished, in any way.
+ */
+public final class SolvedCircuit {
+    private final int index;
+    private final Circuit circuit;
+    private final CircuitValue value;
+
+    SolvedCircuit(int index, Circuit circuit, CircuitValue value) {
+        this.index = index;
+        this.circuit = circuit;
+        this.value = value;
+    }
+
+    /**
+     * @return the position of the circuit in the order of submission
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public Circuit getCircuit() {
+        return circuit;
+    }
+
+    /**
+     * Doesn't block, the computation is already finished.
+     *
+     * @throws InterruptedException if the computation was cancelled or interrupted
+     */
+    public boolean getValue() throws InterruptedException {
+        return value.getValue();
+    }
+}
@@ -0,0 +1,208 @@
+package cp2024.circuit;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the values of deterministic subcircuits across solves, so that a subcircuit
+ * structurally identical to one solved before isn't evaluated again, even if it's made of other node instances.
+ * A subcircuit is deterministic if all of its leaves are (see {@link LeafNode#isDeterministic()}),
+ * and it's keyed by its structure: the types and thresholds of the nodes, and the keys of the leaves.
+ * Bounded, evicting the least recently used subcircuit. Safe to share between solvers and threads.
+ */
+public final class SubcircuitCache {
+    /**
+     * The structure of a deterministic subcircuit, with its hash computed once.
+     */
+    private static final class Key {
+        private final NodeType type;
+        private final int threshold;
+        private final Object leafKey;
+        private final Key[] args;
+        private final int hash;
+
+        Key(NodeType type, int threshold, Object leafKey, Key[] args) {
+            this.type = type;
+            this.threshold = threshold;
+            this.leafKey = leafKey;
+            this.args = args;
+            int hash = 31 * type.hashCode() + threshold;
+            hash = 31 * hash + (leafKey == null ? 0 : leafKey.hashCode());
+            this.hash = 31 * hash + Arrays.hashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            return o instanceof Key key && hash == key.hash && type == key.type && threshold == key.threshold
+                    && (leafKey == null ? key.leafKey == null : leafKey.equals(key.leafKey))
+                    && Arrays.equals(args, key.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Marks the nodes with a nondeterministic leaf in their subcircuit.
+     */
+    private static final Key NONDETERMINISTIC = new Key(NodeType.LEAF, 0, null, new Key[0]);
+
+    private final int capacity;
+
+    /**
+     * In the order of access, so that the eldest entry is the least recently used. Guarded by itself.
+     */
+    private final LinkedHashMap<Key, Boolean> values;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    /**
+     * @param capacity the highest number of subcircuits remembered at once
+     */
+    public SubcircuitCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.values = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+                if (size() > SubcircuitCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Starts looking up the nodes of a single solve. The keys of its nodes are computed once per node instance.
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        synchronized (values) {
+            return values.size();
+        }
+    }
+
+    /**
+     * @return the number of lookups of deterministic subcircuits that found a value
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups of deterministic subcircuits that didn't find a value
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of values dropped to keep the cache within its capacity
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public void clear() {
+        synchronized (values) {
+            values.clear();
+        }
+    }
+
+    /**
+     * The view of the cache from a single solve.
+     */
+    public final class Session {
+        /**
+         * The keys of the nodes of the solved circuit, by identity. Nodes may be looked up concurrently,
+         * in which case a key may be computed twice, but the results are equal.
+         */
+        private final Map<CircuitNode, Key> keys = Collections.synchronizedMap(new IdentityHashMap<>());
+
+        private Session() {
+        }
+
+        private Key keyOf(CircuitNode node) throws InterruptedException {
+            Key key = keys.get(node);
+            if (key != null) {
+                return key;
+            }
+            if (node instanceof LeafNode leaf) {
+                Object leafKey = leaf.getDeterministicKey();
+                key = leafKey == null ? NONDETERMINISTIC : new Key(NodeType.LEAF, 0, leafKey, new Key[0]);
+            } else {
+                CircuitNode[] args = node.getArgs();
+                Key[] argKeys = new Key[args.length];
+                for (int i = 0; i < args.length; i++) {
+                    argKeys[i] = keyOf(args[i]);
+                    if (argKeys[i] == NONDETERMINISTIC) {
+                        keys.put(node, NONDETERMINISTIC);
+                        return NONDETERMINISTIC;
+                    }
+                }
+                int threshold = node instanceof ThresholdNode thresholdNode ? thresholdNode.getThreshold() : 0;
+                key = new Key(node.getType(), threshold, null, argKeys);
+            }
+            keys.put(node, key);
+            return key;
+        }
+
+        /**
+         * Counts a hit or a miss, unless the subcircuit of the node isn't deterministic.
+         *
+         * @return the remembered value of the subcircuit of the node, or <code>null</code> if there's none
+         * @throws InterruptedException if <code>getArgs()</code> of some node was interrupted
+         */
+        public Boolean lookup(CircuitNode node) throws InterruptedException {
+            Key key = keyOf(node);
+            if (key == NONDETERMINISTIC) {
+                return null;
+            }
+            Boolean value;
+            synchronized (values) {
+                value = values.get(key);
+            }
+            (value == null ? misses : hits).increment();
+            return value;
+        }
+
+        /**
+         * Remembers the value of the subcircuit of the node, if it's deterministic.
+         * Must be called only after a lookup of the same node.
+         */
+        public void store(CircuitNode node, boolean value) {
+            Key key = keys.get(node);
+            if (key == null || key == NONDETERMINISTIC) {
+                return;
+            }
+            synchronized (values) {
+                values.put(key, value);
+            }
+        }
+    }
+}
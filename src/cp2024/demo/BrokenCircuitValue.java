@@ -1,10 +1,19 @@
 package cp2024.demo;
 
-import cp2024.circuit.CircuitValue;
+import cp2024.circuit.AsyncCircuitValue;
 
-public class BrokenCircuitValue implements CircuitValue {
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+public class BrokenCircuitValue implements AsyncCircuitValue {
     @Override
     public boolean getValue() throws InterruptedException {
         throw new InterruptedException();
     }
+
+    @Override
+    public CompletionStage<Boolean> asCompletionStage() {
+        return CompletableFuture.failedFuture(new CancellationException("The computation was interrupted."));
+    }
 }
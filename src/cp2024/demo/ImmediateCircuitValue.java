@@ -1,8 +1,11 @@
 package cp2024.demo;
 
-import cp2024.circuit.CircuitValue;
+import cp2024.circuit.AsyncCircuitValue;
 
-public class ImmediateCircuitValue implements CircuitValue {
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+public class ImmediateCircuitValue implements AsyncCircuitValue {
     private final boolean value;
 
     public ImmediateCircuitValue(boolean value) {
@@ -13,4 +16,9 @@ public class ImmediateCircuitValue implements CircuitValue {
     public boolean getValue() {
         return this.value;
     }
+
+    @Override
+    public CompletionStage<Boolean> asCompletionStage() {
+        return CompletableFuture.completedFuture(this.value);
+    }
 }
@@ -2,18 +2,90 @@ package cp2024.demo;
 
 import cp2024.circuit.*;
 
-public class SequentialSolver implements CircuitSolver {
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Evaluates the circuit on the calling thread. A node instance that is an argument of several nodes
+ * is evaluated at most once per solve.
+ */
+public class SequentialSolver implements AsyncCircuitSolver {
     private Boolean acceptComputations = true;
+    private final SubcircuitCache cache;
+
+    /**
+     * The values of the nodes known in a single solve.
+     */
+    private static final class Memo {
+        final Map<CircuitNode, Boolean> values = new IdentityHashMap<>();
+        final SubcircuitCache.Session cacheSession;
+
+        Memo(SubcircuitCache cache) {
+            this.cacheSession = cache == null ? null : cache.newSession();
+        }
+    }
+
+    public SequentialSolver() {
+        this(null);
+    }
+
+    /**
+     * @param cache the values of deterministic subcircuits remembered across solves,
+     *              or <code>null</code> to evaluate every subcircuit
+     */
+    public SequentialSolver(SubcircuitCache cache) {
+        this.cache = cache;
+    }
+
+    /** @return the cache of subcircuit values, or <code>null</code> if it's disabled */
+    public SubcircuitCache getCache() {
+        return cache;
+    }
 
     @Override
-    public CircuitValue solve(Circuit c) {
+    public AsyncCircuitValue solve(Circuit c) {
         boolean ret;
 
         if (!acceptComputations)
                 return new BrokenCircuitValue();
 
         try {
-            ret = recursiveSolve(c.getRoot());
+            ret = recursiveSolve(c.getRoot(), new Memo(cache));
+        } catch (InterruptedException e) {
+            return new BrokenCircuitValue();
+        }
+        return new ImmediateCircuitValue(ret);
+    }
+
+    /**
+     * Like <code>solve</code>, but if asked to, first rewrites the circuit with {@link CircuitSimplifier}.
+     */
+    public AsyncCircuitValue solve(Circuit c, boolean simplify) {
+        if (!simplify)
+            return solve(c);
+
+        try {
+            return solve(CircuitSimplifier.simplify(c).getCircuit());
+        } catch (InterruptedException e) {
+            return new BrokenCircuitValue();
+        }
+    }
+
+    /** Computes the value before returning, like <code>solve</code>. */
+    @Override
+    public AsyncCircuitValue solveAsync(Circuit c) {
+        return solve(c);
+    }
+
+    /** Evaluates the compiled circuit by index, the same way as <code>solve</code>. */
+    public AsyncCircuitValue solve(CompiledCircuit c) {
+        boolean ret;
+
+        if (!acceptComputations)
+                return new BrokenCircuitValue();
+
+        try {
+            ret = recursiveSolve(c, c.getRoot(), new byte[c.size()]);
         } catch (InterruptedException e) {
             return new BrokenCircuitValue();
         }
@@ -25,63 +97,117 @@ public class SequentialSolver implements CircuitSolver {
         acceptComputations = false;
     }
 
-    private boolean recursiveSolve(CircuitNode n) throws InterruptedException {
-        if (n.getType() == NodeType.LEAF)
-            return ((LeafNode) n).getValue();
+    private boolean recursiveSolve(CircuitNode n, Memo memo) throws InterruptedException {
+        Boolean known = memo.values.get(n);
+        if (known == null && memo.cacheSession != null) {
+            known = memo.cacheSession.lookup(n);
+            if (known != null)
+                memo.values.put(n, known);
+        }
+        if (known != null)
+            return known;
+
+        boolean ret;
+        if (n.getType() == NodeType.LEAF) {
+            ret = ((LeafNode) n).getValue();
+        } else {
+            CircuitNode[] args = n.getArgs();
+
+            ret = switch (n.getType()) {
+                case IF -> solveIF(args, memo);
+                case AND -> solveAND(args, memo);
+                case OR -> solveOR(args, memo);
+                case GT -> solveGT(args, ((ThresholdNode) n).getThreshold(), memo);
+                case LT -> solveLT(args, ((ThresholdNode) n).getThreshold(), memo);
+                case NOT -> solveNOT(args, memo);
+                default -> throw new RuntimeException("Illegal type " + n.getType());
+            };
+        }
+        memo.values.put(n, ret);
+        if (memo.cacheSession != null)
+            memo.cacheSession.store(n, ret);
+        return ret;
+    }
 
-        CircuitNode[] args = n.getArgs();
+    /**
+     * @param memo the values of the nodes computed so far, <code>1</code> for false and <code>2</code> for true
+     */
+    private boolean recursiveSolve(CompiledCircuit c, int n, byte[] memo) throws InterruptedException {
+        if (memo[n] != 0)
+            return memo[n] == 2;
 
-        return switch (n.getType()) {
-            case IF -> solveIF(args);
-            case AND -> solveAND(args);
-            case OR -> solveOR(args);
-            case GT -> solveGT(args, ((ThresholdNode) n).getThreshold());
-            case LT -> solveLT(args, ((ThresholdNode) n).getThreshold());
-            case NOT -> solveNOT(args);
-            default -> throw new RuntimeException("Illegal type " + n.getType());
+        boolean ret = switch (c.getType(n)) {
+            case LEAF -> c.getLeaf(n).getValue();
+            case IF -> recursiveSolve(c, c.getArg(n, 0), memo)
+                    ? recursiveSolve(c, c.getArg(n, 1), memo)
+                    : recursiveSolve(c, c.getArg(n, 2), memo);
+            case AND -> !anyArgEquals(c, n, false, memo);
+            case OR -> anyArgEquals(c, n, true, memo);
+            case GT -> countTrueArgs(c, n, memo) > c.getThreshold(n);
+            case LT -> countTrueArgs(c, n, memo) < c.getThreshold(n);
+            case NOT -> !recursiveSolve(c, c.getArg(n, 0), memo);
         };
+        memo[n] = (byte) (ret ? 2 : 1);
+        return ret;
+    }
+
+    private boolean anyArgEquals(CompiledCircuit c, int n, boolean value, byte[] memo) throws InterruptedException {
+        for (int i = 0; i < c.getArgCount(n); i++) {
+            if (recursiveSolve(c, c.getArg(n, i), memo) == value)
+                return true;
+        }
+        return false;
+    }
+
+    private int countTrueArgs(CompiledCircuit c, int n, byte[] memo) throws InterruptedException {
+        int gotTrue = 0;
+        for (int i = 0; i < c.getArgCount(n); i++) {
+            if (recursiveSolve(c, c.getArg(n, i), memo))
+                gotTrue++;
+        }
+        return gotTrue;
     }
 
-    private boolean solveNOT(CircuitNode[] args) throws InterruptedException {
-        return !recursiveSolve(args[0]);
+    private boolean solveNOT(CircuitNode[] args, Memo memo) throws InterruptedException {
+        return !recursiveSolve(args[0], memo);
     }
 
-    private boolean solveLT(CircuitNode[] args, int threshold) throws InterruptedException {
+    private boolean solveLT(CircuitNode[] args, int threshold, Memo memo) throws InterruptedException {
         int gotTrue = 0;
         for (CircuitNode arg : args) {
-            if (recursiveSolve(arg))
+            if (recursiveSolve(arg, memo))
                 gotTrue++;
         }
         return gotTrue < threshold;
     }
 
-    private boolean solveGT(CircuitNode[] args, int threshold) throws InterruptedException {
+    private boolean solveGT(CircuitNode[] args, int threshold, Memo memo) throws InterruptedException {
         int gotTrue = 0;
         for (CircuitNode arg : args) {
-            if (recursiveSolve(arg))
+            if (recursiveSolve(arg, memo))
                 gotTrue++;
         }
         return gotTrue > threshold;
     }
 
-    private boolean solveOR(CircuitNode[] args) throws InterruptedException {
+    private boolean solveOR(CircuitNode[] args, Memo memo) throws InterruptedException {
         for (CircuitNode c : args) {
-            if (recursiveSolve(c))
+            if (recursiveSolve(c, memo))
                 return true;
         }
         return false;
     }
 
-    private boolean solveAND(CircuitNode[] args) throws InterruptedException {
+    private boolean solveAND(CircuitNode[] args, Memo memo) throws InterruptedException {
         for (CircuitNode c : args) {
-            if (!recursiveSolve(c))
+            if (!recursiveSolve(c, memo))
                 return false;
         }
         return true;
     }
 
-    private boolean solveIF(CircuitNode[] args) throws InterruptedException {
-        boolean b = recursiveSolve(args[0]);
-        return b ? recursiveSolve(args[1]) : recursiveSolve(args[2]);
+    private boolean solveIF(CircuitNode[] args, Memo memo) throws InterruptedException {
+        boolean b = recursiveSolve(args[0], memo);
+        return b ? recursiveSolve(args[1], memo) : recursiveSolve(args[2], memo);
     }
 }
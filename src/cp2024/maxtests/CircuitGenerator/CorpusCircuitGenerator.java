@@ -0,0 +1,65 @@
+package cp2024.maxtests.CircuitGenerator;
+
+import java.util.Random;
+
+import cp2024.circuit.CircuitNode;
+
+/**
+ * Generates circuits of sleepy leaves for a {@link WorkloadCorpus}: balanced or deep like the other generators,
+ * with the delays of the leaves drawn from a distribution and their values skewed towards true or false.
+ */
+public class CorpusCircuitGenerator extends RandomCircuitGenerator {
+  /**
+   * The shapes of the circuits, after the generators they follow.
+   */
+  public enum Shape {
+    /**
+     * Like {@link BalancedRandomCircuitGenerator}, the size is the height.
+     */
+    BALANCED,
+
+    /**
+     * Like {@link DeepRandomCircuitGenerator}, the size is roughly the number of nodes.
+     */
+    DEEP
+  }
+
+  private final Shape shape;
+  private final int size;
+  private final LatencyDistribution latency;
+  private final double trueProbability;
+
+  /**
+   * @param trueProbability the probability that a leaf is true
+   */
+  public CorpusCircuitGenerator(Random rand, int maxArity, Shape shape, int size, LatencyDistribution latency,
+                                double trueProbability) {
+    super(rand, maxArity);
+    if (trueProbability < 0 || trueProbability > 1) {
+      throw new IllegalArgumentException("The probability must be between 0 and 1.");
+    }
+    this.shape = shape;
+    this.size = size;
+    this.latency = latency;
+    this.trueProbability = trueProbability;
+  }
+
+  @Override
+  protected boolean leafNodeProbability(int currentDepth) {
+    return switch (shape) {
+      case BALANCED -> currentDepth >= size;
+      case DEEP -> rand.nextDouble() < Math.min(1.0, (double) nonLeafNodeCount / Math.max(size / 2, 1));
+    };
+  }
+
+  @Override
+  protected CircuitNode LeafCreator() {
+    boolean value = rand.nextDouble() < trueProbability;
+    return CircuitNode.mk(value, latency.sample(rand));
+  }
+
+  @Override
+  public String toString() {
+    return "CorpusCircuitGenerator";
+  }
+}
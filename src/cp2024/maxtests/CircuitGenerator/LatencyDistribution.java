@@ -0,0 +1,92 @@
+package cp2024.maxtests.CircuitGenerator;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * The delays of the leaves of generated circuits, in whole milliseconds, since that's what sleepy leaves sleep.
+ * Sampling uses only the given random generator and <code>StrictMath</code>,
+ * so the same seed gives the same delays on every JVM.
+ */
+public abstract class LatencyDistribution {
+  private LatencyDistribution() {
+  }
+
+  public abstract Duration sample(Random rand);
+
+  /**
+   * Describes the distribution with all of its parameters, as saved in the header of a corpus.
+   */
+  @Override
+  public abstract String toString();
+
+  /**
+   * Every leaf takes the same time.
+   */
+  public static LatencyDistribution constant(Duration delay) {
+    return new LatencyDistribution() {
+      @Override
+      public Duration sample(Random rand) {
+        return Duration.ofMillis(delay.toMillis());
+      }
+
+      @Override
+      public String toString() {
+        return "constant " + delay.toMillis() + "ms";
+      }
+    };
+  }
+
+  /**
+   * Most leaves take about the median, with a long tail to the right, like the latencies of typical services.
+   *
+   * @param sigma the standard deviation of the logarithm of the delay, 1 makes a delay over 5 times the median
+   *              about 5% likely
+   */
+  public static LatencyDistribution logNormal(Duration median, double sigma) {
+    if (sigma < 0) {
+      throw new IllegalArgumentException("Sigma must not be negative.");
+    }
+    return new LatencyDistribution() {
+      @Override
+      public Duration sample(Random rand) {
+        double millis = median.toMillis() * StrictMath.exp(sigma * rand.nextGaussian());
+        return Duration.ofMillis(Math.round(millis));
+      }
+
+      @Override
+      public String toString() {
+        return "log-normal median=" + median.toMillis() + "ms sigma=" + sigma;
+      }
+    };
+  }
+
+  /**
+   * A Pareto distribution, where a few leaves take far longer than all the rest, capped so that a corpus stays
+   * solvable in bounded time.
+   *
+   * @param alpha the lower, the heavier the tail, below 2 the variance is infinite before the cap
+   */
+  public static LatencyDistribution heavyTailed(Duration min, double alpha, Duration max) {
+    if (alpha <= 0) {
+      throw new IllegalArgumentException("Alpha must be positive.");
+    }
+    if (max.compareTo(min) < 0) {
+      throw new IllegalArgumentException("The cap must not be below the minimum.");
+    }
+    return new LatencyDistribution() {
+      @Override
+      public Duration sample(Random rand) {
+        // in (0, 1], so that the power is finite
+        double uniform = 1.0 - rand.nextDouble();
+        double millis = min.toMillis() / StrictMath.pow(uniform, 1.0 / alpha);
+        return Duration.ofMillis(Math.min(Math.round(millis), max.toMillis()));
+      }
+
+      @Override
+      public String toString() {
+        return "heavy-tailed min=" + min.toMillis() + "ms alpha=" + alpha + " max=" + max.toMillis() + "ms";
+      }
+    };
+  }
+}
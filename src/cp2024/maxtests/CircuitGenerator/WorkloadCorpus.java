@@ -0,0 +1,381 @@
+package cp2024.maxtests.CircuitGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import cp2024.circuit.Circuit;
+import cp2024.circuit.CircuitNode;
+import cp2024.circuit.NodeType;
+import cp2024.circuit.SleepyLeafNode;
+import cp2024.circuit.ThresholdNode;
+
+/**
+ * A named, versioned set of circuits generated from a seed, saved to disk so that every solver, on every commit,
+ * is measured on the same circuits, even if the generators change in the meantime.
+ * <p>
+ * A corpus is a text file, <code>name-vVERSION.corpus</code>: a header of <code>key=value</code> lines describing
+ * how it was generated, an empty line, and one circuit per line, e.g. <code>AND(T12,GT1(F0,T3,NOT(F7)))</code>,
+ * where a leaf is its value followed by its delay in milliseconds. Shared nodes are written once per use.
+ * Changing the spec of a corpus without changing its version is an error, so that stale files aren't used by mistake.
+ * <p>
+ * Usage: <code>WorkloadCorpus [directory]</code> writes the {@link #STANDARD} corpora, to {@link #directory()}
+ * by default.
+ */
+public final class WorkloadCorpus {
+  /**
+   * The version of the file format, bumped whenever it changes.
+   */
+  public static final int FORMAT_VERSION = 1;
+
+  private static final String FORMAT_LINE = "# circuit corpus, format " + FORMAT_VERSION;
+
+  /**
+   * The corpora the benchmarks are run on, from constant latencies to heavy tails, and from mostly false to
+   * mostly true leaves.
+   */
+  public static final List<Spec> STANDARD = List.of(
+      Spec.of("balanced-constant", 1, 42),
+      Spec.of("balanced-lognormal", 1, 42)
+          .withLatency(LatencyDistribution.logNormal(Duration.ofMillis(5), 1.0)),
+      Spec.of("deep-heavy-tailed", 1, 42)
+          .withShape(CorpusCircuitGenerator.Shape.DEEP, 300)
+          .withLatency(LatencyDistribution.heavyTailed(Duration.ofMillis(1), 1.2, Duration.ofMillis(500))),
+      Spec.of("balanced-mostly-true", 1, 42)
+          .withLatency(LatencyDistribution.logNormal(Duration.ofMillis(5), 1.0))
+          .withTrueProbability(0.9),
+      Spec.of("balanced-mostly-false", 1, 42)
+          .withLatency(LatencyDistribution.logNormal(Duration.ofMillis(5), 1.0))
+          .withTrueProbability(0.1));
+
+  /**
+   * How a corpus is generated. Immutable, every <code>with</code> method returns a copy.
+   */
+  public static final class Spec {
+    private final String name;
+    private final int version;
+    private final long seed;
+    private final int circuits;
+    private final CorpusCircuitGenerator.Shape shape;
+    private final int size;
+    private final int maxArity;
+    private final LatencyDistribution latency;
+    private final double trueProbability;
+
+    private Spec(String name, int version, long seed, int circuits, CorpusCircuitGenerator.Shape shape, int size,
+                 int maxArity, LatencyDistribution latency, double trueProbability) {
+      this.name = name;
+      this.version = version;
+      this.seed = seed;
+      this.circuits = circuits;
+      this.shape = shape;
+      this.size = size;
+      this.maxArity = maxArity;
+      this.latency = latency;
+      this.trueProbability = trueProbability;
+    }
+
+    /**
+     * 100 balanced circuits of height 5, with leaves of 1 ms, half of them true.
+     *
+     * @param version bumped whenever anything else in the spec changes
+     */
+    public static Spec of(String name, int version, long seed) {
+      if (!name.matches("[A-Za-z0-9._-]+")) {
+        throw new IllegalArgumentException("The name must be usable as a file name.");
+      }
+      return new Spec(name, version, seed, 100, CorpusCircuitGenerator.Shape.BALANCED, 5, 5,
+                      LatencyDistribution.constant(Duration.ofMillis(1)), 0.5);
+    }
+
+    public Spec withCircuits(int circuits) {
+      return new Spec(name, version, seed, circuits, shape, size, maxArity, latency, trueProbability);
+    }
+
+    /**
+     * @param size the height of balanced circuits, or roughly the number of nodes of deep ones
+     */
+    public Spec withShape(CorpusCircuitGenerator.Shape shape, int size) {
+      return new Spec(name, version, seed, circuits, shape, size, maxArity, latency, trueProbability);
+    }
+
+    /**
+     * @param maxArity the children of AND, OR, GT and LT nodes are between 2 and <code>maxArity - 1</code>
+     */
+    public Spec withMaxArity(int maxArity) {
+      return new Spec(name, version, seed, circuits, shape, size, maxArity, latency, trueProbability);
+    }
+
+    public Spec withLatency(LatencyDistribution latency) {
+      return new Spec(name, version, seed, circuits, shape, size, maxArity, latency, trueProbability);
+    }
+
+    /**
+     * @param trueProbability the probability that a leaf is true, which decides how often nodes short-circuit
+     */
+    public Spec withTrueProbability(double trueProbability) {
+      return new Spec(name, version, seed, circuits, shape, size, maxArity, latency, trueProbability);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getVersion() {
+      return version;
+    }
+
+    /**
+     * @return the name of the file of the corpus
+     */
+    public String getFileName() {
+      return name + "-v" + version + ".corpus";
+    }
+
+    /**
+     * @return the header of the corpus file
+     */
+    List<String> header() {
+      return List.of(FORMAT_LINE,
+                     "name=" + name,
+                     "version=" + version,
+                     "seed=" + seed,
+                     "circuits=" + circuits,
+                     "shape=" + shape + " " + size,
+                     "maxArity=" + maxArity,
+                     "latency=" + latency,
+                     "trueProbability=" + trueProbability);
+    }
+  }
+
+  private final List<String> header;
+  private final List<Circuit> circuits;
+
+  private WorkloadCorpus(List<String> header, List<Circuit> circuits) {
+    this.header = header;
+    this.circuits = Collections.unmodifiableList(circuits);
+  }
+
+  /**
+   * Generates the corpus in memory, the same one every time for the same spec.
+   */
+  public static WorkloadCorpus generate(Spec spec) {
+    CorpusCircuitGenerator generator = new CorpusCircuitGenerator(new Random(spec.seed), spec.maxArity,
+                                                                  spec.shape, spec.size, spec.latency,
+                                                                  spec.trueProbability);
+    List<Circuit> circuits = new ArrayList<>(spec.circuits);
+    for (int i = 0; i < spec.circuits; i++) {
+      circuits.add(generator.generateCircuit().getCircuit());
+    }
+    return new WorkloadCorpus(spec.header(), circuits);
+  }
+
+  /**
+   * The directory the standard corpora are committed to, the <code>corpora</code> system property if it's set,
+   * otherwise <code>corpora</code> in the working directory.
+   */
+  public static Path directory() {
+    return Path.of(System.getProperty("corpora", "corpora"));
+  }
+
+  /**
+   * Loads the standard corpus of the name from {@link #directory()}, see <code>loadOrGenerate</code>.
+   *
+   * @throws IllegalArgumentException if none of the {@link #STANDARD} corpora has the name
+   */
+  public static WorkloadCorpus loadStandard(String name) throws IOException {
+    for (Spec spec : STANDARD) {
+      if (spec.getName().equals(name)) {
+        return loadOrGenerate(directory(), spec);
+      }
+    }
+    throw new IllegalArgumentException("There's no standard corpus called " + name + ".");
+  }
+
+  /**
+   * Loads the corpus of the spec from the directory, or generates it and saves it there if it isn't there yet.
+   *
+   * @throws IllegalStateException if the saved corpus was generated from another spec with the same version
+   */
+  public static WorkloadCorpus loadOrGenerate(Path directory, Spec spec) throws IOException {
+    Path file = directory.resolve(spec.getFileName());
+    if (Files.exists(file)) {
+      WorkloadCorpus corpus = load(file);
+      if (!corpus.header.equals(spec.header())) {
+        throw new IllegalStateException(file + " was generated from another spec, bump the version of the spec.");
+      }
+      return corpus;
+    }
+    WorkloadCorpus corpus = generate(spec);
+    Files.createDirectories(directory);
+    corpus.save(file);
+    return corpus;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the file isn't a corpus of a format this version can read
+   */
+  public static WorkloadCorpus load(Path file) throws IOException {
+    List<String> lines = Files.readAllLines(file);
+    if (lines.isEmpty() || !lines.get(0).equals(FORMAT_LINE)) {
+      throw new IllegalArgumentException(file + " isn't a corpus of format " + FORMAT_VERSION + ".");
+    }
+    int separator = lines.indexOf("");
+    if (separator < 0) {
+      throw new IllegalArgumentException(file + " has no end of its header.");
+    }
+    List<Circuit> circuits = new ArrayList<>();
+    for (String line : lines.subList(separator + 1, lines.size())) {
+      if (!line.isEmpty()) {
+        circuits.add(new Circuit(new Parser(line).parse()));
+      }
+    }
+    return new WorkloadCorpus(List.copyOf(lines.subList(0, separator)), circuits);
+  }
+
+  public void save(Path file) throws IOException {
+    try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+      for (String line : header) {
+        writer.write(line);
+        writer.newLine();
+      }
+      writer.newLine();
+      for (Circuit circuit : circuits) {
+        StringBuilder line = new StringBuilder();
+        write(circuit.getRoot(), line);
+        writer.write(line.toString());
+        writer.newLine();
+      }
+    }
+  }
+
+  public List<Circuit> getCircuits() {
+    return circuits;
+  }
+
+  /**
+   * @return the lines describing how the corpus was generated, starting with the format
+   */
+  public List<String> getHeader() {
+    return header;
+  }
+
+  private static void write(CircuitNode node, StringBuilder out) {
+    NodeType type = node.getType();
+    if (type == NodeType.LEAF) {
+      if (!(node instanceof SleepyLeafNode leaf)) {
+        throw new IllegalArgumentException("Only sleepy leaves can be saved.");
+      }
+      out.append(leaf.peekValue() ? 'T' : 'F').append(leaf.getDelay().toMillis());
+      return;
+    }
+    out.append(type);
+    if (node instanceof ThresholdNode threshold) {
+      out.append(threshold.getThreshold());
+    }
+    out.append('(');
+    CircuitNode[] args;
+    try {
+      args = node.getArgs();
+    } catch (InterruptedException e) {
+      throw new IllegalStateException("The generated nodes give their arguments at once.", e);
+    }
+    for (int i = 0; i < args.length; i++) {
+      if (i > 0) {
+        out.append(',');
+      }
+      write(args[i], out);
+    }
+    out.append(')');
+  }
+
+  /**
+   * Reads a single circuit, by recursive descent.
+   */
+  private static final class Parser {
+    private final String line;
+    private int position;
+
+    Parser(String line) {
+      this.line = line;
+      this.position = 0;
+    }
+
+    CircuitNode parse() {
+      CircuitNode root = node();
+      if (position != line.length()) {
+        throw error("the end of the circuit");
+      }
+      return root;
+    }
+
+    private CircuitNode node() {
+      if (position >= line.length()) {
+        throw error("a node");
+      }
+      char first = line.charAt(position);
+      if (first == 'T' || first == 'F') {
+        position++;
+        return CircuitNode.mk(first == 'T', Duration.ofMillis(number()));
+      }
+      int start = position;
+      while (position < line.length() && Character.isUpperCase(line.charAt(position))) {
+        position++;
+      }
+      NodeType type;
+      try {
+        type = NodeType.valueOf(line.substring(start, position));
+      } catch (IllegalArgumentException e) {
+        throw error("a node type");
+      }
+      int threshold = type == NodeType.GT || type == NodeType.LT ? (int) number() : 0;
+      expect('(');
+      List<CircuitNode> args = new ArrayList<>();
+      args.add(node());
+      while (position < line.length() && line.charAt(position) == ',') {
+        position++;
+        args.add(node());
+      }
+      expect(')');
+      CircuitNode[] array = args.toArray(new CircuitNode[0]);
+      return type == NodeType.GT || type == NodeType.LT ? CircuitNode.mk(type, threshold, array)
+                                                        : CircuitNode.mk(type, array);
+    }
+
+    private long number() {
+      int start = position;
+      while (position < line.length() && Character.isDigit(line.charAt(position))) {
+        position++;
+      }
+      if (start == position) {
+        throw error("a number");
+      }
+      return Long.parseLong(line.substring(start, position));
+    }
+
+    private void expect(char c) {
+      if (position >= line.length() || line.charAt(position) != c) {
+        throw error("'" + c + "'");
+      }
+      position++;
+    }
+
+    private IllegalArgumentException error(String expected) {
+      return new IllegalArgumentException("Expected " + expected + " at " + position + " of " + line);
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    Path directory = args.length > 0 ? Path.of(args[0]) : directory();
+    for (Spec spec : STANDARD) {
+      WorkloadCorpus corpus = loadOrGenerate(directory, spec);
+      System.out.println(directory.resolve(spec.getFileName()) + ": " + corpus.getCircuits().size() + " circuits");
+    }
+  }
+}
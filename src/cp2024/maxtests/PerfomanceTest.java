@@ -1,6 +1,7 @@
 package cp2024.maxtests;
 
 
+import java.io.IOException;
 import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -23,9 +24,12 @@ import cp2024.maxtests.CircuitGenerator.DeepRandomCircuitGenerator;
 import cp2024.maxtests.CircuitGenerator.DeterministicNodeGenerator;
 import cp2024.maxtests.CircuitGenerator.RandomCircuitGenerator;
 import cp2024.maxtests.CircuitGenerator.RandomCircuitGenerator.CircuitWithStats;
+import cp2024.maxtests.CircuitGenerator.WorkloadCorpus;
 import cp2024.maxtests.TestUtils.Pair;
 
 public class PerfomanceTest {
+  // fixed, so that every run measures the same circuits
+  private static final long SEED = 42;
   private final int deepCircuitNodes = 5_000;
   private final int depthBalancedCircuit = 15;
   private final int iterations = 1_000;
@@ -47,8 +51,8 @@ public class PerfomanceTest {
   @Test
   void speedTest1() {
     RandomCircuitGenerator[] generators = {
-                                           new DeepRandomCircuitGenerator(deepCircuitNodes, new Random()),
-                                           new BalancedRandomCircuitGenerator(12, new Random(), 10)
+                                           new DeepRandomCircuitGenerator(deepCircuitNodes, new Random(SEED)),
+                                           new BalancedRandomCircuitGenerator(12, new Random(SEED), 10)
                                           };
     // Store execution times
     long[] totalSequentialTime = new long[generators.length];
@@ -93,11 +97,39 @@ public class PerfomanceTest {
     System.out.println("Total Speedup: " + (double) totSeq / totPar);
   }
 
+  /**
+   * Measures the solvers on the saved standard corpora, the same circuits on every commit.
+   */
+  @Test
+  void speedTestCorpora() throws IOException {
+    for (WorkloadCorpus.Spec spec : WorkloadCorpus.STANDARD) {
+      long sequentialTime = 0;
+      long parallelTime = 0;
+      WorkloadCorpus corpus = WorkloadCorpus.loadStandard(spec.getName());
+      for (Circuit circuit : corpus.getCircuits()) {
+        Pair<Boolean, Long> seqPair = TestUtils.measureExecutionNanos(seqSolver, circuit);
+        sequentialTime += seqPair.second;
+
+        Pair<Boolean, Long> parPair = TestUtils.measureExecutionNanos(parSolver, circuit);
+        parallelTime += parPair.second;
+
+        assertEquals(seqPair.first, parPair.first);
+      }
+
+      int circuits = corpus.getCircuits().size();
+      System.out.println(spec.getFileName() + ": Average Sequential Solver Time: "
+                         + sequentialTime / circuits / 1_000 + " microseconds");
+      System.out.println(spec.getFileName() + ": Average Parallel Solver Time: "
+                         + parallelTime / circuits / 1_000 + " microseconds");
+      System.out.println(spec.getFileName() + ": Speedup " + (double) sequentialTime / parallelTime);
+    }
+  }
+
   @Test
   void speedTest2() {
     RandomCircuitGenerator[] generators = {
-      new DeepRandomCircuitGenerator(deepCircuitNodes, new Random()),
-      new BalancedRandomCircuitGenerator(depthBalancedCircuit, new Random())
+      new DeepRandomCircuitGenerator(deepCircuitNodes, new Random(SEED)),
+      new BalancedRandomCircuitGenerator(depthBalancedCircuit, new Random(SEED))
     };
 
     Circuit[] circuits = new Circuit[iterations];
@@ -142,7 +174,7 @@ public class PerfomanceTest {
   @Test
   void speedTest3() {
 
-    RandomCircuitGenerator gen = new DeterministicNodeGenerator(new Random(), depthBalancedCircuit,
+    RandomCircuitGenerator gen = new DeterministicNodeGenerator(new Random(SEED), depthBalancedCircuit,
                                                                 NodeType.AND, true);
 
     long pElapsed = 0;
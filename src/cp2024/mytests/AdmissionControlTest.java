@@ -0,0 +1,158 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.solution.AdmissionLimits;
+import cp2024.solution.AdmissionLimits.OverflowPolicy;
+import cp2024.solution.ParallelCircuitSolver;
+import cp2024.solution.ParallelSolverOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControlTest {
+    private ParallelCircuitSolver solver;
+
+    @AfterEach
+    public void stop() {
+        solver.stop();
+    }
+
+    private static ParallelCircuitSolver solver(AdmissionLimits limits) {
+        return new ParallelCircuitSolver(ParallelSolverOptions.DEFAULT.withAdmissionLimits(limits));
+    }
+
+    private static Circuit slowCircuit(Duration delay) {
+        return new Circuit(CircuitNode.mk(NodeType.AND, CircuitNode.mk(true, delay), CircuitNode.mk(true, delay)));
+    }
+
+    @Test
+    public void testUnlimitedByDefault() throws InterruptedException {
+        solver = new ParallelCircuitSolver();
+        assertEquals(-1, solver.getAdmission().getAvailableSolvePermits());
+        assertEquals(-1, solver.getAdmission().getAvailableLeafPermits());
+        assertTrue(solver.solve(slowCircuit(Duration.ofMillis(10))).getValue());
+        assertEquals(0, solver.getAdmission().getQueueDepth());
+    }
+
+    @Test
+    public void testLeavesAreBounded() throws InterruptedException {
+        solver = solver(AdmissionLimits.UNLIMITED.withMaxConcurrentLeaves(2));
+        CircuitNode[] leaves = new CircuitNode[6];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = CircuitNode.mk(true, Duration.ofMillis(100));
+        }
+
+        long start = System.currentTimeMillis();
+        CircuitValue value = solver.solve(new Circuit(CircuitNode.mk(NodeType.AND, leaves)));
+        Thread.sleep(50);
+        assertEquals(0, solver.getAdmission().getAvailableLeafPermits());
+        assertEquals(2, solver.getBusyLeaves());
+        // the waiting leaves don't take threads, only the root and the two leaves being evaluated run
+        assertEquals(4, solver.getAdmission().getLeafQueueDepth());
+        assertEquals(3, solver.getMetrics().getLiveTasks());
+        assertTrue(value.getValue());
+        // three rounds of two leaves
+        assertTrue(System.currentTimeMillis() - start >= 300);
+        // the last leaf gives its permit back once its task returns, right after sending its value
+        Thread.sleep(20);
+        assertEquals(2, solver.getAdmission().getAvailableLeafPermits());
+        assertEquals(0, solver.getAdmission().getLeafQueueDepth());
+    }
+
+    @Test
+    public void testNodesAreBounded() throws InterruptedException {
+        solver = solver(AdmissionLimits.UNLIMITED.withMaxConcurrentNodes(1).withMaxConcurrentLeaves(2));
+        CircuitNode[] subtrees = new CircuitNode[4];
+        for (int i = 0; i < subtrees.length; i++) {
+            subtrees[i] = CircuitNode.mk(NodeType.OR, CircuitNode.mk(false, Duration.ofMillis(20)),
+                    CircuitNode.mk(true, Duration.ofMillis(20)));
+        }
+
+        assertTrue(solver.solve(new Circuit(CircuitNode.mk(NodeType.AND, subtrees))).getValue());
+        // the root, a single subtree, and two leaves; the other subtrees are computed on the threads of their parents
+        assertTrue(solver.getMetrics().getPeakLiveTasks() <= 4);
+        Thread.sleep(20);
+        assertEquals(1, solver.getAdmission().getAvailableNodePermits());
+    }
+
+    @Test
+    public void testCancelledQueuedLeavesAreDropped() throws InterruptedException {
+        solver = solver(AdmissionLimits.UNLIMITED.withMaxConcurrentLeaves(1));
+        CompiledCircuit compiled = CircuitCompiler.compile(new Circuit(CircuitNode.mk(NodeType.OR,
+                CircuitNode.mk(true, Duration.ofMillis(50)), CircuitNode.mk(false, Duration.ofSeconds(10)),
+                CircuitNode.mk(false, Duration.ofSeconds(10)), CircuitNode.mk(false, Duration.ofSeconds(10)))));
+
+        assertTrue(solver.solve(compiled).getValue());
+        Thread.sleep(20);
+        // the leaves queued behind the first one are no longer needed, so they are dropped instead of being run,
+        // and counted once
+        assertEquals(3, solver.getMetrics().getLeavesSkipped());
+        assertEquals(0, solver.getMetrics().getQueuedTasks());
+        assertEquals(0, solver.getAdmission().getLeafQueueDepth());
+        assertEquals(1, solver.getAdmission().getAvailableLeafPermits());
+    }
+
+    @Test
+    public void testFailFast() throws InterruptedException {
+        solver = solver(AdmissionLimits.UNLIMITED.withMaxConcurrentSolves(1).withOverflowPolicy(OverflowPolicy.FAIL_FAST));
+        CircuitValue first = solver.solve(slowCircuit(Duration.ofMillis(200)));
+        assertEquals(0, solver.getAdmission().getAvailableSolvePermits());
+
+        assertThrows(RejectedExecutionException.class, () -> solver.solve(slowCircuit(Duration.ofMillis(200))));
+        // trivial circuits don't need to be admitted
+        assertTrue(solver.solve(new Circuit(CircuitNode.mk(true))).getValue());
+
+        assertTrue(first.getValue());
+        Thread.sleep(20);
+        assertEquals(1, solver.getAdmission().getAvailableSolvePermits());
+        assertTrue(solver.solve(slowCircuit(Duration.ofMillis(10))).getValue());
+    }
+
+    @Test
+    public void testQueue() throws InterruptedException {
+        solver = solver(AdmissionLimits.UNLIMITED.withMaxConcurrentSolves(1).withOverflowPolicy(OverflowPolicy.QUEUE));
+        long start = System.currentTimeMillis();
+        CircuitValue first = solver.solve(slowCircuit(Duration.ofMillis(200)));
+        CircuitValue second = solver.solve(slowCircuit(Duration.ofMillis(200)));
+        assertTrue(System.currentTimeMillis() - start < 100);
+        assertEquals(1, solver.getAdmission().getQueueDepth());
+
+        assertTrue(first.getValue());
+        assertTrue(second.getValue());
+        assertTrue(System.currentTimeMillis() - start >= 400);
+        assertEquals(0, solver.getAdmission().getQueueDepth());
+        Thread.sleep(20);
+        assertEquals(1, solver.getAdmission().getAvailableSolvePermits());
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        solver = solver(AdmissionLimits.UNLIMITED.withMaxConcurrentSolves(1).withOverflowPolicy(OverflowPolicy.BLOCK));
+        CircuitValue first = solver.solve(slowCircuit(Duration.ofMillis(200)));
+        CompletableFuture<CircuitValue> second = CompletableFuture.supplyAsync(
+                () -> solver.solve(slowCircuit(Duration.ofMillis(10))));
+
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+        assertEquals(1, solver.getAdmission().getQueueDepth());
+        assertTrue(first.getValue());
+        assertTrue(second.get().getValue());
+    }
+
+    @Test
+    public void testStopAbortsQueuedCircuits() throws InterruptedException {
+        solver = solver(AdmissionLimits.UNLIMITED.withMaxConcurrentSolves(1).withOverflowPolicy(OverflowPolicy.QUEUE));
+        CircuitValue first = solver.solve(slowCircuit(Duration.ofSeconds(10)));
+        CircuitValue second = solver.solve(slowCircuit(Duration.ofSeconds(10)));
+
+        solver.stop();
+        assertThrows(InterruptedException.class, first::getValue);
+        assertThrows(InterruptedException.class, second::getValue);
+        assertEquals(0, solver.getAdmission().getQueueDepth());
+    }
+}
@@ -0,0 +1,109 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.solution.ParallelCircuitSolver;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Reports the bytes allocated per node by solving the same circuits over and over with the {@link ParallelCircuitSolver},
+ * on the tree path and on the compiled path, with immediate leaves and with leaves that get a thread of their own.
+ * Counts the allocations of all threads, so the executor's share of every leaf task is included.
+ * Usage: <code>AllocationBenchmark [height [solves]]</code>
+ */
+public class AllocationBenchmark {
+    private static final int DEFAULT_HEIGHT = 8;
+    private static final int DEFAULT_SOLVES = 2_000;
+    private static final int CIRCUITS = 16;
+    private static final int WARMUP_ROUNDS = 3;
+
+    /**
+     * Returns its value right away, immediate or not depending on its hint.
+     */
+    private static final class InstantLeaf extends LeafNode {
+        private final boolean value;
+        private final Duration costHint;
+
+        InstantLeaf(boolean value, Duration costHint) {
+            this.value = value;
+            this.costHint = costHint;
+        }
+
+        @Override
+        public Duration getCostHint() {
+            return costHint;
+        }
+
+        @Override
+        public boolean getValue() {
+            return value;
+        }
+    }
+
+    private interface Solve {
+        CircuitValue solve(int index);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int height = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_HEIGHT;
+        int solves = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SOLVES;
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        ParallelCircuitSolver solver = new ParallelCircuitSolver();
+        for (Duration hint : new Duration[]{Duration.ZERO, null}) {
+            Random random = new Random(42);
+            Circuit[] circuits = new Circuit[CIRCUITS];
+            CompiledCircuit[] compiled = new CompiledCircuit[CIRCUITS];
+            long nodes = 0;
+            for (int i = 0; i < CIRCUITS; i++) {
+                circuits[i] = new Circuit(balanced(height, random, hint));
+                compiled[i] = CircuitCompiler.compile(circuits[i]);
+                nodes += compiled[i].size();
+            }
+            long nodesPerSolve = nodes / CIRCUITS;
+            String leaves = hint == null ? "leaves on threads of their own" : "immediate leaves";
+
+            for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+                boolean measured = round == WARMUP_ROUNDS;
+                long tree = allocatedPerNode(threads, solves, nodesPerSolve, i -> solver.solve(circuits[i % CIRCUITS]));
+                long flat = allocatedPerNode(threads, solves, nodesPerSolve, i -> solver.solve(compiled[i % CIRCUITS]));
+                if (measured) {
+                    System.out.println(leaves + ", " + nodesPerSolve + " nodes per circuit:");
+                    System.out.println("  tree path:     " + tree + " bytes per node");
+                    System.out.println("  compiled path: " + flat + " bytes per node");
+                }
+            }
+        }
+        solver.stop();
+    }
+
+    private static long allocatedPerNode(com.sun.management.ThreadMXBean threads, int solves, long nodesPerSolve,
+                                         Solve solve) throws InterruptedException {
+        long checksum = 0;
+        long before = threads.getTotalThreadAllocatedBytes();
+        for (int i = 0; i < solves; i++) {
+            checksum += solve.solve(i).getValue() ? 1 : 0;
+        }
+        long allocated = threads.getTotalThreadAllocatedBytes() - before;
+        if (checksum < 0) {
+            throw new IllegalStateException();
+        }
+        return allocated / (solves * nodesPerSolve);
+    }
+
+    private static CircuitNode balanced(int height, Random random, Duration hint) {
+        if (height == 0) {
+            return new InstantLeaf(random.nextBoolean(), hint);
+        }
+        NodeType type = switch (random.nextInt(3)) {
+            case 0 -> NodeType.AND;
+            case 1 -> NodeType.OR;
+            default -> NodeType.GT;
+        };
+        CircuitNode left = balanced(height - 1, random, hint);
+        CircuitNode right = balanced(height - 1, random, hint);
+        return type == NodeType.GT ? CircuitNode.mk(type, 0, left, right) : CircuitNode.mk(type, left, right);
+    }
+}
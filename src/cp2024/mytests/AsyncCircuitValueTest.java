@@ -0,0 +1,75 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.demo.SequentialSolver;
+import cp2024.maxtests.TestUtils.LeafNodeInterruptsCount;
+import cp2024.solution.EventDrivenCircuitSolver;
+import cp2024.solution.ParallelCircuitSolver;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncCircuitValueTest {
+    private static AsyncCircuitSolver solver(String name) {
+        return switch (name) {
+            case "parallel" -> new ParallelCircuitSolver();
+            case "event-driven" -> new EventDrivenCircuitSolver();
+            default -> new SequentialSolver();
+        };
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"parallel", "event-driven", "sequential"})
+    public void testStagesCanBeComposed(String name) throws Exception {
+        AsyncCircuitSolver solver = solver(name);
+        Circuit c1 = new Circuit(CircuitNode.mk(NodeType.OR,
+                CircuitNode.mk(false, Duration.ofMillis(50)),
+                CircuitNode.mk(true, Duration.ofMillis(100))));
+        Circuit c2 = new Circuit(CircuitNode.mk(NodeType.NOT, CircuitNode.mk(true, Duration.ofMillis(50))));
+
+        CompletableFuture<Boolean> both = solver.solveAsync(c1).asCompletionStage()
+                .thenCombine(solver.solveAsync(c2).asCompletionStage(), (a, b) -> a && !b)
+                .toCompletableFuture();
+
+        assertTrue(both.get(1, TimeUnit.SECONDS));
+        solver.stop();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"parallel", "event-driven"})
+    public void testCancellingTheStageCancelsTheComputation(String name) throws InterruptedException {
+        AsyncCircuitSolver solver = solver(name);
+        LeafNodeInterruptsCount slow = new LeafNodeInterruptsCount(true, Duration.ofSeconds(10));
+        AsyncCircuitValue value = solver.solveAsync(new Circuit(CircuitNode.mk(NodeType.AND,
+                slow, CircuitNode.mk(true, Duration.ofSeconds(10)))));
+        Thread.sleep(100);
+
+        long start = System.currentTimeMillis();
+        value.asCompletionStage().toCompletableFuture().cancel(true);
+        assertThrows(InterruptedException.class, value::getValue);
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+        Thread.sleep(100);
+        assertEquals(1, slow.getCountInterrupts());
+
+        // the solver is still usable
+        assertTrue(solver.solveAsync(new Circuit(CircuitNode.mk(true, Duration.ofMillis(10)))).getValue());
+        solver.stop();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"parallel", "event-driven"})
+    public void testStopCompletesTheStageExceptionally(String name) {
+        AsyncCircuitSolver solver = solver(name);
+        AsyncCircuitValue value = solver.solveAsync(new Circuit(CircuitNode.mk(true, Duration.ofSeconds(10))));
+
+        solver.stop();
+        assertThrows(CancellationException.class,
+                () -> value.asCompletionStage().toCompletableFuture().get(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,148 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.demo.SequentialSolver;
+import cp2024.maxtests.CircuitGenerator.BalancedRandomCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.DeepRandomCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.RandomCircuitGenerator;
+import cp2024.solution.BatchBackend;
+import cp2024.solution.BatchEvaluator;
+import cp2024.solution.LeafAssignments;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class BatchEvaluatorTest {
+    /**
+     * Copies the circuit, with every leaf replaced by an immediate leaf with its value in the given assignment.
+     */
+    private static CircuitNode substitute(CircuitNode node, LeafAssignments assignments, int assignment)
+            throws InterruptedException {
+        if (node.getType() == NodeType.LEAF) {
+            return CircuitNode.mk(assignments.get((LeafNode) node, assignment));
+        }
+        CircuitNode[] args = node.getArgs();
+        CircuitNode[] substituted = new CircuitNode[args.length];
+        for (int i = 0; i < args.length; i++) {
+            substituted[i] = substitute(args[i], assignments, assignment);
+        }
+        return node instanceof ThresholdNode thresholdNode
+                ? CircuitNode.mk(node.getType(), thresholdNode.getThreshold(), substituted)
+                : CircuitNode.mk(node.getType(), substituted);
+    }
+
+    @Test
+    public void testAgreesWithSequentialSolver() throws InterruptedException {
+        SequentialSolver solver = new SequentialSolver();
+        Random random = new Random(42);
+        RandomCircuitGenerator[] generators = {
+                new DeepRandomCircuitGenerator(200, new Random(42)),
+                new BalancedRandomCircuitGenerator(4, new Random(42), 10)
+        };
+        for (RandomCircuitGenerator generator : generators) {
+            for (int i = 0; i < 20; i++) {
+                Circuit c = generator.generateCircuit().getCircuit();
+                CompiledCircuit compiled = CircuitCompiler.compile(c);
+                // not a multiple of 64, so that the last word is partial
+                LeafAssignments assignments = new LeafAssignments(150);
+                for (int leaf = 0; leaf < compiled.getLeafCount(); leaf++) {
+                    for (int a = 0; a < assignments.size(); a++) {
+                        assignments.set(compiled.getLeaf(leaf), a, random.nextBoolean());
+                    }
+                }
+
+                long[] values = BatchEvaluator.evaluateBatch(compiled, assignments);
+                assertEquals(3, values.length);
+                for (int a = 0; a < assignments.size(); a++) {
+                    boolean expected = solver.solve(new Circuit(substitute(c.getRoot(), assignments, a))).getValue();
+                    assertEquals(expected, (values[a / 64] & (1L << (a % 64))) != 0, "assignment " + a);
+                }
+                assertEquals(0, values[2] >>> (150 - 128));
+            }
+        }
+    }
+
+    @Test
+    public void testThresholds() throws InterruptedException {
+        // every subset of 5 leaves, so that every count from 0 to 5 is reached
+        LeafNode[] leaves = new LeafNode[5];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = (LeafNode) CircuitNode.mk(false);
+        }
+        LeafAssignments assignments = new LeafAssignments(1 << leaves.length);
+        for (int a = 0; a < assignments.size(); a++) {
+            for (int i = 0; i < leaves.length; i++) {
+                assignments.set(leaves[i], a, (a >> i & 1) != 0);
+            }
+        }
+
+        for (int threshold = 0; threshold <= 8; threshold++) {
+            long gt = BatchEvaluator.evaluateBatch(new Circuit(CircuitNode.mk(NodeType.GT, threshold, leaves)), assignments)[0];
+            long lt = BatchEvaluator.evaluateBatch(new Circuit(CircuitNode.mk(NodeType.LT, threshold, leaves)), assignments)[0];
+            for (int a = 0; a < assignments.size(); a++) {
+                int count = Integer.bitCount(a);
+                assertEquals(count > threshold, (gt >> a & 1) != 0);
+                assertEquals(count < threshold, (lt >> a & 1) != 0);
+            }
+        }
+    }
+
+    @Test
+    public void testUnassignedLeavesKeepTheirValue() throws InterruptedException {
+        LeafNode assigned = (LeafNode) CircuitNode.mk(false);
+        LeafAssignments assignments = new LeafAssignments(2);
+        assignments.set(assigned, 1, true);
+
+        long[] values = BatchEvaluator.evaluateBatch(new Circuit(CircuitNode.mk(NodeType.AND, assigned, CircuitNode.mk(true))), assignments);
+        assertArrayEquals(new long[]{0b10}, values);
+    }
+
+    @Test
+    public void testBestBackendFillsItsVectors() {
+        assumeTrue(BatchBackend.VECTOR.isAvailable());
+        int minimum = BatchBackend.VECTOR.getMinimumAssignments();
+        assertEquals(0, minimum % 64);
+        assertEquals(BatchBackend.VECTOR, BatchBackend.best(minimum));
+        assertEquals(BatchBackend.SCALAR, BatchBackend.best(minimum - 1));
+        assertEquals(64, BatchBackend.SCALAR.getMinimumAssignments());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 10, 64, 4096})
+    public void testBackendsAgreeOnWideNodes(int fanIn) throws InterruptedException {
+        assumeTrue(BatchBackend.VECTOR.isAvailable());
+        Random random = new Random(fanIn);
+        LeafNode[] leaves = new LeafNode[fanIn];
+        for (int i = 0; i < fanIn; i++) {
+            leaves[i] = (LeafNode) CircuitNode.mk(false);
+        }
+        CircuitNode[] nodes = {
+                CircuitNode.mk(NodeType.AND, leaves),
+                CircuitNode.mk(NodeType.OR, leaves),
+                CircuitNode.mk(NodeType.GT, fanIn - 2, leaves),
+                CircuitNode.mk(NodeType.LT, fanIn, leaves),
+                CircuitNode.mk(NodeType.IF, leaves[0], CircuitNode.mk(NodeType.NOT, leaves[1]), leaves[fanIn - 1])
+        };
+        // a single word, which doesn't fill a vector, and enough words for a few full vectors and a tail
+        for (int size : new int[]{64, 1_000}) {
+            LeafAssignments assignments = new LeafAssignments(size);
+            for (LeafNode leaf : leaves) {
+                for (int a = 0; a < assignments.size(); a++) {
+                    // mostly true, so that AND isn't always false
+                    assignments.set(leaf, a, random.nextInt(fanIn * 4) != 0);
+                }
+            }
+            for (CircuitNode node : nodes) {
+                CompiledCircuit compiled = CircuitCompiler.compile(new Circuit(node));
+                assertArrayEquals(BatchEvaluator.evaluateBatch(compiled, assignments, BatchBackend.SCALAR),
+                        BatchEvaluator.evaluateBatch(compiled, assignments, BatchBackend.VECTOR),
+                        node.getType() + " of " + size);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.maxtests.TestUtils.LeafNodeInterruptsCount;
+import cp2024.solution.AdmissionLimits;
+import cp2024.solution.AdmissionLimits.OverflowPolicy;
+import cp2024.solution.ExecutionMode;
+import cp2024.solution.ParallelCircuitSolver;
+import cp2024.solution.ParallelSolverOptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CancelCircuitTest {
+    private static Circuit slowCircuit(LeafNodeInterruptsCount leaf) {
+        return new Circuit(CircuitNode.mk(NodeType.AND, leaf,
+                CircuitNode.mk(NodeType.OR, CircuitNode.mk(false, Duration.ofSeconds(10)), CircuitNode.mk(true, Duration.ofSeconds(10)))));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionMode.class)
+    public void testCancelOnlyThatCircuit(ExecutionMode mode) throws InterruptedException {
+        ParallelCircuitSolver solver = new ParallelCircuitSolver(mode);
+        LeafNodeInterruptsCount cancelledLeaf = new LeafNodeInterruptsCount(true, Duration.ofSeconds(10));
+        LeafNodeInterruptsCount otherLeaf = new LeafNodeInterruptsCount(true, Duration.ofMillis(300));
+        CircuitValue cancelled = solver.solve(slowCircuit(cancelledLeaf));
+        CircuitValue other = solver.solve(new Circuit(CircuitNode.mk(NodeType.NOT, otherLeaf)));
+        Thread.sleep(100);
+
+        long start = System.currentTimeMillis();
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertThrows(InterruptedException.class, cancelled::getValue);
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+
+        assertFalse(other.getValue());
+        assertEquals(0, otherLeaf.getCountInterrupts());
+        assertFalse(other.cancel());
+        Thread.sleep(100);
+        assertEquals(1, cancelledLeaf.getCountInterrupts());
+        solver.stop();
+    }
+
+    @Test
+    public void testCancelCompiled() throws InterruptedException {
+        ParallelCircuitSolver solver = new ParallelCircuitSolver();
+        LeafNodeInterruptsCount leaf = new LeafNodeInterruptsCount(true, Duration.ofSeconds(10));
+        CircuitValue cancelled = solver.solve(CircuitCompiler.compile(slowCircuit(leaf)));
+        CircuitValue other = solver.solve(CircuitCompiler.compile(
+                new Circuit(CircuitNode.mk(NodeType.NOT, CircuitNode.mk(true, Duration.ofMillis(100))))));
+        Thread.sleep(50);
+
+        assertTrue(cancelled.cancel());
+        assertThrows(InterruptedException.class, cancelled::getValue);
+        assertFalse(other.getValue());
+        Thread.sleep(100);
+        assertEquals(1, leaf.getCountInterrupts());
+        solver.stop();
+    }
+
+    @Test
+    public void testCancelQueued() throws InterruptedException {
+        ParallelCircuitSolver solver = new ParallelCircuitSolver(ParallelSolverOptions.DEFAULT.withAdmissionLimits(
+                AdmissionLimits.UNLIMITED.withMaxConcurrentSolves(1).withOverflowPolicy(OverflowPolicy.QUEUE)));
+        CircuitValue running = solver.solve(new Circuit(CircuitNode.mk(NodeType.NOT, CircuitNode.mk(true, Duration.ofMillis(300)))));
+        LeafNodeInterruptsCount leaf = new LeafNodeInterruptsCount(true, Duration.ofSeconds(10));
+        CircuitValue queued = solver.solve(slowCircuit(leaf));
+        assertEquals(1, solver.getAdmission().getQueueDepth());
+
+        long start = System.currentTimeMillis();
+        assertTrue(queued.cancel());
+        // doesn't wait for its turn
+        assertThrows(InterruptedException.class, queued::getValue);
+        assertTrue(System.currentTimeMillis() - start < 200);
+        assertEquals(0, solver.getAdmission().getQueueDepth());
+
+        assertFalse(running.getValue());
+        Thread.sleep(50);
+        assertEquals(0, leaf.getCalled());
+        assertEquals(1, solver.getAdmission().getAvailableSolvePermits());
+        solver.stop();
+    }
+
+    @Test
+    public void testFinishedValues() throws InterruptedException {
+        ParallelCircuitSolver solver = new ParallelCircuitSolver();
+        CircuitValue value = solver.solve(new Circuit(CircuitNode.mk(true)));
+        assertTrue(value.getValue());
+        assertFalse(value.cancel());
+        assertTrue(value.getValue());
+        solver.stop();
+    }
+}
@@ -0,0 +1,123 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.solution.ParallelCircuitSolver;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how long it takes from a short-circuit to all the leaves of the cancelled subtree being released,
+ * for a wide, a deep and a balanced subtree of blocked leaves. The root is an OR of the subtree
+ * and a trigger leaf, which returns <code>true</code> when the benchmark lets it.
+ * Usage: <code>CancellationLatencyBenchmark [repetitions]</code>
+ */
+public class CancellationLatencyBenchmark {
+    private static final int DEFAULT_REPETITIONS = 30;
+    private static final int WIDTH = 500;
+    private static final int DEPTH = 200;
+    private static final int HEIGHT = 8;
+
+    /**
+     * Blocks until interrupted, then records when it was released.
+     */
+    private static final class BlockedLeaf extends LeafNode {
+        private final CountDownLatch started;
+        private final CountDownLatch released;
+        private final AtomicLong lastRelease;
+
+        BlockedLeaf(CountDownLatch started, CountDownLatch released, AtomicLong lastRelease) {
+            this.started = started;
+            this.released = released;
+            this.lastRelease = lastRelease;
+        }
+
+        @Override
+        public boolean getValue() throws InterruptedException {
+            started.countDown();
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+                return false;
+            } finally {
+                lastRelease.accumulateAndGet(System.nanoTime(), Math::max);
+                released.countDown();
+            }
+        }
+    }
+
+    private static final class TriggerLeaf extends LeafNode {
+        private final CountDownLatch fire = new CountDownLatch(1);
+
+        @Override
+        public boolean getValue() throws InterruptedException {
+            fire.await();
+            return true;
+        }
+    }
+
+    private interface Shape {
+        CircuitNode build(LeafFactory leaves);
+    }
+
+    private interface LeafFactory {
+        CircuitNode next();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_REPETITIONS;
+
+        measure("wide (" + WIDTH + " leaves)", repetitions, WIDTH, leaves -> {
+            CircuitNode[] wide = new CircuitNode[WIDTH];
+            for (int i = 0; i < WIDTH; i++) {
+                wide[i] = leaves.next();
+            }
+            return CircuitNode.mk(NodeType.AND, wide);
+        });
+        measure("deep (" + DEPTH + " NOTs over 4 leaves)", repetitions, 4, leaves -> {
+            CircuitNode[] chains = new CircuitNode[4];
+            for (int i = 0; i < chains.length; i++) {
+                chains[i] = leaves.next();
+                for (int d = 0; d < DEPTH; d++) {
+                    chains[i] = CircuitNode.mk(NodeType.NOT, chains[i]);
+                }
+            }
+            return CircuitNode.mk(NodeType.AND, chains);
+        });
+        measure("balanced (height " + HEIGHT + ")", repetitions, 1 << HEIGHT, leaves -> balanced(HEIGHT, leaves));
+    }
+
+    private static CircuitNode balanced(int height, LeafFactory leaves) {
+        if (height == 0) {
+            return leaves.next();
+        }
+        return CircuitNode.mk(NodeType.AND, balanced(height - 1, leaves), balanced(height - 1, leaves));
+    }
+
+    private static void measure(String name, int repetitions, int leafCount, Shape shape) throws InterruptedException {
+        long[] latencies = new long[repetitions];
+        ParallelCircuitSolver solver = new ParallelCircuitSolver();
+        for (int r = 0; r < repetitions; r++) {
+            CountDownLatch started = new CountDownLatch(leafCount);
+            CountDownLatch released = new CountDownLatch(leafCount);
+            AtomicLong lastRelease = new AtomicLong();
+            TriggerLeaf trigger = new TriggerLeaf();
+            CircuitNode subtree = shape.build(() -> new BlockedLeaf(started, released, lastRelease));
+
+            CircuitValue value = solver.solve(new Circuit(CircuitNode.mk(NodeType.OR, trigger, subtree)));
+            started.await();
+            long fired = System.nanoTime();
+            trigger.fire.countDown();
+            if (!value.getValue()) {
+                throw new IllegalStateException("The trigger should decide the value.");
+            }
+            released.await();
+            latencies[r] = lastRelease.get() - fired;
+        }
+        solver.stop();
+
+        Arrays.sort(latencies);
+        System.out.println(name + ": short-circuit to all leaves released, median "
+                + latencies[repetitions / 2] / 1_000 + " us, max " + latencies[repetitions - 1] / 1_000 + " us");
+    }
+}
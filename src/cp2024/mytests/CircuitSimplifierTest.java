@@ -0,0 +1,172 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.demo.SequentialSolver;
+import cp2024.maxtests.CircuitGenerator.BalancedRandomCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.DeepRandomCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.RandomCircuitGenerator;
+import cp2024.solution.ParallelCircuitSolver;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitSimplifierTest {
+    private final SequentialSolver solver = new SequentialSolver();
+
+    private static CircuitSimplifier.Simplification simplify(CircuitNode root) throws InterruptedException {
+        return CircuitSimplifier.simplify(new Circuit(root));
+    }
+
+    @Test
+    public void testThresholdsOutOfRangeAreFolded() throws InterruptedException {
+        CircuitNode x = CircuitNode.mk(true);
+        CircuitNode y = CircuitNode.mk(true);
+
+        CircuitSimplifier.Simplification gt = simplify(CircuitNode.mk(NodeType.GT, 2, x, y));
+        assertEquals(NodeType.LEAF, gt.getCircuit().getRoot().getType());
+        assertFalse(solver.solve(gt.getCircuit()).getValue());
+        assertEquals(2, gt.getRemovedNodes());
+
+        CircuitSimplifier.Simplification lt = simplify(CircuitNode.mk(NodeType.LT, 0, x, y));
+        assertEquals(NodeType.LEAF, lt.getCircuit().getRoot().getType());
+        assertFalse(solver.solve(lt.getCircuit()).getValue());
+    }
+
+    @Test
+    public void testThresholdsBecomeJunctions() throws InterruptedException {
+        CircuitNode x = CircuitNode.mk(false);
+        CircuitNode y = CircuitNode.mk(true);
+
+        CircuitNode or = simplify(CircuitNode.mk(NodeType.GT, 0, x, y)).getCircuit().getRoot();
+        assertEquals(NodeType.OR, or.getType());
+        assertArrayEquals(new CircuitNode[]{x, y}, or.getArgs());
+
+        CircuitNode nor = simplify(CircuitNode.mk(NodeType.LT, 1, x, y)).getCircuit().getRoot();
+        assertEquals(NodeType.NOT, nor.getType());
+        assertEquals(NodeType.OR, nor.getArgs()[0].getType());
+        assertArrayEquals(new CircuitNode[]{x, y}, nor.getArgs()[0].getArgs());
+
+        // a single argument doesn't need a junction
+        assertSame(x, simplify(CircuitNode.mk(NodeType.GT, 0, x)).getCircuit().getRoot());
+    }
+
+    @Test
+    public void testDoubleNegationIsDropped() throws InterruptedException {
+        CircuitNode x = CircuitNode.mk(true);
+        CircuitSimplifier.Simplification simplification = simplify(
+                CircuitNode.mk(NodeType.NOT, CircuitNode.mk(NodeType.NOT, CircuitNode.mk(NodeType.NOT, x))));
+
+        CircuitNode root = simplification.getCircuit().getRoot();
+        assertEquals(NodeType.NOT, root.getType());
+        assertSame(x, root.getArgs()[0]);
+        assertEquals(2, simplification.getRemovedNodes());
+    }
+
+    @Test
+    public void testNestedJunctionsAreFlattened() throws InterruptedException {
+        CircuitNode[] leaves = new CircuitNode[5];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = CircuitNode.mk(true);
+        }
+        CircuitNode root = simplify(CircuitNode.mk(NodeType.AND,
+                leaves[0],
+                CircuitNode.mk(NodeType.AND, leaves[1], CircuitNode.mk(NodeType.AND, leaves[2], leaves[3])),
+                CircuitNode.mk(NodeType.OR, leaves[4], leaves[0])
+        )).getCircuit().getRoot();
+
+        assertEquals(NodeType.AND, root.getType());
+        CircuitNode[] args = root.getArgs();
+        assertEquals(5, args.length);
+        assertArrayEquals(new CircuitNode[]{leaves[0], leaves[1], leaves[2], leaves[3]}, Arrays.copyOf(args, 4));
+        assertEquals(NodeType.OR, args[4].getType());
+    }
+
+    @Test
+    public void testFoldedValuesArePropagated() throws InterruptedException {
+        CircuitNode x = CircuitNode.mk(true);
+        CircuitNode y = CircuitNode.mk(false);
+        CircuitNode alwaysFalse = CircuitNode.mk(NodeType.GT, 5, x, y);
+
+        // a constant condition picks its branch
+        assertSame(y, simplify(CircuitNode.mk(NodeType.IF, alwaysFalse, x, y)).getCircuit().getRoot());
+        assertSame(x, simplify(CircuitNode.mk(NodeType.IF, CircuitNode.mk(NodeType.NOT, alwaysFalse), x, y))
+                .getCircuit().getRoot());
+        // a false argument decides an AND, and is dropped from an OR
+        assertEquals(NodeType.LEAF, simplify(CircuitNode.mk(NodeType.AND, x, alwaysFalse)).getCircuit().getRoot().getType());
+        assertSame(x, simplify(CircuitNode.mk(NodeType.OR, x, alwaysFalse)).getCircuit().getRoot());
+        // a true argument lowers the threshold
+        CircuitNode gt = simplify(CircuitNode.mk(NodeType.GT, 2,
+                x, y, CircuitNode.mk(NodeType.NOT, alwaysFalse), CircuitNode.mk(true))).getCircuit().getRoot();
+        assertInstanceOf(ThresholdNode.class, gt);
+        assertEquals(1, ((ThresholdNode) gt).getThreshold());
+        assertEquals(3, gt.getArgs().length);
+    }
+
+    @Test
+    public void testUnchangedNodesAreKept() throws InterruptedException {
+        CircuitNode root = CircuitNode.mk(NodeType.IF,
+                CircuitNode.mk(true),
+                CircuitNode.mk(NodeType.GT, 1, CircuitNode.mk(true), CircuitNode.mk(false), CircuitNode.mk(true)),
+                CircuitNode.mk(NodeType.NOT, CircuitNode.mk(false)));
+
+        CircuitSimplifier.Simplification simplification = simplify(root);
+        assertSame(root, simplification.getCircuit().getRoot());
+        assertEquals(8, simplification.getOriginalSize());
+        assertEquals(0, simplification.getRemovedNodes());
+    }
+
+    @Test
+    public void testRandomCircuitsKeepTheirValues() throws InterruptedException {
+        RandomCircuitGenerator[] generators = {
+                new DeepRandomCircuitGenerator(200, new Random(7)),
+                new BalancedRandomCircuitGenerator(5, new Random(7), 6)
+        };
+        int removed = 0;
+        for (RandomCircuitGenerator generator : generators) {
+            for (int i = 0; i < 50; i++) {
+                Circuit c = generator.generateCircuit().getCircuit();
+                CircuitSimplifier.Simplification simplification = CircuitSimplifier.simplify(c);
+                assertEquals(solver.solve(c).getValue(), solver.solve(simplification.getCircuit()).getValue());
+                removed += simplification.getRemovedNodes();
+            }
+        }
+        // random thresholds fold often
+        assertTrue(removed > 0);
+    }
+
+    @Test
+    public void testDeepCircuitsDontOverflowTheStack() throws InterruptedException {
+        int depth = 100_000;
+        CircuitNode root = CircuitNode.mk(true);
+        for (int i = 0; i < depth; i++) {
+            // alternating, so that nothing is flattened
+            root = CircuitNode.mk(i % 2 == 0 ? NodeType.AND : NodeType.OR, CircuitNode.mk(true), root);
+        }
+
+        CircuitSimplifier.Simplification simplification = simplify(root);
+        assertSame(root, simplification.getCircuit().getRoot());
+        assertEquals(2 * depth + 1, simplification.getOriginalSize());
+    }
+
+    @Test
+    public void testSolversSimplifyPerSolve() throws InterruptedException {
+        // the slow leaf is behind a threshold that can't be reached
+        Circuit c = new Circuit(CircuitNode.mk(NodeType.OR,
+                CircuitNode.mk(NodeType.GT, 1, CircuitNode.mk(true, Duration.ofSeconds(10))),
+                CircuitNode.mk(NodeType.NOT, CircuitNode.mk(NodeType.NOT, CircuitNode.mk(false)))));
+
+        assertFalse(solver.solve(c, true).getValue());
+        ParallelCircuitSolver parallelSolver = new ParallelCircuitSolver();
+        try {
+            long start = System.currentTimeMillis();
+            assertFalse(parallelSolver.solve(c, true).getValue());
+            assertTrue(System.currentTimeMillis() - start < 1_000);
+        } finally {
+            parallelSolver.stop();
+        }
+    }
+}
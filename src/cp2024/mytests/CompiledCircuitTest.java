@@ -0,0 +1,286 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.demo.SequentialSolver;
+import cp2024.maxtests.CircuitGenerator.BalancedRandomCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.DeepRandomCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.RandomCircuitGenerator;
+import cp2024.maxtests.TestUtils.LeafNodeInterruptsCount;
+import cp2024.solution.ParallelCircuitSolver;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledCircuitTest {
+    private SequentialSolver sequentialSolver;
+    private ParallelCircuitSolver parallelSolver;
+
+    @BeforeEach
+    public void setUp() {
+        sequentialSolver = new SequentialSolver();
+        parallelSolver = new ParallelCircuitSolver();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        parallelSolver.stop();
+    }
+
+    @Test
+    public void testLayout() throws InterruptedException {
+        LeafNode a = (LeafNode) CircuitNode.mk(true);
+        LeafNode b = (LeafNode) CircuitNode.mk(false);
+        LeafNode c = (LeafNode) CircuitNode.mk(true);
+        CompiledCircuit compiled = CircuitCompiler.compile(new Circuit(
+                CircuitNode.mk(NodeType.GT, 1, a, CircuitNode.mk(NodeType.NOT, b), c)));
+
+        assertEquals(5, compiled.size());
+        assertEquals(3, compiled.getLeafCount());
+        assertSame(a, compiled.getLeaf(0));
+        assertSame(b, compiled.getLeaf(1));
+        assertSame(c, compiled.getLeaf(2));
+
+        int not = 3;
+        int root = compiled.getRoot();
+        assertEquals(4, root);
+        assertEquals(NodeType.NOT, compiled.getType(not));
+        assertEquals(1, compiled.getArg(not, 0));
+        assertEquals(NodeType.GT, compiled.getType(root));
+        assertEquals(1, compiled.getThreshold(root));
+        assertEquals(3, compiled.getArgCount(root));
+        assertArrayEquals(new int[]{0, not, 2},
+                new int[]{compiled.getArg(root, 0), compiled.getArg(root, 1), compiled.getArg(root, 2)});
+        assertEquals(1, compiled.getUseCount(1));
+        assertEquals(not, compiled.getUser(1, 0));
+        assertEquals(root, compiled.getUser(not, 0));
+        assertEquals(1, compiled.getUsePosition(not, 0));
+        assertEquals(0, compiled.getUseCount(root));
+    }
+
+    @Test
+    public void testSharedNodesAreCompiledOnce() throws InterruptedException {
+        LeafNode x = (LeafNode) CircuitNode.mk(true);
+        CircuitNode notX = CircuitNode.mk(NodeType.NOT, x);
+        Circuit c = new Circuit(CircuitNode.mk(NodeType.IF, x, notX, CircuitNode.mk(NodeType.AND, notX, x)));
+        CompiledCircuit compiled = CircuitCompiler.compile(c);
+
+        // x, NOT x, AND, IF
+        assertEquals(4, compiled.size());
+        assertEquals(1, compiled.getLeafCount());
+        int and = 2;
+        int root = compiled.getRoot();
+        assertEquals(NodeType.AND, compiled.getType(and));
+        assertEquals(3, compiled.getUseCount(0));
+        assertEquals(2, compiled.getUseCount(1));
+        assertArrayEquals(new int[]{and, 0, root, 1, root, 2},
+                new int[]{compiled.getUser(1, 0), compiled.getUsePosition(1, 0),
+                        compiled.getUser(1, 1), compiled.getUsePosition(1, 1),
+                        compiled.getUser(and, 0), compiled.getUsePosition(and, 0)});
+        assertFalse(sequentialSolver.solve(compiled).getValue());
+        assertFalse(parallelSolver.solve(compiled).getValue());
+        assertFalse(parallelSolver.solve(c).getValue());
+    }
+
+    @Test
+    public void testSharedLeafIsEvaluatedOnce() throws InterruptedException {
+        LeafNodeInterruptsCount shared = new LeafNodeInterruptsCount(true, Duration.ofMillis(100));
+        CircuitNode notShared = CircuitNode.mk(NodeType.NOT, shared);
+        Circuit c = new Circuit(CircuitNode.mk(NodeType.IF, shared,
+                CircuitNode.mk(NodeType.GT, 1, shared, notShared, shared),
+                CircuitNode.mk(NodeType.AND, notShared, shared)));
+
+        assertTrue(parallelSolver.solve(CircuitCompiler.compile(c)).getValue());
+        assertEquals(1, shared.getCalled());
+        assertTrue(parallelSolver.solve(c).getValue());
+        assertEquals(2, shared.getCalled());
+        assertTrue(sequentialSolver.solve(CircuitCompiler.compile(c)).getValue());
+        assertEquals(3, shared.getCalled());
+        assertTrue(sequentialSolver.solve(c).getValue());
+        assertEquals(4, shared.getCalled());
+    }
+
+    private AsyncCircuitValue solve(Circuit c, boolean compile) throws InterruptedException {
+        return compile ? parallelSolver.solve(CircuitCompiler.compile(c)) : parallelSolver.solveAsync(c);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testSharedNodeSurvivesWhileStillUsed(boolean compile) throws InterruptedException {
+        LeafNodeInterruptsCount shared = new LeafNodeInterruptsCount(true, Duration.ofMillis(300));
+        Circuit c = new Circuit(
+                CircuitNode.mk(NodeType.OR,
+                        // releases the shared leaf as soon as the fast leaf is known
+                        CircuitNode.mk(NodeType.AND, CircuitNode.mk(false, Duration.ofMillis(10)), shared),
+                        shared
+                )
+        );
+
+        assertTrue(solve(c, compile).getValue());
+        assertEquals(1, shared.getCalled());
+        assertEquals(0, shared.getCountInterrupts());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testSharedNodeIsCancelledWhenNoLongerUsed(boolean compile) throws InterruptedException {
+        LeafNodeInterruptsCount shared = new LeafNodeInterruptsCount(true, Duration.ofSeconds(10));
+        Circuit c = new Circuit(
+                CircuitNode.mk(NodeType.AND,
+                        CircuitNode.mk(false, Duration.ofMillis(50)),
+                        CircuitNode.mk(NodeType.OR, shared, CircuitNode.mk(NodeType.NOT, shared)),
+                        shared
+                )
+        );
+
+        long start = System.currentTimeMillis();
+        assertFalse(solve(c, compile).getValue());
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+        Thread.sleep(100);
+        assertEquals(1, shared.getCalled());
+        assertEquals(1, shared.getCountInterrupts());
+    }
+
+    @Test
+    public void testSingleLeaf() throws InterruptedException {
+        CompiledCircuit compiled = CircuitCompiler.compile(new Circuit(CircuitNode.mk(false, Duration.ofMillis(10))));
+
+        assertEquals(1, compiled.size());
+        assertFalse(sequentialSolver.solve(compiled).getValue());
+        assertFalse(parallelSolver.solve(compiled).getValue());
+    }
+
+    @Test
+    public void testAgreesWithSequentialSolver() throws InterruptedException {
+        RandomCircuitGenerator[] generators = {
+                new DeepRandomCircuitGenerator(1_000, new Random(42)),
+                new BalancedRandomCircuitGenerator(6, new Random(42), 8)
+        };
+        for (RandomCircuitGenerator generator : generators) {
+            for (int i = 0; i < 100; i++) {
+                Circuit c = generator.generateCircuit().getCircuit();
+                CompiledCircuit compiled = CircuitCompiler.compile(c);
+                boolean expected = sequentialSolver.solve(c).getValue();
+                assertEquals(expected, sequentialSolver.solve(compiled).getValue());
+                assertEquals(expected, parallelSolver.solve(compiled).getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testShortCircuitInterruptsSlowLeaves() throws InterruptedException {
+        LeafNodeInterruptsCount slow1 = new LeafNodeInterruptsCount(false, Duration.ofSeconds(10));
+        LeafNodeInterruptsCount slow2 = new LeafNodeInterruptsCount(false, Duration.ofSeconds(10));
+        CompiledCircuit compiled = CircuitCompiler.compile(new Circuit(
+                CircuitNode.mk(NodeType.IF,
+                        CircuitNode.mk(true, Duration.ofMillis(50)),
+                        CircuitNode.mk(NodeType.OR, slow1, CircuitNode.mk(true, Duration.ofMillis(50))),
+                        slow2
+                )
+        ));
+
+        long start = System.currentTimeMillis();
+        assertTrue(parallelSolver.solve(compiled).getValue());
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+        Thread.sleep(100);
+        assertEquals(1, slow1.getCountInterrupts());
+        assertEquals(1, slow2.getCountInterrupts());
+    }
+
+    @Test
+    public void testCompiledCircuitCanBeSolvedRepeatedly() throws InterruptedException {
+        CompiledCircuit compiled = CircuitCompiler.compile(new Circuit(
+                CircuitNode.mk(NodeType.LT, 2,
+                        CircuitNode.mk(true, Duration.ofMillis(10)),
+                        CircuitNode.mk(false, Duration.ofMillis(10)),
+                        CircuitNode.mk(NodeType.NOT, CircuitNode.mk(true))
+                )
+        ));
+
+        CircuitValue[] values = new CircuitValue[50];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = parallelSolver.solve(compiled);
+        }
+        for (CircuitValue value : values) {
+            assertTrue(value.getValue());
+        }
+    }
+
+    @Test
+    public void testStatesAreReusedSafely() throws InterruptedException {
+        // the short-circuited leaf is cancelled on every solve, while the next solves reuse the arrays
+        LeafNodeInterruptsCount slow = new LeafNodeInterruptsCount(false, Duration.ofSeconds(10));
+        CompiledCircuit shortCircuited = CircuitCompiler.compile(new Circuit(
+                CircuitNode.mk(NodeType.OR, slow, CircuitNode.mk(true, Duration.ofMillis(5)))));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(parallelSolver.solve(shortCircuited).getValue());
+        }
+        Thread.sleep(100);
+        assertEquals(20, slow.getCalled());
+        assertEquals(20, slow.getCountInterrupts());
+
+        Random random = new Random(11);
+        RandomCircuitGenerator generator = new BalancedRandomCircuitGenerator(5, random, 4);
+        for (int c = 0; c < 10; c++) {
+            Circuit circuit = generator.generateCircuit().getCircuit();
+            CompiledCircuit compiled = CircuitCompiler.compile(circuit);
+            boolean expected = sequentialSolver.solve(circuit).getValue();
+            for (int wave = 0; wave < 5; wave++) {
+                CircuitValue[] values = new CircuitValue[4];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = parallelSolver.solve(compiled);
+                }
+                for (CircuitValue value : values) {
+                    assertEquals(expected, value.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * A chain of alternating ANDs and ORs, with the given leaf at the bottom and an immediate leaf that doesn't
+     * decide the node besides every node of the chain, so that nothing is decided before the bottom leaf returns.
+     */
+    private static CircuitNode deepChain(int depth, CircuitNode bottom) {
+        CircuitNode node = bottom;
+        for (int i = 0; i < depth; i++) {
+            node = i % 2 == 0
+                    ? CircuitNode.mk(NodeType.AND, node, CircuitNode.mk(true))
+                    : CircuitNode.mk(NodeType.OR, node, CircuitNode.mk(false));
+        }
+        return node;
+    }
+
+    @Test
+    public void testDeepCircuitsDontOverflowTheStack() throws InterruptedException {
+        int depth = 100_000;
+        // the value of the bottom leaf is pushed up the whole chain
+        assertTrue(parallelSolver.solve(CircuitCompiler.compile(new Circuit(
+                deepChain(depth, CircuitNode.mk(true, Duration.ofMillis(10)))))).getValue());
+
+        // the whole chain is cancelled once the other argument of the root decides it
+        LeafNodeInterruptsCount slow = new LeafNodeInterruptsCount(false, Duration.ofSeconds(10));
+        long start = System.currentTimeMillis();
+        assertTrue(parallelSolver.solve(CircuitCompiler.compile(new Circuit(CircuitNode.mk(NodeType.OR,
+                CircuitNode.mk(true, Duration.ofMillis(50)), deepChain(depth, slow))))).getValue());
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+        Thread.sleep(50);
+        assertEquals(slow.getCalled(), slow.getCountInterrupts());
+    }
+
+    @Test
+    public void testStop() throws InterruptedException {
+        CompiledCircuit compiled = CircuitCompiler.compile(new Circuit(
+                CircuitNode.mk(NodeType.NOT, CircuitNode.mk(true, Duration.ofSeconds(10)))));
+        CircuitValue value = parallelSolver.solve(compiled);
+        Thread.sleep(50);
+
+        parallelSolver.stop();
+        assertThrows(InterruptedException.class, value::getValue);
+        assertThrows(InterruptedException.class, () -> parallelSolver.solve(compiled).getValue());
+    }
+}
@@ -0,0 +1,128 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.maxtests.CircuitGenerator.BalancedRandomCircuitGenerator;
+import cp2024.solution.ParallelCircuitSolver;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CriticalPathAnalyzerTest {
+    private static CircuitNode leaf(boolean value, long millis) {
+        return CircuitNode.mk(value, Duration.ofMillis(millis));
+    }
+
+    private static CriticalPathAnalyzer.Analysis analyze(CircuitNode root) throws InterruptedException {
+        return CriticalPathAnalyzer.analyze(new Circuit(root));
+    }
+
+    @Test
+    public void testShortCircuits() throws InterruptedException {
+        CircuitNode fast = leaf(false, 50);
+        CriticalPathAnalyzer.Analysis and = analyze(CircuitNode.mk(NodeType.AND, leaf(true, 200), fast));
+        assertFalse(and.getValue());
+        assertEquals(Duration.ofMillis(50), and.getCriticalPath());
+        assertEquals(Duration.ofMillis(250), and.getWork());
+        assertEquals(5.0, and.getIdealSpeedup());
+        assertSame(fast, and.getCriticalPathNodes().get(1));
+
+        CriticalPathAnalyzer.Analysis or = analyze(CircuitNode.mk(NodeType.OR, leaf(false, 10), leaf(false, 30)));
+        assertFalse(or.getValue());
+        assertEquals(Duration.ofMillis(30), or.getCriticalPath());
+
+        // the third true value is the one that matters, and the slow false one is never waited for
+        CriticalPathAnalyzer.Analysis gt = analyze(CircuitNode.mk(NodeType.GT, 2,
+                leaf(true, 10), leaf(true, 20), leaf(false, 5), leaf(true, 40), leaf(false, 1000)));
+        assertTrue(gt.getValue());
+        assertEquals(Duration.ofMillis(40), gt.getCriticalPath());
+
+        CriticalPathAnalyzer.Analysis lt = analyze(CircuitNode.mk(NodeType.LT, 2,
+                leaf(true, 10), leaf(true, 20), leaf(false, 5)));
+        assertFalse(lt.getValue());
+        assertEquals(Duration.ofMillis(20), lt.getCriticalPath());
+
+        CriticalPathAnalyzer.Analysis impossible = analyze(CircuitNode.mk(NodeType.GT, 2,
+                leaf(true, 10), leaf(true, 20)));
+        assertFalse(impossible.getValue());
+        assertEquals(Duration.ZERO, impossible.getCriticalPath());
+        assertEquals(1, impossible.getCriticalPathNodes().size());
+        assertEquals(Double.POSITIVE_INFINITY, impossible.getIdealSpeedup());
+    }
+
+    @Test
+    public void testIf() throws InterruptedException {
+        CriticalPathAnalyzer.Analysis condition = analyze(CircuitNode.mk(NodeType.IF,
+                leaf(true, 100), leaf(false, 20), leaf(true, 300)));
+        assertFalse(condition.getValue());
+        assertEquals(Duration.ofMillis(100), condition.getCriticalPath());
+
+        CircuitNode slowBranch = leaf(true, 50);
+        CriticalPathAnalyzer.Analysis equalBranches = analyze(CircuitNode.mk(NodeType.IF,
+                leaf(false, 300), leaf(true, 20), slowBranch));
+        assertTrue(equalBranches.getValue());
+        assertEquals(Duration.ofMillis(50), equalBranches.getCriticalPath());
+        assertSame(slowBranch, equalBranches.getCriticalPathNodes().get(1));
+
+        CriticalPathAnalyzer.Analysis not = analyze(CircuitNode.mk(NodeType.NOT, CircuitNode.mk(NodeType.IF,
+                leaf(true, 10), leaf(true, 70), leaf(false, 20))));
+        assertFalse(not.getValue());
+        assertEquals(Duration.ofMillis(70), not.getCriticalPath());
+        assertEquals(3, not.getCriticalPathNodes().size());
+    }
+
+    @Test
+    public void testSharedNodes() throws InterruptedException {
+        CircuitNode shared = leaf(true, 100);
+        CriticalPathAnalyzer.Analysis analysis = analyze(CircuitNode.mk(NodeType.AND, shared,
+                CircuitNode.mk(NodeType.OR, shared, leaf(false, 10))));
+        assertEquals(2, analysis.getLeafCount());
+        assertEquals(Duration.ofMillis(110), analysis.getWork());
+        assertEquals(Duration.ofMillis(100), analysis.getCriticalPath());
+    }
+
+    @Test
+    public void testUnknownLeaves() {
+        CircuitNode unknown = new LeafNode() {
+            @Override
+            public boolean getValue() {
+                return true;
+            }
+        };
+        assertThrows(IllegalArgumentException.class,
+                () -> analyze(CircuitNode.mk(NodeType.AND, unknown, leaf(true, 1))));
+    }
+
+    /**
+     * No solver can beat the bound, and the value is the one the solver computes.
+     */
+    @Test
+    public void testBoundOfRandomCircuits() throws InterruptedException {
+        Random random = new Random(24);
+        BalancedRandomCircuitGenerator generator = new BalancedRandomCircuitGenerator(3, random) {
+            @Override
+            protected CircuitNode LeafCreator() {
+                return CircuitNode.mk(rand.nextBoolean(), Duration.ofMillis(rand.nextInt(50)));
+            }
+        };
+        ParallelCircuitSolver solver = new ParallelCircuitSolver();
+        try {
+            for (int i = 0; i < 10; i++) {
+                Circuit c = generator.generateCircuit().getCircuit();
+                CriticalPathAnalyzer.Analysis analysis = CriticalPathAnalyzer.analyze(c);
+                long start = System.nanoTime();
+                assertEquals(analysis.getValue(), solver.solve(c).getValue());
+                Duration wallTime = Duration.ofNanos(System.nanoTime() - start);
+                assertFalse(analysis.getOverhead(wallTime).isNegative(), wallTime + " < " + analysis.getCriticalPath());
+                assertTrue(analysis.getWork().compareTo(analysis.getCriticalPath()) >= 0);
+                List<CircuitNode> path = analysis.getCriticalPathNodes();
+                assertSame(c.getRoot(), path.get(0));
+            }
+        } finally {
+            solver.stop();
+        }
+    }
+}
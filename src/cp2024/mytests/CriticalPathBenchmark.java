@@ -0,0 +1,124 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.demo.SequentialSolver;
+import cp2024.maxtests.CircuitGenerator.WorkloadCorpus;
+import cp2024.solution.EventDrivenCircuitSolver;
+import cp2024.solution.ForkJoinCircuitSolver;
+import cp2024.solution.ParallelCircuitSolver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the wall time of every solver with the {@link CriticalPathAnalyzer} bound of the same circuits,
+ * the first ones of each of the saved {@link WorkloadCorpus#STANDARD} corpora, whose sleepy leaves have delays
+ * from constant to heavy-tailed.
+ * The circuits are solved one at a time, so that the solvers don't compete for threads.
+ * The overhead is the mean of the wall time minus the bound, per circuit; the efficiency is the bound over the wall
+ * time, 100% for an ideal solver. The sequential solver, which short-circuits but waits for one leaf at a time,
+ * shows the other end.
+ * Usage: <code>CriticalPathBenchmark [circuits [corpus...]]</code>, all the standard corpora by default.
+ */
+public class CriticalPathBenchmark {
+    private static final int DEFAULT_CIRCUITS = 20;
+
+    /**
+     * Evaluates the circuit of the given index in the batch and returns its value.
+     */
+    private interface Solve {
+        boolean solve(int index) throws InterruptedException;
+    }
+
+    /**
+     * Prepares a batch before it's timed, e.g. compiles its circuits, so that only solving it is measured.
+     */
+    private interface Solver {
+        Solve prepare(List<Circuit> batch) throws InterruptedException;
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int circuits = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CIRCUITS;
+        List<String> workloads = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            workloads.add(args[i]);
+        }
+        if (workloads.isEmpty()) {
+            for (WorkloadCorpus.Spec spec : WorkloadCorpus.STANDARD) {
+                workloads.add(spec.getName());
+            }
+        }
+
+        ParallelCircuitSolver parallel = new ParallelCircuitSolver();
+        EventDrivenCircuitSolver eventDriven = new EventDrivenCircuitSolver();
+        ForkJoinCircuitSolver forkJoin = new ForkJoinCircuitSolver();
+        SequentialSolver sequential = new SequentialSolver();
+        Map<String, Solver> solvers = new LinkedHashMap<>();
+        solvers.put("parallel", batch -> i -> parallel.solve(batch.get(i)).getValue());
+        solvers.put("parallel-compiled", batch -> {
+            List<CompiledCircuit> compiled = new ArrayList<>();
+            for (Circuit c : batch) {
+                compiled.add(CircuitCompiler.compile(c));
+            }
+            return i -> parallel.solve(compiled.get(i)).getValue();
+        });
+        solvers.put("event-driven", batch -> i -> eventDriven.solve(batch.get(i)).getValue());
+        solvers.put("fork-join", batch -> i -> forkJoin.solve(batch.get(i)).getValue());
+        solvers.put("sequential", batch -> i -> sequential.solve(batch.get(i)).getValue());
+
+        try {
+            for (String workload : workloads) {
+                List<Circuit> corpus = WorkloadCorpus.loadStandard(workload).getCircuits();
+                List<Circuit> batch = new ArrayList<>(corpus.subList(0, Math.min(circuits, corpus.size())));
+                List<CriticalPathAnalyzer.Analysis> analyses = new ArrayList<>();
+                for (Circuit c : batch) {
+                    analyses.add(CriticalPathAnalyzer.analyze(c));
+                }
+                report(workload, batch, analyses, solvers);
+            }
+        } finally {
+            parallel.stop();
+            eventDriven.stop();
+            forkJoin.stop();
+            sequential.stop();
+        }
+    }
+
+    private static void report(String workload, List<Circuit> batch, List<CriticalPathAnalyzer.Analysis> analyses,
+                               Map<String, Solver> solvers) throws InterruptedException {
+        long boundNanos = 0;
+        long workNanos = 0;
+        for (CriticalPathAnalyzer.Analysis analysis : analyses) {
+            boundNanos += analysis.getCriticalPath().toNanos();
+            workNanos += analysis.getWork().toNanos();
+        }
+        System.out.printf("%s: %d circuits, critical path %.1f ms, work %.1f ms, ideal speedup %.1fx (means)%n",
+                workload, batch.size(), millis(boundNanos) / batch.size(), millis(workNanos) / batch.size(),
+                (double) workNanos / Math.max(boundNanos, 1));
+
+        for (Map.Entry<String, Solver> solver : solvers.entrySet()) {
+            Solve solve = solver.getValue().prepare(batch);
+            // the first circuit warms the solver up
+            solve.solve(0);
+            long wallNanos = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                long start = System.nanoTime();
+                boolean value = solve.solve(i);
+                wallNanos += System.nanoTime() - start;
+                if (value != analyses.get(i).getValue()) {
+                    throw new IllegalStateException(solver.getKey() + " got a wrong value of circuit " + i + ".");
+                }
+            }
+            System.out.printf("  %-18s wall %8.1f ms, overhead %7.1f ms, efficiency %5.1f%%%n", solver.getKey(),
+                    millis(wallNanos) / batch.size(), millis(wallNanos - boundNanos) / batch.size(),
+                    100.0 * boundNanos / Math.max(wallNanos, 1));
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,93 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.maxtests.TestUtils.LeafNodeInterruptsCount;
+import cp2024.solution.ParallelCircuitSolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadlineTest {
+    private ParallelCircuitSolver solver;
+
+    @BeforeEach
+    public void start() {
+        solver = new ParallelCircuitSolver();
+    }
+
+    @AfterEach
+    public void stop() {
+        solver.stop();
+    }
+
+    private static Instant in(long millis) {
+        return Instant.now().plusMillis(millis);
+    }
+
+    @Test
+    public void testFinishedBeforeDeadline() throws Exception {
+        Circuit c = new Circuit(CircuitNode.mk(NodeType.AND,
+                CircuitNode.mk(true, Duration.ofMillis(50)), CircuitNode.mk(true, Duration.ofMillis(50))));
+        AsyncCircuitValue value = solver.solve(c, in(1_000));
+        assertTrue(value.getValue(Duration.ofSeconds(1)));
+        assertTrue(value.getValue());
+        assertTrue(value.asCompletionStage().toCompletableFuture().get());
+    }
+
+    @Test
+    public void testDeadlineCancelsTheSubtree() throws InterruptedException {
+        LeafNodeInterruptsCount first = new LeafNodeInterruptsCount(true, Duration.ofSeconds(10));
+        LeafNodeInterruptsCount second = new LeafNodeInterruptsCount(true, Duration.ofSeconds(10));
+        Circuit c = new Circuit(CircuitNode.mk(NodeType.OR, CircuitNode.mk(NodeType.NOT, first), second));
+
+        long start = System.currentTimeMillis();
+        AsyncCircuitValue value = solver.solve(c, in(100));
+        assertThrows(TimeoutException.class, () -> value.getValue(Duration.ofSeconds(5)));
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+        assertThrows(InterruptedException.class, value::getValue);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> value.asCompletionStage().toCompletableFuture().get());
+        assertInstanceOf(TimeoutException.class, e.getCause());
+
+        Thread.sleep(100);
+        assertEquals(1, first.getCountInterrupts());
+        assertEquals(1, second.getCountInterrupts());
+    }
+
+    @Test
+    public void testDeadlineInThePast() {
+        AsyncCircuitValue value = solver.solve(new Circuit(CircuitNode.mk(true, Duration.ofSeconds(10))), in(-100));
+        assertThrows(TimeoutException.class, () -> value.getValue(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    public void testTimedWaitDoesNotCancel() throws Exception {
+        AsyncCircuitValue value = solver.solveAsync(new Circuit(CircuitNode.mk(false, Duration.ofMillis(200))));
+        assertThrows(TimeoutException.class, () -> value.getValue(Duration.ofMillis(20)));
+        assertFalse(value.getValue(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    public void testInterruptedIsNotATimeout() {
+        AsyncCircuitValue value = solver.solve(new Circuit(CircuitNode.mk(true, Duration.ofSeconds(10))), in(5_000));
+        CompletableFuture.runAsync(solver::stop);
+        assertThrows(InterruptedException.class, () -> value.getValue(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    public void testUserCancellation() {
+        AsyncCircuitValue value = solver.solve(new Circuit(CircuitNode.mk(true, Duration.ofSeconds(10))), in(5_000));
+        value.asCompletionStage().toCompletableFuture().cancel(true);
+        assertThrows(InterruptedException.class, () -> value.getValue(Duration.ofSeconds(5)));
+        assertThrows(InterruptedException.class, value::getValue);
+    }
+}
@@ -0,0 +1,154 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.demo.SequentialSolver;
+import cp2024.maxtests.CircuitGenerator.BalancedRandomCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.DeepRandomCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.RandomCircuitGenerator;
+import cp2024.maxtests.TestUtils.LeafNodeInterruptsCount;
+import cp2024.solution.EventDrivenCircuitSolver;
+import cp2024.solution.ExecutionMode;
+import org.junit.jupiter.api.*;
+
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventDrivenSolverTest {
+    private CircuitSolver solver;
+
+    @BeforeEach
+    public void setUp() {
+        solver = new EventDrivenCircuitSolver();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        solver.stop();
+    }
+
+    @Test
+    public void testAgreesWithSequentialSolver() throws InterruptedException {
+        CircuitSolver sequentialSolver = new SequentialSolver();
+        RandomCircuitGenerator[] generators = {
+                new DeepRandomCircuitGenerator(1_000, new Random(42)),
+                new BalancedRandomCircuitGenerator(6, new Random(42), 8)
+        };
+        for (RandomCircuitGenerator generator : generators) {
+            for (int i = 0; i < 100; i++) {
+                Circuit c = generator.generateCircuit().getCircuit();
+                assertEquals(sequentialSolver.solve(c).getValue(), solver.solve(c).getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testShortCircuitInterruptsSlowLeaves() throws InterruptedException {
+        LeafNodeInterruptsCount slow1 = new LeafNodeInterruptsCount(true, Duration.ofSeconds(10));
+        LeafNodeInterruptsCount slow2 = new LeafNodeInterruptsCount(true, Duration.ofSeconds(10));
+        Circuit c = new Circuit(
+                CircuitNode.mk(NodeType.AND,
+                        slow1,
+                        CircuitNode.mk(NodeType.NOT, CircuitNode.mk(true, Duration.ofMillis(50))),
+                        slow2
+                )
+        );
+
+        long start = System.currentTimeMillis();
+        assertFalse(solver.solve(c).getValue());
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+
+        Thread.sleep(100);
+        assertEquals(1, slow1.getCountInterrupts());
+        assertEquals(1, slow2.getCountInterrupts());
+    }
+
+    @Test
+    public void testIFCancelsUnusedBranch() throws InterruptedException {
+        LeafNodeInterruptsCount unused = new LeafNodeInterruptsCount(false, Duration.ofSeconds(10));
+        Circuit c = new Circuit(
+                CircuitNode.mk(NodeType.IF,
+                        CircuitNode.mk(true, Duration.ofMillis(50)),
+                        CircuitNode.mk(true, Duration.ofMillis(100)),
+                        unused
+                )
+        );
+
+        assertTrue(solver.solve(c).getValue());
+        Thread.sleep(100);
+        assertEquals(1, unused.getCountInterrupts());
+    }
+
+    @Test
+    public void testIFWithEqualBranchesDoesNotWaitForCondition() throws InterruptedException {
+        Circuit c = new Circuit(
+                CircuitNode.mk(NodeType.IF,
+                        CircuitNode.mk(true, Duration.ofSeconds(10)),
+                        CircuitNode.mk(false, Duration.ofMillis(50)),
+                        CircuitNode.mk(false)
+                )
+        );
+
+        long start = System.currentTimeMillis();
+        assertFalse(solver.solve(c).getValue());
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+    }
+
+    @Test
+    public void testThresholdsDecidedWithoutChildren() throws InterruptedException {
+        Circuit gt = new Circuit(CircuitNode.mk(NodeType.GT, 2,
+                CircuitNode.mk(true, Duration.ofSeconds(10)), CircuitNode.mk(true, Duration.ofSeconds(10))));
+        Circuit lt = new Circuit(CircuitNode.mk(NodeType.LT, 0,
+                CircuitNode.mk(true, Duration.ofSeconds(10))));
+
+        assertFalse(solver.solve(gt).getValue());
+        assertFalse(solver.solve(lt).getValue());
+    }
+
+    private static CircuitNode deepChain(int depth, CircuitNode bottom) {
+        CircuitNode node = bottom;
+        for (int i = 0; i < depth; i++) {
+            node = i % 2 == 0
+                    ? CircuitNode.mk(NodeType.AND, node, CircuitNode.mk(true))
+                    : CircuitNode.mk(NodeType.OR, node, CircuitNode.mk(false));
+        }
+        return node;
+    }
+
+    @Test
+    public void testDeepCircuitsDontOverflowTheStack() throws InterruptedException {
+        int depth = 100_000;
+        // the value of the bottom leaf is pushed up the whole chain
+        assertTrue(solver.solve(new Circuit(deepChain(depth, CircuitNode.mk(true, Duration.ofMillis(10)))))
+                .getValue());
+
+        // the whole chain is cancelled once the other argument of the root decides it
+        LeafNodeInterruptsCount slow = new LeafNodeInterruptsCount(false, Duration.ofSeconds(10));
+        long start = System.currentTimeMillis();
+        assertTrue(solver.solve(new Circuit(CircuitNode.mk(NodeType.OR,
+                CircuitNode.mk(true, Duration.ofMillis(50)), deepChain(depth, slow)))).getValue());
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+        Thread.sleep(50);
+        assertEquals(slow.getCalled(), slow.getCountInterrupts());
+    }
+
+    @Test
+    public void testStopInterruptsPendingComputations() {
+        CircuitValue value = solver.solve(new Circuit(CircuitNode.mk(true, Duration.ofSeconds(10))));
+        solver.stop();
+        assertThrows(InterruptedException.class, value::getValue);
+        assertThrows(InterruptedException.class, () -> solver.solve(new Circuit(CircuitNode.mk(true))).getValue());
+    }
+
+    @Test
+    public void testVirtualThreads() throws InterruptedException {
+        CircuitSolver virtualSolver = new EventDrivenCircuitSolver(ExecutionMode.VIRTUAL_THREADS);
+        CircuitNode[] leaves = new CircuitNode[10_000];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = CircuitNode.mk(true, Duration.ofMillis(100));
+        }
+        assertTrue(virtualSolver.solve(new Circuit(CircuitNode.mk(NodeType.AND, leaves))).getValue());
+        virtualSolver.stop();
+    }
+}
@@ -0,0 +1,101 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.solution.ExecutionMode;
+import cp2024.solution.ParallelCircuitSolver;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares peak RSS and throughput of the {@link ExecutionMode}s on wide circuits of sleepy leaves.
+ * Peak RSS is a per-process number, so without arguments every mode is measured in its own JVM.
+ * Usage: <code>ExecutionModeBenchmark [mode [leaves [circuits]]]</code>
+ */
+public class ExecutionModeBenchmark {
+    private static final int DEFAULT_LEAVES = 20_000;
+    private static final int DEFAULT_CIRCUITS = 5;
+    private static final Duration LEAF_DELAY = Duration.ofMillis(200);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            for (ExecutionMode mode : ExecutionMode.values()) {
+                runInFreshJvm(mode);
+            }
+            return;
+        }
+
+        ExecutionMode mode = ExecutionMode.valueOf(args[0]);
+        int leaves = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_LEAVES;
+        int circuits = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CIRCUITS;
+        measure(mode, leaves, circuits);
+    }
+
+    private static void runInFreshJvm(ExecutionMode mode) throws IOException, InterruptedException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ExecutionModeBenchmark.class.getName(), mode.name())
+                .inheritIO()
+                .start();
+        process.waitFor();
+    }
+
+    private static void measure(ExecutionMode mode, int leaves, int circuits) throws InterruptedException {
+        CircuitSolver solver = new ParallelCircuitSolver(mode);
+
+        long start = System.nanoTime();
+        List<CircuitValue> values = new ArrayList<>();
+        for (int i = 0; i < circuits; i++) {
+            values.add(solver.solve(wideCircuit(leaves)));
+        }
+        for (CircuitValue value : values) {
+            value.getValue();
+        }
+        long elapsed = System.nanoTime() - start;
+        solver.stop();
+
+        double seconds = elapsed / 1_000_000_000.0;
+        System.out.println(mode + ": " + circuits + " circuits of " + leaves + " leaves in " + seconds + " s");
+        System.out.println(mode + ": throughput " + (circuits * leaves) / seconds + " leaves/s");
+        System.out.println(mode + ": peak live threads " + ManagementFactory.getThreadMXBean().getPeakThreadCount());
+        System.out.println(mode + ": peak RSS " + peakRssKilobytes() + " kB");
+    }
+
+    /**
+     * AND of ORs of sleepy leaves, where every leaf is true, so nothing short-circuits
+     * and every leaf is slept on at the same time.
+     */
+    private static Circuit wideCircuit(int leaves) {
+        final int fanOut = 100;
+        CircuitNode[] groups = new CircuitNode[Math.max(2, leaves / fanOut)];
+        for (int i = 0; i < groups.length; i++) {
+            CircuitNode[] group = new CircuitNode[fanOut];
+            for (int j = 0; j < fanOut; j++) {
+                group[j] = CircuitNode.mk(true, LEAF_DELAY);
+            }
+            groups[i] = CircuitNode.mk(NodeType.GT, fanOut - 1, group);
+        }
+        return new Circuit(CircuitNode.mk(NodeType.AND, groups));
+    }
+
+    /**
+     * @return the high water mark of the resident set size of this process, or -1 if it isn't available
+     */
+    private static long peakRssKilobytes() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not on Linux, no RSS to report
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,101 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.solution.ParallelCircuitSolver;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightRecorderEventsTest {
+    private static final List<String> EVENTS = List.of("cp2024.Solve", "cp2024.NodeEvaluation",
+            "cp2024.LeafEvaluation", "cp2024.ShortCircuit", "cp2024.BranchAbandoned", "cp2024.Cancellation");
+
+    /**
+     * Solves the circuit with a recording of all the events of the solvers, and returns them.
+     */
+    private static List<RecordedEvent> record(Circuit c) throws InterruptedException, IOException {
+        Path file = Files.createTempFile("circuits", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String event : EVENTS) {
+                recording.enable(event).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            ParallelCircuitSolver solver = new ParallelCircuitSolver();
+            assertTrue(solver.solve(c).getValue());
+            // the cancelled leaves finish after the value is known
+            Thread.sleep(100);
+            solver.stop();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).toList();
+    }
+
+    @Test
+    public void testShortCircuitAndCancellation() throws InterruptedException, IOException {
+        Circuit c = new Circuit(CircuitNode.mk(NodeType.OR,
+                CircuitNode.mk(true, Duration.ofMillis(20)),
+                CircuitNode.mk(NodeType.NOT, CircuitNode.mk(true, Duration.ofSeconds(10)))));
+        List<RecordedEvent> events = record(c);
+
+        List<RecordedEvent> solves = ofType(events, "cp2024.Solve");
+        assertEquals(1, solves.size());
+        assertEquals("OR", solves.get(0).getString("nodeType"));
+        assertTrue(solves.get(0).getBoolean("value"));
+        assertFalse(solves.get(0).getBoolean("cancelled"));
+
+        List<RecordedEvent> shortCircuits = ofType(events, "cp2024.ShortCircuit");
+        assertEquals(1, shortCircuits.size());
+        assertEquals(0, shortCircuits.get(0).getInt("depth"));
+        assertEquals(2, shortCircuits.get(0).getInt("children"));
+        assertEquals(1, shortCircuits.get(0).getInt("received"));
+
+        // the NOT may cancel its leaf too, if it notices the cancellation before the leaf does
+        List<RecordedEvent> cancellations = ofType(events, "cp2024.Cancellation").stream()
+                .filter(e -> e.getInt("depth") == 0).toList();
+        assertEquals(1, cancellations.size());
+        assertEquals("OR", cancellations.get(0).getString("nodeType"));
+
+        List<RecordedEvent> leaves = ofType(events, "cp2024.LeafEvaluation");
+        assertEquals(2, leaves.size());
+        RecordedEvent interrupted = leaves.stream().filter(e -> e.getBoolean("interrupted")).findAny().orElseThrow();
+        assertEquals(2, interrupted.getInt("depth"));
+        assertEquals("LEAF", interrupted.getString("nodeType"));
+
+        // the root, both leaves and the NOT between them
+        assertEquals(4, ofType(events, "cp2024.NodeEvaluation").size());
+    }
+
+    @Test
+    public void testAbandonedBranch() throws InterruptedException, IOException {
+        Circuit c = new Circuit(CircuitNode.mk(NodeType.AND,
+                CircuitNode.mk(true, Duration.ofMillis(1)),
+                CircuitNode.mk(NodeType.IF,
+                        CircuitNode.mk(true, Duration.ofMillis(20)),
+                        CircuitNode.mk(true, Duration.ofMillis(40)),
+                        CircuitNode.mk(false, Duration.ofSeconds(10)))));
+        List<RecordedEvent> events = record(c);
+
+        List<RecordedEvent> abandoned = ofType(events, "cp2024.BranchAbandoned");
+        assertEquals(1, abandoned.size());
+        assertEquals("FALSE", abandoned.get(0).getString("branch"));
+        assertEquals("IF", abandoned.get(0).getString("nodeType"));
+        assertEquals(1, abandoned.get(0).getInt("depth"));
+        assertTrue(ofType(events, "cp2024.ShortCircuit").isEmpty());
+    }
+}
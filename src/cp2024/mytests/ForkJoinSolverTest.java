@@ -0,0 +1,118 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.demo.SequentialSolver;
+import cp2024.maxtests.CircuitGenerator.BalancedRandomCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.DeepRandomCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.RandomCircuitGenerator;
+import cp2024.maxtests.TestUtils.LeafNodeInterruptsCount;
+import cp2024.solution.ForkJoinCircuitSolver;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ForkJoinSolverTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 16, ForkJoinCircuitSolver.DEFAULT_SEQUENTIAL_THRESHOLD, Integer.MAX_VALUE})
+    public void testAgreesWithSequentialSolver(int sequentialThreshold) throws InterruptedException {
+        CircuitSolver solver = new ForkJoinCircuitSolver(sequentialThreshold);
+        CircuitSolver sequentialSolver = new SequentialSolver();
+        RandomCircuitGenerator[] generators = {
+                new DeepRandomCircuitGenerator(1_000, new Random(7)),
+                new BalancedRandomCircuitGenerator(6, new Random(7), 8)
+        };
+        for (RandomCircuitGenerator generator : generators) {
+            for (int i = 0; i < 100; i++) {
+                Circuit c = generator.generateCircuit().getCircuit();
+                assertEquals(sequentialSolver.solve(c).getValue(), solver.solve(c).getValue());
+            }
+        }
+        solver.stop();
+    }
+
+    @Test
+    public void testShortCircuitsOnFirstFinishedChild() throws InterruptedException {
+        CircuitSolver solver = new ForkJoinCircuitSolver(0, 2);
+        LeafNodeInterruptsCount slow = new LeafNodeInterruptsCount(false, Duration.ofSeconds(10));
+        Circuit c = new Circuit(
+                CircuitNode.mk(NodeType.OR,
+                        slow,
+                        CircuitNode.mk(NodeType.NOT, CircuitNode.mk(false, Duration.ofMillis(50))),
+                        CircuitNode.mk(false, Duration.ofSeconds(10))
+                )
+        );
+
+        long start = System.currentTimeMillis();
+        assertTrue(solver.solve(c).getValue());
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+
+        Thread.sleep(100);
+        assertEquals(slow.getCalled(), slow.getCountInterrupts());
+        solver.stop();
+    }
+
+    @Test
+    public void testSlowLeavesAreNotInlined() throws InterruptedException {
+        CircuitSolver solver = new ForkJoinCircuitSolver(Integer.MAX_VALUE);
+        CircuitNode[] leaves = new CircuitNode[16];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = CircuitNode.mk(true, Duration.ofMillis(200));
+        }
+
+        long start = System.currentTimeMillis();
+        assertTrue(solver.solve(new Circuit(CircuitNode.mk(NodeType.AND, leaves))).getValue());
+        assertTrue(System.currentTimeMillis() - start < 1_500);
+        solver.stop();
+    }
+
+    @Test
+    public void testAbandonedLeavesDontInterruptOtherCircuits() throws InterruptedException {
+        ForkJoinCircuitSolver solver = new ForkJoinCircuitSolver(0, 2);
+        List<CircuitValue> values = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // the second leaf of the OR is abandoned about when it finishes, on a worker the AND reuses
+            values.add(solver.solve(new Circuit(CircuitNode.mk(NodeType.OR,
+                    CircuitNode.mk(true, Duration.ofMillis(1)), CircuitNode.mk(false, Duration.ofMillis(1))))));
+            values.add(solver.solve(new Circuit(CircuitNode.mk(NodeType.AND,
+                    CircuitNode.mk(true, Duration.ofMillis(1)), CircuitNode.mk(true, Duration.ofMillis(1))))));
+        }
+        for (CircuitValue value : values) {
+            assertTrue(value.getValue());
+        }
+        solver.stop();
+    }
+
+    @Test
+    public void testCancelStopsOnlyThatCircuit() throws InterruptedException {
+        ForkJoinCircuitSolver solver = new ForkJoinCircuitSolver(0, 2);
+        LeafNodeInterruptsCount slow = new LeafNodeInterruptsCount(false, Duration.ofSeconds(10));
+        AsyncCircuitValue cancelled = solver.solveAsync(new Circuit(CircuitNode.mk(NodeType.AND,
+                slow, CircuitNode.mk(true, Duration.ofSeconds(10)))));
+        AsyncCircuitValue other = solver.solveAsync(new Circuit(CircuitNode.mk(true, Duration.ofMillis(100))));
+
+        Thread.sleep(50);
+        assertTrue(cancelled.cancel());
+        assertThrows(InterruptedException.class, cancelled::getValue);
+        assertTrue(other.getValue());
+        Thread.sleep(50);
+        assertEquals(slow.getCalled(), slow.getCountInterrupts());
+        solver.stop();
+    }
+
+    @Test
+    public void testStop() {
+        CircuitSolver solver = new ForkJoinCircuitSolver();
+        CircuitValue value = solver.solve(new Circuit(CircuitNode.mk(true, Duration.ofSeconds(10))));
+        solver.stop();
+        assertThrows(InterruptedException.class, value::getValue);
+        assertThrows(InterruptedException.class, () -> solver.solve(new Circuit(CircuitNode.mk(true))).getValue());
+    }
+}
@@ -0,0 +1,109 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.solution.EventDrivenCircuitSolver;
+import cp2024.solution.ParallelCircuitSolver;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InlineLeavesTest {
+    /**
+     * A leaf that remembers the threads it was evaluated on.
+     */
+    private static class ThreadRecordingLeaf extends LeafNode {
+        private final boolean value;
+        private final Duration costHint;
+        private final Set<Thread> threads;
+
+        ThreadRecordingLeaf(boolean value, Duration costHint, Set<Thread> threads) {
+            this.value = value;
+            this.costHint = costHint;
+            this.threads = threads;
+        }
+
+        @Override
+        public Duration getCostHint() {
+            return costHint;
+        }
+
+        @Override
+        public boolean getValue() {
+            threads.add(Thread.currentThread());
+            return value;
+        }
+    }
+
+    private static CircuitSolver solver(String name) {
+        return name.equals("parallel") ? new ParallelCircuitSolver() : new EventDrivenCircuitSolver();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"parallel", "event-driven"})
+    public void testImmediateLeavesShareTheThreadOfTheParent(String name) throws InterruptedException {
+        CircuitSolver solver = solver(name);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        Circuit c = new Circuit(
+                CircuitNode.mk(NodeType.GT, 1,
+                        new ThreadRecordingLeaf(true, Duration.ZERO, threads),
+                        CircuitNode.mk(NodeType.NOT, new ThreadRecordingLeaf(false, Duration.ZERO, threads)),
+                        new ThreadRecordingLeaf(false, Duration.ZERO, threads)
+                )
+        );
+
+        assertTrue(solver.solve(c).getValue());
+        assertEquals(1, threads.size());
+        solver.stop();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"parallel", "event-driven"})
+    public void testLeavesWithoutHintGetThreadsOfTheirOwn(String name) throws InterruptedException {
+        CircuitSolver solver = solver(name);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        Circuit c = new Circuit(
+                CircuitNode.mk(NodeType.AND,
+                        new ThreadRecordingLeaf(true, null, threads),
+                        new ThreadRecordingLeaf(true, Duration.ZERO, threads)
+                )
+        );
+
+        assertTrue(solver.solve(c).getValue());
+        assertEquals(2, threads.size());
+        solver.stop();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"parallel", "event-driven"})
+    public void testTrivialConditionSkipsUnusedBranch(String name) throws InterruptedException {
+        CircuitSolver solver = solver(name);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        ThreadRecordingLeaf unused = new ThreadRecordingLeaf(true, null, threads);
+        Circuit c = new Circuit(
+                CircuitNode.mk(NodeType.IF,
+                        CircuitNode.mk(NodeType.NOT, CircuitNode.mk(true)),
+                        unused,
+                        CircuitNode.mk(false, Duration.ofMillis(10))
+                )
+        );
+
+        assertFalse(solver.solve(c).getValue());
+        if (name.equals("parallel")) {
+            assertTrue(threads.isEmpty());
+        }
+        solver.stop();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"parallel", "event-driven"})
+    public void testImmediateRoot(String name) throws InterruptedException {
+        CircuitSolver solver = solver(name);
+        assertFalse(solver.solve(new Circuit(CircuitNode.mk(NodeType.NOT, CircuitNode.mk(true)))).getValue());
+        solver.stop();
+    }
+}
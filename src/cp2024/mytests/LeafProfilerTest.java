@@ -0,0 +1,110 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.solution.LeafProfiler;
+import cp2024.solution.LeafStatistics;
+import cp2024.solution.ParallelCircuitSolver;
+import cp2024.solution.ParallelSolverOptions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LeafProfilerTest {
+    /**
+     * A sleepy leaf without a cost hint, so that it's known only from its statistics.
+     */
+    private static class UnhintedLeaf extends LeafNode {
+        private final boolean value;
+        private final Duration delay;
+
+        UnhintedLeaf(boolean value, Duration delay) {
+            this.value = value;
+            this.delay = delay;
+        }
+
+        @Override
+        public boolean getValue() throws InterruptedException {
+            Thread.sleep(delay.toMillis());
+            return value;
+        }
+    }
+
+    @Test
+    public void testSolverRecordsLeaves() throws InterruptedException {
+        LeafProfiler profiler = new LeafProfiler();
+        ParallelCircuitSolver solver = new ParallelCircuitSolver(ParallelSolverOptions.DEFAULT.withProfiler(profiler));
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(solver.solve(new Circuit(CircuitNode.mk(NodeType.AND,
+                        CircuitNode.mk(true, Duration.ofMillis(50)),
+                        new UnhintedLeaf(true, Duration.ofMillis(10))))).getValue());
+            }
+        } finally {
+            solver.stop();
+        }
+
+        LeafStatistics sleepy = profiler.getStatistics((LeafNode) CircuitNode.mk(true));
+        assertEquals(SleepyLeafNode.class, sleepy.getKey());
+        assertEquals(3, sleepy.getCount());
+        assertEquals(1.0, sleepy.getTrueFraction());
+        assertTrue(sleepy.getMean().toMillis() >= 50);
+        assertTrue(sleepy.getMax().compareTo(sleepy.getMean()) >= 0);
+
+        // the leaves that took the most time in total come first
+        List<LeafStatistics> statistics = profiler.getStatistics();
+        assertEquals(2, statistics.size());
+        assertSame(sleepy.getKey(), statistics.get(0).getKey());
+        assertEquals(UnhintedLeaf.class, statistics.get(1).getKey());
+    }
+
+    @Test
+    public void testLeavesCanBeProfiledOneByOne() {
+        LeafProfiler profiler = new LeafProfiler(LeafProfiler.Granularity.LEAF_IDENTITY);
+        LeafNode first = new UnhintedLeaf(true, Duration.ZERO);
+        LeafNode second = new UnhintedLeaf(true, Duration.ZERO);
+        profiler.record(first, 10, true);
+        profiler.record(first, 30, false);
+
+        assertNull(profiler.getStatistics(second));
+        LeafStatistics statistics = profiler.getStatistics(first);
+        assertSame(first, statistics.getKey());
+        assertEquals(20, statistics.getMeanNanos(), 1e-9);
+        assertEquals(Math.sqrt(200), statistics.getStandardDeviationNanos(), 1e-9);
+        assertEquals(0.5, statistics.getTrueFraction());
+    }
+
+    @Test
+    public void testChildrenAreOrderedByExpectedDecisionTime() {
+        LeafProfiler profiler = new LeafProfiler(LeafProfiler.Granularity.LEAF_IDENTITY);
+        LeafNode slow = new UnhintedLeaf(false, Duration.ZERO);
+        LeafNode fastRarelyFalse = new UnhintedLeaf(true, Duration.ZERO);
+        LeafNode fastOftenFalse = new UnhintedLeaf(false, Duration.ZERO);
+        LeafNode unknown = new UnhintedLeaf(false, Duration.ZERO);
+        LeafNode hinted = (LeafNode) CircuitNode.mk(false, Duration.ofNanos(500));
+        CircuitNode inner = CircuitNode.mk(NodeType.NOT, slow);
+        for (int i = 0; i < 10; i++) {
+            profiler.record(slow, 10_000, false);
+            profiler.record(fastRarelyFalse, 100, i != 0);
+            profiler.record(fastOftenFalse, 100, i == 0);
+        }
+
+        // AND is decided by false, so the leaf that is often false is expected to decide it sooner
+        List<CircuitNode> args = new ArrayList<>(List.of(inner, unknown, slow, fastOftenFalse, hinted, fastRarelyFalse));
+        profiler.orderChildren(NodeType.AND, args);
+        assertEquals(List.of(fastOftenFalse, hinted, fastRarelyFalse, slow, inner, unknown), args);
+
+        // and OR by true
+        args = new ArrayList<>(List.of(inner, unknown, slow, fastOftenFalse, hinted, fastRarelyFalse));
+        profiler.orderChildren(NodeType.OR, args);
+        assertEquals(List.of(fastRarelyFalse, hinted, fastOftenFalse, slow, inner, unknown), args);
+
+        // GT and LT are ordered by the mean time only
+        args = new ArrayList<>(List.of(inner, slow, fastOftenFalse, fastRarelyFalse));
+        profiler.orderChildren(NodeType.GT, args);
+        assertEquals(List.of(fastOftenFalse, fastRarelyFalse, slow, inner), args);
+    }
+}
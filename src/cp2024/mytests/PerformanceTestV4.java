@@ -1,15 +1,24 @@
 package cp2024.demo;
 
 import cp2024.circuit.*;
+import cp2024.maxtests.CircuitGenerator.WorkloadCorpus;
 import cp2024.solution.*;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.concurrent.*;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Random;
 
+/**
+ * Usage: <code>PerformanceTestV4 [corpus]</code> solves the circuits of the standard corpus of the name,
+ * <code>balanced-lognormal</code> by default, or 1000 circuits built here from a fixed seed if it's <code>random</code>.
+ */
 public class PerformanceTestV4 {
+    private static final String DEFAULT_CORPUS = "balanced-lognormal";
+    private static final int RANDOM_TESTS = 1000;
     private static final double SLEEPY_CHANCE = 0.8; // Chance for a sleepy leaf node (performance heavy)
     private static final double TRUE_LEAF_CHANCE = 0.5; // Chance that a leaf node has value "true"
     private static final int MAX_DEPTH = 8; // Maximum depth of the circuit (performance heavy)
@@ -17,13 +26,23 @@ public class PerformanceTestV4 {
     private static final int MAX_SLEEP_MS = 100; // (performance heavy)
     private static final int MAX_ARGS = 16; // For AND, OR, GT, LT (performance heavy)
     private static final int NODE_COUNT_LIMIT = 100000; // Soft caps the number of nodes in the circuit
+    private static final Random RANDOM = new Random(42); // Seeded, so that every run builds the same circuits
 
     private static int count; // Number of nodes in the circuit (valid after building the circuit)
     record Pair(CircuitValue circuitValue, long time) {} // Record for storing the result and time taken
 
-    public static void main(String[] args) throws InterruptedException {
+    public static void main(String[] args) throws InterruptedException, IOException {
+        String corpus = args.length > 0 ? args[0] : DEFAULT_CORPUS;
+        List<Circuit> circuits = new ArrayList<>();
+        if (corpus.equals("random")) {
+            for (int i = 0; i < RANDOM_TESTS; i++) {
+                circuits.add(buildRandomCircuit());
+            }
+        } else {
+            circuits.addAll(WorkloadCorpus.loadStandard(corpus).getCircuits());
+        }
 
-        int tests = 1000;
+        int tests = circuits.size();
         
         List<Callable<Boolean>> sequentialTasks = new ArrayList<>();
         List<Boolean> parallelResults = new ArrayList<>();
@@ -33,7 +52,7 @@ public class PerformanceTestV4 {
         // performance test
         for (int i = 0; i < tests; i++) {
             
-            Circuit c = buildRandomCircuit();
+            Circuit c = circuits.get(i);
 
             sequentialTasks.add(runSequential(c));
 
@@ -90,7 +109,7 @@ public class PerformanceTestV4 {
 
         // Generate a leaf node
         if (depth == 0 || count >= NODE_COUNT_LIMIT) {
-            Duration sleep = Duration.ofMillis(ThreadLocalRandom.current().nextInt(0, MAX_SLEEP_MS + 1));
+            Duration sleep = Duration.ofMillis(RANDOM.nextInt(0, MAX_SLEEP_MS + 1));
             boolean leafValue = withChance(TRUE_LEAF_CHANCE);
 
             if (withChance(SLEEPY_CHANCE)) {
@@ -101,12 +120,12 @@ public class PerformanceTestV4 {
             return CircuitNode.mk(leafValue);
         }
 
-        int depthChange = ThreadLocalRandom.current().nextInt(1, MAX_DEPTH_VARIATION + 1);
+        int depthChange = RANDOM.nextInt(1, MAX_DEPTH_VARIATION + 1);
         depth = Math.max(0, depth - depthChange);
-        int maxArgs = ThreadLocalRandom.current().nextInt(2, MAX_ARGS + 1);
-        int threshold = ThreadLocalRandom.current().nextInt(1, maxArgs + 1);
+        int maxArgs = RANDOM.nextInt(2, MAX_ARGS + 1);
+        int threshold = RANDOM.nextInt(1, maxArgs + 1);
 
-        return switch (ThreadLocalRandom.current().nextInt(0, 6)) {
+        return switch (RANDOM.nextInt(0, 6)) {
             case 0 -> CircuitNode.mk(NodeType.GT, threshold, getArgs(2, maxArgs, depth));
             case 1 -> CircuitNode.mk(NodeType.LT, threshold, getArgs(2, maxArgs, depth));
             case 2 -> CircuitNode.mk(NodeType.AND, getArgs(2, maxArgs, depth));
@@ -119,11 +138,11 @@ public class PerformanceTestV4 {
 
     private static boolean withChance(double chance) {
         assert 0 <= chance && chance <= 1;
-        return Math.random() < chance;
+        return RANDOM.nextDouble() < chance;
     }
 
     private static CircuitNode[] getArgs(int minArgs, int maxArgs, int depth) { // minArgs and maxArgs are inclusive
-        int numArgs = ThreadLocalRandom.current().nextInt(minArgs, maxArgs + 1);
+        int numArgs = RANDOM.nextInt(minArgs, maxArgs + 1);
         CircuitNode[] args = new CircuitNode[numArgs];
         for (int i = 0; i < numArgs; i++) {
             args[i] = buildNodeTree(depth);
@@ -0,0 +1,79 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.solution.ParallelCircuitSolver;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares consuming a batch of circuits with <code>solveAll()</code>, in the order they finish,
+ * against calling <code>solve()</code> on each and waiting on the values in the order of submission.
+ * Reports the throughput and how long the consumer waited on average for a result.
+ * Usage: <code>SolveAllBenchmark [circuits [maxInFlight]]</code>
+ */
+public class SolveAllBenchmark {
+    private static final int DEFAULT_CIRCUITS = 2_000;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 0;
+    private static final int MAX_DELAY_MILLIS = 50;
+    private static final int WARMUP_ROUNDS = 2;
+
+    public static void main(String[] args) throws InterruptedException {
+        int circuits = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CIRCUITS;
+        int maxInFlight = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_IN_FLIGHT;
+
+        Random random = new Random(42);
+        List<Circuit> batch = new ArrayList<>();
+        for (int i = 0; i < circuits; i++) {
+            // a few slow circuits among many fast ones
+            int delay = random.nextInt(10) == 0 ? MAX_DELAY_MILLIS : random.nextInt(MAX_DELAY_MILLIS / 10);
+            batch.add(new Circuit(CircuitNode.mk(NodeType.OR,
+                    CircuitNode.mk(random.nextBoolean(), Duration.ofMillis(delay)),
+                    CircuitNode.mk(random.nextBoolean(), Duration.ofMillis(delay / 2)))));
+        }
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean measured = round == WARMUP_ROUNDS;
+            ParallelCircuitSolver solver = new ParallelCircuitSolver();
+
+            long start = System.nanoTime();
+            long waited = 0;
+            long checksum = 0;
+            List<CircuitValue> values = new ArrayList<>();
+            for (Circuit c : batch) {
+                values.add(solver.solve(c));
+            }
+            for (CircuitValue value : values) {
+                checksum += value.getValue() ? 1 : 0;
+                waited += System.nanoTime() - start;
+            }
+            long perCircuit = System.nanoTime() - start;
+            long perCircuitWaited = waited / circuits;
+
+            start = System.nanoTime();
+            waited = 0;
+            CircuitResults results = solver.solveAll(batch, maxInFlight);
+            while (results.hasNext()) {
+                checksum += results.next().getValue() ? 1 : 0;
+                waited += System.nanoTime() - start;
+            }
+            long all = System.nanoTime() - start;
+            long allWaited = waited / circuits;
+            solver.stop();
+
+            if (measured) {
+                System.out.println("solve() each, in order:   " + throughput(circuits, perCircuit)
+                        + " circuits/s, " + perCircuitWaited / 1_000 + " us until a result on average");
+                System.out.println("solveAll(), as finished:  " + throughput(circuits, all)
+                        + " circuits/s, " + allWaited / 1_000 + " us until a result on average");
+                System.out.println("(checksum " + checksum + ")");
+            }
+        }
+    }
+
+    private static long throughput(int circuits, long nanos) {
+        return circuits * 1_000_000_000L / Math.max(nanos, 1);
+    }
+}
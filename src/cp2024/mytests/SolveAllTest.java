@@ -0,0 +1,172 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.demo.SequentialSolver;
+import cp2024.maxtests.CircuitGenerator.BalancedRandomCircuitGenerator;
+import cp2024.solution.AdmissionLimits;
+import cp2024.solution.AdmissionLimits.OverflowPolicy;
+import cp2024.solution.ParallelCircuitSolver;
+import cp2024.solution.ParallelSolverOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SolveAllTest {
+    private ParallelCircuitSolver solver;
+
+    @BeforeEach
+    public void start() {
+        solver = new ParallelCircuitSolver();
+    }
+
+    @AfterEach
+    public void stop() {
+        solver.stop();
+    }
+
+    private static Circuit slowCircuit(boolean value, long millis) {
+        return new Circuit(CircuitNode.mk(NodeType.NOT, CircuitNode.mk(!value, Duration.ofMillis(millis))));
+    }
+
+    @Test
+    public void testCompletionOrder() throws InterruptedException {
+        CircuitResults results = solver.solveAll(List.of(
+                slowCircuit(true, 300), slowCircuit(false, 50), slowCircuit(true, 150)));
+
+        SolvedCircuit first = results.next();
+        assertEquals(1, first.getIndex());
+        assertFalse(first.getValue());
+        assertEquals(2, results.next().getIndex());
+        SolvedCircuit last = results.next();
+        assertEquals(0, last.getIndex());
+        assertTrue(last.getValue());
+        assertFalse(results.hasNext());
+    }
+
+    @Test
+    public void testAllValues() throws InterruptedException {
+        BalancedRandomCircuitGenerator generator = new BalancedRandomCircuitGenerator(5, new Random(7));
+        List<Circuit> circuits = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            circuits.add(generator.generateCircuit().getCircuit());
+        }
+
+        SequentialSolver sequential = new SequentialSolver();
+        boolean[] seen = new boolean[circuits.size()];
+        CircuitResults results = solver.solveAll(circuits, 16);
+        while (results.hasNext()) {
+            SolvedCircuit solved = results.next();
+            assertFalse(seen[solved.getIndex()]);
+            seen[solved.getIndex()] = true;
+            assertSame(circuits.get(solved.getIndex()), solved.getCircuit());
+            assertEquals(sequential.solve(solved.getCircuit()).getValue(), solved.getValue());
+            assertTrue(results.getPending() <= 16);
+        }
+        for (boolean s : seen) {
+            assertTrue(s);
+        }
+    }
+
+    @Test
+    public void testBoundedInFlight() throws InterruptedException {
+        List<Circuit> circuits = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            circuits.add(slowCircuit(true, 100));
+        }
+
+        long start = System.currentTimeMillis();
+        CircuitResults results = solver.solveAll(circuits, 2);
+        assertEquals(2, results.getPending());
+        int count = 0;
+        while (results.hasNext()) {
+            assertTrue(results.next().getValue());
+            count++;
+        }
+        assertEquals(6, count);
+        // three rounds of two circuits
+        assertTrue(System.currentTimeMillis() - start >= 300);
+    }
+
+    @Test
+    public void testSubmitWaitsForRoom() throws Exception {
+        CircuitCompletionService service = new CircuitCompletionService(solver, 1);
+        service.submit(slowCircuit(true, 10));
+        CompletableFuture<Integer> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.submit(slowCircuit(false, 10));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+        assertEquals(0, service.take().getIndex());
+        assertEquals(1, second.get());
+        assertFalse(service.take().getValue());
+        assertNull(service.poll());
+        assertEquals(0, service.getPending());
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        List<Circuit> circuits = new ArrayList<>();
+        circuits.add(slowCircuit(true, 10));
+        for (int i = 0; i < 4; i++) {
+            circuits.add(slowCircuit(true, 10_000));
+        }
+
+        long start = System.currentTimeMillis();
+        CircuitResults results = solver.solveAll(circuits, 3);
+        assertTrue(results.next().getValue());
+        results.cancel();
+        // the second to fourth are cancelled, the fifth is never submitted
+        for (int i = 0; i < 3; i++) {
+            assertThrows(InterruptedException.class, () -> results.next().getValue());
+        }
+        assertFalse(results.hasNext());
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+    }
+
+    @Test
+    public void testRejectedCircuitIsDropped() throws InterruptedException {
+        solver.stop();
+        solver = new ParallelCircuitSolver(ParallelSolverOptions.DEFAULT.withAdmissionLimits(
+                AdmissionLimits.UNLIMITED.withMaxConcurrentSolves(1).withOverflowPolicy(OverflowPolicy.FAIL_FAST)));
+
+        // the second circuit is rejected while the first is being solved
+        CircuitResults results = solver.solveAll(List.of(slowCircuit(true, 100), slowCircuit(false, 100)), 2);
+        assertEquals(1, results.getPending());
+        assertTrue(results.hasNext());
+        assertThrows(RejectedExecutionException.class, results::next);
+        SolvedCircuit first = results.next();
+        assertEquals(0, first.getIndex());
+        assertTrue(first.getValue());
+        assertFalse(results.hasNext());
+
+        Thread.sleep(20);
+        CircuitCompletionService service = new CircuitCompletionService(solver);
+        assertEquals(0, service.submit(slowCircuit(true, 100)));
+        assertThrows(RejectedExecutionException.class, () -> service.submit(slowCircuit(false, 100)));
+        assertEquals(1, service.getPending());
+        assertEquals(0, service.take().getIndex());
+        assertEquals(0, service.getPending());
+    }
+
+    @Test
+    public void testSequentialSolver() throws InterruptedException {
+        CircuitResults results = new SequentialSolver().solveAll(List.of(slowCircuit(true, 1), slowCircuit(false, 1)));
+        assertTrue(results.next().getValue());
+        assertFalse(results.next().getValue());
+        assertFalse(results.hasNext());
+    }
+}
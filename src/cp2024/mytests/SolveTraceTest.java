@@ -0,0 +1,87 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.solution.ParallelCircuitSolver;
+import cp2024.solution.ParallelSolverOptions;
+import cp2024.solution.SolveTrace;
+import cp2024.solution.SolveTracer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SolveTraceTest {
+    private static ParallelCircuitSolver tracingSolver(int samplingInterval, BlockingQueue<SolveTrace> traces) {
+        return new ParallelCircuitSolver(ParallelSolverOptions.DEFAULT
+                .withTracer(new SolveTracer(samplingInterval, traces::add)));
+    }
+
+    @Test
+    public void testShortCircuitTrace() throws InterruptedException, IOException {
+        BlockingQueue<SolveTrace> traces = new LinkedBlockingQueue<>();
+        ParallelCircuitSolver solver = tracingSolver(1, traces);
+        Path file = Files.createTempFile("trace", ".json");
+        try {
+            assertTrue(solver.solve(new Circuit(CircuitNode.mk(NodeType.OR,
+                    CircuitNode.mk(true, Duration.ofMillis(20)),
+                    CircuitNode.mk(NodeType.NOT, CircuitNode.mk(true, Duration.ofSeconds(10)))))).getValue());
+
+            // handed over once the interrupted leaf finishes, long before it would have on its own
+            SolveTrace trace = traces.poll(5, TimeUnit.SECONDS);
+            assertNotNull(trace);
+            assertEquals(0, trace.getSolveNumber());
+            assertEquals(4, trace.getNodeCount());
+
+            trace.writeTo(file);
+            String json = Files.readString(file);
+            assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+            assertTrue(json.strip().endsWith("]}"));
+            assertTrue(json.contains("\"ph\":\"X\",\"cat\":\"node\",\"name\":\"OR\""));
+            assertTrue(json.contains("\"ph\":\"X\",\"cat\":\"node\",\"name\":\"NOT\""));
+            assertTrue(json.contains("\"ph\":\"X\",\"cat\":\"blocked\",\"name\":\"children\""));
+            assertTrue(json.contains("\"ph\":\"X\",\"cat\":\"leaf\",\"name\":\"getValue\""));
+            assertTrue(json.contains("\"interrupted\":true"));
+            assertTrue(json.contains("\"ph\":\"b\",\"cat\":\"queue\",\"name\":\"queued\""));
+            assertTrue(json.contains("\"name\":\"thread_name\""));
+            assertEquals(json.chars().filter(c -> c == '{').count(), json.chars().filter(c -> c == '}').count());
+        } finally {
+            solver.stop();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testSampling() throws InterruptedException {
+        BlockingQueue<SolveTrace> traces = new LinkedBlockingQueue<>();
+        ParallelCircuitSolver solver = tracingSolver(3, traces);
+        try {
+            for (int i = 0; i < 7; i++) {
+                assertFalse(solver.solve(new Circuit(CircuitNode.mk(NodeType.AND,
+                        CircuitNode.mk(true, Duration.ofMillis(1)),
+                        CircuitNode.mk(false, Duration.ofMillis(1))))).getValue());
+            }
+            for (long expected : new long[]{0, 3, 6}) {
+                SolveTrace trace = traces.poll(5, TimeUnit.SECONDS);
+                assertNotNull(trace);
+                assertEquals(expected, trace.getSolveNumber());
+                assertEquals(3, trace.getNodeCount());
+            }
+            assertNull(traces.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            solver.stop();
+        }
+    }
+
+    @Test
+    public void testInvalidSamplingInterval() {
+        assertThrows(IllegalArgumentException.class, () -> new SolveTracer(0, trace -> {
+        }));
+    }
+}
@@ -0,0 +1,169 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.solution.*;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SolverMetricsTest {
+    /**
+     * The solves are counted once their values complete, which may be right after <code>getValue()</code> returns,
+     * and the tasks finish after that.
+     */
+    private static void awaitCount(long expected, LongSupplier counter) throws InterruptedException {
+        for (int i = 0; i < 100 && counter.getAsLong() != expected; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, counter.getAsLong());
+    }
+
+    private static Circuit shortCircuit() {
+        return new Circuit(CircuitNode.mk(NodeType.OR,
+                CircuitNode.mk(true, Duration.ofMillis(20)),
+                CircuitNode.mk(NodeType.NOT, CircuitNode.mk(true, Duration.ofSeconds(10)))));
+    }
+
+    @Test
+    public void testShortCircuit() throws InterruptedException {
+        ParallelCircuitSolver solver = new ParallelCircuitSolver();
+        SolverMetrics metrics = solver.getMetrics();
+        try {
+            assertTrue(solver.solve(shortCircuit()).getValue());
+            awaitCount(1, metrics::getSolvesCompleted);
+            assertEquals(1, metrics.getSolvesStarted());
+            assertEquals(0, metrics.getSolvesCancelled());
+
+            // the slow leaf is interrupted, so its value is never known
+            awaitCount(0, metrics::getLiveTasks);
+            assertEquals(1, metrics.getLeavesEvaluated());
+            assertTrue(metrics.getCancellations() >= 1);
+            assertTrue(metrics.getTasksSubmitted() >= 4);
+            assertEquals(0, metrics.getQueuedTasks());
+            assertTrue(metrics.getPeakLiveTasks() >= 2);
+
+            long[] histogram = metrics.getSolveLatencyHistogram();
+            assertEquals(1, Arrays.stream(histogram).sum());
+            long max = metrics.getSolveLatencyMaxNanos();
+            assertTrue(max >= Duration.ofMillis(20).toNanos());
+            assertTrue(max < Duration.ofSeconds(10).toNanos());
+            assertEquals(max, metrics.getSolveLatencyMedianNanos());
+            assertEquals(max, metrics.getSolveLatencyP99Nanos());
+        } finally {
+            solver.stop();
+        }
+    }
+
+    @Test
+    public void testCompiledSkippedLeaves() throws InterruptedException {
+        ParallelCircuitSolver solver = new ParallelCircuitSolver();
+        SolverMetrics metrics = solver.getMetrics();
+        try {
+            CompiledCircuit compiled = CircuitCompiler.compile(new Circuit(CircuitNode.mk(NodeType.AND,
+                    CircuitNode.mk(false, Duration.ofMillis(10)),
+                    CircuitNode.mk(true, Duration.ofSeconds(10)),
+                    CircuitNode.mk(true, Duration.ofSeconds(10)))));
+            for (int i = 1; i <= 3; i++) {
+                assertFalse(solver.solve(compiled).getValue());
+                awaitCount(i, metrics::getSolvesCompleted);
+            }
+            // every leaf is either evaluated or skipped, once all the leaves of the solves are done
+            awaitCount(3 * 3, () -> metrics.getLeavesEvaluated() + metrics.getLeavesSkipped());
+            assertTrue(metrics.getLeavesEvaluated() >= 3);
+            assertTrue(metrics.getNodesEvaluated() >= 3);
+        } finally {
+            solver.stop();
+        }
+    }
+
+    @Test
+    public void testReset() throws InterruptedException {
+        ParallelCircuitSolver solver = new ParallelCircuitSolver();
+        SolverMetrics metrics = solver.getMetrics();
+        try {
+            assertTrue(solver.solve(new Circuit(CircuitNode.mk(true))).getValue());
+            awaitCount(1, metrics::getSolvesCompleted);
+            metrics.reset();
+            assertEquals(0, metrics.getSolvesCompleted());
+            assertEquals(0, metrics.getSolveLatencyMaxNanos());
+            assertEquals(0, metrics.getSolveLatencyMedianNanos());
+            assertThrows(IllegalArgumentException.class, () -> metrics.getSolveLatencyPercentileNanos(1.5));
+        } finally {
+            solver.stop();
+        }
+    }
+
+    @Test
+    public void testCancelledSolve() throws InterruptedException {
+        ParallelCircuitSolver solver = new ParallelCircuitSolver();
+        SolverMetrics metrics = solver.getMetrics();
+        CircuitValue value = solver.solve(new Circuit(CircuitNode.mk(true, Duration.ofSeconds(10))));
+        solver.stop();
+        assertThrows(InterruptedException.class, value::getValue);
+        awaitCount(1, metrics::getSolvesCancelled);
+        assertEquals(0, metrics.getSolvesCompleted());
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        ParallelCircuitSolver solver = new ParallelCircuitSolver();
+        SolverMetrics metrics = solver.getMetrics();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.register("jmx-test");
+        try {
+            assertEquals(name, metrics.getObjectName());
+            assertTrue(server.isRegistered(name));
+            assertThrows(IllegalStateException.class, () -> metrics.register("jmx-test"));
+            assertThrows(IllegalStateException.class, () -> new ParallelCircuitSolver().getMetrics().register("jmx-test"));
+
+            assertTrue(solver.solve(shortCircuit()).getValue());
+            awaitCount(1, metrics::getSolvesCompleted);
+            assertEquals(1L, server.getAttribute(name, "SolvesCompleted"));
+            assertEquals(1L, server.getAttribute(name, "LeavesEvaluated"));
+            assertEquals(Long.SIZE, ((long[]) server.getAttribute(name, "SolveLatencyHistogram")).length);
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "SolvesCompleted"));
+        } finally {
+            solver.stop();
+        }
+        assertFalse(server.isRegistered(name));
+        assertNull(metrics.getObjectName());
+    }
+
+    @Test
+    public void testEventDriven() throws InterruptedException {
+        EventDrivenCircuitSolver solver = new EventDrivenCircuitSolver();
+        SolverMetrics metrics = solver.getMetrics();
+        try {
+            assertTrue(solver.solve(shortCircuit()).getValue());
+            awaitCount(1, metrics::getSolvesCompleted);
+            assertEquals(1, metrics.getLeavesEvaluated());
+            assertTrue(metrics.getNodesEvaluated() >= 2);
+            assertTrue(metrics.getCancellations() >= 1);
+        } finally {
+            solver.stop();
+        }
+    }
+
+    @Test
+    public void testForkJoin() throws InterruptedException {
+        ForkJoinCircuitSolver solver = new ForkJoinCircuitSolver(0);
+        SolverMetrics metrics = solver.getMetrics();
+        try {
+            assertTrue(solver.solve(shortCircuit()).getValue());
+            awaitCount(1, metrics::getSolvesCompleted);
+            assertTrue(metrics.getLeavesEvaluated() >= 1);
+            assertTrue(metrics.getNodesEvaluated() >= 2);
+            assertTrue(metrics.getTasksSubmitted() >= 2);
+        } finally {
+            solver.stop();
+        }
+    }
+}
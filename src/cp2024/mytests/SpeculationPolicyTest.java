@@ -0,0 +1,89 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.maxtests.TestUtils.LeafNodeInterruptsCount;
+import cp2024.solution.ParallelCircuitSolver;
+import cp2024.solution.ParallelSolverOptions;
+import cp2024.solution.SpeculationPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpeculationPolicyTest {
+    private static boolean solve(SpeculationPolicy policy, Circuit c) throws InterruptedException {
+        ParallelCircuitSolver solver = new ParallelCircuitSolver(ParallelSolverOptions.DEFAULT.withSpeculationPolicy(policy));
+        try {
+            return solver.solve(c).getValue();
+        } finally {
+            solver.stop();
+        }
+    }
+
+    @Test
+    public void testEagerStartsBothBranches() throws InterruptedException {
+        LeafNodeInterruptsCount ifTrue = new LeafNodeInterruptsCount(true, Duration.ofMillis(300));
+        LeafNodeInterruptsCount ifFalse = new LeafNodeInterruptsCount(false, Duration.ofSeconds(10));
+        Circuit c = new Circuit(CircuitNode.mk(NodeType.IF, CircuitNode.mk(true, Duration.ofMillis(100)), ifTrue, ifFalse));
+
+        long start = System.currentTimeMillis();
+        assertTrue(solve(SpeculationPolicy.EAGER, c));
+        // the branch ran together with the condition
+        assertTrue(System.currentTimeMillis() - start < 390);
+        Thread.sleep(50);
+        assertEquals(1, ifFalse.getCalled());
+        assertEquals(1, ifFalse.getCountInterrupts());
+    }
+
+    @Test
+    public void testConditionFirstStartsOnlyTheChosenBranch() throws InterruptedException {
+        LeafNodeInterruptsCount ifTrue = new LeafNodeInterruptsCount(true, Duration.ofMillis(100));
+        LeafNodeInterruptsCount ifFalse = new LeafNodeInterruptsCount(false, Duration.ofSeconds(10));
+        Circuit c = new Circuit(CircuitNode.mk(NodeType.IF, CircuitNode.mk(true, Duration.ofMillis(100)), ifTrue, ifFalse));
+
+        long start = System.currentTimeMillis();
+        assertTrue(solve(SpeculationPolicy.CONDITION_FIRST, c));
+        assertTrue(System.currentTimeMillis() - start >= 200);
+        assertEquals(1, ifTrue.getCalled());
+        assertEquals(0, ifFalse.getCalled());
+    }
+
+    @Test
+    public void testLoadAwareSpeculatesOnlyWhenIdle() throws InterruptedException {
+        LeafNodeInterruptsCount ifFalse = new LeafNodeInterruptsCount(false, Duration.ofMillis(100));
+        Circuit c = new Circuit(CircuitNode.mk(NodeType.IF, CircuitNode.mk(true, Duration.ofMillis(50)),
+                CircuitNode.mk(true, Duration.ofMillis(50)), ifFalse));
+        assertTrue(solve(SpeculationPolicy.loadAware(0), c));
+        assertEquals(0, ifFalse.getCalled());
+        assertTrue(solve(SpeculationPolicy.loadAware(1_000), c));
+        assertEquals(1, ifFalse.getCalled());
+
+        // a leaf of another computation of the same solver is busy by the time the IF decides
+        ParallelCircuitSolver solver = new ParallelCircuitSolver(
+                ParallelSolverOptions.DEFAULT.withSpeculationPolicy(SpeculationPolicy.loadAware(1)));
+        try {
+            CircuitValue busy = solver.solve(new Circuit(CircuitNode.mk(true, Duration.ofMillis(300))));
+            Thread.sleep(50);
+            assertTrue(solver.solve(c).getValue());
+            assertEquals(1, ifFalse.getCalled());
+            assertTrue(busy.getValue());
+        } finally {
+            solver.stop();
+        }
+    }
+
+    @Test
+    public void testEqualBranchesShortcutCanBeDisabled() throws InterruptedException {
+        Circuit c = new Circuit(CircuitNode.mk(NodeType.IF, CircuitNode.mk(false, Duration.ofMillis(400)),
+                CircuitNode.mk(true, Duration.ofMillis(10)), CircuitNode.mk(true, Duration.ofMillis(10))));
+
+        long start = System.currentTimeMillis();
+        assertTrue(solve(SpeculationPolicy.EAGER, c));
+        assertTrue(System.currentTimeMillis() - start < 300);
+
+        start = System.currentTimeMillis();
+        assertTrue(solve(SpeculationPolicy.withoutEqualBranchesShortcut(SpeculationPolicy.EAGER), c));
+        assertTrue(System.currentTimeMillis() - start >= 400);
+    }
+}
@@ -0,0 +1,161 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.demo.SequentialSolver;
+import cp2024.solution.ExecutionMode;
+import cp2024.solution.ParallelCircuitSolver;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubcircuitCacheTest {
+    /**
+     * A leaf that counts its evaluations, deterministic only if given a key.
+     */
+    private static class CountingLeaf extends LeafNode {
+        private final boolean value;
+        private final Object key;
+        private final AtomicInteger called;
+
+        CountingLeaf(boolean value, Object key, AtomicInteger called) {
+            this.value = value;
+            this.key = key;
+            this.called = called;
+        }
+
+        @Override
+        public Object getDeterministicKey() {
+            return key;
+        }
+
+        @Override
+        public boolean getValue() {
+            called.incrementAndGet();
+            return value;
+        }
+    }
+
+    private static CircuitNode deterministicLeaf(boolean value, Duration delay) {
+        return new SleepyLeafNode(value, delay, true);
+    }
+
+    /**
+     * A fresh copy of the same slow, deterministic circuit.
+     */
+    private static Circuit slowCircuit() {
+        return new Circuit(CircuitNode.mk(NodeType.GT, 1,
+                deterministicLeaf(true, Duration.ofMillis(200)),
+                CircuitNode.mk(NodeType.NOT, deterministicLeaf(false, Duration.ofMillis(200))),
+                deterministicLeaf(false, Duration.ofMillis(200))
+        ));
+    }
+
+    @Test
+    public void testSequentialSolverReusesIdenticalSubcircuits() throws InterruptedException {
+        SubcircuitCache cache = new SubcircuitCache(100);
+        SequentialSolver solver = new SequentialSolver(cache);
+
+        assertTrue(solver.solve(slowCircuit()).getValue());
+        // the leaves are keyed by their values, so the second false leaf is already known
+        assertEquals(1, cache.getHits());
+        assertEquals(4, cache.getMisses());
+        long start = System.currentTimeMillis();
+        assertTrue(solver.solve(slowCircuit()).getValue());
+        assertTrue(System.currentTimeMillis() - start < 100);
+        // only the root is looked up
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testParallelSolverReusesIdenticalSubcircuits() throws InterruptedException {
+        SubcircuitCache cache = new SubcircuitCache(100);
+        ParallelCircuitSolver solver = new ParallelCircuitSolver(ExecutionMode.CACHED_THREAD_POOL, cache);
+        try {
+            assertTrue(solver.solve(slowCircuit()).getValue());
+            long start = System.currentTimeMillis();
+            assertTrue(solver.solve(slowCircuit()).getValue());
+            assertTrue(System.currentTimeMillis() - start < 100);
+            assertTrue(cache.getHits() >= 1);
+        } finally {
+            solver.stop();
+        }
+    }
+
+    @Test
+    public void testNondeterministicLeavesAreNotCached() throws InterruptedException {
+        SubcircuitCache cache = new SubcircuitCache(100);
+        SequentialSolver solver = new SequentialSolver(cache);
+        AtomicInteger called = new AtomicInteger();
+        AtomicInteger deterministicCalled = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            Circuit c = new Circuit(CircuitNode.mk(NodeType.AND,
+                    new CountingLeaf(true, "t", deterministicCalled),
+                    new CountingLeaf(true, null, called)));
+            assertTrue(solver.solve(c).getValue());
+        }
+
+        assertEquals(3, called.get());
+        assertEquals(1, deterministicCalled.get());
+        // only the deterministic leaf is looked up
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testSleepyLeavesAreNotCachedUnlessDeterministic() throws InterruptedException {
+        SubcircuitCache cache = new SubcircuitCache(100);
+        SequentialSolver solver = new SequentialSolver(cache);
+
+        assertTrue(solver.solve(new Circuit(CircuitNode.mk(true, Duration.ofMillis(10)))).getValue());
+        assertTrue(solver.solve(new Circuit(CircuitNode.mk(true, Duration.ofMillis(10)))).getValue());
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.size());
+
+        assertTrue(solver.solve(new Circuit(deterministicLeaf(true, Duration.ofMillis(10)))).getValue());
+        assertTrue(solver.solve(new Circuit(deterministicLeaf(true, Duration.ofMillis(10)))).getValue());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testStructureIsPartOfTheKey() throws InterruptedException {
+        SequentialSolver solver = new SequentialSolver(new SubcircuitCache(100));
+        AtomicInteger called = new AtomicInteger();
+        CircuitNode[] leaves = {
+                new CountingLeaf(true, 1, called),
+                new CountingLeaf(true, 1, called),
+                new CountingLeaf(false, 0, called)
+        };
+
+        assertTrue(solver.solve(new Circuit(CircuitNode.mk(NodeType.GT, 1, leaves))).getValue());
+        assertFalse(solver.solve(new Circuit(CircuitNode.mk(NodeType.GT, 2, leaves))).getValue());
+        assertTrue(solver.solve(new Circuit(CircuitNode.mk(NodeType.LT, 3, leaves))).getValue());
+        assertFalse(solver.solve(new Circuit(CircuitNode.mk(NodeType.AND, leaves))).getValue());
+        assertTrue(solver.solve(new Circuit(CircuitNode.mk(NodeType.OR, leaves))).getValue());
+        // an equal key, so the first leaf answers for the second one
+        assertEquals(2, called.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws InterruptedException {
+        SubcircuitCache cache = new SubcircuitCache(2);
+        SequentialSolver solver = new SequentialSolver(cache);
+        AtomicInteger called = new AtomicInteger();
+
+        // the leaf and the NOT node
+        assertFalse(solver.solve(new Circuit(CircuitNode.mk(NodeType.NOT, new CountingLeaf(true, "a", called)))).getValue());
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.getEvictions());
+        // a new leaf evicts the leaf "a", which was used before the NOT node
+        assertTrue(solver.solve(new Circuit(new CountingLeaf(true, "b", called))).getValue());
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+        assertFalse(solver.solve(new Circuit(CircuitNode.mk(NodeType.NOT, new CountingLeaf(true, "a", called)))).getValue());
+        assertTrue(solver.solve(new Circuit(new CountingLeaf(true, "a", called))).getValue());
+        assertEquals(3, called.get());
+    }
+}
@@ -0,0 +1,79 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.solution.BatchBackend;
+import cp2024.solution.BatchEvaluator;
+import cp2024.solution.LeafAssignments;
+
+import java.util.Random;
+
+/**
+ * Compares the {@link BatchBackend}s on single wide AND, OR and GT nodes, with fan-in from 2 to 4096.
+ * Build with the <code>vector</code> profile and run with <code>--add-modules jdk.incubator.vector</code>,
+ * otherwise only the scalar backend is measured.
+ * By default with 64 assignments, the single word that batches usually hold, which doesn't fill a vector,
+ * see {@link BatchBackend#getMinimumAssignments()}.
+ * Usage: <code>VectorBatchBenchmark [assignments]</code>
+ */
+public class VectorBatchBenchmark {
+    private static final int DEFAULT_ASSIGNMENTS = 64;
+    private static final int[] FAN_INS = {2, 4, 8, 16, 64, 256, 1024, 4096};
+    private static final long TARGET_NANOS_PER_MEASUREMENT = 200_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int assignmentCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ASSIGNMENTS;
+        System.out.println("vector backend available: " + BatchBackend.VECTOR.isAvailable()
+                + (BatchBackend.VECTOR.isAvailable()
+                ? ", fills its vectors from " + BatchBackend.VECTOR.getMinimumAssignments() + " assignments" : ""));
+
+        for (int fanIn : FAN_INS) {
+            Random random = new Random(fanIn);
+            LeafNode[] leaves = new LeafNode[fanIn];
+            LeafAssignments assignments = new LeafAssignments(assignmentCount);
+            for (int i = 0; i < fanIn; i++) {
+                leaves[i] = (LeafNode) CircuitNode.mk(false);
+                for (int a = 0; a < assignmentCount; a++) {
+                    assignments.set(leaves[i], a, random.nextBoolean());
+                }
+            }
+
+            for (NodeType type : new NodeType[]{NodeType.AND, NodeType.OR, NodeType.GT}) {
+                CircuitNode node = type == NodeType.GT
+                        ? CircuitNode.mk(type, fanIn / 2, leaves)
+                        : CircuitNode.mk(type, leaves);
+                CompiledCircuit compiled = CircuitCompiler.compile(new Circuit(node));
+                StringBuilder line = new StringBuilder(type + " fan-in " + fanIn + ":");
+                for (BatchBackend backend : BatchBackend.values()) {
+                    if (backend.isAvailable()) {
+                        line.append(" ").append(backend).append(" ")
+                                .append(nanosPerEvaluation(compiled, assignments, backend)).append(" ns");
+                    }
+                }
+                System.out.println(line);
+            }
+        }
+    }
+
+    /**
+     * Repeats the evaluation for a while, after a warmup of the same length, and returns the mean time.
+     */
+    private static long nanosPerEvaluation(CompiledCircuit compiled, LeafAssignments assignments,
+                                           BatchBackend backend) throws InterruptedException {
+        long checksum = 0;
+        long result = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            long repetitions = 0;
+            while (System.nanoTime() - start < TARGET_NANOS_PER_MEASUREMENT) {
+                checksum += BatchEvaluator.evaluateBatch(compiled, assignments, backend)[0];
+                repetitions++;
+            }
+            result = (System.nanoTime() - start) / repetitions;
+        }
+        if (checksum == 42) {
+            // keeps the evaluations from being optimised away
+            System.out.print("");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,158 @@
+package cp2024.mytests;
+
+import cp2024.circuit.*;
+import cp2024.demo.SequentialSolver;
+import cp2024.maxtests.CircuitGenerator.CorpusCircuitGenerator;
+import cp2024.maxtests.CircuitGenerator.LatencyDistribution;
+import cp2024.maxtests.CircuitGenerator.WorkloadCorpus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorkloadCorpusTest {
+    // immediate leaves, so that solving the corpora takes no time
+    private static final WorkloadCorpus.Spec SPEC = WorkloadCorpus.Spec.of("test", 1, 7)
+            .withCircuits(20)
+            .withLatency(LatencyDistribution.constant(Duration.ZERO));
+
+    @TempDir
+    Path directory;
+
+    private static String contents(WorkloadCorpus corpus, Path file) throws IOException {
+        corpus.save(file);
+        return Files.readString(file);
+    }
+
+    @Test
+    public void testSameSeedSameCorpus() throws IOException {
+        String first = contents(WorkloadCorpus.generate(SPEC), directory.resolve("first"));
+        String second = contents(WorkloadCorpus.generate(SPEC), directory.resolve("second"));
+        assertEquals(first, second);
+
+        WorkloadCorpus.Spec otherSeed = WorkloadCorpus.Spec.of("test", 1, 8)
+                .withCircuits(20)
+                .withLatency(LatencyDistribution.constant(Duration.ZERO));
+        assertNotEquals(first, contents(WorkloadCorpus.generate(otherSeed), directory.resolve("third")));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException, InterruptedException {
+        WorkloadCorpus generated = WorkloadCorpus.loadOrGenerate(directory, SPEC);
+        Path file = directory.resolve("test-v1.corpus");
+        assertTrue(Files.exists(file));
+        assertEquals(SPEC.getFileName(), file.getFileName().toString());
+
+        WorkloadCorpus loaded = WorkloadCorpus.loadOrGenerate(directory, SPEC);
+        assertEquals(generated.getHeader(), loaded.getHeader());
+        assertEquals(Files.readString(file), contents(loaded, directory.resolve("copy")));
+
+        SequentialSolver solver = new SequentialSolver();
+        for (int i = 0; i < generated.getCircuits().size(); i++) {
+            assertEquals(solver.solve(generated.getCircuits().get(i)).getValue(),
+                    solver.solve(loaded.getCircuits().get(i)).getValue());
+        }
+    }
+
+    @Test
+    public void testChangedSpecNeedsNewVersion() throws IOException {
+        WorkloadCorpus.loadOrGenerate(directory, SPEC);
+        assertThrows(IllegalStateException.class,
+                () -> WorkloadCorpus.loadOrGenerate(directory, SPEC.withTrueProbability(0.9)));
+        WorkloadCorpus.Spec bumped = WorkloadCorpus.Spec.of("test", 2, 7)
+                .withCircuits(20)
+                .withLatency(LatencyDistribution.constant(Duration.ZERO))
+                .withTrueProbability(0.9);
+        assertEquals(20, WorkloadCorpus.loadOrGenerate(directory, bumped).getCircuits().size());
+    }
+
+    @Test
+    public void testStandardCorporaAreCommitted() throws IOException {
+        for (WorkloadCorpus.Spec spec : WorkloadCorpus.STANDARD) {
+            assertTrue(Files.exists(WorkloadCorpus.directory().resolve(spec.getFileName())), spec.getFileName());
+            // fails if the spec changed without a new version
+            assertEquals(100, WorkloadCorpus.loadStandard(spec.getName()).getCircuits().size());
+        }
+        assertThrows(IllegalArgumentException.class, () -> WorkloadCorpus.loadStandard("missing"));
+    }
+
+    @Test
+    public void testFormat() throws IOException, InterruptedException {
+        Path file = directory.resolve("hand-written.corpus");
+        Files.write(file, List.of("# circuit corpus, format 1", "name=hand-written", "",
+                "AND(T12,GT1(F0,T3,NOT(F7)))", "IF(T0,LT2(T1,T1),F0)"));
+        WorkloadCorpus corpus = WorkloadCorpus.load(file);
+        assertEquals(2, corpus.getCircuits().size());
+        CircuitNode and = corpus.getCircuits().get(0).getRoot();
+        assertEquals(NodeType.AND, and.getType());
+        assertEquals(Duration.ofMillis(12), ((SleepyLeafNode) and.getArgs()[0]).getDelay());
+        assertEquals(1, ((ThresholdNode) and.getArgs()[1]).getThreshold());
+        assertTrue(new SequentialSolver().solve(corpus.getCircuits().get(0)).getValue());
+        assertFalse(new SequentialSolver().solve(corpus.getCircuits().get(1)).getValue());
+
+        Files.write(file, List.of("# circuit corpus, format 1", "", "AND(T1,"));
+        assertThrows(IllegalArgumentException.class, () -> WorkloadCorpus.load(file));
+        Files.write(file, List.of("# circuit corpus, format 0", "", "T1"));
+        assertThrows(IllegalArgumentException.class, () -> WorkloadCorpus.load(file));
+    }
+
+    @Test
+    public void testLatencyDistributions() {
+        Random random = new Random(1);
+        assertEquals(Duration.ofMillis(3), LatencyDistribution.constant(Duration.ofMillis(3)).sample(random));
+
+        List<Long> logNormal = new ArrayList<>();
+        LatencyDistribution distribution = LatencyDistribution.logNormal(Duration.ofMillis(100), 0.5);
+        for (int i = 0; i < 10_001; i++) {
+            logNormal.add(distribution.sample(random).toMillis());
+        }
+        Collections.sort(logNormal);
+        assertEquals(100, logNormal.get(5_000), 5);
+
+        LatencyDistribution heavyTailed = LatencyDistribution.heavyTailed(Duration.ofMillis(1), 1.0,
+                Duration.ofMillis(1_000));
+        long max = 0;
+        int atLeastTen = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long millis = heavyTailed.sample(random).toMillis();
+            assertTrue(millis >= 1 && millis <= 1_000);
+            max = Math.max(max, millis);
+            if (millis >= 10) {
+                atLeastTen++;
+            }
+        }
+        // P(X >= 10 min) = 1/10 for alpha 1
+        assertEquals(1_000, atLeastTen, 150);
+        assertEquals(1_000, max);
+    }
+
+    @Test
+    public void testTruthSkew() throws InterruptedException {
+        CorpusCircuitGenerator generator = new CorpusCircuitGenerator(new Random(3), 5,
+                CorpusCircuitGenerator.Shape.BALANCED, 4, LatencyDistribution.constant(Duration.ZERO), 0.9);
+        int leaves = 0;
+        int trueLeaves = 0;
+        for (int i = 0; i < 50; i++) {
+            List<CircuitNode> stack = new ArrayList<>(List.of(generator.generateCircuit().getCircuit().getRoot()));
+            while (!stack.isEmpty()) {
+                CircuitNode node = stack.remove(stack.size() - 1);
+                if (node.getType() == NodeType.LEAF) {
+                    leaves++;
+                    trueLeaves += ((SleepyLeafNode) node).peekValue() ? 1 : 0;
+                } else {
+                    stack.addAll(List.of(node.getArgs()));
+                }
+            }
+        }
+        assertEquals(0.9, (double) trueLeaves / leaves, 0.05);
+    }
+}
@@ -0,0 +1,313 @@
+package cp2024.solution;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Enforces the {@link AdmissionLimits} of a single {@link ParallelCircuitSolver}, and exposes gauges of its load.
+ */
+public final class AdmissionController {
+    /**
+     * A circuit waiting for its turn.
+     */
+    private static final class Pending {
+        final Runnable start;
+        final Runnable abort;
+        final CompletionStage<?> finished;
+
+        Pending(Runnable start, Runnable abort, CompletionStage<?> finished) {
+            this.start = start;
+            this.abort = abort;
+            this.finished = finished;
+        }
+    }
+
+    private final AdmissionLimits limits;
+
+    /**
+     * <code>null</code> if unlimited.
+     */
+    private final Semaphore solvePermits;
+    private final Semaphore leafPermits;
+    private final Semaphore nodePermits;
+
+    /**
+     * The circuits queued by the QUEUE policy. A permit is handed over from a finished circuit to the first one
+     * without being released, so the queue and the permits are updated together, guarded by the queue.
+     */
+    private final Queue<Pending> queue;
+
+    /**
+     * The leaves waiting for a permit, executed by the leaves that hand their permits over, so that they don't
+     * take a thread each while waiting. Guarded by itself, like <code>queue</code>.
+     */
+    private final Queue<PendingLeaf> leafQueue;
+
+    /**
+     * The task of a leaf, which tells whether the leaf is still needed, so that a queued leaf that no longer is
+     * gets dropped by the thread that dequeues it instead of taking a thread of the pool.
+     */
+    interface LeafTask extends Runnable {
+        boolean isCancelled();
+    }
+
+    /**
+     * A leaf waiting for its turn.
+     */
+    private static final class PendingLeaf {
+        final Executor pool;
+        final LeafTask task;
+        final Runnable dropped;
+
+        PendingLeaf(Executor pool, LeafTask task, Runnable dropped) {
+            this.pool = pool;
+            this.task = task;
+            this.dropped = dropped;
+        }
+    }
+
+    AdmissionController(AdmissionLimits limits) {
+        this.limits = limits;
+        this.solvePermits = limits.getMaxConcurrentSolves() > 0 ? new Semaphore(limits.getMaxConcurrentSolves(), true) : null;
+        this.leafPermits = limits.getMaxConcurrentLeaves() > 0 ? new Semaphore(limits.getMaxConcurrentLeaves(), true) : null;
+        this.nodePermits = limits.getMaxConcurrentNodes() > 0 ? new Semaphore(limits.getMaxConcurrentNodes()) : null;
+        this.queue = new ArrayDeque<>();
+        this.leafQueue = new ArrayDeque<>();
+    }
+
+    public AdmissionLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * @return the number of circuits that can still be admitted right away, or <code>-1</code> if unlimited
+     */
+    public int getAvailableSolvePermits() {
+        return solvePermits == null ? -1 : solvePermits.availablePermits();
+    }
+
+    /**
+     * @return the number of leaves that can still start being evaluated right away, or <code>-1</code> if unlimited
+     */
+    public int getAvailableLeafPermits() {
+        return leafPermits == null ? -1 : leafPermits.availablePermits();
+    }
+
+    /**
+     * @return the number of nodes that can still be computed on threads of their own, or <code>-1</code> if unlimited
+     */
+    public int getAvailableNodePermits() {
+        return nodePermits == null ? -1 : nodePermits.availablePermits();
+    }
+
+    /**
+     * @return the number of leaves waiting for their turn
+     */
+    public int getLeafQueueDepth() {
+        synchronized (leafQueue) {
+            return leafQueue.size();
+        }
+    }
+
+    /**
+     * @return the number of circuits waiting for their turn, either queued or blocking their callers
+     */
+    public int getQueueDepth() {
+        int blocked = solvePermits == null ? 0 : solvePermits.getQueueLength();
+        synchronized (queue) {
+            return queue.size() + blocked;
+        }
+    }
+
+    /**
+     * Starts the circuit as soon as the limits allow. Its permit is released once it's finished.
+     *
+     * @param start    starts the computation of the circuit, on the calling thread or later on another one
+     * @param abort    cancels the computation of a circuit that was queued, but never started
+     * @param finished completed once the started computation is finished, in any way
+     * @throws InterruptedException       if the BLOCK policy was interrupted while waiting, then nothing was admitted
+     * @throws RejectedExecutionException if the FAIL_FAST policy found no room, then nothing was admitted
+     */
+    void admit(Runnable start, Runnable abort, CompletionStage<?> finished) throws InterruptedException {
+        if (solvePermits == null) {
+            start.run();
+            return;
+        }
+        Pending pending = new Pending(start, abort, finished);
+        switch (limits.getOverflowPolicy()) {
+            case BLOCK -> solvePermits.acquire();
+            case FAIL_FAST -> {
+                if (!solvePermits.tryAcquire()) {
+                    throw new RejectedExecutionException("Too many circuits are being solved at once.");
+                }
+            }
+            case QUEUE -> {
+                synchronized (queue) {
+                    if (!solvePermits.tryAcquire()) {
+                        queue.add(pending);
+                        // a circuit cancelled while queued doesn't wait for its turn to be aborted
+                        finished.whenComplete((result, exception) -> dequeue(pending));
+                        return;
+                    }
+                }
+            }
+        }
+        begin(pending);
+    }
+
+    /**
+     * Starts a circuit that holds a permit.
+     */
+    private void begin(Pending pending) {
+        pending.finished.whenComplete((result, exception) -> release());
+        pending.start.run();
+    }
+
+    /**
+     * Hands the permit of a finished circuit over to the next one.
+     */
+    private void release() {
+        Pending next;
+        synchronized (queue) {
+            next = queue.poll();
+            if (next == null) {
+                solvePermits.release();
+                return;
+            }
+        }
+        begin(next);
+    }
+
+    /**
+     * Aborts the circuit if it's still queued.
+     */
+    private void dequeue(Pending pending) {
+        boolean removed;
+        synchronized (queue) {
+            removed = queue.remove(pending);
+        }
+        if (removed) {
+            pending.abort.run();
+        }
+    }
+
+    /**
+     * Aborts all the queued circuits, which don't hold permits, and drops the queued leaves.
+     */
+    void abortQueued() {
+        List<Pending> aborted;
+        synchronized (queue) {
+            aborted = new ArrayList<>(queue);
+            queue.clear();
+        }
+        for (Pending pending : aborted) {
+            pending.abort.run();
+        }
+        List<PendingLeaf> dropped;
+        synchronized (leafQueue) {
+            dropped = new ArrayList<>(leafQueue);
+            leafQueue.clear();
+        }
+        for (PendingLeaf leaf : dropped) {
+            leaf.dropped.run();
+        }
+    }
+
+    /**
+     * Executes the task of a leaf on the pool as soon as the leaf limit allows. A leaf that has to wait is queued
+     * without holding a thread, and is executed by the leaf that hands its permit over once it returns.
+     * A task cancelled while queued is never executed.
+     *
+     * @param dropped run instead of the task if it was cancelled while queued, or if the pool rejects it once it was
+     *                queued
+     * @throws RejectedExecutionException if the pool rejected the task right away, then no permit is held
+     */
+    void executeLeaf(Executor pool, LeafTask task, Runnable dropped) {
+        if (leafPermits == null) {
+            pool.execute(task);
+            return;
+        }
+        PendingLeaf leaf = new PendingLeaf(pool, task, dropped);
+        synchronized (leafQueue) {
+            if (!leafPermits.tryAcquire()) {
+                leafQueue.add(leaf);
+                return;
+            }
+        }
+        try {
+            pool.execute(() -> runLeaf(leaf));
+        } catch (RejectedExecutionException e) {
+            releaseLeaf();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes a permit for a node that is to wait for its children on a thread of its own. Never waits, since a node
+     * without a permit is computed on the thread of its parent instead.
+     *
+     * @return whether there was a permit, which is then released by a task wrapped with <code>releasingNode</code>
+     */
+    boolean tryAcquireNode() {
+        return nodePermits == null || nodePermits.tryAcquire();
+    }
+
+    /**
+     * @param action run by the task of a node that holds a permit, or <code>null</code>
+     * @return the action followed by the release of the permit
+     */
+    Runnable releasingNode(Runnable action) {
+        if (nodePermits == null) {
+            return action;
+        }
+        return () -> {
+            try {
+                if (action != null) {
+                    action.run();
+                }
+            } finally {
+                nodePermits.release();
+            }
+        };
+    }
+
+    private void runLeaf(PendingLeaf leaf) {
+        try {
+            leaf.task.run();
+        } finally {
+            releaseLeaf();
+        }
+    }
+
+    /**
+     * Hands the permit of a finished leaf over to the next queued one that is still needed.
+     */
+    private void releaseLeaf() {
+        while (true) {
+            PendingLeaf next;
+            synchronized (leafQueue) {
+                next = leafQueue.poll();
+                if (next == null) {
+                    leafPermits.release();
+                    return;
+                }
+            }
+            if (next.task.isCancelled()) {
+                next.dropped.run();
+                continue;
+            }
+            try {
+                next.pool.execute(() -> runLeaf(next));
+                return;
+            } catch (RejectedExecutionException e) {
+                next.dropped.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package cp2024.solution;
+
+/**
+ * The limits a {@link ParallelCircuitSolver} puts on its load. Immutable, every <code>with</code> method returns a copy.
+ * A limit of zero or less means no limit.
+ * <p>
+ * The pool of the solver can't be capped directly without deadlocking the parents against their children,
+ * since a node of a circuit that isn't compiled waits for its children on a thread of its own. The threads
+ * are bounded by the limits instead: a leaf over the leaf limit is queued without a thread until another leaf
+ * returns, and a node over the node limit is computed on the thread of its parent instead of taking one.
+ * With all three limits set, the solver takes at most <code>maxConcurrentSolves + maxConcurrentNodes +
+ * maxConcurrentLeaves</code> threads, one per admitted root, node and leaf. The compiled circuits don't wait on
+ * their threads, so they take at most one thread per admitted circuit, while it starts, and one per leaf.
+ */
+public final class AdmissionLimits {
+    /**
+     * What <code>solve()</code> does when the limit of circuits being solved at once is reached.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Waits until another circuit is solved. If interrupted, returns a value that was cancelled.
+         */
+        BLOCK,
+
+        /**
+         * Throws <code>RejectedExecutionException</code>.
+         */
+        FAIL_FAST,
+
+        /**
+         * Returns right away, the circuit starts once the circuits before it leave room for it.
+         */
+        QUEUE
+    }
+
+    public static final AdmissionLimits UNLIMITED = new AdmissionLimits(0, 0, 0, OverflowPolicy.BLOCK);
+
+    private final int maxConcurrentSolves;
+    private final int maxConcurrentLeaves;
+    private final int maxConcurrentNodes;
+    private final OverflowPolicy overflowPolicy;
+
+    private AdmissionLimits(int maxConcurrentSolves, int maxConcurrentLeaves, int maxConcurrentNodes,
+                            OverflowPolicy overflowPolicy) {
+        this.maxConcurrentSolves = maxConcurrentSolves;
+        this.maxConcurrentLeaves = maxConcurrentLeaves;
+        this.maxConcurrentNodes = maxConcurrentNodes;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * @param maxConcurrentSolves the highest number of circuits being solved at once, not counting trivial ones
+     */
+    public AdmissionLimits withMaxConcurrentSolves(int maxConcurrentSolves) {
+        return new AdmissionLimits(maxConcurrentSolves, maxConcurrentLeaves, maxConcurrentNodes, overflowPolicy);
+    }
+
+    /**
+     * @param maxConcurrentLeaves the highest number of leaves being evaluated at once, in all the circuits;
+     *                            the other leaves wait for their turn in a queue, without taking threads
+     */
+    public AdmissionLimits withMaxConcurrentLeaves(int maxConcurrentLeaves) {
+        return new AdmissionLimits(maxConcurrentSolves, maxConcurrentLeaves, maxConcurrentNodes, overflowPolicy);
+    }
+
+    /**
+     * @param maxConcurrentNodes the highest number of nodes other than the roots and the leaves being computed at once
+     *                           on threads of their own, in all the circuits; the other nodes are computed on the
+     *                           threads of their parents, one after another
+     */
+    public AdmissionLimits withMaxConcurrentNodes(int maxConcurrentNodes) {
+        return new AdmissionLimits(maxConcurrentSolves, maxConcurrentLeaves, maxConcurrentNodes, overflowPolicy);
+    }
+
+    public AdmissionLimits withOverflowPolicy(OverflowPolicy overflowPolicy) {
+        return new AdmissionLimits(maxConcurrentSolves, maxConcurrentLeaves, maxConcurrentNodes, overflowPolicy);
+    }
+
+    public int getMaxConcurrentSolves() {
+        return maxConcurrentSolves;
+    }
+
+    public int getMaxConcurrentLeaves() {
+        return maxConcurrentLeaves;
+    }
+
+    public int getMaxConcurrentNodes() {
+        return maxConcurrentNodes;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+}
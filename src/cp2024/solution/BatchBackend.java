@@ -0,0 +1,66 @@
+package cp2024.solution;
+
+/**
+ * Selects how the {@link BatchEvaluator} executes its word-wide operations.
+ */
+public enum BatchBackend {
+    /**
+     * Plain loops over the words.
+     */
+    SCALAR,
+
+    /**
+     * SIMD through the incubating Vector API, several words per instruction.
+     * Only available when built with the <code>vector</code> profile, which compiles the kernel from
+     * <code>src-vector/</code>, and run with <code>--add-modules jdk.incubator.vector</code>.
+     * The lanes run across the words of a row, so only batches of at least {@link #getMinimumAssignments()}
+     * assignments, e.g. 256 with 256-bit vectors, fill a vector. The words of smaller batches, such as the single
+     * word of 64 assignments, are processed one by one, like the scalar backend does, but slower,
+     * so it doesn't speed those up and {@link #best(int)} doesn't pick it for them.
+     */
+    VECTOR;
+
+    private static final BatchKernel SCALAR_KERNEL = new ScalarBatchKernel();
+    private static final BatchKernel VECTOR_KERNEL = loadVectorKernel();
+
+    private static BatchKernel loadVectorKernel() {
+        try {
+            return (BatchKernel) Class.forName("cp2024.solution.VectorBatchKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // the module isn't present
+            return null;
+        }
+    }
+
+    public boolean isAvailable() {
+        return this == SCALAR || VECTOR_KERNEL != null;
+    }
+
+    /**
+     * @return the vector backend if it's available and the batch fills at least one of its vectors,
+     *         the scalar one otherwise
+     */
+    public static BatchBackend best(int assignments) {
+        return VECTOR.isAvailable() && assignments >= VECTOR.getMinimumAssignments() ? VECTOR : SCALAR;
+    }
+
+    /**
+     * @return the number of assignments in a single operation of the backend, 64 per word it processes at once
+     * @throws UnsupportedOperationException if the backend isn't available
+     */
+    public int getMinimumAssignments() {
+        return Long.SIZE * kernel().width();
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the backend isn't available
+     */
+    BatchKernel kernel() {
+        if (!isAvailable()) {
+            throw new UnsupportedOperationException("The " + this + " backend isn't available.");
+        }
+        return this == SCALAR ? SCALAR_KERNEL : VECTOR_KERNEL;
+    }
+}
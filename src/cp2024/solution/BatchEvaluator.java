@@ -0,0 +1,133 @@
+package cp2024.solution;
+
+import cp2024.circuit.Circuit;
+import cp2024.circuit.CircuitCompiler;
+import cp2024.circuit.CompiledCircuit;
+import cp2024.circuit.LeafNode;
+import cp2024.circuit.NodeType;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates a circuit under many leaf assignments at once, 64 of them per <code>long</code>.
+ * AND, OR, NOT and IF are single bitwise operations on whole words, and GT and LT count the true arguments
+ * of every assignment in bit-sliced counters, i.e. bit <code>b</code> of all 64 counts is kept in one word.
+ * The values of a node under all assignments are a row of words, evaluated after the rows of its arguments,
+ * so that a {@link BatchBackend} can process several words of a row per instruction.
+ * Every node is evaluated, there is no short-circuiting.
+ */
+public final class BatchEvaluator {
+    private BatchEvaluator() {
+    }
+
+    /**
+     * Equivalent to compiling the circuit and evaluating the compiled circuit.
+     */
+    public static long[] evaluateBatch(Circuit c, LeafAssignments assignments) throws InterruptedException {
+        return evaluateBatch(CircuitCompiler.compile(c), assignments);
+    }
+
+    /**
+     * Evaluates on the best available backend for the number of assignments.
+     */
+    public static long[] evaluateBatch(CompiledCircuit c, LeafAssignments assignments) throws InterruptedException {
+        return evaluateBatch(c, assignments, BatchBackend.best(assignments.size()));
+    }
+
+    /**
+     * Leaves that weren't assigned are evaluated with <code>getValue()</code>, once,
+     * and the value is used in every assignment.
+     *
+     * @return the values of the circuit, packed like the values of the leaves in {@link LeafAssignments}
+     * @throws InterruptedException          if <code>getValue()</code> of an unassigned leaf was interrupted
+     * @throws UnsupportedOperationException if the backend isn't available
+     */
+    public static long[] evaluateBatch(CompiledCircuit c, LeafAssignments assignments, BatchBackend backend)
+            throws InterruptedException {
+        BatchKernel kernel = backend.kernel();
+        int wordCount = assignments.wordCount();
+        long[][] rows = new long[c.size()][];
+        for (int leaf = 0; leaf < c.getLeafCount(); leaf++) {
+            LeafNode leafNode = c.getLeaf(leaf);
+            rows[leaf] = new long[wordCount];
+            if (assignments.isAssigned(leafNode)) {
+                for (int w = 0; w < wordCount; w++) {
+                    rows[leaf][w] = assignments.word(leafNode, w);
+                }
+            } else if (leafNode.getValue()) {
+                Arrays.fill(rows[leaf], -1L);
+            }
+        }
+
+        // every inner node comes after its arguments
+        for (int node = c.getLeafCount(); node < c.size(); node++) {
+            rows[node] = new long[wordCount];
+            evaluateRow(c, node, rows, kernel);
+        }
+
+        long[] result = rows[c.getRoot()].clone();
+        if (wordCount > 0) {
+            result[wordCount - 1] &= lastWordMask(assignments.size());
+        }
+        return result;
+    }
+
+    /**
+     * @return the mask of the bits of the last word that belong to an assignment
+     */
+    private static long lastWordMask(int size) {
+        int bits = size % Long.SIZE;
+        return bits == 0 ? -1L : (1L << bits) - 1;
+    }
+
+    private static void evaluateRow(CompiledCircuit c, int node, long[][] rows, BatchKernel kernel) {
+        long[] row = rows[node];
+        int argCount = c.getArgCount(node);
+        switch (c.getType(node)) {
+            case AND -> {
+                Arrays.fill(row, -1L);
+                for (int i = 0; i < argCount; i++) {
+                    kernel.and(row, rows[c.getArg(node, i)]);
+                }
+            }
+            case OR -> {
+                for (int i = 0; i < argCount; i++) {
+                    kernel.or(row, rows[c.getArg(node, i)]);
+                }
+            }
+            case NOT -> kernel.not(row, rows[c.getArg(node, 0)]);
+            case IF -> kernel.select(row, rows[c.getArg(node, 0)], rows[c.getArg(node, 1)], rows[c.getArg(node, 2)]);
+            case GT, LT -> evaluateThreshold(c, node, rows, kernel);
+            default -> throw new IllegalStateException("Unexpected value: " + c.getType(node));
+        }
+    }
+
+    /**
+     * Counts the true arguments in bit-sliced counters and compares the counts with the threshold.
+     */
+    private static void evaluateThreshold(CompiledCircuit c, int node, long[][] rows, BatchKernel kernel) {
+        long[] row = rows[node];
+        int argCount = c.getArgCount(node);
+        int threshold = c.getThreshold(node);
+        boolean greaterThan = c.getType(node) == NodeType.GT;
+        // enough bits to count up to argCount
+        int bits = Integer.SIZE - Integer.numberOfLeadingZeros(argCount);
+        if (threshold >= 1 << bits) {
+            // no count can reach the threshold
+            Arrays.fill(row, greaterThan ? 0 : -1L);
+            return;
+        }
+
+        long[][] counter = new long[bits][row.length];
+        for (int i = 0; i < argCount; i++) {
+            kernel.add(counter, rows[c.getArg(node, i)]);
+        }
+        long[] equal = new long[row.length];
+        kernel.compare(counter, threshold, row, equal);
+        if (!greaterThan) {
+            // less than is neither greater nor equal
+            kernel.or(row, equal);
+            kernel.not(row, row);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cp2024.solution;
+
+/**
+ * The word-wide operations of the {@link BatchEvaluator}, on rows holding one word per 64 assignments.
+ * All rows passed to a single call have the same length.
+ */
+interface BatchKernel {
+    /**
+     * @return the number of words of a row processed by a single operation
+     */
+    int width();
+
+    /**
+     * <code>target &= arg</code>, word by word.
+     */
+    void and(long[] target, long[] arg);
+
+    /**
+     * <code>target |= arg</code>, word by word.
+     */
+    void or(long[] target, long[] arg);
+
+    /**
+     * <code>target = ~arg</code>, word by word.
+     */
+    void not(long[] target, long[] arg);
+
+    /**
+     * <code>target = condition ? ifTrue : ifFalse</code>, bit by bit.
+     */
+    void select(long[] target, long[] condition, long[] ifTrue, long[] ifFalse);
+
+    /**
+     * Adds the bits of <code>arg</code> to the bit-sliced counters, where <code>counter[b]</code>
+     * holds bit <code>b</code> of the counts. The counters must be wide enough not to overflow.
+     */
+    void add(long[][] counter, long[] arg);
+
+    /**
+     * Compares the bit-sliced counters with the threshold.
+     *
+     * @param greater set to the bits whose count is greater than the threshold
+     * @param equal   set to the bits whose count is equal to the threshold
+     */
+    void compare(long[][] counter, int threshold, long[] greater, long[] equal);
+}
@@ -0,0 +1,220 @@
+package cp2024.solution;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A node of the cancellation graph of a single computation of {@link ParallelCircuitValue}s, one per computed
+ * circuit node. Cancelling a token cancels its whole subtree, without waiting for anything: the tokens of the subtree
+ * are marked and the threads blocked on their behalf are woken up, walking down from the cancelled token only,
+ * so every token is visited at most once however many of its ancestors are cancelled.
+ * <p>
+ * A node used by several parents has one token, shared by all of them, which counts its users like
+ * {@link CompiledCircuitValue} counts the uses of a node: it's cancelled with its last user, or once the last one
+ * releases it, so a parent that gives up on a shared node doesn't cancel it for the others.
+ * <p>
+ * The threads that block while computing a node register a way to wake them up, which runs once their token
+ * is cancelled: an interrupt for the threads evaluating leaves, a message for the ones waiting for their children.
+ * Every token keeps its own children and registrations, guarded by the token, and never blocks while holding it.
+ */
+final class CancellationToken {
+    /**
+     * A way to wake up a thread blocked on behalf of a token. Closed once the thread stops blocking,
+     * so that it isn't woken up (e.g. interrupted) after it moved on.
+     */
+    final class Registration implements AutoCloseable {
+        private final Runnable wakeUp;
+        private boolean closed;
+
+        private Registration(Runnable wakeUp) {
+            this.wakeUp = wakeUp;
+            this.closed = false;
+        }
+
+        private synchronized void wakeUpIfOpen() {
+            if (!closed) {
+                closed = true;
+                wakeUp.run();
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                closed = true;
+            }
+            synchronized (CancellationToken.this) {
+                if (registrations != null) {
+                    registrations.remove(this);
+                }
+            }
+        }
+    }
+
+    private volatile boolean cancelled;
+
+    /**
+     * The number of uses of the token by its parents that weren't released yet, the token is cancelled
+     * when it drops to zero. Guarded by the token.
+     */
+    private int users;
+
+    /**
+     * The tokens this one uses, once per use, or <code>null</code> if it has none yet.
+     * Cleared once the token is cancelled.
+     */
+    private List<CancellationToken> children;
+
+    /**
+     * The threads blocked on behalf of the token at the moment, or <code>null</code> if there were none yet.
+     * Cleared once the token is cancelled.
+     */
+    private List<Registration> registrations;
+
+    private CancellationToken() {
+        this.cancelled = false;
+        this.users = 1;
+    }
+
+    /**
+     * @return the root of a new tree
+     */
+    static CancellationToken newTree() {
+        return new CancellationToken();
+    }
+
+    /**
+     * @return a token used only by this one so far, already cancelled if this one is
+     */
+    CancellationToken newChild() {
+        CancellationToken child = new CancellationToken();
+        synchronized (this) {
+            if (cancelled) {
+                child.cancelled = true;
+                child.users = 0;
+                return child;
+            }
+            addChild(child);
+        }
+        return child;
+    }
+
+    /**
+     * Makes this token one more user of the child, so that the child isn't cancelled before this one
+     * releases it or is cancelled.
+     *
+     * @return <code>false</code> if the child was already cancelled, so it can't be used any more
+     */
+    boolean share(CancellationToken child) {
+        synchronized (child) {
+            if (child.cancelled) {
+                return false;
+            }
+            child.users++;
+        }
+        synchronized (this) {
+            if (!cancelled) {
+                addChild(child);
+                return true;
+            }
+        }
+        // cancelled in the meantime, so the use is released at once
+        if (child.releaseUse()) {
+            child.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * Releases one use of the child by this token, cancelling the child if that was its last user.
+     * Does nothing if this token is already cancelled, since that released its uses.
+     */
+    void release(CancellationToken child) {
+        boolean released;
+        synchronized (this) {
+            released = children != null && children.remove(child);
+        }
+        if (released && child.releaseUse()) {
+            child.cancel();
+        }
+    }
+
+    private void addChild(CancellationToken child) {
+        if (children == null) {
+            children = new ArrayList<>(2);
+        }
+        children.add(child);
+    }
+
+    /**
+     * @return whether that was the last use of the token
+     */
+    private synchronized boolean releaseUse() {
+        return --users == 0;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancels the token, releases its uses, and cancels the descendants that lost their last user with it,
+     * waking up the threads blocked on their behalf. Doesn't wait for anything. The tokens that were already
+     * cancelled are skipped with their subtrees, since those were released with them.
+     */
+    void cancel() {
+        Deque<CancellationToken> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            CancellationToken token = pending.pop();
+            List<CancellationToken> tokenChildren;
+            List<Registration> tokenRegistrations;
+            synchronized (token) {
+                if (token.cancelled) {
+                    continue;
+                }
+                token.cancelled = true;
+                tokenChildren = token.children;
+                tokenRegistrations = token.registrations;
+                token.children = null;
+                token.registrations = null;
+            }
+            if (tokenRegistrations != null) {
+                for (Registration registration : tokenRegistrations) {
+                    registration.wakeUpIfOpen();
+                }
+            }
+            if (tokenChildren != null) {
+                for (CancellationToken child : tokenChildren) {
+                    if (child.releaseUse()) {
+                        pending.push(child);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers a way to wake up the calling thread before it blocks. If the token is already cancelled,
+     * it's woken up right away, so the thread must be able to take it before blocking.
+     *
+     * @param wakeUp makes the blocking call return or throw, e.g. by interrupting the thread
+     * @return the registration, to be closed once the thread stops blocking
+     */
+    Registration onCancel(Runnable wakeUp) {
+        Registration registration = new Registration(wakeUp);
+        synchronized (this) {
+            if (!cancelled) {
+                if (registrations == null) {
+                    registrations = new ArrayList<>(1);
+                }
+                registrations.add(registration);
+                return registration;
+            }
+        }
+        registration.wakeUpIfOpen();
+        return registration;
+    }
+}
@@ -0,0 +1,181 @@
+package cp2024.solution;
+
+import cp2024.circuit.NodeType;
+import jdk.jfr.*;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The JDK Flight Recorder events of the solvers, in the "Circuits" category of JMC.
+ * Without a recording, an event costs an enabled check, and the JIT removes its allocation.
+ * The durations of nodes and leaves are only recorded above a threshold of 1 ms by default,
+ * lower it in the recording settings (e.g. <code>cp2024.NodeEvaluation#threshold=0 ms</code>) to see every one of them.
+ * <p>
+ * Every event carries the type of its node and its depth in the circuit, the root being at depth 0.
+ */
+final class CircuitEvents {
+    private CircuitEvents() {
+    }
+
+    /**
+     * Loads the classes of all the events. JFR instruments every event class as it's loaded, which takes
+     * milliseconds, so a solver does it once it's created, and not the first solve that happens to reach an event,
+     * possibly while it's being cancelled.
+     */
+    static void preload() {
+        // never committed
+        new Solve();
+        new Node();
+        new Leaf();
+        new ShortCircuit();
+        new BranchAbandoned();
+        new Cancellation();
+    }
+
+    @Category("Circuits")
+    @StackTrace(false)
+    abstract static class CircuitEvent extends Event {
+        @Label("Node Type")
+        String nodeType;
+
+        @Label("Depth")
+        int depth;
+
+        final void setNode(NodeType type, int depth) {
+            this.nodeType = type.name();
+            this.depth = depth;
+        }
+    }
+
+    @Name("cp2024.Solve")
+    @Label("Circuit Solve")
+    @Description("From the submission of a circuit to a solver to its value being known or the solve being cancelled")
+    static final class Solve extends CircuitEvent {
+        @Label("Solver")
+        String solver;
+
+        @Label("Value")
+        boolean value;
+
+        @Label("Cancelled")
+        boolean cancelled;
+    }
+
+    @Name("cp2024.NodeEvaluation")
+    @Label("Node Evaluation")
+    @Description("A task computing the value of a single node, including the time spent waiting for its children")
+    @Threshold("1 ms")
+    static final class Node extends CircuitEvent {
+        @Label("Cancelled")
+        boolean cancelled;
+
+        /**
+         * Ends the event started before the evaluation, and commits it if it's recorded.
+         */
+        void finish(NodeType type, int depth, boolean cancelled) {
+            end();
+            if (shouldCommit()) {
+                setNode(type, depth);
+                this.cancelled = cancelled;
+                commit();
+            }
+        }
+    }
+
+    @Name("cp2024.LeafEvaluation")
+    @Label("Leaf Evaluation")
+    @Description("A single call of getValue() of a leaf")
+    @Threshold("1 ms")
+    static final class Leaf extends CircuitEvent {
+        @Label("Value")
+        boolean value;
+
+        @Label("Interrupted")
+        boolean interrupted;
+
+        /**
+         * Ends the event started right before <code>getValue()</code>, and commits it if it's recorded.
+         */
+        void finish(int depth, boolean value, boolean interrupted) {
+            end();
+            if (shouldCommit()) {
+                setNode(NodeType.LEAF, depth);
+                this.value = value;
+                this.interrupted = interrupted;
+                commit();
+            }
+        }
+    }
+
+    @Name("cp2024.ShortCircuit")
+    @Label("Short-Circuit")
+    @Description("An AND, OR, GT or LT node whose value was known before the values of all of its children")
+    static final class ShortCircuit extends CircuitEvent {
+        @Label("Children")
+        int children;
+
+        @Label("Children Received")
+        int received;
+
+        @Label("Value")
+        boolean value;
+    }
+
+    @Name("cp2024.BranchAbandoned")
+    @Label("IF Branch Abandoned")
+    @Description("A child of an IF node cancelled once its value turned out not to be needed")
+    static final class BranchAbandoned extends CircuitEvent {
+        @Label("Branch")
+        @Description("CONDITION, TRUE or FALSE")
+        String branch;
+    }
+
+    @Name("cp2024.Cancellation")
+    @Label("Cancellation Propagation")
+    @Description("A node cancelling the subtrees of its children that are still running")
+    static final class Cancellation extends CircuitEvent {
+        @Label("Child Tasks")
+        int tasks;
+    }
+
+    /**
+     * Records a solve, from now until the completion of the value, if solves are being recorded.
+     */
+    static void solveStarted(String solver, NodeType rootType, CompletionStage<Boolean> completion) {
+        Solve event = new Solve();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.begin();
+        completion.whenComplete((value, exception) -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.setNode(rootType, 0);
+                event.solver = solver;
+                event.value = exception == null && value;
+                event.cancelled = exception != null;
+                event.commit();
+            }
+        });
+    }
+
+    static void shortCircuit(NodeType type, int depth, int children, int received, boolean value) {
+        ShortCircuit event = new ShortCircuit();
+        if (event.shouldCommit()) {
+            event.setNode(type, depth);
+            event.children = children;
+            event.received = received;
+            event.value = value;
+            event.commit();
+        }
+    }
+
+    static void branchAbandoned(int depth, String branch) {
+        BranchAbandoned event = new BranchAbandoned();
+        if (event.shouldCommit()) {
+            event.setNode(NodeType.IF, depth);
+            event.branch = branch;
+            event.commit();
+        }
+    }
+}
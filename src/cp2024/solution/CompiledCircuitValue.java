@@ -0,0 +1,560 @@
+package cp2024.solution;
+
+import cp2024.circuit.AsyncCircuitValue;
+import cp2024.circuit.CompiledCircuit;
+import cp2024.circuit.LeafNode;
+import cp2024.circuit.NodeType;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The value of a {@link CompiledCircuit} computed by a {@link ParallelCircuitSolver}.
+ * The state of every node is a single word in a per-solve array, indexed like the compiled circuit,
+ * so no object is allocated per inner node. Like in the {@link EventDrivenCircuitSolver},
+ * only leaves occupy threads: the values are pushed up from the thread that evaluated the leaf,
+ * and a node releases its remaining arguments as soon as the received values imply its value.
+ * A node shared by several users is evaluated once and its value is pushed to all of them;
+ * it is cancelled only once every one of its users has released it.
+ * <p>
+ * The arrays come from a {@link CompiledStatePool} and go back to it once the computation and all of its tasks
+ * are finished, and the values of nodes aren't boxed, so in the steady state nothing is allocated per node,
+ * besides what the pool allocates to run a leaf task. The circuit is walked without recursion, with stacks
+ * of indices that are allocated once per start, and otherwise only when a node fans out to several others.
+ */
+public class CompiledCircuitValue implements AsyncCircuitValue {
+    /**
+     * Set in the state of a node once its value is known or it is no longer needed.
+     */
+    private static final long DONE = 1L << 63;
+
+    /**
+     * Set in the state of a node once one of its users started its evaluation.
+     */
+    private static final long ACTIVATED = 1L << 62;
+
+    /**
+     * The number of true arguments of AND, OR, GT, LT and NOT nodes is kept above the number of false ones.
+     */
+    private static final int FALSE_COUNT_BITS = 32;
+    private static final long ONE_TRUE = 1L << FALSE_COUNT_BITS;
+    private static final long FALSE_COUNT_MASK = ONE_TRUE - 1;
+    private static final long TRUE_COUNT_MASK = (ACTIVATED - 1) >>> FALSE_COUNT_BITS;
+
+    /**
+     * The value of a node, as far as the values of its arguments received so far tell.
+     */
+    private static final int UNKNOWN = -1;
+    private static final int FALSE = 0;
+    private static final int TRUE = 1;
+
+    /**
+     * The positions of the arguments of IF nodes.
+     */
+    private static final int CONDITION = 0;
+    private static final int IF_TRUE = 1;
+    private static final int IF_FALSE = 2;
+
+    private final CompiledCircuit circuit;
+    private final ExecutorService pool;
+    private final AdmissionController admission;
+    private final SolverMetrics metrics;
+
+    /**
+     * Takes back the state once nothing uses it, or <code>null</code> if it isn't recycled.
+     */
+    private final CompiledStatePool statePool;
+    private final CompiledState state;
+
+    /**
+     * The state of every node: the <code>DONE</code> and <code>ACTIVATED</code> bits
+     * and the counts of the values of the arguments, or for IF nodes two bits per argument,
+     * whether its value is known and the value itself, and a bit per argument, whether it was released.
+     */
+    private final AtomicLongArray states;
+
+    /**
+     * The number of uses of every node whose users haven't released it yet.
+     */
+    private final AtomicIntegerArray unreleasedUses;
+
+    /**
+     * The threads evaluating the leaves, see {@link CompiledState#leafThreads}.
+     */
+    private final AtomicReferenceArray<Object> leafThreads;
+
+    private final CompletableFuture<Boolean> completion;
+
+    /**
+     * Drops the task of a leaf that was queued by the leaf limit, if the leaf was cancelled while queued,
+     * or if the pool rejects it once it's its turn.
+     */
+    private final Runnable leafTaskDropped;
+
+    CompiledCircuitValue(CompiledCircuit circuit, ExecutorService pool, AdmissionController admission) {
+        this(circuit, pool, admission, null, new SolverMetrics());
+    }
+
+    CompiledCircuitValue(CompiledCircuit circuit, ExecutorService pool, AdmissionController admission,
+                         CompiledStatePool statePool, SolverMetrics metrics) {
+        this.circuit = circuit;
+        this.pool = pool;
+        this.admission = admission;
+        this.metrics = metrics;
+        this.statePool = statePool;
+        this.state = statePool == null ? new CompiledState(circuit) : statePool.acquire(circuit);
+        state.reset(circuit, this);
+        this.states = state.states;
+        this.unreleasedUses = state.unreleasedUses;
+        this.leafThreads = state.leafThreads;
+        this.completion = new CompletableFuture<>();
+        this.leafTaskDropped = () -> {
+            // the skipped leaves are counted once the computation is finished
+            metrics.taskDropped(false);
+            releaseState();
+        };
+        completion.whenComplete((result, exception) -> {
+            // if the stage was cancelled by the user, this cancels the computation, otherwise it does nothing
+            cancel(circuit.getRoot());
+            releaseState();
+        });
+    }
+
+    /**
+     * Starts the evaluation of the whole circuit.
+     */
+    void start() {
+        try {
+            activate(circuit.getRoot());
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // the solver was stopped
+            abort();
+        } finally {
+            releaseState();
+        }
+    }
+
+    /**
+     * Drops a reference to the state, recycling it if it was the last one. The state must not be used after that.
+     * The last one counts the leaves that were never evaluated as skipped, since every task is finished by then.
+     */
+    private void releaseState() {
+        if (!state.release()) {
+            return;
+        }
+        metrics.leavesSkipped(circuit.getLeafCount() - state.evaluatedLeaves.get());
+        if (statePool != null) {
+            statePool.recycle(circuit, state);
+        }
+    }
+
+    /**
+     * Cancels the whole computation, after which <code>getValue()</code> throws <code>InterruptedException</code>.
+     */
+    void abort() {
+        completion.completeExceptionally(new CancellationException("The computation was cancelled."));
+    }
+
+    @Override
+    public CompletionStage<Boolean> asCompletionStage() {
+        return completion;
+    }
+
+    @Override
+    public boolean getValue() throws InterruptedException {
+        try {
+            return completion.get();
+        } catch (ExecutionException | CancellationException e) {
+            throw new InterruptedException();
+        }
+    }
+
+    private boolean isDone(int node) {
+        return (states.get(node) & DONE) != 0;
+    }
+
+    /**
+     * @return whether it was this call that set the bit
+     */
+    private boolean setBit(int node, long bit) {
+        return (states.getAndAccumulate(node, bit, (state, update) -> state | update) & bit) == 0;
+    }
+
+    private boolean markDone(int node) {
+        return setBit(node, DONE);
+    }
+
+    /**
+     * Starts the evaluation of the subtree of the given node, in depth-first order, skipping the subtrees
+     * already started by another user or no longer needed. Walks the circuit with a stack of pairs of a node
+     * and the index of its next argument, so that deep circuits don't overflow the stack.
+     */
+    private void activate(int root) throws InterruptedException {
+        if (!enter(root)) {
+            return;
+        }
+        IntStack frames = new IntStack(32);
+        frames.push(root);
+        frames.push(0);
+        while (!frames.isEmpty()) {
+            int next = frames.pop();
+            int node = frames.pop();
+            if (next == circuit.getArgCount(node) || isDone(node)) {
+                continue;
+            }
+            frames.push(node);
+            frames.push(next + 1);
+            int arg = circuit.getArg(node, next);
+            if (enter(arg)) {
+                frames.push(arg);
+                frames.push(0);
+            }
+        }
+    }
+
+    /**
+     * Starts the evaluation of the node, unless it was already started by another user or is no longer needed.
+     *
+     * @return whether the arguments of the node are to be activated next
+     */
+    private boolean enter(int node) throws InterruptedException {
+        if (isDone(node) || !setBit(node, ACTIVATED)) {
+            return false;
+        }
+        switch (circuit.getType(node)) {
+            case LEAF -> {
+                activateLeaf(node);
+                return false;
+            }
+            case GT, LT -> {
+                // some thresholds are decided before any argument is known
+                int result = resolveCounts(node, 0, 0);
+                if (result != UNKNOWN) {
+                    resolve(node, result == TRUE);
+                    return false;
+                }
+                return true;
+            }
+            default -> {
+                return true;
+            }
+        }
+    }
+
+    private void activateLeaf(int node) throws InterruptedException {
+        LeafNode leaf = circuit.getLeaf(node);
+        if (leaf.isImmediate()) {
+            // not worth a task of its own
+            boolean value = leaf.getValue();
+            leafEvaluated();
+            if (markDone(node)) {
+                propagate(node, value);
+            }
+            return;
+        }
+        state.retain();
+        metrics.taskSubmitted();
+        try {
+            admission.executeLeaf(pool, state.leafTasks[node], leafTaskDropped);
+        } catch (RejectedExecutionException e) {
+            metrics.taskDropped(false);
+            releaseState();
+            throw e;
+        }
+    }
+
+    private void leafEvaluated() {
+        state.evaluatedLeaves.incrementAndGet();
+        metrics.leafEvaluated();
+    }
+
+    /**
+     * Run by the task of the leaf, created once with the state.
+     */
+    void evaluateLeaf(int node) {
+        metrics.taskStarted();
+        try {
+            evaluateLeafValue(node);
+        } finally {
+            metrics.taskFinished();
+            releaseState();
+        }
+    }
+
+    private void evaluateLeafValue(int node) {
+        Thread current = Thread.currentThread();
+        // cancel() might have been first
+        if (isDone(node) || !leafThreads.compareAndSet(node, null, current)) {
+            return;
+        }
+        boolean value;
+        try {
+            // the task was executed once the leaf limit allowed, so the leaf doesn't wait for it here
+            value = circuit.getLeaf(node).getValue();
+            leafEvaluated();
+        } catch (InterruptedException e) {
+            if (leafThreads.compareAndSet(node, current, CompiledState.FINISHED)) {
+                // interrupted by stop(), not by the cancellation of this leaf
+                abort();
+            } else {
+                awaitCancellationInterrupt(node);
+            }
+            return;
+        }
+        // unregistered before propagating, so that resolving the users doesn't interrupt this thread
+        if (!leafThreads.compareAndSet(node, current, CompiledState.FINISHED)) {
+            awaitCancellationInterrupt(node);
+            return;
+        }
+        if (markDone(node)) {
+            propagate(node, value);
+        }
+    }
+
+    /**
+     * Waits until <code>cancel()</code> of the leaf is done interrupting the current thread, and clears the interrupt,
+     * so that it doesn't hit the next task of the thread.
+     */
+    private void awaitCancellationInterrupt(int node) {
+        while (leafThreads.get(node) == CompiledState.CANCELLING) {
+            Thread.onSpinWait();
+        }
+        Thread.interrupted();
+    }
+
+    /**
+     * Sets the value of an inner node, releases its arguments and pushes the value to its users.
+     * Does nothing if the node was already resolved or cancelled.
+     */
+    private void resolve(int node, boolean value) {
+        if (markDone(node)) {
+            cancelUnused(releaseArgs(node, null));
+            propagate(node, value);
+        }
+    }
+
+    /**
+     * Pushes the value of a node, already marked as done, to all of its users, and the values of the users
+     * it resolves to theirs, without recursion. Up a chain of single users nothing is allocated,
+     * the other users that were resolved wait in a stack, with their values in the lowest bit.
+     */
+    private void propagate(int node, boolean value) {
+        IntStack resolved = null;
+        while (true) {
+            metrics.nodeEvaluated();
+            int next = -1;
+            boolean nextValue = false;
+            if (node == circuit.getRoot()) {
+                completion.complete(value);
+            } else {
+                for (int use = 0; use < circuit.getUseCount(node); use++) {
+                    int user = circuit.getUser(node, use);
+                    int result = onArgValue(user, circuit.getUsePosition(node, use), value);
+                    if (result == UNKNOWN || !markDone(user)) {
+                        continue;
+                    }
+                    cancelUnused(releaseArgs(user, null));
+                    if (next < 0) {
+                        next = user;
+                        nextValue = result == TRUE;
+                    } else {
+                        if (resolved == null) {
+                            resolved = new IntStack(8);
+                        }
+                        resolved.push(user << 1 | result);
+                    }
+                }
+            }
+            if (next < 0) {
+                if (resolved == null || resolved.isEmpty()) {
+                    return;
+                }
+                int item = resolved.pop();
+                next = item >>> 1;
+                nextValue = (item & 1) == TRUE;
+            }
+            node = next;
+            value = nextValue;
+        }
+    }
+
+    /**
+     * Records the value of the argument at the given position of the node.
+     *
+     * @return the value of the node if the values received so far imply it, <code>UNKNOWN</code> otherwise
+     */
+    private int onArgValue(int node, int position, boolean value) {
+        if (isDone(node)) {
+            return UNKNOWN;
+        }
+        return switch (circuit.getType(node)) {
+            case IF -> onIfArgValue(node, position, value);
+            default -> {
+                long updated = states.addAndGet(node, value ? ONE_TRUE : 1);
+                yield resolveCounts(node, (int) ((updated >>> FALSE_COUNT_BITS) & TRUE_COUNT_MASK),
+                        (int) (updated & FALSE_COUNT_MASK));
+            }
+        };
+    }
+
+    /**
+     * @return the value of a node of type AND, OR, GT, LT or NOT if the given counts of arguments imply it,
+     *         <code>UNKNOWN</code> otherwise
+     */
+    private int resolveCounts(int node, int trueCount, int falseCount) {
+        int argCount = circuit.getArgCount(node);
+        int threshold = circuit.getThreshold(node);
+        int notFalse = argCount - falseCount; // the highest number of true arguments still possible
+        return switch (circuit.getType(node)) {
+            case AND -> falseCount > 0 ? FALSE : trueCount == argCount ? TRUE : UNKNOWN;
+            case OR -> trueCount > 0 ? TRUE : falseCount == argCount ? FALSE : UNKNOWN;
+            case NOT -> trueCount > 0 ? FALSE : falseCount > 0 ? TRUE : UNKNOWN;
+            case GT -> trueCount > threshold ? TRUE : notFalse <= threshold ? FALSE : UNKNOWN;
+            case LT -> trueCount >= threshold ? FALSE : notFalse < threshold ? TRUE : UNKNOWN;
+            default -> throw new IllegalStateException("Unexpected value: " + circuit.getType(node));
+        };
+    }
+
+    private static int resultOf(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    private static long knownBit(int position) {
+        return 1L << (2 * position);
+    }
+
+    private static long valueBit(int position) {
+        return 1L << (2 * position + 1);
+    }
+
+    private static long releasedBit(int position) {
+        return 1L << (6 + position);
+    }
+
+    private static boolean isKnown(long state, int position) {
+        return (state & knownBit(position)) != 0;
+    }
+
+    private static boolean valueOf(long state, int position) {
+        return (state & valueBit(position)) != 0;
+    }
+
+    private int onIfArgValue(int node, int position, boolean value) {
+        long bits = knownBit(position) | (value ? valueBit(position) : 0);
+        long updated = states.accumulateAndGet(node, bits, (current, update) -> current | update);
+
+        // to know the value of an IF node one of the following must be satisfied:
+        // 1. the condition is known and its branch is known
+        // 2. both branches are known and equal
+        if (isKnown(updated, CONDITION)) {
+            int chosen = valueOf(updated, CONDITION) ? IF_TRUE : IF_FALSE;
+            if (isKnown(updated, chosen)) {
+                return resultOf(valueOf(updated, chosen));
+            }
+            if (position == CONDITION) {
+                cancelUnused(releaseIfArg(node, chosen == IF_TRUE ? IF_FALSE : IF_TRUE, null));
+            }
+        } else if (isKnown(updated, IF_TRUE) && isKnown(updated, IF_FALSE)
+                && valueOf(updated, IF_TRUE) == valueOf(updated, IF_FALSE)) {
+            return resultOf(valueOf(updated, IF_TRUE));
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Releases the argument of the IF node at the given position, unless it was already released.
+     *
+     * @param unused the stack of the nodes to be cancelled, or <code>null</code> if there are none yet
+     * @return the stack, with the argument pushed if that was its last use
+     */
+    private IntStack releaseIfArg(int node, int position, IntStack unused) {
+        if (setBit(node, releasedBit(position))) {
+            return release(circuit.getArg(node, position), unused);
+        }
+        return unused;
+    }
+
+    /**
+     * Releases every use of an argument by the given node, which is done.
+     *
+     * @param unused the stack of the nodes to be cancelled, or <code>null</code> if there are none yet
+     * @return the stack, with the arguments pushed whose last use that was
+     */
+    private IntStack releaseArgs(int node, IntStack unused) {
+        if (circuit.getType(node) == NodeType.IF) {
+            for (int position = CONDITION; position <= IF_FALSE; position++) {
+                unused = releaseIfArg(node, position, unused);
+            }
+            return unused;
+        }
+        for (int i = 0; i < circuit.getArgCount(node); i++) {
+            unused = release(circuit.getArg(node, i), unused);
+        }
+        return unused;
+    }
+
+    /**
+     * Releases a single use of the node.
+     *
+     * @return the stack of the nodes to be cancelled, with the node pushed if that was its last use,
+     *         allocated only then
+     */
+    private IntStack release(int node, IntStack unused) {
+        if (unreleasedUses.decrementAndGet(node) == 0) {
+            if (unused == null) {
+                unused = new IntStack(8);
+            }
+            unused.push(node);
+        }
+        return unused;
+    }
+
+    /**
+     * Cancels the nodes on the stack, see <code>cancel</code>.
+     */
+    private void cancelUnused(IntStack unused) {
+        if (unused != null && !unused.isEmpty()) {
+            cancel(unused.pop(), unused);
+        }
+    }
+
+    private void cancel(int node) {
+        cancel(node, null);
+    }
+
+    /**
+     * Marks the node as no longer needed, interrupting the leaf if it's being evaluated, and releases its arguments,
+     * then does the same with the arguments left unused and the nodes on the stack, without recursion.
+     * Skips the nodes that were already resolved or cancelled, since their arguments were released
+     * when they were marked.
+     *
+     * @param unused more nodes to be cancelled, or <code>null</code>
+     */
+    private void cancel(int node, IntStack unused) {
+        while (true) {
+            if (markDone(node)) {
+                metrics.nodeCancelled();
+                if (node < circuit.getLeafCount()) {
+                    // a leaf that hasn't started never does, one that returned its value isn't interrupted
+                    if (leafThreads.getAndSet(node, CompiledState.CANCELLING) instanceof Thread thread) {
+                        thread.interrupt();
+                    }
+                    leafThreads.set(node, CompiledState.CANCELLED);
+                } else {
+                    unused = releaseArgs(node, unused);
+                }
+            }
+            if (unused == null || unused.isEmpty()) {
+                return;
+            }
+            node = unused.pop();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package cp2024.solution;
+
+import cp2024.circuit.CompiledCircuit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The per-solve arrays of a {@link CompiledCircuitValue}, sized for a single compiled circuit.
+ * Recycled by {@link CompiledStatePool} once nothing uses them any more, so that solving the same circuit again
+ * allocates nothing per node. Doesn't refer to the circuit, so that the pool doesn't keep it alive.
+ */
+final class CompiledState {
+    /**
+     * Set in <code>leafThreads</code> once the leaf returned or threw, so it's no longer interrupted.
+     */
+    static final Object FINISHED = new Object();
+
+    /**
+     * Set in <code>leafThreads</code> while the thread evaluating a leaf that is no longer needed is being interrupted.
+     */
+    static final Object CANCELLING = new Object();
+
+    /**
+     * Set in <code>leafThreads</code> once the leaf is no longer needed, so it's never started.
+     */
+    static final Object CANCELLED = new Object();
+
+    final AtomicLongArray states;
+    final AtomicIntegerArray unreleasedUses;
+
+    /**
+     * The thread evaluating every leaf, <code>FINISHED</code>, <code>CANCELLING</code>, <code>CANCELLED</code>,
+     * or <code>null</code> if it hasn't started yet. Indexed like the leaf table.
+     */
+    final AtomicReferenceArray<Object> leafThreads;
+
+    /**
+     * The number of leaves whose <code>getValue()</code> returned in the current computation.
+     */
+    final AtomicInteger evaluatedLeaves;
+
+    /**
+     * The task evaluating every leaf for the current owner, created once with the state.
+     */
+    final AdmissionController.LeafTask[] leafTasks;
+
+    /**
+     * The users of the arrays: the computation, until its value is known, its start and its leaf tasks.
+     */
+    private final AtomicInteger references;
+
+    /**
+     * The value being computed with the arrays, <code>null</code> while the state is idle.
+     */
+    private volatile CompiledCircuitValue owner;
+
+    CompiledState(CompiledCircuit circuit) {
+        this.states = new AtomicLongArray(circuit.size());
+        this.unreleasedUses = new AtomicIntegerArray(circuit.size());
+        this.leafThreads = new AtomicReferenceArray<>(circuit.getLeafCount());
+        this.evaluatedLeaves = new AtomicInteger(0);
+        this.leafTasks = new AdmissionController.LeafTask[circuit.getLeafCount()];
+        for (int leaf = 0; leaf < leafTasks.length; leaf++) {
+            leafTasks[leaf] = new LeafEvaluation(leaf);
+        }
+        this.references = new AtomicInteger(0);
+    }
+
+    /**
+     * Prepares the arrays for a new computation of the circuit, held by the computation and its start.
+     */
+    void reset(CompiledCircuit circuit, CompiledCircuitValue owner) {
+        for (int node = 0; node < circuit.size(); node++) {
+            states.set(node, 0);
+            unreleasedUses.set(node, circuit.getUseCount(node));
+        }
+        for (int leaf = 0; leaf < circuit.getLeafCount(); leaf++) {
+            leafThreads.set(leaf, null);
+        }
+        evaluatedLeaves.set(0);
+        references.set(2);
+        this.owner = owner;
+    }
+
+    void retain() {
+        references.incrementAndGet();
+    }
+
+    /**
+     * @return whether that was the last user, then the state is idle and may be recycled
+     */
+    boolean release() {
+        if (references.decrementAndGet() != 0) {
+            return false;
+        }
+        owner = null;
+        return true;
+    }
+
+    /**
+     * The task of a leaf, cancelled once the leaf is no longer needed.
+     */
+    private final class LeafEvaluation implements AdmissionController.LeafTask {
+        private final int node;
+
+        LeafEvaluation(int node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            owner.evaluateLeaf(node);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            Object thread = leafThreads.get(node);
+            return thread == CANCELLING || thread == CANCELLED;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package cp2024.solution;
+
+import cp2024.circuit.CompiledCircuit;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The idle {@link CompiledState}s of a single {@link ParallelCircuitSolver}, kept per compiled circuit
+ * as long as the circuit itself is. Bounded, a state returned to a full pool is left to the garbage collector.
+ */
+final class CompiledStatePool {
+    /**
+     * Enough for the circuits solved concurrently a few at a time, without keeping a burst of them alive.
+     */
+    private static final int MAX_IDLE_PER_CIRCUIT = 8;
+
+    /**
+     * Guarded by itself. Compiled circuits are compared by identity.
+     */
+    private final Map<CompiledCircuit, ArrayDeque<CompiledState>> idle;
+
+    CompiledStatePool() {
+        this.idle = new WeakHashMap<>();
+    }
+
+    /**
+     * @return an idle state of the circuit, or a new one if there's none
+     */
+    CompiledState acquire(CompiledCircuit circuit) {
+        CompiledState state;
+        synchronized (idle) {
+            ArrayDeque<CompiledState> states = idle.get(circuit);
+            state = states == null ? null : states.poll();
+        }
+        return state != null ? state : new CompiledState(circuit);
+    }
+
+    void recycle(CompiledCircuit circuit, CompiledState state) {
+        synchronized (idle) {
+            ArrayDeque<CompiledState> states = idle.computeIfAbsent(circuit, c -> new ArrayDeque<>());
+            if (states.size() < MAX_IDLE_PER_CIRCUIT) {
+                states.push(state);
+            }
+        }
+    }
+}
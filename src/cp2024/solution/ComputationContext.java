@@ -0,0 +1,74 @@
+package cp2024.solution;
+
+import cp2024.circuit.CircuitNode;
+import cp2024.circuit.SubcircuitCache;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * What all the nodes of a single computation of a {@link ParallelCircuitSolver} share.
+ */
+final class ComputationContext {
+    /**
+     * The pool on which all the child computations are executed.
+     */
+    final ExecutorService pool;
+
+    /**
+     * The values of deterministic subcircuits remembered across solves, or <code>null</code> if they aren't cached.
+     */
+    final SubcircuitCache.Session cacheSession;
+
+    /**
+     * Records the leaves and orders the children of short-circuiting nodes, or <code>null</code> if disabled.
+     */
+    final LeafProfiler profiler;
+
+    /**
+     * Decides whether the branches of IF nodes are evaluated before their conditions are known.
+     */
+    final SpeculationPolicy speculationPolicy;
+
+    /**
+     * The number of leaves being evaluated by the solver, in all of its computations.
+     */
+    final AtomicInteger busyLeaves;
+
+    /**
+     * Limits the number of leaves being evaluated by the solver.
+     */
+    final AdmissionController admission;
+
+    /**
+     * The counters of the solver, shared by all of its computations.
+     */
+    final SolverMetrics metrics;
+
+    /**
+     * Records the timeline of every node, or <code>null</code> if the computation wasn't sampled.
+     */
+    final SolveTrace trace;
+
+    /**
+     * The computation of every node below the root, by identity, so that a node used by several parents
+     * is computed once. Guarded by itself.
+     */
+    final Map<CircuitNode, ParallelCircuitValue> computations;
+
+    ComputationContext(ExecutorService pool, SubcircuitCache.Session cacheSession, LeafProfiler profiler,
+                       SpeculationPolicy speculationPolicy, AtomicInteger busyLeaves, AdmissionController admission,
+                       SolverMetrics metrics, SolveTrace trace) {
+        this.pool = pool;
+        this.cacheSession = cacheSession;
+        this.profiler = profiler;
+        this.speculationPolicy = speculationPolicy;
+        this.busyLeaves = busyLeaves;
+        this.admission = admission;
+        this.metrics = metrics;
+        this.trace = trace;
+        this.computations = new IdentityHashMap<>();
+    }
+}
@@ -0,0 +1,107 @@
+package cp2024.solution;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A task of a solver that reports to its {@link SolverMetrics} when it runs, and when it's cancelled
+ * before it started, so that the metrics tell the nodes that were skipped from the ones that were evaluated.
+ */
+final class CountedTask<V> extends FutureTask<V> implements AdmissionController.LeafTask {
+    private final SolverMetrics metrics;
+    private final boolean isLeaf;
+
+    /**
+     * Run if the task never starts, or <code>null</code>.
+     */
+    private final Runnable onDropped;
+
+    /**
+     * Set once, either by the task starting or by its cancellation before it started, whichever is first.
+     */
+    private final AtomicBoolean isClaimed;
+
+    private CountedTask(Callable<V> callable, SolverMetrics metrics, boolean isLeaf, Runnable onDropped) {
+        super(callable);
+        this.metrics = metrics;
+        this.isLeaf = isLeaf;
+        this.onDropped = onDropped;
+        this.isClaimed = new AtomicBoolean(false);
+    }
+
+    /**
+     * Submits the callable to the pool, like <code>ExecutorService.submit()</code>.
+     *
+     * @param isLeaf whether the task evaluates a leaf, which is skipped if the task is cancelled before it starts
+     * @throws RejectedExecutionException if the pool was shut down
+     */
+    static <V> Future<V> submit(ExecutorService pool, Callable<V> callable, SolverMetrics metrics, boolean isLeaf) {
+        return submit(pool, callable, metrics, isLeaf, null);
+    }
+
+    /**
+     * Like <code>submit(pool, callable, metrics, isLeaf)</code>.
+     *
+     * @param onDropped run if the task never starts, because it was cancelled or rejected, or <code>null</code>
+     */
+    static <V> Future<V> submit(ExecutorService pool, Callable<V> callable, SolverMetrics metrics, boolean isLeaf,
+                                Runnable onDropped) {
+        return submit(pool, null, callable, metrics, isLeaf, onDropped);
+    }
+
+    /**
+     * Like <code>submit(pool, callable, metrics, isLeaf, onDropped)</code>, but the task of a leaf is executed
+     * once the leaf limit of the admission controller allows, without taking a thread before that.
+     *
+     * @param admission limits the leaves, or <code>null</code> if they aren't limited
+     */
+    static <V> Future<V> submit(ExecutorService pool, AdmissionController admission, Callable<V> callable,
+                                SolverMetrics metrics, boolean isLeaf, Runnable onDropped) {
+        CountedTask<V> task = new CountedTask<>(callable, metrics, isLeaf, onDropped);
+        metrics.taskSubmitted();
+        try {
+            if (isLeaf && admission != null) {
+                // rejected once queued only by a pool that was shut down, then the task is dropped like a cancelled one
+                admission.executeLeaf(pool, task, () -> task.cancel(false));
+            } else {
+                pool.execute(task);
+            }
+        } catch (RejectedExecutionException e) {
+            // never runs, but it wasn't skipped because its value turned out not to be needed
+            metrics.taskDropped(false);
+            if (onDropped != null) {
+                onDropped.run();
+            }
+            throw e;
+        }
+        return task;
+    }
+
+    @Override
+    public void run() {
+        if (!isClaimed.compareAndSet(false, true)) {
+            // cancelled before it started
+            return;
+        }
+        metrics.taskStarted();
+        try {
+            super.run();
+        } finally {
+            metrics.taskFinished();
+        }
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled() && isClaimed.compareAndSet(false, true)) {
+            metrics.taskDropped(isLeaf);
+            if (onDropped != null) {
+                onDropped.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package cp2024.solution;
+
+import cp2024.circuit.AsyncCircuitSolver;
+import cp2024.circuit.AsyncCircuitValue;
+import cp2024.circuit.Circuit;
+import cp2024.circuit.CircuitValue;
+import cp2024.demo.BrokenCircuitValue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A solver in which no thread ever waits for the children of a node.
+ * The values of the children are pushed to their parents from completion callbacks,
+ * so only the evaluation of leaves (and the expansion of the circuit) occupies the pool.
+ */
+public class EventDrivenCircuitSolver implements AsyncCircuitSolver {
+    private boolean acceptsComputations;
+    private final ExecutorService pool;
+
+    /**
+     * The computations started and not yet finished, aborted when the solver is stopped.
+     */
+    private final Set<EventDrivenCircuitValue> activeComputations;
+
+    private final SolverMetrics metrics;
+
+    public EventDrivenCircuitSolver() {
+        this(ExecutionMode.CACHED_THREAD_POOL);
+    }
+
+    /**
+     * @param mode the kind of threads on which the leaves will be evaluated
+     */
+    public EventDrivenCircuitSolver(ExecutionMode mode) {
+        this.acceptsComputations = true;
+        this.pool = mode.newExecutor();
+        this.activeComputations = ConcurrentHashMap.newKeySet();
+        this.metrics = new SolverMetrics();
+        CircuitEvents.preload();
+    }
+
+    /**
+     * @return the counters of all the computations of this solver, which can also be published over JMX
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public CircuitValue solve(Circuit c) {
+        return solveAsync(c);
+    }
+
+    @Override
+    public synchronized AsyncCircuitValue solveAsync(Circuit c) {
+        if (!acceptsComputations) {
+            return new BrokenCircuitValue();
+        }
+
+        EventDrivenCircuitValue result = new EventDrivenCircuitValue(activeComputations, metrics);
+        NodeEvaluation root = NodeEvaluation.of(c.getRoot(), null, 0, result, pool);
+        result.setRoot(root);
+        metrics.solveStarted(result.asCompletionStage());
+        CircuitEvents.solveStarted("event-driven", c.getRoot().getType(), result.asCompletionStage());
+        try {
+            // the circuit is expanded on the pool, because getArgs() may block
+            CountedTask.submit(pool, Executors.callable(root::start), metrics, false);
+        } catch (RejectedExecutionException e) {
+            result.abort();
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void stop() {
+        acceptsComputations = false;
+        pool.shutdownNow();
+        for (EventDrivenCircuitValue computation : activeComputations) {
+            computation.abort();
+        }
+        metrics.unregister();
+    }
+}
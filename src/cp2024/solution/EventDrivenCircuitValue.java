@@ -0,0 +1,122 @@
+package cp2024.solution;
+
+import cp2024.circuit.AsyncCircuitValue;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The value of a circuit computed by an {@link EventDrivenCircuitSolver}.
+ * Set from inside the completion callback of the root node, or aborted when the computation was interrupted.
+ */
+public class EventDrivenCircuitValue implements AsyncCircuitValue {
+    /**
+     * Used to await for the computation of the value, or abortion of the computation.
+     */
+    private final CountDownLatch latch;
+
+    /**
+     * Completed right after the latch is broken.
+     */
+    private final CompletableFuture<Boolean> completion;
+
+    /**
+     * Set once, either by <code>complete</code> or by <code>abort</code>.
+     */
+    private final AtomicBoolean isFinished;
+
+    private volatile boolean isCancelled;
+
+    /**
+     * Uninitialized must not be read until the latch is broken.
+     */
+    private boolean value;
+
+    /**
+     * The evaluation of the root node, cancelled when the whole computation is aborted.
+     */
+    private NodeEvaluation root;
+
+    /**
+     * The computations of the solver that are not finished yet, this one included until it finishes.
+     */
+    private final Set<EventDrivenCircuitValue> activeComputations;
+
+    /**
+     * The counters of the solver, updated by the evaluations of the nodes.
+     */
+    final SolverMetrics metrics;
+
+    EventDrivenCircuitValue(Set<EventDrivenCircuitValue> activeComputations, SolverMetrics metrics) {
+        this.activeComputations = activeComputations;
+        this.metrics = metrics;
+        activeComputations.add(this);
+        this.latch = new CountDownLatch(1);
+        this.isFinished = new AtomicBoolean(false);
+        this.isCancelled = false;
+        this.completion = new CompletableFuture<>();
+        // if the stage was cancelled by the user, this aborts the computation, otherwise it does nothing
+        completion.whenComplete((result, exception) -> abort());
+    }
+
+    void setRoot(NodeEvaluation root) {
+        this.root = root;
+    }
+
+    /**
+     * Sets the value of the circuit, unless it was already set or the computation was aborted.
+     *
+     * @return whether the value was set
+     */
+    boolean complete(boolean value) {
+        if (!isFinished.compareAndSet(false, true)) {
+            return false;
+        }
+        this.value = value;
+        // before the latch, so that once getValue() returns, cancel() can't complete the stage any more
+        if (!completion.complete(value)) {
+            // the user cancelled the computation just before it finished
+            isCancelled = true;
+        }
+        latch.countDown();
+        activeComputations.remove(this);
+        return true;
+    }
+
+    /**
+     * Aborts the computation: cancels all the node evaluations and makes all further or yet unfinished
+     * calls of <code>getValue()</code> throw <code>InterruptedException</code>.
+     * If the value was already set, does nothing.
+     */
+    void abort() {
+        if (!isFinished.compareAndSet(false, true)) {
+            return;
+        }
+        isCancelled = true;
+        latch.countDown();
+        activeComputations.remove(this);
+        completion.completeExceptionally(new CancellationException("The computation was cancelled."));
+        if (root != null) {
+            root.cancel();
+        }
+    }
+
+    @Override
+    public CompletionStage<Boolean> asCompletionStage() {
+        return completion;
+    }
+
+    @Override
+    public boolean getValue() throws InterruptedException {
+        latch.await();
+
+        if (isCancelled) {
+            throw new InterruptedException();
+        }
+        return value;
+    }
+}
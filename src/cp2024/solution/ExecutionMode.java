@@ -0,0 +1,35 @@
+package cp2024.solution;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Selects the kind of threads on which a {@link ParallelCircuitSolver} runs its node computations.
+ */
+public enum ExecutionMode {
+    /**
+     * Every node computation runs on a platform thread taken from a cached thread pool.
+     * A node waiting for its children, or a leaf sleeping, occupies a whole OS thread.
+     */
+    CACHED_THREAD_POOL,
+
+    /**
+     * Every node computation runs on its own virtual thread.
+     * Waiting nodes and sleeping leaves unmount from their carrier, so wide circuits
+     * don't need one OS thread per pending node.
+     */
+    VIRTUAL_THREADS;
+
+    /**
+     * Creates a fresh executor for this mode.
+     * Shutting it down with <code>shutdownNow()</code> interrupts every running computation in both modes.
+     *
+     * @return the executor on which the node computations will be run
+     */
+    ExecutorService newExecutor() {
+        return switch (this) {
+            case CACHED_THREAD_POOL -> Executors.newCachedThreadPool();
+            case VIRTUAL_THREADS -> Executors.newVirtualThreadPerTaskExecutor();
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package cp2024.solution;
+
+import cp2024.circuit.AsyncCircuitSolver;
+import cp2024.circuit.AsyncCircuitValue;
+import cp2024.circuit.Circuit;
+import cp2024.circuit.CircuitValue;
+import cp2024.demo.BrokenCircuitValue;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A solver that decomposes the circuit into work-stealing tasks on a {@link ForkJoinPool}.
+ * Subtrees whose estimated cost is at most the sequential threshold are evaluated inline,
+ * without forking, so cheap circuits don't pay for a task per node.
+ * Meant for CPU-bound circuits; slow leaves are waited for in managed blocks, so they don't starve the pool,
+ * and the children are joined in the order they finish, so a slow child doesn't delay the short-circuit of its parent.
+ */
+public class ForkJoinCircuitSolver implements AsyncCircuitSolver {
+    /**
+     * Chosen so that an inline subtree takes a few microseconds, more than the cost of forking it.
+     */
+    public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 256;
+
+    private boolean acceptsComputations;
+    private final ForkJoinPool pool;
+    private final int sequentialThreshold;
+
+    /**
+     * The root tasks started and not yet finished, cancelled when the solver is stopped.
+     */
+    private final Set<ForkJoinNodeTask> activeComputations;
+
+    private final SolverMetrics metrics;
+
+    public ForkJoinCircuitSolver() {
+        this(DEFAULT_SEQUENTIAL_THRESHOLD);
+    }
+
+    /**
+     * @param sequentialThreshold the highest estimated cost of a subtree that is evaluated without forking,
+     *                            where every inner node and every immediate leaf costs one
+     */
+    public ForkJoinCircuitSolver(int sequentialThreshold) {
+        this(sequentialThreshold, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param sequentialThreshold the highest estimated cost of a subtree that is evaluated without forking
+     * @param parallelism         the parallelism level of the pool
+     */
+    public ForkJoinCircuitSolver(int sequentialThreshold, int parallelism) {
+        if (sequentialThreshold < 0) {
+            throw new IllegalArgumentException("The sequential threshold must be non-negative.");
+        }
+        this.acceptsComputations = true;
+        this.sequentialThreshold = sequentialThreshold;
+        this.pool = new ForkJoinPool(parallelism);
+        this.activeComputations = ConcurrentHashMap.newKeySet();
+        this.metrics = new SolverMetrics();
+    }
+
+    public int getSequentialThreshold() {
+        return sequentialThreshold;
+    }
+
+    /**
+     * @return the counters of all the computations of this solver, which can also be published over JMX.
+     *         Inline subtrees count as a single node, and a worker computing a child it forked runs two tasks at once
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public CircuitValue solve(Circuit c) {
+        return solveAsync(c);
+    }
+
+    @Override
+    public synchronized AsyncCircuitValue solveAsync(Circuit c) {
+        if (!acceptsComputations) {
+            return new BrokenCircuitValue();
+        }
+
+        CompletableFuture<Boolean> completion = new CompletableFuture<>();
+        ForkJoinNodeTask root = new ForkJoinNodeTask(c.getRoot(), sequentialThreshold, metrics, completion,
+                activeComputations);
+        metrics.solveStarted(completion);
+        // if the stage was cancelled by the user, this abandons the computation, otherwise it does nothing
+        completion.whenComplete((value, exception) -> {
+            if (exception != null) {
+                root.abandon();
+            }
+        });
+        activeComputations.add(root);
+        try {
+            metrics.taskSubmitted();
+            pool.execute(root);
+        } catch (RejectedExecutionException e) {
+            metrics.taskDropped(false);
+            activeComputations.remove(root);
+            root.abort();
+            return new BrokenCircuitValue();
+        }
+        return new ForkJoinCircuitValue(completion);
+    }
+
+    @Override
+    public synchronized void stop() {
+        acceptsComputations = false;
+        for (ForkJoinNodeTask root : activeComputations) {
+            root.abort();
+        }
+        activeComputations.clear();
+        pool.shutdownNow();
+        metrics.unregister();
+    }
+}
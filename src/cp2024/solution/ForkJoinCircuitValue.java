@@ -0,0 +1,33 @@
+package cp2024.solution;
+
+import cp2024.circuit.AsyncCircuitValue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The value of a circuit computed by a {@link ForkJoinCircuitSolver}, completed by the root task once it returns.
+ */
+public class ForkJoinCircuitValue implements AsyncCircuitValue {
+    private final CompletableFuture<Boolean> completion;
+
+    ForkJoinCircuitValue(CompletableFuture<Boolean> completion) {
+        this.completion = completion;
+    }
+
+    @Override
+    public CompletionStage<Boolean> asCompletionStage() {
+        return completion;
+    }
+
+    @Override
+    public boolean getValue() throws InterruptedException {
+        try {
+            return completion.get();
+        } catch (ExecutionException | CancellationException e) {
+            throw new InterruptedException();
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package cp2024.solution;
+
+import cp2024.circuit.*;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Computes the value of a single node for a {@link ForkJoinCircuitSolver}.
+ * Forks a task per child, unless the subtree is cheap enough to be evaluated inline.
+ * Every forked child reports to its parent when it finishes, so that the parent can short-circuit
+ * on whichever child finishes first.
+ */
+@SuppressWarnings("serial") // never serialized, the circuits aren't serializable anyway
+class ForkJoinNodeTask extends RecursiveTask<Boolean> {
+    /**
+     * The estimated cost of a leaf that can't be evaluated inline.
+     */
+    private static final long EXPENSIVE = Long.MAX_VALUE;
+
+    /**
+     * Set in <code>leafRunner</code> once the leaf returned or threw, so it's no longer interrupted.
+     */
+    private static final Object FINISHED = new Object();
+
+    /**
+     * Set in <code>leafRunner</code> while the thread evaluating a leaf that is no longer needed is being interrupted.
+     */
+    private static final Object CANCELLING = new Object();
+
+    /**
+     * Set in <code>leafRunner</code> once the leaf is no longer needed, so it's never started.
+     */
+    private static final Object CANCELLED = new Object();
+
+    private final CircuitNode node;
+    private final int sequentialThreshold;
+    private final SolverMetrics metrics;
+
+    /**
+     * Completed with the value of the circuit once the root returns, or exceptionally if it was cancelled
+     * or interrupted. Only set for the root.
+     */
+    private final CompletableFuture<Boolean> completion;
+
+    /**
+     * The root tasks of the solver that aren't finished yet, which the root leaves once it's finished,
+     * whether its value is ever read or not. Only set for the root.
+     */
+    private final Set<ForkJoinNodeTask> activeRoots;
+
+    /**
+     * Set when the value of this node is no longer needed.
+     */
+    private final AtomicBoolean isAbandoned;
+
+    /**
+     * The thread evaluating this node if it's a leaf, so that it can be interrupted, <code>FINISHED</code>,
+     * <code>CANCELLING</code>, <code>CANCELLED</code>, or <code>null</code> if it hasn't started yet.
+     */
+    private final AtomicReference<Object> leafRunner;
+
+    /**
+     * The forked children of this node, abandoned together with this node.
+     */
+    private volatile ForkJoinNodeTask[] children;
+
+    /**
+     * Where the index of this node in the arguments of the parent is put once it's computed,
+     * or <code>null</code> for the root.
+     */
+    private final BlockingQueue<Integer> channelToParent;
+    private final int indexInParent;
+
+    /**
+     * Whether the subtree is cheap enough to be evaluated inline, or <code>null</code> if not estimated yet.
+     */
+    private Boolean isCheap;
+
+    ForkJoinNodeTask(CircuitNode node, int sequentialThreshold, SolverMetrics metrics,
+                     CompletableFuture<Boolean> completion, Set<ForkJoinNodeTask> activeRoots) {
+        this(node, sequentialThreshold, metrics, completion, activeRoots, null, 0, null);
+    }
+
+    private ForkJoinNodeTask(CircuitNode node, int sequentialThreshold, SolverMetrics metrics,
+                             CompletableFuture<Boolean> completion, Set<ForkJoinNodeTask> activeRoots,
+                             BlockingQueue<Integer> channelToParent, int indexInParent, Boolean isCheap) {
+        this.node = node;
+        this.sequentialThreshold = sequentialThreshold;
+        this.metrics = metrics;
+        this.completion = completion;
+        this.activeRoots = activeRoots;
+        this.isCheap = isCheap;
+        this.channelToParent = channelToParent;
+        this.indexInParent = indexInParent;
+        this.isAbandoned = new AtomicBoolean(false);
+        this.leafRunner = new AtomicReference<>();
+    }
+
+    /**
+     * Marks this node and its whole forked subtree as no longer needed,
+     * interrupting the leaves that are being evaluated.
+     */
+    void abandon() {
+        if (!isAbandoned.compareAndSet(false, true)) {
+            return;
+        }
+        metrics.nodeCancelled();
+        if (node.getType() == NodeType.LEAF) {
+            // a leaf that hasn't started never does, one that returned its value isn't interrupted
+            if (leafRunner.getAndSet(CANCELLING) instanceof Thread runner) {
+                runner.interrupt();
+            }
+            leafRunner.set(CANCELLED);
+        }
+        ForkJoinNodeTask[] forked = children;
+        if (forked != null) {
+            for (ForkJoinNodeTask child : forked) {
+                child.abandon();
+            }
+        }
+    }
+
+    /**
+     * Abandons the root and fails its stage, whether the task ever runs or not, once the solver is stopped.
+     */
+    void abort() {
+        abandon();
+        cancel(true);
+        completion.completeExceptionally(new CancellationException("The computation was cancelled."));
+    }
+
+    @Override
+    protected Boolean compute() {
+        metrics.taskStarted();
+        Boolean value = null;
+        try {
+            value = computeValue();
+            metrics.nodeEvaluated();
+            return value;
+        } finally {
+            metrics.taskFinished();
+            if (channelToParent != null) {
+                channelToParent.add(indexInParent);
+            } else {
+                activeRoots.remove(this);
+                if (value != null) {
+                    completion.complete(value);
+                } else {
+                    completion.completeExceptionally(new CancellationException("The computation was cancelled."));
+                }
+            }
+        }
+    }
+
+    private Boolean computeValue() {
+        if (isAbandoned.get()) {
+            if (node.getType() == NodeType.LEAF) {
+                metrics.leafSkipped();
+            }
+            throw new CancellationException();
+        }
+        try {
+            if (node.getType() == NodeType.LEAF) {
+                return computeLeaf((LeafNode) node);
+            }
+            if (isCheap == null) {
+                isCheap = isCheap(node);
+            }
+            if (isCheap) {
+                return solveInline(node);
+            }
+            return computeForked(node.getArgs());
+        } catch (InterruptedException e) {
+            // interrupted by abandon() or by the shutdown of the pool
+            throw new CancellationException();
+        }
+    }
+
+    private boolean computeLeaf(LeafNode leaf) throws InterruptedException {
+        Thread current = Thread.currentThread();
+        // abandon() might have been first
+        if (!leafRunner.compareAndSet(null, current)) {
+            throw new InterruptedException();
+        }
+        LeafBlocker blocker = new LeafBlocker(leaf);
+        boolean isNeeded;
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } finally {
+            // also if the leaf threw, so that abandon() doesn't interrupt the next task of the worker
+            isNeeded = finishLeaf(current);
+        }
+        metrics.leafEvaluated();
+        if (!isNeeded) {
+            throw new InterruptedException();
+        }
+        return blocker.value;
+    }
+
+    /**
+     * Unregisters the current thread from the leaf. If the leaf was abandoned meanwhile, waits until
+     * <code>abandon()</code> is done interrupting the thread, and clears the interrupt,
+     * so that it doesn't hit the next task of the worker.
+     *
+     * @return whether the leaf is still needed
+     */
+    private boolean finishLeaf(Thread current) {
+        if (leafRunner.compareAndSet(current, FINISHED)) {
+            return true;
+        }
+        while (leafRunner.get() == CANCELLING) {
+            Thread.onSpinWait();
+        }
+        Thread.interrupted();
+        return false;
+    }
+
+    /**
+     * Lets the pool compensate for a worker sleeping in a leaf.
+     */
+    private static final class LeafBlocker implements ForkJoinPool.ManagedBlocker {
+        private final LeafNode leaf;
+        private boolean value;
+        private boolean isReleasable;
+
+        LeafBlocker(LeafNode leaf) {
+            this.leaf = leaf;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            value = leaf.getValue();
+            isReleasable = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return isReleasable;
+        }
+    }
+
+    private boolean computeForked(CircuitNode[] args) throws InterruptedException {
+        ForkJoinNodeTask[] forked = new ForkJoinNodeTask[args.length];
+        BlockingQueue<Integer> finishedChildren = new LinkedBlockingQueue<>();
+        for (int i = 0; i < args.length; i++) {
+            forked[i] = new ForkJoinNodeTask(args[i], sequentialThreshold, metrics, null, null, finishedChildren, i,
+                    isCheap(args[i]));
+        }
+        children = forked;
+        for (ForkJoinNodeTask child : forked) {
+            metrics.taskSubmitted();
+            child.fork();
+        }
+
+        try {
+            return joinUntilDecided(forked, finishedChildren);
+        } finally {
+            // whatever wasn't needed for the result is abandoned
+            for (ForkJoinNodeTask child : forked) {
+                if (!child.isDone()) {
+                    child.abandon();
+                }
+            }
+            // so that a finished task doesn't keep its subtree alive
+            children = null;
+        }
+    }
+
+    /**
+     * Receives the values of the children in the order in which they finish, until they imply the value
+     * of the node. While no child has finished, this thread computes the children that nobody has stolen
+     * yet, and only then blocks.
+     */
+    private boolean joinUntilDecided(ForkJoinNodeTask[] forked, BlockingQueue<Integer> finishedChildren)
+            throws InterruptedException {
+        Boolean[] values = new Boolean[forked.length];
+        boolean[] isAbandonedByThis = new boolean[forked.length];
+        int trueCount = 0;
+        int falseCount = 0;
+        Boolean result = decide(values, 0, 0);
+        while (result == null) {
+            if (isAbandoned.get()) {
+                throw new InterruptedException();
+            }
+            Integer index = finishedChildren.poll();
+            if (index == null) {
+                if (computeUnstolenChild(forked)) {
+                    continue;
+                }
+                ChildrenBlocker blocker = new ChildrenBlocker(finishedChildren);
+                ForkJoinPool.managedBlock(blocker);
+                index = blocker.index;
+            }
+
+            if (isAbandonedByThis[index]) {
+                continue;
+            }
+            // the child has returned from compute(), so this doesn't block
+            boolean value = forked[index].join();
+            values[index] = value;
+            if (value) {
+                trueCount++;
+            } else {
+                falseCount++;
+            }
+            if (node.getType() == NodeType.IF && index == 0) {
+                int unused = value ? 2 : 1;
+                isAbandonedByThis[unused] = true;
+                forked[unused].abandon();
+            }
+            result = decide(values, trueCount, falseCount);
+        }
+        return result;
+    }
+
+    /**
+     * Takes back from the queue of this worker the most recently forked cheap child that wasn't stolen,
+     * and computes it on this thread. Expensive children are left for other workers,
+     * so that this thread stays free to react to whichever child finishes first.
+     *
+     * @return whether there was such child
+     */
+    private boolean computeUnstolenChild(ForkJoinNodeTask[] forked) {
+        for (int i = forked.length - 1; i >= 0; i--) {
+            if (forked[i].isCheap && !forked[i].isDone() && forked[i].tryUnfork()) {
+                // the value is read from the queue of finished children, like the value of any other child
+                forked[i].quietlyInvoke();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lets the pool compensate for a worker waiting for one of its children to finish.
+     */
+    private static final class ChildrenBlocker implements ForkJoinPool.ManagedBlocker {
+        private final BlockingQueue<Integer> finishedChildren;
+        private Integer index;
+
+        ChildrenBlocker(BlockingQueue<Integer> finishedChildren) {
+            this.finishedChildren = finishedChildren;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            if (index == null) {
+                index = finishedChildren.take();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            if (index == null) {
+                index = finishedChildren.poll();
+            }
+            return index != null;
+        }
+    }
+
+    /**
+     * @return the value of the node implied by the values of the children received so far,
+     * or <code>null</code> if it isn't implied yet
+     */
+    private Boolean decide(Boolean[] values, int trueCount, int falseCount) {
+        int n = values.length;
+        int notFalse = n - falseCount; // the highest number of true children still possible
+        return switch (node.getType()) {
+            case AND -> falseCount > 0 ? Boolean.FALSE : trueCount == n ? Boolean.TRUE : null;
+            case OR -> trueCount > 0 ? Boolean.TRUE : falseCount == n ? Boolean.FALSE : null;
+            case NOT -> values[0] == null ? null : !values[0];
+            case GT -> {
+                int threshold = ((ThresholdNode) node).getThreshold();
+                yield trueCount > threshold ? Boolean.TRUE : notFalse <= threshold ? Boolean.FALSE : null;
+            }
+            case LT -> {
+                int threshold = ((ThresholdNode) node).getThreshold();
+                yield trueCount >= threshold ? Boolean.FALSE : notFalse < threshold ? Boolean.TRUE : null;
+            }
+            case IF -> {
+                // either the condition and its branch are known, or both branches are known and equal
+                if (values[0] != null) {
+                    yield values[0] ? values[1] : values[2];
+                }
+                yield values[1] != null && values[1].equals(values[2]) ? values[1] : null;
+            }
+            default -> throw new IllegalStateException("Unexpected value: " + node.getType());
+        };
+    }
+
+    private boolean isCheap(CircuitNode n) throws InterruptedException {
+        return estimatedCostAtMost(n, sequentialThreshold) <= sequentialThreshold;
+    }
+
+    /**
+     * Estimates the cost of evaluating the subtree of the given node sequentially,
+     * giving up as soon as it exceeds the given limit.
+     *
+     * @return the estimated cost, or any value greater than <code>limit</code>
+     */
+    static long estimatedCostAtMost(CircuitNode node, long limit) throws InterruptedException {
+        if (node.getType() == NodeType.LEAF) {
+            return leafCost((LeafNode) node);
+        }
+        long cost = 1;
+        for (CircuitNode child : node.getArgs()) {
+            if (cost > limit) {
+                return cost;
+            }
+            long childCost = estimatedCostAtMost(child, limit - cost);
+            if (childCost == EXPENSIVE) {
+                return EXPENSIVE;
+            }
+            cost += childCost;
+        }
+        return cost;
+    }
+
+    /**
+     * Only immediate leaves may be evaluated inline.
+     */
+    private static long leafCost(LeafNode leaf) {
+        return leaf.isImmediate() ? 1 : EXPENSIVE;
+    }
+
+    /**
+     * Evaluates the subtree on this thread, the way <code>SequentialSolver</code> does.
+     */
+    private boolean solveInline(CircuitNode n) throws InterruptedException {
+        if (isAbandoned.get()) {
+            throw new InterruptedException();
+        }
+        if (n.getType() == NodeType.LEAF) {
+            return ((LeafNode) n).getValue();
+        }
+
+        CircuitNode[] args = n.getArgs();
+        return switch (n.getType()) {
+            case IF -> solveInline(args[0]) ? solveInline(args[1]) : solveInline(args[2]);
+            case NOT -> !solveInline(args[0]);
+            case AND -> {
+                for (CircuitNode arg : args) {
+                    if (!solveInline(arg)) {
+                        yield false;
+                    }
+                }
+                yield true;
+            }
+            case OR -> {
+                for (CircuitNode arg : args) {
+                    if (solveInline(arg)) {
+                        yield true;
+                    }
+                }
+                yield false;
+            }
+            case GT, LT -> {
+                int gotTrue = 0;
+                for (CircuitNode arg : args) {
+                    if (solveInline(arg)) {
+                        gotTrue++;
+                    }
+                }
+                int threshold = ((ThresholdNode) n).getThreshold();
+                yield n.getType() == NodeType.GT ? gotTrue > threshold : gotTrue < threshold;
+            }
+            default -> throw new IllegalStateException("Unexpected value: " + n.getType());
+        };
+    }
+}
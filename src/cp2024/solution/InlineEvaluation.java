@@ -0,0 +1,42 @@
+package cp2024.solution;
+
+import cp2024.circuit.CircuitNode;
+import cp2024.circuit.LeafNode;
+import cp2024.circuit.NodeType;
+
+/**
+ * Recognises trivial subtrees: immediate leaves, possibly under a chain of NOTs.
+ * Those are cheaper to evaluate on the calling thread than to hand over to another one.
+ */
+final class InlineEvaluation {
+    private InlineEvaluation() {
+    }
+
+    /**
+     * @return whether the subtree of the given node is an immediate leaf under zero or more NOT nodes
+     */
+    static boolean isTrivial(CircuitNode node) throws InterruptedException {
+        CircuitNode current = node;
+        while (current.getType() == NodeType.NOT) {
+            current = current.getArgs()[0];
+        }
+        return current.getType() == NodeType.LEAF && ((LeafNode) current).isImmediate();
+    }
+
+    /**
+     * Evaluates a trivial subtree on the calling thread.
+     *
+     * @param node a node for which <code>isTrivial</code> holds
+     * @return the value of the node
+     * @throws InterruptedException if the leaf was interrupted
+     */
+    static boolean evaluate(CircuitNode node) throws InterruptedException {
+        boolean negated = false;
+        CircuitNode current = node;
+        while (current.getType() == NodeType.NOT) {
+            negated = !negated;
+            current = current.getArgs()[0];
+        }
+        return negated != ((LeafNode) current).getValue();
+    }
+}
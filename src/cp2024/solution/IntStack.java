@@ -0,0 +1,31 @@
+package cp2024.solution;
+
+import java.util.Arrays;
+
+/**
+ * A growable stack of ints, so that compiled circuits are walked without recursion and without boxing the indices.
+ */
+final class IntStack {
+    private int[] items;
+    private int size;
+
+    IntStack(int capacity) {
+        this.items = new int[Math.max(capacity, 1)];
+        this.size = 0;
+    }
+
+    void push(int item) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, 2 * size);
+        }
+        items[size++] = item;
+    }
+
+    int pop() {
+        return items[--size];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,75 @@
+package cp2024.solution;
+
+import cp2024.circuit.LeafNode;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Values of leaves under a number of assignments, evaluated together by {@link BatchEvaluator}.
+ * The values of a leaf are packed 64 assignments to a <code>long</code>: assignment <code>i</code>
+ * is bit <code>i % 64</code> of word <code>i / 64</code>. Leaves are told apart by identity.
+ * Not thread-safe.
+ */
+public final class LeafAssignments {
+    private final int size;
+    private final Map<LeafNode, long[]> words;
+
+    /**
+     * @param size the number of assignments
+     */
+    public LeafAssignments(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The number of assignments must be non-negative.");
+        }
+        this.size = size;
+        this.words = new IdentityHashMap<>();
+    }
+
+    /**
+     * @return the number of assignments
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of words needed to hold one bit per assignment
+     */
+    public int wordCount() {
+        return (size + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    public void set(LeafNode leaf, int assignment, boolean value) {
+        if (assignment < 0 || assignment >= size) {
+            throw new IndexOutOfBoundsException("No assignment " + assignment + " among " + size + ".");
+        }
+        long[] leafWords = words.computeIfAbsent(leaf, l -> new long[wordCount()]);
+        long bit = 1L << (assignment % Long.SIZE);
+        if (value) {
+            leafWords[assignment / Long.SIZE] |= bit;
+        } else {
+            leafWords[assignment / Long.SIZE] &= ~bit;
+        }
+    }
+
+    public boolean get(LeafNode leaf, int assignment) {
+        long[] leafWords = words.get(leaf);
+        return leafWords != null && (leafWords[assignment / Long.SIZE] & (1L << (assignment % Long.SIZE))) != 0;
+    }
+
+    /**
+     * @return whether the leaf was given a value in any assignment
+     */
+    public boolean isAssigned(LeafNode leaf) {
+        return words.containsKey(leaf);
+    }
+
+    /**
+     * @return the given word of the values of the leaf, zero if the leaf was never assigned
+     */
+    long word(LeafNode leaf, int index) {
+        long[] leafWords = words.get(leaf);
+        return leafWords == null ? 0 : leafWords[index];
+    }
+}
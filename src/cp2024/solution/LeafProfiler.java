@@ -0,0 +1,186 @@
+package cp2024.solution;
+
+import cp2024.circuit.CircuitNode;
+import cp2024.circuit.LeafNode;
+import cp2024.circuit.NodeType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps online statistics of the observed durations and values of <code>getValue()</code> of leaves,
+ * grouped by the class of the leaf or by the leaf itself. A {@link ParallelCircuitSolver} with a profiler
+ * records every leaf it evaluates on a thread of its own, and submits the children of AND, OR, GT and LT nodes
+ * in the order of {@link #orderChildren}, so that when only some of them can run at once, the value is known sooner.
+ * Safe to share between solvers and threads. The keys are held weakly, so profiling doesn't keep leaves alive.
+ */
+public final class LeafProfiler {
+    /**
+     * How leaves are grouped into statistics.
+     */
+    public enum Granularity {
+        /**
+         * All the leaves of a class share their statistics, so a new leaf is estimated by the ones before it.
+         */
+        LEAF_CLASS,
+
+        /**
+         * Every leaf has statistics of its own, useful when the same leaves are solved over and over.
+         */
+        LEAF_IDENTITY
+    }
+
+    /**
+     * The statistics of a single key, updated under its own monitor.
+     */
+    private static final class Accumulator {
+        private long count;
+        private long trueCount;
+        private double meanNanos;
+        // the sum of the squared differences from the mean, by Welford's algorithm
+        private double squaredDeviationsNanos;
+        private long totalNanos;
+        private long maxNanos;
+
+        synchronized void record(long nanos, boolean value) {
+            count++;
+            if (value) {
+                trueCount++;
+            }
+            double delta = nanos - meanNanos;
+            meanNanos += delta / count;
+            squaredDeviationsNanos += delta * (nanos - meanNanos);
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        synchronized LeafStatistics snapshot(Object key) {
+            double variance = count > 1 ? squaredDeviationsNanos / (count - 1) : 0;
+            return new LeafStatistics(key, count, trueCount, meanNanos, Math.sqrt(variance), totalNanos, maxNanos);
+        }
+    }
+
+    /**
+     * Rarer values are treated as this frequent, so that a leaf never seen deciding its parent still has an estimate.
+     */
+    private static final double MIN_DECISIVE_FRACTION = 0.05;
+
+    private final Granularity granularity;
+
+    /**
+     * Guarded by itself.
+     */
+    private final Map<Object, Accumulator> accumulators;
+
+    public LeafProfiler() {
+        this(Granularity.LEAF_CLASS);
+    }
+
+    public LeafProfiler(Granularity granularity) {
+        this.granularity = granularity;
+        this.accumulators = new WeakHashMap<>();
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    private Object keyOf(LeafNode leaf) {
+        return granularity == Granularity.LEAF_CLASS ? leaf.getClass() : leaf;
+    }
+
+    /**
+     * Records a single evaluation of the leaf, which returned the given value after the given time.
+     */
+    public void record(LeafNode leaf, long nanos, boolean value) {
+        Accumulator accumulator;
+        synchronized (accumulators) {
+            accumulator = accumulators.computeIfAbsent(keyOf(leaf), key -> new Accumulator());
+        }
+        accumulator.record(nanos, value);
+    }
+
+    /**
+     * @return the statistics of the key of the leaf, or <code>null</code> if none of its evaluations were recorded
+     */
+    public LeafStatistics getStatistics(LeafNode leaf) {
+        Object key = keyOf(leaf);
+        Accumulator accumulator;
+        synchronized (accumulators) {
+            accumulator = accumulators.get(key);
+        }
+        return accumulator == null ? null : accumulator.snapshot(key);
+    }
+
+    /**
+     * @return the statistics of all the keys, the ones that took the most time in total first
+     */
+    public List<LeafStatistics> getStatistics() {
+        List<Map.Entry<Object, Accumulator>> entries;
+        synchronized (accumulators) {
+            entries = new ArrayList<>(accumulators.entrySet());
+        }
+        List<LeafStatistics> statistics = new ArrayList<>(entries.size());
+        for (Map.Entry<Object, Accumulator> entry : entries) {
+            statistics.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        statistics.sort(Comparator.comparingLong(LeafStatistics::getTotalNanos).reversed());
+        return Collections.unmodifiableList(statistics);
+    }
+
+    public void clear() {
+        synchronized (accumulators) {
+            accumulators.clear();
+        }
+    }
+
+    /**
+     * Sorts the arguments of a node, so that the leaves expected to decide its value soonest go first:
+     * for AND and OR, by the expected time to give the value that decides the node, for GT and LT by the mean time.
+     * Leaves never recorded are estimated by their cost hints. The arguments with no estimate,
+     * including all inner nodes, keep their order after the estimated ones.
+     *
+     * @param type the type of the node
+     * @param args the arguments of the node, sorted in place
+     */
+    public void orderChildren(NodeType type, List<CircuitNode> args) {
+        Boolean decisiveValue = switch (type) {
+            case AND -> Boolean.FALSE;
+            case OR -> Boolean.TRUE;
+            default -> null;
+        };
+        Map<CircuitNode, Double> estimates = new IdentityHashMap<>();
+        for (CircuitNode arg : args) {
+            double estimate = arg instanceof LeafNode leaf ? estimateNanos(leaf, decisiveValue) : Double.NaN;
+            estimates.put(arg, Double.isNaN(estimate) ? Double.POSITIVE_INFINITY : estimate);
+        }
+        // stable, so the order in the circuit breaks ties
+        args.sort(Comparator.comparingDouble(estimates::get));
+    }
+
+    /**
+     * Estimates the expected time it takes the leaf to give a value that decides its parent,
+     * i.e. its mean duration divided by how often it gives that value.
+     *
+     * @param decisiveValue the value that decides the parent, or <code>null</code> if both values may decide it
+     * @return the estimate in nanoseconds, or <code>NaN</code> if nothing is known about the leaf
+     */
+    private double estimateNanos(LeafNode leaf, Boolean decisiveValue) {
+        LeafStatistics statistics = getStatistics(leaf);
+        if (statistics == null) {
+            Duration costHint = leaf.getCostHint();
+            return costHint == null ? Double.NaN : costHint.toNanos();
+        }
+        if (decisiveValue == null) {
+            return statistics.getMeanNanos();
+        }
+        double fraction = decisiveValue ? statistics.getTrueFraction() : 1 - statistics.getTrueFraction();
+        return statistics.getMeanNanos() / Math.max(fraction, MIN_DECISIVE_FRACTION);
+    }
+}
@@ -0,0 +1,74 @@
+package cp2024.solution;
+
+import java.time.Duration;
+
+/**
+ * A snapshot of the statistics a {@link LeafProfiler} keeps for a single leaf class or leaf.
+ */
+public final class LeafStatistics {
+    private final Object key;
+    private final long count;
+    private final long trueCount;
+    private final double meanNanos;
+    private final double standardDeviationNanos;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    LeafStatistics(Object key, long count, long trueCount, double meanNanos, double standardDeviationNanos,
+                   long totalNanos, long maxNanos) {
+        this.key = key;
+        this.count = count;
+        this.trueCount = trueCount;
+        this.meanNanos = meanNanos;
+        this.standardDeviationNanos = standardDeviationNanos;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * @return the class of the leaves or the leaf itself, depending on the granularity of the profiler
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * @return the number of recorded evaluations
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the fraction of the evaluations that gave true
+     */
+    public double getTrueFraction() {
+        return count == 0 ? 0 : (double) trueCount / count;
+    }
+
+    public double getMeanNanos() {
+        return meanNanos;
+    }
+
+    public double getStandardDeviationNanos() {
+        return standardDeviationNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public Duration getMean() {
+        return Duration.ofNanos(Math.round(meanNanos));
+    }
+
+    public Duration getMax() {
+        return Duration.ofNanos(maxNanos);
+    }
+
+    @Override
+    public String toString() {
+        return key + ": " + count + " evaluations, mean " + getMean().toMillis() + " ms, max "
+                + getMax().toMillis() + " ms, " + Math.round(100 * getTrueFraction()) + "% true";
+    }
+}
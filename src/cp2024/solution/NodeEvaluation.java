@@ -0,0 +1,486 @@
+package cp2024.solution;
+
+import cp2024.circuit.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The state of a single node during a computation of an {@link EventDrivenCircuitSolver}.
+ * Inner nodes never occupy a thread: they are updated from the completion callbacks of their children,
+ * and resolve (and cancel their remaining children) as soon as the received values imply the result.
+ * Only leaves, and the expansion of subtrees, are submitted to the pool. The circuit is walked without recursion
+ * in every direction, down to expand it or cancel it, and up to push the values, so deep circuits don't overflow
+ * the stack.
+ */
+abstract class NodeEvaluation {
+    protected final CircuitNode node;
+
+    /**
+     * The evaluation to be notified about the value of this node, or <code>null</code> for the root.
+     */
+    private final NodeEvaluation parent;
+
+    /**
+     * The index of this node in the arguments of the parent.
+     */
+    private final int indexInParent;
+
+    protected final EventDrivenCircuitValue circuitValue;
+    protected final ExecutorService pool;
+
+    /**
+     * Set once, when the value of this node is known or it is no longer needed.
+     */
+    private final AtomicBoolean isDone;
+
+    protected NodeEvaluation(CircuitNode node, NodeEvaluation parent, int indexInParent,
+                             EventDrivenCircuitValue circuitValue, ExecutorService pool) {
+        this.node = node;
+        this.parent = parent;
+        this.indexInParent = indexInParent;
+        this.circuitValue = circuitValue;
+        this.pool = pool;
+        this.isDone = new AtomicBoolean(false);
+    }
+
+    /**
+     * Creates the evaluation of the given node, of the kind matching its type.
+     */
+    static NodeEvaluation of(CircuitNode node, NodeEvaluation parent, int indexInParent,
+                             EventDrivenCircuitValue circuitValue, ExecutorService pool) {
+        return switch (node.getType()) {
+            case LEAF -> new LeafEvaluation(node, parent, indexInParent, circuitValue, pool);
+            case IF -> new IfEvaluation(node, parent, indexInParent, circuitValue, pool);
+            case AND, OR, GT, LT, NOT -> new CountingEvaluation(node, parent, indexInParent, circuitValue, pool);
+        };
+    }
+
+    /**
+     * Starts the evaluation of the subtree of this node in depth-first order, with an explicit stack, skipping
+     * the nodes that are already done. Of the inner children of a node, only the first one is expanded
+     * on the current thread, the subtrees of the others are expanded by tasks of their own, so that a wide circuit
+     * isn't expanded by a single thread, and a <code>getArgs()</code> that blocks holds back only its own subtree.
+     */
+    final void start() {
+        Deque<NodeEvaluation> pending = new ArrayDeque<>();
+        pending.push(this);
+        try {
+            while (!pending.isEmpty()) {
+                NodeEvaluation next = pending.pop();
+                if (next.isDone()) {
+                    continue;
+                }
+                NodeEvaluation[] children = next.begin();
+                if (children != null) {
+                    expand(children, pending);
+                }
+            }
+        } catch (InterruptedException e) {
+            // nobody but stop() interrupts the threads expanding the circuit
+            circuitValue.abort();
+        } catch (RejectedExecutionException e) {
+            // the solver was stopped
+            circuitValue.abort();
+        }
+    }
+
+    /**
+     * Submits the expansion of the inner children but the first one, and pushes the others to be started
+     * in order on the current thread.
+     */
+    private void expand(NodeEvaluation[] children, Deque<NodeEvaluation> pending) {
+        int expandedHere = -1;
+        for (int i = 0; i < children.length; i++) {
+            if (children[i] instanceof LeafEvaluation) {
+                continue;
+            }
+            if (expandedHere < 0) {
+                expandedHere = i;
+            } else {
+                CountedTask.submit(pool, Executors.callable(children[i]::start), circuitValue.metrics, false);
+            }
+        }
+        for (int i = children.length - 1; i >= 0; i--) {
+            if (children[i] instanceof LeafEvaluation || i == expandedHere) {
+                pending.push(children[i]);
+            }
+        }
+    }
+
+    /**
+     * Starts the evaluation of this node alone.
+     *
+     * @return the evaluations of the children, to be started next, or <code>null</code> if there are none
+     */
+    protected abstract NodeEvaluation[] begin() throws InterruptedException;
+
+    /**
+     * Called from the completion callback of the child with the given index.
+     *
+     * @return the value of this node if the values of the children received so far imply it, otherwise
+     *         <code>null</code>, then the node isn't completed yet
+     */
+    protected abstract Boolean onChildValue(int index, boolean value);
+
+    /**
+     * @return the evaluations started on behalf of this node, or <code>null</code> if there are none yet
+     */
+    protected abstract NodeEvaluation[] children();
+
+    /**
+     * Stops what the node runs by itself, rather than through its children, once it's done.
+     */
+    protected void onDone() {
+    }
+
+    final boolean isDone() {
+        return isDone.get();
+    }
+
+    /**
+     * Sets the value of this node, cancels the evaluations of the children that are still running
+     * and notifies the parent, and so on up the circuit as long as the values imply the values of the parents.
+     * If the node was already resolved or cancelled, does nothing.
+     */
+    protected final void complete(boolean value) {
+        NodeEvaluation current = this;
+        while (current.isDone.compareAndSet(false, true)) {
+            circuitValue.metrics.nodeEvaluated();
+            current.cancelChildren();
+            if (current.parent == null) {
+                circuitValue.complete(value);
+                return;
+            }
+            Boolean parentValue = current.parent.onChildValue(current.indexInParent, value);
+            if (parentValue == null) {
+                return;
+            }
+            current = current.parent;
+            value = parentValue;
+        }
+    }
+
+    /**
+     * Marks this node as no longer needed and cancels its whole subtree.
+     * If the node was already resolved or cancelled, does nothing.
+     */
+    final void cancel() {
+        if (!isDone.compareAndSet(false, true)) {
+            return;
+        }
+        circuitValue.metrics.nodeCancelled();
+        cancelChildren();
+    }
+
+    /**
+     * Cancels the evaluations started on behalf of this node, which is done, and their whole subtrees,
+     * with an explicit stack.
+     */
+    private void cancelChildren() {
+        onDone();
+        NodeEvaluation[] children = children();
+        if (children == null) {
+            return;
+        }
+        Deque<NodeEvaluation> cancelled = new ArrayDeque<>();
+        for (NodeEvaluation child : children) {
+            cancelled.push(child);
+        }
+        while (!cancelled.isEmpty()) {
+            NodeEvaluation next = cancelled.pop();
+            if (!next.isDone.compareAndSet(false, true)) {
+                // its subtree was cancelled when it was marked
+                continue;
+            }
+            circuitValue.metrics.nodeCancelled();
+            next.onDone();
+            NodeEvaluation[] grandchildren = next.children();
+            if (grandchildren != null) {
+                for (NodeEvaluation grandchild : grandchildren) {
+                    cancelled.push(grandchild);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the evaluations of all arguments of this node, without starting them.
+     */
+    protected final NodeEvaluation[] createChildren(CircuitNode[] args) {
+        NodeEvaluation[] children = new NodeEvaluation[args.length];
+        for (int i = 0; i < args.length; i++) {
+            children[i] = NodeEvaluation.of(args[i], this, i, circuitValue, pool);
+        }
+        return children;
+    }
+
+    protected static void cancelAll(NodeEvaluation[] children) {
+        for (NodeEvaluation child : children) {
+            child.cancel();
+        }
+    }
+
+    /**
+     * A leaf, the only kind of node whose evaluation occupies a thread of the pool.
+     */
+    static final class LeafEvaluation extends NodeEvaluation {
+        private volatile Future<?> task;
+
+        /**
+         * Set by the task itself once the value of the leaf is known, so that resolving the leaf
+         * doesn't interrupt the thread that is still running its completion callbacks.
+         */
+        private volatile boolean hasValue;
+
+        /**
+         * Set once, either right before <code>getValue()</code> or by the cancellation of a leaf
+         * that hasn't got that far, so that the skipped leaves are counted exactly once.
+         */
+        private final AtomicBoolean isClaimed;
+
+        LeafEvaluation(CircuitNode node, NodeEvaluation parent, int indexInParent,
+                       EventDrivenCircuitValue circuitValue, ExecutorService pool) {
+            super(node, parent, indexInParent, circuitValue, pool);
+            this.isClaimed = new AtomicBoolean(false);
+        }
+
+        @Override
+        protected NodeEvaluation[] begin() throws InterruptedException {
+            LeafNode leaf = (LeafNode) node;
+            if (leaf.isImmediate()) {
+                // not worth a task of its own
+                if (!claim()) {
+                    return null;
+                }
+                boolean value = leaf.getValue();
+                hasValue = true;
+                circuitValue.metrics.leafEvaluated();
+                complete(value);
+                return null;
+            }
+            task = CountedTask.submit(pool, Executors.callable(this::evaluate), circuitValue.metrics, false);
+            // cancel() might have missed the task
+            if (isDone()) {
+                task.cancel(true);
+            }
+            return null;
+        }
+
+        /**
+         * @return whether <code>getValue()</code> may be called, otherwise the leaf was already counted as skipped
+         */
+        private boolean claim() {
+            if (!isClaimed.compareAndSet(false, true)) {
+                return false;
+            }
+            if (isDone()) {
+                circuitValue.metrics.leafSkipped();
+                return false;
+            }
+            return true;
+        }
+
+        private void evaluate() {
+            if (!claim()) {
+                return;
+            }
+            try {
+                boolean value = ((LeafNode) node).getValue();
+                hasValue = true;
+                circuitValue.metrics.leafEvaluated();
+                complete(value);
+            } catch (InterruptedException e) {
+                if (!isDone()) {
+                    // interrupted by stop(), not by the cancellation of this leaf
+                    circuitValue.abort();
+                }
+            }
+        }
+
+        @Override
+        protected Boolean onChildValue(int index, boolean value) {
+            throw new IllegalStateException("Leaves have no children.");
+        }
+
+        @Override
+        protected NodeEvaluation[] children() {
+            return null;
+        }
+
+        @Override
+        protected void onDone() {
+            if (isClaimed.compareAndSet(false, true)) {
+                // getValue() never started, and now it never will
+                circuitValue.metrics.leafSkipped();
+            }
+            Future<?> task = this.task;
+            if (task != null && !hasValue) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * A node of type AND, OR, GT, LT or NOT, whose value only depends on how many children were true
+     * and how many were false.
+     */
+    static final class CountingEvaluation extends NodeEvaluation {
+        private static final int FALSE_COUNT_BITS = 32;
+        private static final long ONE_TRUE = 1L << FALSE_COUNT_BITS;
+        private static final long FALSE_COUNT_MASK = ONE_TRUE - 1;
+
+        /**
+         * The number of true children in the upper half, the number of false children in the lower half,
+         * so that both counts are always read together.
+         */
+        private final AtomicLong counts;
+
+        private volatile NodeEvaluation[] children;
+        private int numberOfChildren;
+        private int threshold;
+
+        CountingEvaluation(CircuitNode node, NodeEvaluation parent, int indexInParent,
+                           EventDrivenCircuitValue circuitValue, ExecutorService pool) {
+            super(node, parent, indexInParent, circuitValue, pool);
+            this.counts = new AtomicLong(0);
+        }
+
+        @Override
+        protected NodeEvaluation[] begin() throws InterruptedException {
+            CircuitNode[] args = node.getArgs();
+            numberOfChildren = args.length;
+            if (node instanceof ThresholdNode thresholdNode) {
+                threshold = thresholdNode.getThreshold();
+            }
+            // some thresholds are decided before any child is known
+            Boolean result = resolve(0, 0);
+            if (result != null) {
+                complete(result);
+                return null;
+            }
+
+            NodeEvaluation[] children = createChildren(args);
+            this.children = children;
+            if (isDone()) {
+                // resolved or cancelled before the children were published
+                cancelAll(children);
+                return null;
+            }
+            return children;
+        }
+
+        @Override
+        protected Boolean onChildValue(int index, boolean value) {
+            long updated = counts.addAndGet(value ? ONE_TRUE : 1);
+            return resolve((int) (updated >>> FALSE_COUNT_BITS), (int) (updated & FALSE_COUNT_MASK));
+        }
+
+        /**
+         * @return the value of the node if the given counts of children values already imply it,
+         *         <code>null</code> otherwise
+         */
+        private Boolean resolve(int trueCount, int falseCount) {
+            int notFalse = numberOfChildren - falseCount; // the highest number of true children still possible
+            Boolean result = switch (node.getType()) {
+                case AND -> falseCount > 0 ? Boolean.FALSE : trueCount == numberOfChildren ? Boolean.TRUE : null;
+                case OR -> trueCount > 0 ? Boolean.TRUE : falseCount == numberOfChildren ? Boolean.FALSE : null;
+                case NOT -> trueCount > 0 ? Boolean.FALSE : falseCount > 0 ? Boolean.TRUE : null;
+                case GT -> trueCount > threshold ? Boolean.TRUE : notFalse <= threshold ? Boolean.FALSE : null;
+                case LT -> trueCount >= threshold ? Boolean.FALSE : notFalse < threshold ? Boolean.TRUE : null;
+                default -> throw new IllegalStateException("Unexpected value: " + node.getType());
+            };
+            return result;
+        }
+
+        @Override
+        protected NodeEvaluation[] children() {
+            return children;
+        }
+    }
+
+    /**
+     * A node of type IF. The unused branch is cancelled as soon as the condition is known,
+     * and the node resolves early if both branches are known and equal.
+     */
+    static final class IfEvaluation extends NodeEvaluation {
+        private static final int CONDITION = 0;
+        private static final int IF_TRUE = 1;
+        private static final int IF_FALSE = 2;
+
+        /**
+         * Two bits per child: whether its value is known, and the value itself.
+         */
+        private final AtomicInteger state;
+
+        private volatile NodeEvaluation[] children;
+
+        IfEvaluation(CircuitNode node, NodeEvaluation parent, int indexInParent,
+                     EventDrivenCircuitValue circuitValue, ExecutorService pool) {
+            super(node, parent, indexInParent, circuitValue, pool);
+            this.state = new AtomicInteger(0);
+        }
+
+        private static int knownBit(int index) {
+            return 1 << (2 * index);
+        }
+
+        private static int valueBit(int index) {
+            return 1 << (2 * index + 1);
+        }
+
+        private static boolean isKnown(int state, int index) {
+            return (state & knownBit(index)) != 0;
+        }
+
+        private static boolean valueOf(int state, int index) {
+            return (state & valueBit(index)) != 0;
+        }
+
+        @Override
+        protected NodeEvaluation[] begin() throws InterruptedException {
+            NodeEvaluation[] children = createChildren(node.getArgs());
+            this.children = children;
+            if (isDone()) {
+                cancelAll(children);
+                return null;
+            }
+            return children;
+        }
+
+        @Override
+        protected Boolean onChildValue(int index, boolean value) {
+            int bits = knownBit(index) | (value ? valueBit(index) : 0);
+            int updated = state.accumulateAndGet(bits, (current, update) -> current | update);
+
+            // to know the value of an IF node one of the following must be satisfied:
+            // 1. the condition is known and its branch is known
+            // 2. both branches are known and equal
+            if (isKnown(updated, CONDITION)) {
+                int chosen = valueOf(updated, CONDITION) ? IF_TRUE : IF_FALSE;
+                if (isKnown(updated, chosen)) {
+                    return valueOf(updated, chosen);
+                }
+                if (index == CONDITION) {
+                    children[chosen == IF_TRUE ? IF_FALSE : IF_TRUE].cancel();
+                }
+            } else if (isKnown(updated, IF_TRUE) && isKnown(updated, IF_FALSE)
+                    && valueOf(updated, IF_TRUE) == valueOf(updated, IF_FALSE)) {
+                return valueOf(updated, IF_TRUE);
+            }
+            return null;
+        }
+
+        @Override
+        protected NodeEvaluation[] children() {
+            return children;
+        }
+    }
+}
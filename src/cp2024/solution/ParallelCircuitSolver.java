@@ -1,37 +1,240 @@
 package cp2024.solution;
 
 
-import cp2024.circuit.CircuitSolver;
+import cp2024.circuit.AsyncCircuitSolver;
+import cp2024.circuit.AsyncCircuitValue;
 import cp2024.circuit.CircuitValue;
 import cp2024.circuit.Circuit;
+import cp2024.circuit.CircuitSimplifier;
+import cp2024.circuit.CompiledCircuit;
+import cp2024.circuit.SubcircuitCache;
 import cp2024.demo.BrokenCircuitValue;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class ParallelCircuitSolver implements CircuitSolver {
+public class ParallelCircuitSolver implements AsyncCircuitSolver {
     private boolean acceptsComputations;
     private final ExecutorService pool;
+    private final ParallelSolverOptions options;
+
+    /**
+     * The number of leaves being evaluated, in all the computations of this solver.
+     */
+    private final AtomicInteger busyLeaves;
+
+    private final AdmissionController admission;
+
+    /**
+     * The per-solve arrays of compiled circuits, reused across their solves.
+     */
+    private final CompiledStatePool compiledStates;
+
+    private final SolverMetrics metrics;
+
+    /**
+     * The roots of the computations started and not yet finished, woken up when the solver is stopped.
+     */
+    private final Set<ParallelCircuitValue> activeRoots;
 
     public ParallelCircuitSolver() {
+        this(ParallelSolverOptions.DEFAULT);
+    }
+
+    /**
+     * @param mode the kind of threads on which the node computations will be run
+     */
+    public ParallelCircuitSolver(ExecutionMode mode) {
+        this(ParallelSolverOptions.DEFAULT.withMode(mode));
+    }
+
+    /**
+     * @param mode  the kind of threads on which the node computations will be run
+     * @param cache the values of deterministic subcircuits remembered across solves,
+     *              or <code>null</code> to evaluate every subcircuit
+     */
+    public ParallelCircuitSolver(ExecutionMode mode, SubcircuitCache cache) {
+        this(ParallelSolverOptions.DEFAULT.withMode(mode).withCache(cache));
+    }
+
+    public ParallelCircuitSolver(ParallelSolverOptions options) {
         this.acceptsComputations = true;
-        pool = Executors.newCachedThreadPool();
+        this.options = options;
+        this.busyLeaves = new AtomicInteger(0);
+        this.admission = new AdmissionController(options.getAdmissionLimits());
+        this.compiledStates = new CompiledStatePool();
+        this.metrics = new SolverMetrics(admission::getQueueDepth);
+        this.activeRoots = ConcurrentHashMap.newKeySet();
+        pool = options.getMode().newExecutor();
+        CircuitEvents.preload();
+    }
+
+    public ParallelSolverOptions getOptions() {
+        return options;
+    }
+
+    public ExecutionMode getMode() {
+        return options.getMode();
+    }
+
+    /**
+     * @return the cache of subcircuit values, or <code>null</code> if it's disabled
+     */
+    public SubcircuitCache getCache() {
+        return options.getCache();
+    }
+
+    /**
+     * @return the statistics of the leaves evaluated by this solver, or <code>null</code> if profiling is disabled
+     */
+    public LeafProfiler getProfiler() {
+        return options.getProfiler();
+    }
+
+    /**
+     * @return the gauges of the load of this solver, with its admission limits
+     */
+    public AdmissionController getAdmission() {
+        return admission;
+    }
+
+    /**
+     * @return the counters of all the computations of this solver, which can also be published over JMX
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the number of leaves being evaluated at the moment, in all the computations of this solver
+     */
+    public int getBusyLeaves() {
+        return busyLeaves.get();
+    }
+
+    private synchronized boolean isAcceptingComputations() {
+        return acceptsComputations;
+    }
+
+    /**
+     * Starts the computation once the admission limits allow. Not synchronized, so that a solve held back
+     * by the limits doesn't hold back the solves that don't need to wait, or <code>stop()</code>.
+     *
+     * @param submit submits the computation to the pool
+     * @param abort  cancels the computation if it was never started
+     * @return the result, or a cancelled value if the BLOCK policy was interrupted
+     * @throws RejectedExecutionException if the FAIL_FAST policy found no room
+     */
+    private AsyncCircuitValue admit(AsyncCircuitValue result, Runnable submit, Runnable abort) {
+        Runnable start = () -> {
+            try {
+                submit.run();
+            } catch (RejectedExecutionException e) {
+                // the solver was stopped
+                abort.run();
+            }
+        };
+        try {
+            admission.admit(start, abort, result.asCompletionStage());
+        } catch (InterruptedException e) {
+            // nothing was admitted, so the value never completes on its own
+            abort.run();
+            Thread.currentThread().interrupt();
+            return new BrokenCircuitValue();
+        } catch (RejectedExecutionException e) {
+            abort.run();
+            throw e;
+        }
+        return result;
     }
 
     @Override
-    public synchronized CircuitValue solve(Circuit c) {
-        if (!acceptsComputations) {
+    public CircuitValue solve(Circuit c) {
+        return solveAsync(c);
+    }
+
+    /**
+     * @throws RejectedExecutionException if the admission limits are reached and their policy is FAIL_FAST
+     */
+    @Override
+    public AsyncCircuitValue solveAsync(Circuit c) {
+        if (!isAcceptingComputations()) {
             return new BrokenCircuitValue();
         }
 
-        ParallelCircuitValue result = new ParallelCircuitValue(c.getRoot(), null, pool);
-        pool.submit(result::computeValue);
-        return result;
+        SubcircuitCache cache = options.getCache();
+        SolveTracer tracer = options.getTracer();
+        ParallelCircuitValue result = new ParallelCircuitValue(c.getRoot(), null, new ComputationContext(pool,
+                cache == null ? null : cache.newSession(), options.getProfiler(), options.getSpeculationPolicy(),
+                busyLeaves, admission, metrics, tracer == null ? null : tracer.sample()));
+        metrics.solveStarted(result.asCompletionStage());
+        CircuitEvents.solveStarted("parallel", c.getRoot().getType(), result.asCompletionStage());
+        try {
+            if (InlineEvaluation.isTrivial(c.getRoot())) {
+                // not worth the admission
+                result.computeValueInline();
+                return result;
+            }
+        } catch (InterruptedException e) {
+            // the leaf was evaluated on the calling thread, whose interrupt isn't ours to swallow
+            Thread.currentThread().interrupt();
+            return new BrokenCircuitValue();
+        }
+
+        activeRoots.add(result);
+        result.asCompletionStage().whenComplete((value, exception) -> activeRoots.remove(result));
+        return admit(result, () -> CountedTask.submit(pool, Executors.callable(result::computeValue), metrics, false),
+                result::abort);
+    }
+
+    /**
+     * Like <code>solveAsync</code>, but if asked to, first rewrites the circuit with {@link CircuitSimplifier}
+     * on the calling thread, so that folded nodes don't get tasks of their own.
+     */
+    public AsyncCircuitValue solve(Circuit c, boolean simplify) {
+        if (!simplify) {
+            return solveAsync(c);
+        }
+        try {
+            return solveAsync(CircuitSimplifier.simplify(c).getCircuit());
+        } catch (InterruptedException e) {
+            // getArgs() was interrupted on the calling thread, whose interrupt isn't ours to swallow
+            Thread.currentThread().interrupt();
+            return new BrokenCircuitValue();
+        }
+    }
+
+    /**
+     * Evaluates the compiled circuit by index, with one state word per node instead of a task per node.
+     * The arrays of the states are reused when the same compiled circuit is solved again.
+     */
+    public AsyncCircuitValue solve(CompiledCircuit c) {
+        if (!isAcceptingComputations()) {
+            return new BrokenCircuitValue();
+        }
+
+        CompiledCircuitValue result = new CompiledCircuitValue(c, pool, admission, compiledStates, metrics);
+        metrics.solveStarted(result.asCompletionStage());
+        CircuitEvents.solveStarted("parallel-compiled", c.getType(c.getRoot()), result.asCompletionStage());
+        return admit(result, () -> CountedTask.submit(pool, Executors.callable(result::start), metrics, false),
+                result::abort);
     }
 
     @Override
     public synchronized void stop() {
         acceptsComputations = false;
+        // only marks the roots, so that the threads waiting for them don't wait for the interrupted workers,
+        // which cancel the computations themselves
+        for (ParallelCircuitValue root : activeRoots) {
+            root.stop();
+        }
         pool.shutdownNow();
+        // the bookkeeping is done once nothing waits for it
+        admission.abortQueued();
+        metrics.unregister();
     }
 }
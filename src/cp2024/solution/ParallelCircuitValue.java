@@ -4,11 +4,25 @@ import cp2024.circuit.*;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 
-public class ParallelCircuitValue implements CircuitValue {
+public class ParallelCircuitValue implements AsyncCircuitValue {
     private final CircuitNode node;
-    private boolean isCancelled;
+
+    /**
+     * The depth of the node in the circuit, the root being at depth 0. Only reported in {@link CircuitEvents}.
+     */
+    private final int depth;
+
+    /**
+     * Set once by the first call to <code>cancelSubtree()</code>.
+     * Not guarded by a monitor, so that a virtual thread waiting for its children to finish
+     * in <code>cancelSubtree()</code> doesn't pin its carrier thread.
+     */
+    private final AtomicBoolean isCancelled;
 
     /**
      * Used to await for the computation of the value, or cancellation of the computation.
@@ -21,9 +35,19 @@ public class ParallelCircuitValue implements CircuitValue {
     private boolean value;
 
     /**
-     * List of all the tasks for the children of the current node.
+     * The computations of the children the current node used, once per use.
+     */
+    private final List<ParallelCircuitValue> usedChildren;
+
+    /**
+     * The task computing the node, or <code>null</code> for the root and until it's submitted.
      */
-    private final List<Future<Optional<Boolean>>> childrenTasks;
+    private volatile Future<?> task;
+
+    /**
+     * Children that are yet to be submitted to the pool, because they may turn out to be unnecessary.
+     */
+    private List<CircuitNode> pendingChildren;
 
     /**
      * The pool on which all the child computations are executed.
@@ -31,24 +55,137 @@ public class ParallelCircuitValue implements CircuitValue {
     private final ExecutorService pool;
 
     /**
-     * The channel to the parent, where the value of the current node will be sent when computed.
+     * Where the value of the current node is sent when computed, or an empty optional if it's cancelled,
+     * one per use of the node by a parent. Guards itself and <code>outcome</code>.
      */
-    private final BlockingQueue<Optional<Boolean>> channelToParent;
+    private final List<Consumer<Optional<Boolean>>> subscribers;
+
+    /**
+     * What was sent to the subscribers, or <code>null</code> until the node is computed or cancelled.
+     */
+    private Optional<Boolean> outcome;
 
     /**
      * The channel to the children, from which the values of the children will be read.
      */
     private final BlockingQueue<Optional<Boolean>> channelToChildren;
 
+    /**
+     * Completed with the value right before the latch is broken. Only the root of the computation has one.
+     */
+    private final CompletableFuture<Boolean> completion;
+
+    /**
+     * Set for the root once either its value or the stop of its solver is decided, so that a value set after
+     * the solver was stopped isn't delivered. <code>null</code> for the other nodes.
+     */
+    private final AtomicBoolean isSettled;
+
+    /**
+     * Whether the solver was stopped before the value of the root was set.
+     */
+    private volatile boolean isStopped;
+
+    /**
+     * Cancelled to cancel the subtree of the current node, see {@link CancellationToken}.
+     */
+    private final CancellationToken token;
+
+    /**
+     * The number of uses of children that didn't send their values yet,
+     * so that a node that got its value with all of its children finished doesn't cancel anything.
+     */
+    private final AtomicInteger runningChildren;
+
+    /**
+     * Shared by all the nodes of the computation.
+     */
+    private final ComputationContext context;
+
+    /**
+     * The timeline of the node, or <code>null</code> if the computation isn't traced.
+     */
+    private final SolveTrace.Span span;
+
 
     public ParallelCircuitValue(CircuitNode node, BlockingQueue<Optional<Boolean>> channelToParent, ExecutorService pool) {
+        this(node, channelToParent,
+                new ComputationContext(pool, null, null, SpeculationPolicy.EAGER, new AtomicInteger(0),
+                        new AdmissionController(AdmissionLimits.UNLIMITED), new SolverMetrics(), null));
+    }
+
+    ParallelCircuitValue(CircuitNode node, BlockingQueue<Optional<Boolean>> channelToParent, ComputationContext context) {
+        this(node, context, CancellationToken.newTree(), 0, null, channelToParent == null);
+        if (channelToParent != null) {
+            subscribers.add(channelToParent::add);
+        }
+    }
+
+    /**
+     * @param parentSpan the span of the parent in the trace, or <code>null</code> for the root
+     * @param isRoot     whether this is the value of the whole circuit, which can be observed as a stage
+     */
+    private ParallelCircuitValue(CircuitNode node, ComputationContext context, CancellationToken token, int depth,
+                                 SolveTrace.Span parentSpan, boolean isRoot) {
         this.node = node;
-        this.isCancelled = false;
+        this.depth = depth;
+        this.context = context;
+        this.span = context.trace == null ? null : context.trace.open(parentSpan, node.getType(), depth);
+        this.isCancelled = new AtomicBoolean(false);
         this.latch = new CountDownLatch(1);
-        this.childrenTasks = Collections.synchronizedList(new ArrayList<>()); // is this good enough?
-        this.pool = pool;
-        this.channelToParent = channelToParent;
+        this.usedChildren = Collections.synchronizedList(new ArrayList<>()); // is this good enough?
+        this.pendingChildren = List.of();
+        this.pool = context.pool;
+        this.subscribers = new ArrayList<>(1);
+        this.outcome = null;
         this.channelToChildren = new LinkedBlockingQueue<>();
+        this.token = token;
+        this.runningChildren = new AtomicInteger(0);
+        this.isStopped = false;
+        if (isRoot) {
+            this.isSettled = new AtomicBoolean(false);
+            this.completion = new CompletableFuture<>();
+            cancelWhenCompletedByUser(completion, latch, token);
+        } else {
+            this.isSettled = null;
+            this.completion = null;
+        }
+    }
+
+    /**
+     * Makes the root of the computation cancel it, whether it's already running or not, once its stage is cancelled
+     * (or otherwise completed exceptionally) by the user, not by this computation. Doesn't wait for the cancellation
+     * to finish. Static, so that the callback registered by the constructor doesn't capture the value being built.
+     */
+    private static void cancelWhenCompletedByUser(CompletableFuture<Boolean> completion, CountDownLatch latch,
+                                                  CancellationToken token) {
+        completion.whenComplete((result, exception) -> {
+            if (exception != null && latch.getCount() > 0) {
+                token.cancel();
+            }
+        });
+    }
+
+    /**
+     * Wakes up the threads waiting for the value of a root once its solver is stopped, unless the value was already
+     * set. Only marks the root: the workers, interrupted by the solver, cancel the computation themselves.
+     */
+    void stop() {
+        if (isSettled.compareAndSet(false, true)) {
+            isStopped = true;
+            latch.countDown();
+        }
+    }
+
+    /**
+     * Cancels the computation of a root that was never started, on the calling thread.
+     */
+    void abort() {
+        token.cancel();
+        cancelSubtree();
+        if (span != null) {
+            span.dropped();
+        }
     }
 
 
@@ -56,101 +193,152 @@ public class ParallelCircuitValue implements CircuitValue {
      * Sets the status of the circuit value to cancelled.
      * All further or yet unfinished (i.e. ones that have hung on the latch awaiting the computation fo the value)
      * of <code>getValue()</code> will throw <code>InterruptedException</code>
-     * Cancels all children computations and waits for them to finish.
+     * Cancels all children computations, without waiting for them to finish.
      * Sends an empty optional to the parent, to signal that it was cancelled, so if the cancellation was unexpected,
      * it propagates upwards.
      * If the computation was already cancelled, does nothing.
      */
-    private synchronized void cancel() { // TODO synchronized required?
-        if (isCancelled) {
+    private void cancelSubtree() {
+        if (!isCancelled.compareAndSet(false, true)) {
             return;
         }
 
-        isCancelled = true;
         latch.countDown(); // to unlock all threads waiting for the value, that need to get an exception
+        // counted once the waiting threads are on their way
+        context.metrics.nodeCancelled();
+        if (completion != null) {
+            completion.completeExceptionally(new CancellationException("The computation was cancelled."));
+        }
         propagateCancelToChildren();
         signalCancellationToParent();
         // TODO maybe add an exit(0)?
     }
 
     /**
-     * Propagates the cancel signal to all children of the current node, waiting for them to finish.
+     * Cancels the whole subtree of the current node at once with its token, and drops the children tasks
+     * that haven't started yet. Only the threads blocked in the subtree are woken up, nobody waits for them.
+     * The children still used by other parents are left running.
      */
     private void propagateCancelToChildren() {
-        // cancel all children
-        for (Future<?> task : childrenTasks) {
-            task.cancel(true);
+        skipPendingChildren();
+        if (runningChildren.get() == 0) {
+            return;
+        }
+        CircuitEvents.Cancellation event = new CircuitEvents.Cancellation();
+        event.begin();
+        token.cancel();
+        for (ParallelCircuitValue child : usedChildren) {
+            child.dropIfCancelled();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.setNode(node.getType(), depth);
+            event.tasks = usedChildren.size();
+            event.commit();
         }
+    }
 
-        // and wait until they are finished
-        for (Future<?> task : childrenTasks) {
-            boolean finished = (task.isDone() || task.isCancelled()); // !
-            while (!finished) {
-                try {
-                    task.get();
-                    finished = true;
-                } catch (InterruptedException | ExecutionException e) {
-                    // ignore, because we need to wait for all children to finish
-                } catch (CancellationException e) {
-                    // i dont udnerstand this
-                    finished = true;
-                }
-            }
+    /**
+     * Drops the task of the node if it hasn't started yet and nobody uses the node any more.
+     */
+    private void dropIfCancelled() {
+        Future<?> submitted = task;
+        if (submitted != null && token.isCancelled()) {
+            submitted.cancel(false);
+        }
+    }
+
+    /**
+     * Counts the leaves among the children that were never submitted as skipped, since they never will be.
+     */
+    private void skipPendingChildren() {
+        for (CircuitNode child : pendingChildren) {
+            skip(child);
+        }
+        pendingChildren = List.of();
+    }
+
+    /**
+     * Counts the node as skipped if it's a leaf. The leaves of skipped inner nodes aren't counted,
+     * since listing them might block.
+     */
+    private void skip(CircuitNode skipped) {
+        if (skipped.getType() == NodeType.LEAF) {
+            context.metrics.leafSkipped();
         }
     }
 
     /**
-     * Puts an empty optional into the channel to the parent, signalling that the computation was cancelled.
-     * If the parent didn't expect the cancellation, it will propagate it upwards.
+     * Sends an empty optional to the parents, signalling that the computation was cancelled.
+     * If a parent didn't expect the cancellation, it will propagate it upwards.
      * If the parent expected the cancellation (i.e. he called for it himself) it should ignore the signal.
      */
     private void signalCancellationToParent() {
-        if (channelToParent == null) {
-            return;
-        }
+        publish(Optional.empty());
+    }
 
-        boolean sent = false;
-        while (!sent) {
-            try {
-                channelToParent.put(Optional.empty());
-                sent = true;
-            } catch (InterruptedException e) {
-                // ignore, try again - the parent must be able to receive the signal
+    /**
+     * Sends the outcome of the node to all of its parents, and remembers it for the parents that will use the node
+     * later. Only the first outcome is sent.
+     */
+    private void publish(Optional<Boolean> result) {
+        List<Consumer<Optional<Boolean>>> receivers;
+        synchronized (subscribers) {
+            if (outcome != null) {
+                return;
             }
+            outcome = result;
+            receivers = List.copyOf(subscribers);
+            subscribers.clear();
+        }
+        for (Consumer<Optional<Boolean>> receiver : receivers) {
+            receiver.accept(result);
         }
     }
 
     /**
-     * Tries to put the value into the channel to the parent.
-     * If it doesn't succeed then cancels the computation and throws an exception.
+     * Makes the node used by one more parent, whose token becomes one more user of the token of the node.
+     * The receiver gets the value at once if it's already known.
      *
-     * @param result the value to be sent to the parent
-     * @throws InterruptedException if the value couldn't be sent to the parent
+     * @return <code>false</code> if the node was cancelled, so a new computation of it is needed
      */
-    private void sendResultToParent(boolean result) throws InterruptedException {
-        if (channelToParent == null) {
-            return;
+    private boolean share(CancellationToken userToken, Consumer<Optional<Boolean>> receiver) {
+        Optional<Boolean> known;
+        synchronized (subscribers) {
+            known = outcome;
+            if (known == null) {
+                if (!userToken.share(token)) {
+                    return false;
+                }
+                subscribers.add(receiver);
+                return true;
+            }
         }
-
-        try {
-            channelToParent.put(Optional.of(result));
-        } catch (InterruptedException e) {
-            cancel();
-            throw e;
+        if (known.isEmpty()) {
+            return false;
         }
-
+        receiver.accept(known);
+        return true;
     }
 
     /**
-     * Tries to set the value of the circuit value, and send it to the parent.
-     * If it fails then cancels the computation and throws an exception.
+     * Sets the value of the circuit value, and sends it to the parents.
      *
      * @param value the value to be set as the value of the circuit
-     * @throws InterruptedException if the value couldn't be sent to the parent
      */
-    private void setValue(boolean value) throws InterruptedException {
+    private void setValue(boolean value) {
         this.value = value;
-        sendResultToParent(value); // this can fail and throw, but if it does it also cancels
+        context.metrics.nodeEvaluated();
+        if (context.cacheSession != null) {
+            context.cacheSession.store(node, value);
+        }
+        publish(Optional.of(value));
+        // before the latch, so that once getValue() returns, cancel() can't complete the stage any more
+        if (completion != null && (!isSettled.compareAndSet(false, true) || !completion.complete(value))) {
+            // the solver was stopped or the user cancelled the computation just before it finished
+            cancelSubtree();
+            return;
+        }
         latch.countDown();
     }
 
@@ -166,16 +354,70 @@ public class ParallelCircuitValue implements CircuitValue {
         // this awaiting can throw!
         latch.await(); // wait until the computation is finished or cancelled
 
-        if (isCancelled) {
+        if (isCancelled.get() || isStopped) {
             throw new InterruptedException();
         }
         return value;
     }
 
+    /**
+     * @throws IllegalStateException if this isn't the root of the computation
+     */
+    @Override
+    public CompletionStage<Boolean> asCompletionStage() {
+        if (completion == null) {
+            throw new IllegalStateException("Only the value of the whole circuit can be observed.");
+        }
+        return completion;
+    }
+
+    /**
+     * Computes the value of a trivial node on the calling thread.
+     *
+     * @throws InterruptedException if the leaf was interrupted, in which case the computation is cancelled
+     */
+    void computeValueInline() throws InterruptedException {
+        if (span != null) {
+            span.started();
+        }
+        try {
+            setValue(InlineEvaluation.evaluate(node));
+        } catch (InterruptedException e) {
+            cancelSubtree();
+            throw e;
+        } finally {
+            traceFinished();
+        }
+    }
+
+    /**
+     * Ends the span of the node, once its task is about to return.
+     */
+    private void traceFinished() {
+        if (span != null) {
+            span.finished(isCancelled.get(), value);
+        }
+    }
+
     // TODO make sure theres no leftover bugs
     public void computeValue() {
+        if (span != null) {
+            span.started();
+        }
+        if (token.isCancelled()) {
+            // cancelled before it started
+            cancelSubtree();
+            skip(node);
+            traceFinished();
+            return;
+        }
+        CircuitEvents.Node event = new CircuitEvents.Node();
+        event.begin();
         try {
-            if (node.getType() == NodeType.LEAF) {
+            Boolean cached = context.cacheSession == null ? null : context.cacheSession.lookup(node);
+            if (cached != null) {
+                setValue(cached);
+            } else if (node.getType() == NodeType.LEAF) {
                 computeValueOfLeafNode();
             } else if (node.getType() == NodeType.NOT) {
                 computeValueOfNotNode();
@@ -187,7 +429,10 @@ public class ParallelCircuitValue implements CircuitValue {
                 }
             }
         } catch (InterruptedException e) {
-            cancel();
+            cancelSubtree();
+        } finally {
+            event.finish(node.getType(), depth, isCancelled.get());
+            traceFinished();
         }
     }
 
@@ -200,10 +445,45 @@ public class ParallelCircuitValue implements CircuitValue {
     private void computeValueOfLeafNode() throws InterruptedException {
         try {
             LeafNode leafNode = (LeafNode) node;
-            boolean valueOfTheLeaf = leafNode.getValue(); // can fail getting the value of the leaf
+            long start;
+            boolean valueOfTheLeaf;
+            Thread leafThread = Thread.currentThread();
+            // the only threads of the computation that are interrupted to be cancelled
+            // the task was executed once the leaf limit allowed, so the leaf doesn't wait for it here
+            CancellationToken.Registration registration = token.onCancel(leafThread::interrupt);
+            try {
+                start = System.nanoTime();
+                context.busyLeaves.incrementAndGet();
+                CircuitEvents.Leaf event = new CircuitEvents.Leaf();
+                event.begin();
+                if (span != null) {
+                    span.leafStarted();
+                }
+                try {
+                    valueOfTheLeaf = leafNode.getValue(); // can fail getting the value of the leaf
+                    event.finish(depth, valueOfTheLeaf, false);
+                    if (span != null) {
+                        span.leafFinished(false);
+                    }
+                    context.metrics.leafEvaluated();
+                } catch (InterruptedException e) {
+                    event.finish(depth, false, true);
+                    if (span != null) {
+                        span.leafFinished(true);
+                    }
+                    throw e;
+                } finally {
+                    context.busyLeaves.decrementAndGet();
+                }
+            } finally {
+                registration.close();
+            }
+            if (context.profiler != null) {
+                context.profiler.record(leafNode, System.nanoTime() - start, valueOfTheLeaf);
+            }
             setValue(valueOfTheLeaf); // can fail sending the value to the parent
         } catch (InterruptedException e) {
-            cancel();
+            cancelSubtree();
             throw e;
         }
     }
@@ -215,57 +495,109 @@ public class ParallelCircuitValue implements CircuitValue {
      */
     private void computeValueOfNotNode() throws InterruptedException {
         try {
-            CircuitNode child = node.getArgs()[0];
-            // ParallelCircuitValue valueOfChild = new ParallelCircuitValue(child, channelToChildren, pool);
-            childrenTasks.add(pool.submit(poolTaskForGivenChild(child)));
-            boolean valueOfTheChild = channelToChildren.take().orElseThrow(InterruptedException::new);
-            setValue(!valueOfTheChild);
+            computeValueOfSingleChild(node.getArgs()[0], true);
         } catch (InterruptedException e) {
-            cancel();
+            cancelSubtree();
             throw e;
         }
     }
 
     /**
-     * Creates a lambda that computes the value of the given child and returns it as an optional.
-     * The lambda should be submitted to the pool.
+     * Computes the value of the only child that the value of the current node depends on,
+     * inline if the child is trivial, and sets it (possibly negated) as the value of the circuit.
      *
-     * @param child the child whose value is to be computed (concurrently)
-     * @return the lambda to be run on the pool
+     * @param child   the child to be computed
+     * @param negated whether the value of the current node is the negation of the value of the child
+     * @throws InterruptedException if the computation or setting the value fails
      */
-    private Callable<Optional<Boolean>> poolTaskForGivenChild(CircuitNode child) {
-        ParallelCircuitValue valueOfChild = new ParallelCircuitValue(child, channelToChildren, pool);
-        return () -> {
-            try {
-                valueOfChild.computeValue();
-                return Optional.of(valueOfChild.getValue());
-            } catch (InterruptedException e) {
-                return Optional.empty();
-            } catch (Exception e) {
-                // should be unreachable but i trust no one
-                return Optional.empty();
-            }
-        };
+    private void computeValueOfSingleChild(CircuitNode child, boolean negated) throws InterruptedException {
+        setValue(negated != receiveValueOfSingleChild(child));
     }
 
-    private enum IFBranch {
-        CONDITION, TRUE, FALSE
+    /**
+     * Computes the value of a child, inline if it's trivial, when it's the only child being computed.
+     *
+     * @param child the child to be computed
+     * @return the value of the child
+     * @throws InterruptedException if the computation fails
+     */
+    private boolean receiveValueOfSingleChild(CircuitNode child) throws InterruptedException {
+        if (InlineEvaluation.isTrivial(child)) {
+            return InlineEvaluation.evaluate(child);
+        }
+        useChild(child, channelToChildren::add);
+        return takeChildValue().orElseThrow(InterruptedException::new);
     }
 
-    private Callable<Optional<Boolean>> poolTaskForIfDoubleChannel(CircuitNode child, BlockingQueue<IFBranch> commChannel, IFBranch branch) {
-        ParallelCircuitValue valueOfChild = new ParallelCircuitValue(child, channelToChildren, pool);
-        return () -> {
-            try {
-                valueOfChild.computeValue();
-                commChannel.put(branch);
-                return Optional.of(valueOfChild.getValue());
-            } catch (InterruptedException e) {
-                return Optional.empty();
-            } catch (Exception e) {
-                // should be unreachable but i trust no one
-                return Optional.empty();
+    /**
+     * Waits for the next value sent by a child, or for the cancellation of the current node,
+     * which is signalled with an empty optional.
+     *
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private Optional<Boolean> takeChildValue() throws InterruptedException {
+        if (span != null) {
+            span.blockStarted();
+        }
+        CancellationToken.Registration registration = token.onCancel(() -> channelToChildren.offer(Optional.empty()));
+        try {
+            return channelToChildren.take();
+        } finally {
+            registration.close();
+            if (span != null) {
+                span.blockFinished("children");
             }
+        }
+    }
+
+    /**
+     * Makes the current node use the computation of the child, which sends its value to the receiver.
+     * A child used by several parents is computed once: the computation of another parent is shared if it's
+     * still running or already finished, otherwise a new one is submitted, with a token below the one of
+     * the current node. A node over the node limit isn't submitted, but computed right away on the current thread.
+     *
+     * @return the computation of the child
+     */
+    private ParallelCircuitValue useChild(CircuitNode child, Consumer<Optional<Boolean>> receiver) {
+        runningChildren.incrementAndGet();
+        Consumer<Optional<Boolean>> counted = result -> {
+            runningChildren.decrementAndGet();
+            receiver.accept(result);
         };
+        ParallelCircuitValue valueOfChild;
+        synchronized (context.computations) {
+            valueOfChild = context.computations.get(child);
+            if (valueOfChild != null && valueOfChild.share(token, counted)) {
+                usedChildren.add(valueOfChild);
+                return valueOfChild;
+            }
+            valueOfChild = new ParallelCircuitValue(child, context, token.newChild(), depth + 1, span, false);
+            valueOfChild.subscribers.add(counted);
+            context.computations.put(child, valueOfChild);
+        }
+        usedChildren.add(valueOfChild);
+        boolean isLeaf = child.getType() == NodeType.LEAF;
+        Runnable compute = valueOfChild::computeValue;
+        Runnable dropped = valueOfChild.span == null ? null : valueOfChild.span::dropped;
+        if (!isLeaf) {
+            if (!context.admission.tryAcquireNode()) {
+                // the thread of the current node is held anyway, so the child doesn't take another one
+                valueOfChild.computeValue();
+                return valueOfChild;
+            }
+            compute = context.admission.releasingNode(compute);
+            dropped = context.admission.releasingNode(dropped);
+        }
+        valueOfChild.task = CountedTask.submit(pool, context.admission, Executors.callable(compute),
+                context.metrics, isLeaf, dropped);
+        return valueOfChild;
+    }
+
+    /**
+     * The children of an IF node, in the order of its arguments, and the signal of its cancellation.
+     */
+    private enum IFBranch {
+        CONDITION, TRUE, FALSE, CANCELLED
     }
 
     /**
@@ -279,74 +611,122 @@ public class ParallelCircuitValue implements CircuitValue {
             final int conditionIndexInArgs = 0;
             final int ifTrueIndexInArgs = 1;
             final int ifFalseIndexInArgs = 2;
+            if (InlineEvaluation.isTrivial(args[conditionIndexInArgs])) {
+                // no need to speculate on the branches
+                boolean conditionValue = InlineEvaluation.evaluate(args[conditionIndexInArgs]);
+                skip(args[conditionValue ? ifFalseIndexInArgs : ifTrueIndexInArgs]);
+                computeValueOfSingleChild(args[conditionValue ? ifTrueIndexInArgs : ifFalseIndexInArgs], false);
+                return;
+            }
+            SpeculationPolicy policy = context.speculationPolicy;
+            if (!policy.speculate(context.busyLeaves.get())) {
+                // the condition is computed first, so the unused branch is never started
+                boolean conditionValue = receiveValueOfSingleChild(args[conditionIndexInArgs]);
+                checkForInterruption();
+                skip(args[conditionValue ? ifFalseIndexInArgs : ifTrueIndexInArgs]);
+                computeValueOfSingleChild(args[conditionValue ? ifTrueIndexInArgs : ifFalseIndexInArgs], false);
+                return;
+            }
             BlockingQueue<IFBranch> communicationChannel = new LinkedBlockingQueue<>();
 
-            for (int i = ifTrueIndexInArgs; i <= ifFalseIndexInArgs; i++) {
-                CircuitNode child = args[i];
-                Callable<Optional<Boolean>> task = poolTaskForIfDoubleChannel(child, communicationChannel,
-                        i == ifTrueIndexInArgs ? IFBranch.TRUE : IFBranch.FALSE);
-                Future<Optional<Boolean>> future = pool.submit(task);
-                childrenTasks.add(future);
+            // the branches are submitted first, so that they have a head start on the condition
+            ParallelCircuitValue[] children = new ParallelCircuitValue[args.length];
+            // written before the branch is sent, and read after it's taken
+            Optional<Boolean>[] results = newResults(args.length);
+            for (int i : new int[]{ifTrueIndexInArgs, ifFalseIndexInArgs, conditionIndexInArgs}) {
+                IFBranch branch = IFBranch.values()[i];
+                children[i] = useChild(args[i], result -> {
+                    results[branch.ordinal()] = result;
+                    communicationChannel.add(branch);
+                });
             }
 
-            CircuitNode condition = args[conditionIndexInArgs];
-            Callable<Optional<Boolean>> conditionTask = poolTaskForIfDoubleChannel(condition, communicationChannel, IFBranch.CONDITION);
-            Future<Optional<Boolean>> conditionFuture = pool.submit(conditionTask);
-            int receivedChildValues = 0;
-            boolean receivedCondition = false;
-
             // to return the value of an IF node one of the following must be satisfied:
             // 1. the condition is known and its branch is known
             // 2. both branches are known and equal
-            while (receivedChildValues < 2) {
-                IFBranch branch = communicationChannel.take();
-                receivedChildValues++;
-                checkForInterruption();
-                if (branch == IFBranch.CONDITION) {
-                    receivedCondition = true;
-                    boolean conditionValue = conditionFuture.get().orElseThrow(InterruptedException::new); // can throw
-                    int unusedBranchIndex = conditionValue ? 1 : 0;
-                    childrenTasks.get(unusedBranchIndex).cancel(true); // interrupt the computation of the unused branch
-                }
-            }
-
-            //
-            if (!receivedCondition) {
-                // if the condition future is not finished, but we repeated the above loop twice
-                // we must know the value of both branches
-                boolean valueOfTrueBranch = childrenTasks.get(0).get().orElseThrow(InterruptedException::new);
-                boolean valueOfFalseBranch = childrenTasks.get(1).get().orElseThrow(InterruptedException::new);
-                if (valueOfTrueBranch == valueOfFalseBranch) {
-                    setValue(valueOfTrueBranch);
-                    conditionFuture.cancel(true);
-                    return;
+            Boolean[] values = new Boolean[args.length];
+            boolean[] dropped = new boolean[args.length];
+            CancellationToken.Registration registration = token.onCancel(() -> communicationChannel.add(IFBranch.CANCELLED));
+            try {
+                while (true) {
+                    Boolean conditionValue = values[conditionIndexInArgs];
+                    if (conditionValue != null && values[conditionValue ? ifTrueIndexInArgs : ifFalseIndexInArgs] != null) {
+                        break;
+                    }
+                    if (conditionValue == null && policy.shortcutEqualBranches() && values[ifTrueIndexInArgs] != null
+                            && values[ifTrueIndexInArgs].equals(values[ifFalseIndexInArgs])) {
+                        CircuitEvents.branchAbandoned(depth, IFBranch.CONDITION.name());
+                        break;
+                    }
+
+                    IFBranch branch = takeIfBranch(communicationChannel);
+                    if (branch == IFBranch.CANCELLED) {
+                        throw new InterruptedException();
+                    }
+                    int index = branch.ordinal();
+                    if (dropped[index]) {
+                        continue;
+                    }
+                    values[index] = results[index].orElseThrow(InterruptedException::new); // can throw
+                    if (index == conditionIndexInArgs) {
+                        // cancel the computation of the unused branch, unless another node still uses it
+                        int unusedBranchIndex = values[index] ? ifFalseIndexInArgs : ifTrueIndexInArgs;
+                        dropped[unusedBranchIndex] = true;
+                        CircuitEvents.branchAbandoned(depth, IFBranch.values()[unusedBranchIndex].name());
+                        token.release(children[unusedBranchIndex].token);
+                        children[unusedBranchIndex].dropIfCancelled();
+                    }
                 }
+            } finally {
+                registration.close();
             }
 
-            boolean conditionValue = conditionFuture.get().orElseThrow(InterruptedException::new); // can throw
-            int resultIndex = conditionValue ? 0 : 1;
-            int unusedBranchIndex = conditionValue ? 1 : 0;
-            childrenTasks.get(unusedBranchIndex).cancel(true); // interrupt the computation of the unused branch
-            boolean result = childrenTasks.get(resultIndex).get().orElseThrow(InterruptedException::new);
-            setValue(result);
+            Boolean conditionValue = values[conditionIndexInArgs];
+            // the condition might still be unknown, if the branches turned out to be equal
+            setValue(values[conditionValue == null || conditionValue ? ifTrueIndexInArgs : ifFalseIndexInArgs]);
+            propagateCancelToChildren();
         } catch (InterruptedException e) {
-            cancel();
+            cancelSubtree();
             throw e;
-        } catch (ExecutionException e) {
-            cancel();
-            throw new IllegalStateException("The child task should not throw.", e);
         }
     }
 
     /**
-     * Checks if the current thread was interrupted, and if so, cancels the computation and throws an exception.
+     * @return an array for the results of <code>n</code> children, which can't be created with its type directly
+     */
+    @SuppressWarnings("unchecked")
+    private static Optional<Boolean>[] newResults(int n) {
+        return (Optional<Boolean>[]) new Optional<?>[n];
+    }
+
+    /**
+     * Waits for the next child of the IF node to finish, or for its cancellation.
+     *
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private IFBranch takeIfBranch(BlockingQueue<IFBranch> communicationChannel) throws InterruptedException {
+        if (span != null) {
+            span.blockStarted();
+        }
+        try {
+            return communicationChannel.take();
+        } finally {
+            if (span != null) {
+                span.blockFinished("children");
+            }
+        }
+    }
+
+    /**
+     * Checks if the current thread was interrupted or the current node was cancelled, and if so,
+     * cancels the computation and throws an exception.
      * Clears the interrupt status of the thread.
      *
      * @throws InterruptedException if the thread was interrupted
      */
     private void checkForInterruption() throws InterruptedException {
-        if (Thread.interrupted()) {
-            cancel();
+        if (Thread.interrupted() || token.isCancelled()) {
+            cancelSubtree();
             throw new InterruptedException();
         }
     }
@@ -359,50 +739,87 @@ public class ParallelCircuitValue implements CircuitValue {
      */
     private void computeValueOfMultipleChildNode() throws InterruptedException {
         try {
-            // submit all children computation tasks
+            // evaluate trivial children here, the rest will be submitted once their values are needed
             CircuitNode[] children = node.getArgs();
             int numberOfChildren = children.length;
+            int receivedChildValues = 0;
+            int trueChildValues = 0;
+            List<CircuitNode> childrenToSubmit = new ArrayList<>();
             for (CircuitNode child : children) {
                 checkForInterruption();
-                Callable<Optional<Boolean>> task = poolTaskForGivenChild(child);
-                Future<Optional<Boolean>> future = pool.submit(task);
-                childrenTasks.add(future);
+                if (InlineEvaluation.isTrivial(child)) {
+                    receivedChildValues++;
+                    if (InlineEvaluation.evaluate(child)) {
+                        trueChildValues++;
+                    }
+                } else {
+                    childrenToSubmit.add(child);
+                }
             }
+            if (context.profiler != null) {
+                context.profiler.orderChildren(node.getType(), childrenToSubmit);
+            }
+            pendingChildren = childrenToSubmit;
 
             switch (node.getType()) {
-                case AND -> processAND(numberOfChildren);
-                case OR -> processOR(numberOfChildren);
-                case GT -> processGT(numberOfChildren);
-                case LT -> processLT(numberOfChildren);
+                case AND -> processAND(numberOfChildren, receivedChildValues, trueChildValues);
+                case OR -> processOR(numberOfChildren, receivedChildValues, trueChildValues);
+                case GT -> processGT(numberOfChildren, receivedChildValues, trueChildValues);
+                case LT -> processLT(numberOfChildren, receivedChildValues, trueChildValues);
                 default -> throw new IllegalStateException("Unexpected value: " + node.getType());
 
             }
             propagateCancelToChildren();
         } catch (InterruptedException e) {
-            cancel();
+            cancelSubtree();
             throw e;
         }
     }
 
-    private void processAND(int N) throws InterruptedException {
-        computeValueWhereSingleChildValueImpliesTheResult(false, false, N);
+    /**
+     * Submits the children whose values weren't computed inline, unless they were already submitted.
+     *
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private void submitPendingChildren() throws InterruptedException {
+        for (CircuitNode child : pendingChildren) {
+            checkForInterruption();
+            useChild(child, channelToChildren::add);
+        }
+        pendingChildren = List.of();
+    }
+
+    /**
+     * Waits for the value of the next child to finish, submitting the pending children first.
+     *
+     * @return the value of the child
+     * @throws InterruptedException if was cancelled or interrupted
+     */
+    private boolean receiveChildValue() throws InterruptedException {
+        submitPendingChildren();
+        checkForInterruption();
+        return takeChildValue().orElseThrow(InterruptedException::new);
+    }
+
+    private void processAND(int N, int received, int trues) throws InterruptedException {
+        computeValueWhereSingleChildValueImpliesTheResult(false, false, N, received, received - trues);
 
     }
 
-    private void processOR(int N) throws InterruptedException {
-        computeValueWhereSingleChildValueImpliesTheResult(true, true, N);
+    private void processOR(int N, int received, int trues) throws InterruptedException {
+        computeValueWhereSingleChildValueImpliesTheResult(true, true, N, received, trues);
     }
 
-    private void processGT(int N) throws InterruptedException {
+    private void processGT(int N, int received, int trues) throws InterruptedException {
         ThresholdNode tnode = (ThresholdNode) node;
         int x = tnode.getThreshold();
-        computeValueWhereGreaterThanAmountOf(x, true, N);
+        computeValueWhereGreaterThanAmountOf(x, true, N, received, trues);
     }
 
-    private void processLT(int N) throws InterruptedException {
+    private void processLT(int N, int received, int trues) throws InterruptedException {
         ThresholdNode tnode = (ThresholdNode) node;
         int x = tnode.getThreshold();
-        computeValueWhereGreaterThanAmountOf(x, false, N);
+        computeValueWhereGreaterThanAmountOf(x, false, N, received, trues);
     }
 
 
@@ -410,35 +827,44 @@ public class ParallelCircuitValue implements CircuitValue {
      * Processes the values of the children looking for <code>value</code> and set the value of the circuit
      * to <code>result</code> if found at least one <code>value</code>.
      *
-     * @param value  the value to be found
-     * @param result the result to be set if the value is found
+     * @param value    the value to be found
+     * @param result   the result to be set if the value is found
+     * @param received the number of children values already known
+     * @param found    the number of occurrences of <code>value</code> among them
      * @throws InterruptedException if was cancelled or interrupted
      */
-    private void computeValueWhereSingleChildValueImpliesTheResult(boolean value, boolean result, int N) throws InterruptedException {
-        int receivedChildValues = 0;
-        boolean foundValue = false;
+    private void computeValueWhereSingleChildValueImpliesTheResult(boolean value, boolean result, int N,
+                                                                    int received, int found) throws InterruptedException {
+        int receivedChildValues = received;
+        boolean foundValue = found > 0;
 
         while (receivedChildValues < N && !foundValue) {
-            checkForInterruption();
-            boolean valueOfChild = channelToChildren.take().orElseThrow(InterruptedException::new);
+            boolean valueOfChild = receiveChildValue();
             receivedChildValues++;
             foundValue = valueOfChild == value;
         }
 
         // can be simplified but I find this more readable
         //noinspection SimplifiableConditionalExpression
-        setValue(foundValue ? result : !result);
+        boolean nodeValue = foundValue ? result : !result;
+        if (receivedChildValues < N) {
+            CircuitEvents.shortCircuit(node.getType(), depth, N, receivedChildValues, nodeValue);
+        }
+        setValue(nodeValue);
     }
 
     /**
      * Processes the values of the children looking for <code>true</code> and returns <code>true</code> iff found ">" <code>number</code>.
      *
-     * @param number the highest number of occurrences of <code>value</code> that is still considered a failure
+     * @param number   the highest number of occurrences of <code>value</code> that is still considered a failure
+     * @param received the number of children values already known
+     * @param found    the number of <code>true</code> values among them
      * @throws InterruptedException if was cancelled or interrupted
      */
-    private void computeValueWhereGreaterThanAmountOf(int number, boolean greaterThan, int N) throws InterruptedException {
-        int receivedChildValues = 0;
-        int foundValues = 0;
+    private void computeValueWhereGreaterThanAmountOf(int number, boolean greaterThan, int N,
+                                                      int received, int found) throws InterruptedException {
+        int receivedChildValues = received;
+        int foundValues = found;
 
         while (receivedChildValues < N) {
             // found value can only increase
@@ -453,8 +879,7 @@ public class ParallelCircuitValue implements CircuitValue {
                 break;
             }
 
-            checkForInterruption();
-            boolean valueOfChild = channelToChildren.take().orElseThrow(InterruptedException::new);
+            boolean valueOfChild = receiveChildValue();
             receivedChildValues++;
             if (valueOfChild) {
                 foundValues++;
@@ -466,7 +891,11 @@ public class ParallelCircuitValue implements CircuitValue {
         //    otherwise we return false
         // 2. we've found less than or equal to number of values but have looked through all children
         //    so we return whether the found number fits the order we've wanted
-        setValue(greaterThan ? foundValues > number : foundValues < number);
+        boolean nodeValue = greaterThan ? foundValues > number : foundValues < number;
+        if (receivedChildValues < N) {
+            CircuitEvents.shortCircuit(node.getType(), depth, N, receivedChildValues, nodeValue);
+        }
+        setValue(nodeValue);
     }
 
 
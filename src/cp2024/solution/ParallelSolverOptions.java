@@ -0,0 +1,102 @@
+package cp2024.solution;
+
+import cp2024.circuit.SubcircuitCache;
+
+/**
+ * The configuration of a {@link ParallelCircuitSolver}. Immutable, every <code>with</code> method returns a copy.
+ * The optional features are disabled unless set.
+ */
+public final class ParallelSolverOptions {
+    public static final ParallelSolverOptions DEFAULT =
+            new ParallelSolverOptions(ExecutionMode.CACHED_THREAD_POOL, null, null, SpeculationPolicy.EAGER,
+                    AdmissionLimits.UNLIMITED, null);
+
+    private final ExecutionMode mode;
+    private final SubcircuitCache cache;
+    private final LeafProfiler profiler;
+    private final SpeculationPolicy speculationPolicy;
+    private final AdmissionLimits admissionLimits;
+    private final SolveTracer tracer;
+
+    private ParallelSolverOptions(ExecutionMode mode, SubcircuitCache cache, LeafProfiler profiler,
+                                  SpeculationPolicy speculationPolicy, AdmissionLimits admissionLimits,
+                                  SolveTracer tracer) {
+        this.mode = mode;
+        this.cache = cache;
+        this.profiler = profiler;
+        this.speculationPolicy = speculationPolicy;
+        this.admissionLimits = admissionLimits;
+        this.tracer = tracer;
+    }
+
+    /**
+     * @param mode the kind of threads on which the node computations will be run
+     */
+    public ParallelSolverOptions withMode(ExecutionMode mode) {
+        return new ParallelSolverOptions(mode, cache, profiler, speculationPolicy, admissionLimits, tracer);
+    }
+
+    /**
+     * @param cache the values of deterministic subcircuits remembered across solves,
+     *              or <code>null</code> to evaluate every subcircuit
+     */
+    public ParallelSolverOptions withCache(SubcircuitCache cache) {
+        return new ParallelSolverOptions(mode, cache, profiler, speculationPolicy, admissionLimits, tracer);
+    }
+
+    /**
+     * @param profiler the statistics of leaves, recorded and used to order the children of short-circuiting nodes,
+     *                 or <code>null</code> to submit children in their order in the circuit
+     */
+    public ParallelSolverOptions withProfiler(LeafProfiler profiler) {
+        return new ParallelSolverOptions(mode, cache, profiler, speculationPolicy, admissionLimits, tracer);
+    }
+
+    /**
+     * @param speculationPolicy decides whether the branches of IF nodes are evaluated before their conditions
+     *                          are known, {@link SpeculationPolicy#EAGER} by default
+     */
+    public ParallelSolverOptions withSpeculationPolicy(SpeculationPolicy speculationPolicy) {
+        return new ParallelSolverOptions(mode, cache, profiler, speculationPolicy, admissionLimits, tracer);
+    }
+
+    /**
+     * @param admissionLimits the limits of the number of circuits and leaves being solved at once,
+     *                        {@link AdmissionLimits#UNLIMITED} by default
+     */
+    public ParallelSolverOptions withAdmissionLimits(AdmissionLimits admissionLimits) {
+        return new ParallelSolverOptions(mode, cache, profiler, speculationPolicy, admissionLimits, tracer);
+    }
+
+    /**
+     * @param tracer samples the solves of circuits and records the timelines of their nodes,
+     *               or <code>null</code> to trace nothing
+     */
+    public ParallelSolverOptions withTracer(SolveTracer tracer) {
+        return new ParallelSolverOptions(mode, cache, profiler, speculationPolicy, admissionLimits, tracer);
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    public SubcircuitCache getCache() {
+        return cache;
+    }
+
+    public LeafProfiler getProfiler() {
+        return profiler;
+    }
+
+    public SpeculationPolicy getSpeculationPolicy() {
+        return speculationPolicy;
+    }
+
+    public AdmissionLimits getAdmissionLimits() {
+        return admissionLimits;
+    }
+
+    public SolveTracer getTracer() {
+        return tracer;
+    }
+}
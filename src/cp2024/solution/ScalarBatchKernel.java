@@ -0,0 +1,72 @@
+package cp2024.solution;
+
+import java.util.Arrays;
+
+/**
+ * Plain loops over the words, available on every JVM.
+ */
+final class ScalarBatchKernel implements BatchKernel {
+    @Override
+    public int width() {
+        return 1;
+    }
+
+    @Override
+    public void and(long[] target, long[] arg) {
+        for (int w = 0; w < target.length; w++) {
+            target[w] &= arg[w];
+        }
+    }
+
+    @Override
+    public void or(long[] target, long[] arg) {
+        for (int w = 0; w < target.length; w++) {
+            target[w] |= arg[w];
+        }
+    }
+
+    @Override
+    public void not(long[] target, long[] arg) {
+        for (int w = 0; w < target.length; w++) {
+            target[w] = ~arg[w];
+        }
+    }
+
+    @Override
+    public void select(long[] target, long[] condition, long[] ifTrue, long[] ifFalse) {
+        for (int w = 0; w < target.length; w++) {
+            target[w] = (condition[w] & ifTrue[w]) | (~condition[w] & ifFalse[w]);
+        }
+    }
+
+    @Override
+    public void add(long[][] counter, long[] arg) {
+        for (int w = 0; w < arg.length; w++) {
+            // ripple-carry increment of the lanes in which the argument is true
+            long c = arg[w];
+            for (int b = 0; b < counter.length && c != 0; b++) {
+                long overflow = counter[b][w] & c;
+                counter[b][w] ^= c;
+                c = overflow;
+            }
+        }
+    }
+
+    @Override
+    public void compare(long[][] counter, int threshold, long[] greater, long[] equal) {
+        Arrays.fill(greater, 0);
+        Arrays.fill(equal, -1L);
+        // from the most significant bit
+        for (int b = counter.length - 1; b >= 0; b--) {
+            boolean thresholdBit = (threshold >>> b & 1) != 0;
+            for (int w = 0; w < greater.length; w++) {
+                if (thresholdBit) {
+                    equal[w] &= counter[b][w];
+                } else {
+                    greater[w] |= equal[w] & counter[b][w];
+                    equal[w] &= ~counter[b][w];
+                }
+            }
+        }
+    }
+}
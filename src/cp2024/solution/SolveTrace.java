@@ -0,0 +1,303 @@
+package cp2024.solution;
+
+import cp2024.circuit.NodeType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The timeline of every node of a single solve, recorded by a {@link SolveTracer}.
+ * Written in the Chrome trace-event format, which Perfetto (ui.perfetto.dev) and <code>chrome://tracing</code> open:
+ * <ul>
+ *     <li>every task of a node is a slice on the track of its thread, named after the type of the node,</li>
+ *     <li>inside it, the time the task was parked waiting for its children,
+ *     and the <code>getValue()</code> of a leaf, are slices of their own,</li>
+ *     <li>the time from the submission of a task until it started, including the wait of a leaf for the admission
+ *     limits, is a <code>queued</code> async slice, and an arrow leads from the submitting thread to the task.</li>
+ * </ul>
+ * Timestamps are in microseconds since the solve started. Complete once handed to the sink of the tracer.
+ */
+public final class SolveTrace {
+    /**
+     * The process of all the events, whose name is the number of the solve.
+     */
+    private static final int PID = 1;
+
+    /**
+     * A labelled period of time within a task.
+     */
+    private static final class Interval {
+        final String name;
+        final long startNanos;
+        final long endNanos;
+
+        Interval(String name, long startNanos, long endNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+        }
+    }
+
+    /**
+     * The timeline of a single node. Opened by the thread that schedules the task of the node,
+     * then written only by the thread that runs it, until it's closed.
+     */
+    final class Span {
+        private final int id;
+        private final int parentId;
+        private final NodeType type;
+        private final int depth;
+        private final long scheduledNanos;
+        private final Thread scheduledBy;
+        private final AtomicBoolean isClosed;
+        private final List<Interval> intervals;
+        private Thread thread;
+        private long startedNanos;
+        private long finishedNanos;
+        private long blockedSinceNanos;
+        private boolean isCancelled;
+        private boolean value;
+        private boolean isDropped;
+        private boolean isInterrupted;
+
+        private Span(int id, Span parent, NodeType type, int depth) {
+            this.id = id;
+            this.parentId = parent == null ? -1 : parent.id;
+            this.type = type;
+            this.depth = depth;
+            this.scheduledNanos = System.nanoTime();
+            this.scheduledBy = Thread.currentThread();
+            this.isClosed = new AtomicBoolean(false);
+            this.intervals = new ArrayList<>();
+        }
+
+        void started() {
+            thread = Thread.currentThread();
+            startedNanos = System.nanoTime();
+        }
+
+        /**
+         * Marks the start of a wait, ended by <code>blockFinished()</code>.
+         */
+        void blockStarted() {
+            blockedSinceNanos = System.nanoTime();
+        }
+
+        /**
+         * @param reason what the task waited for
+         */
+        void blockFinished(String reason) {
+            intervals.add(new Interval(reason, blockedSinceNanos, System.nanoTime()));
+        }
+
+        void leafStarted() {
+            blockedSinceNanos = System.nanoTime();
+        }
+
+        void leafFinished(boolean interrupted) {
+            intervals.add(new Interval("getValue", blockedSinceNanos, System.nanoTime()));
+            isInterrupted = interrupted;
+        }
+
+        /**
+         * Ends the task of the node.
+         *
+         * @param value ignored if the node was cancelled
+         */
+        void finished(boolean cancelled, boolean value) {
+            finishedNanos = System.nanoTime();
+            this.isCancelled = cancelled;
+            this.value = value;
+            close();
+        }
+
+        /**
+         * Ends the span of a task that never started, because it was cancelled or rejected. Called from any thread.
+         */
+        void dropped() {
+            finishedNanos = System.nanoTime();
+            isDropped = true;
+            close();
+        }
+
+        private void close() {
+            if (isClosed.compareAndSet(false, true)) {
+                spanClosed();
+            }
+        }
+    }
+
+    private final long solve;
+    private final Consumer<SolveTrace> sink;
+    private final long startNanos;
+    private final Queue<Span> spans;
+    private final AtomicInteger nextId;
+
+    /**
+     * The spans opened and not yet closed. The trace is complete when it drops to 0.
+     */
+    private final AtomicInteger openSpans;
+
+    SolveTrace(long solve, Consumer<SolveTrace> sink) {
+        this.solve = solve;
+        this.sink = sink;
+        this.startNanos = System.nanoTime();
+        this.spans = new ConcurrentLinkedQueue<>();
+        this.nextId = new AtomicInteger(0);
+        this.openSpans = new AtomicInteger(0);
+    }
+
+    /**
+     * Opens the span of a node whose task is about to be scheduled by the current thread.
+     *
+     * @param parent the span of the parent, or <code>null</code> for the root
+     */
+    Span open(Span parent, NodeType type, int depth) {
+        openSpans.incrementAndGet();
+        Span span = new Span(nextId.getAndIncrement(), parent, type, depth);
+        spans.add(span);
+        return span;
+    }
+
+    private void spanClosed() {
+        if (openSpans.decrementAndGet() == 0) {
+            sink.accept(this);
+        }
+    }
+
+    /**
+     * @return the number of the solve among all the solves seen by the tracer, counting from 0
+     */
+    public long getSolveNumber() {
+        return solve;
+    }
+
+    /**
+     * @return the number of nodes that got tasks of their own
+     */
+    public int getNodeCount() {
+        return spans.size();
+    }
+
+    public void writeTo(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            writeTo(writer);
+        }
+    }
+
+    /**
+     * Writes the trace as a JSON object with a <code>traceEvents</code> array.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        List<String> events = new ArrayList<>();
+        events.add(metadata("process_name", -1, "solve " + solve));
+        Map<Thread, Long> threads = new HashMap<>();
+        for (Span span : spans) {
+            for (Thread thread : new Thread[]{span.scheduledBy, span.thread}) {
+                if (thread != null && threads.putIfAbsent(thread, thread.threadId()) == null) {
+                    events.add(metadata("thread_name", thread.threadId(), threadName(thread)));
+                }
+            }
+            addEvents(span, events);
+        }
+
+        out.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+        for (int i = 0; i < events.size(); i++) {
+            out.append(events.get(i)).append(i + 1 < events.size() ? ",\n" : "\n");
+        }
+        out.append("]}\n");
+    }
+
+    private void addEvents(Span span, List<String> events) {
+        long submitter = span.scheduledBy.threadId();
+        long queuedUntil = span.thread == null ? span.finishedNanos : span.startedNanos;
+        String queuedArgs = "{\"node\":" + span.id + ",\"dropped\":" + span.isDropped + "}";
+        events.add(async("b", span.id, submitter, span.scheduledNanos, queuedArgs));
+        events.add(async("e", span.id, submitter, queuedUntil, null));
+        if (span.thread == null) {
+            return;
+        }
+
+        long tid = span.thread.threadId();
+        events.add(event("\"ph\":\"s\",\"cat\":\"submit\",\"name\":\"submit\",\"id\":" + span.id, submitter,
+                span.scheduledNanos));
+        events.add(event("\"ph\":\"f\",\"bp\":\"e\",\"cat\":\"submit\",\"name\":\"submit\",\"id\":" + span.id, tid,
+                span.startedNanos));
+        StringBuilder args = new StringBuilder("{\"node\":").append(span.id)
+                .append(",\"parent\":").append(span.parentId)
+                .append(",\"depth\":").append(span.depth)
+                .append(",\"cancelled\":").append(span.isCancelled);
+        if (!span.isCancelled) {
+            args.append(",\"value\":").append(span.value);
+        }
+        if (span.type == NodeType.LEAF) {
+            args.append(",\"interrupted\":").append(span.isInterrupted);
+        }
+        events.add(slice(span.type.name(), "node", tid, span.startedNanos, span.finishedNanos, args.append('}')));
+        for (Interval interval : span.intervals) {
+            String category = interval.name.equals("getValue") ? "leaf" : "blocked";
+            events.add(slice(interval.name, category, tid, interval.startNanos, interval.endNanos, null));
+        }
+    }
+
+    private String slice(String name, String category, long tid, long start, long end, CharSequence args) {
+        return event("\"ph\":\"X\",\"cat\":\"" + category + "\",\"name\":" + quote(name)
+                + ",\"dur\":" + micros(end - start) + (args == null ? "" : ",\"args\":" + args), tid, start);
+    }
+
+    private String async(String phase, int id, long tid, long nanos, String args) {
+        return event("\"ph\":\"" + phase + "\",\"cat\":\"queue\",\"name\":\"queued\",\"id\":" + id
+                + (args == null ? "" : ",\"args\":" + args), tid, nanos);
+    }
+
+    private String event(String fields, long tid, long nanos) {
+        return "{" + fields + ",\"pid\":" + PID + ",\"tid\":" + tid + ",\"ts\":" + micros(nanos - startNanos) + "}";
+    }
+
+    private static String metadata(String name, long tid, String value) {
+        return "{\"ph\":\"M\",\"name\":\"" + name + "\",\"pid\":" + PID + (tid < 0 ? "" : ",\"tid\":" + tid)
+                + ",\"args\":{\"name\":" + quote(value) + "}}";
+    }
+
+    private static String threadName(Thread thread) {
+        String name = thread.getName();
+        if (name.isEmpty()) {
+            // virtual threads are unnamed by default
+            name = (thread.isVirtual() ? "virtual-" : "thread-") + thread.threadId();
+        }
+        return name;
+    }
+
+    private static String micros(long nanos) {
+        return Double.toString(nanos / 1000.0);
+    }
+
+    private static String quote(String s) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,52 @@
+package cp2024.solution;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Samples the solves of a {@link ParallelCircuitSolver} and records a {@link SolveTrace} of every node of each
+ * sampled one: when its task was scheduled, started and finished, on which thread, and when it was blocked.
+ * A trace is handed to the sink once the last task of its solve finishes, including the tasks that were cancelled
+ * after the value was known, so that they show how long the cancellation took.
+ * <p>
+ * Only circuits solved as trees are traced; compiled circuits have no tasks per node.
+ * A solve cut off by <code>stop()</code> may leave tasks that never finish, and then its trace is never handed over.
+ */
+public final class SolveTracer {
+    private final int samplingInterval;
+    private final Consumer<SolveTrace> sink;
+
+    /**
+     * The number of solves seen so far, traced or not.
+     */
+    private final AtomicLong solves;
+
+    /**
+     * @param samplingInterval every how many solves one is traced, 1 to trace all of them
+     * @param sink             receives the finished traces, on the thread that finished the last task of the solve,
+     *                         so it should be quick, and must not throw
+     */
+    public SolveTracer(int samplingInterval, Consumer<SolveTrace> sink) {
+        if (samplingInterval < 1) {
+            throw new IllegalArgumentException("The sampling interval must be positive.");
+        }
+        this.samplingInterval = samplingInterval;
+        this.sink = sink;
+        this.solves = new AtomicLong(0);
+    }
+
+    public int getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    /**
+     * @return a new trace, if the next solve is sampled, or <code>null</code>
+     */
+    SolveTrace sample() {
+        long solve = solves.getAndIncrement();
+        if (solve % samplingInterval != 0) {
+            return null;
+        }
+        return new SolveTrace(solve, sink);
+    }
+}
@@ -0,0 +1,310 @@
+package cp2024.solution;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * The counters of a single solver, updated by all of its computations. The counters are striped ({@link LongAdder}),
+ * so that threads recording them don't contend; a read sums the stripes, and isn't a snapshot across counters.
+ * The only exception is the number of live tasks, whose peak needs the exact current value;
+ * it's updated once per task, next to the thread the task takes.
+ * <p>
+ * Nodes evaluated inline by their parents, as trivial subcircuits, aren't counted on their own.
+ * Readable directly, or over JMX once {@link #register registered}.
+ */
+public final class SolverMetrics implements SolverMetricsMXBean {
+    private static final String DOMAIN = "cp2024.solution";
+    private static final int LATENCY_BUCKETS = Long.SIZE;
+
+    private final LongAdder solvesStarted = new LongAdder();
+    private final LongAdder solvesCompleted = new LongAdder();
+    private final LongAdder solvesCancelled = new LongAdder();
+    private final LongAdder tasksSubmitted = new LongAdder();
+    private final LongAdder tasksStarted = new LongAdder();
+    private final LongAdder tasksDropped = new LongAdder();
+    private final LongAdder nodesEvaluated = new LongAdder();
+    private final LongAdder leavesEvaluated = new LongAdder();
+    private final LongAdder leavesSkipped = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final AtomicInteger liveTasks = new AtomicInteger(0);
+    private final AtomicInteger peakLiveTasks = new AtomicInteger(0);
+    private final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKETS];
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+    private final IntSupplier admissionQueueDepth;
+
+    /**
+     * The name under which the metrics are registered, or <code>null</code>. Guarded by <code>this</code>.
+     */
+    private ObjectName objectName;
+
+    SolverMetrics() {
+        this(() -> 0);
+    }
+
+    /**
+     * @param admissionQueueDepth reads the number of circuits held back by the admission limits
+     */
+    SolverMetrics(IntSupplier admissionQueueDepth) {
+        this.admissionQueueDepth = admissionQueueDepth;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            latencyBuckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Publishes the metrics in the platform MBean server, as <code>cp2024.solution:type=SolverMetrics,name=...</code>.
+     *
+     * @param name distinguishes the solver from the others registered
+     * @return the name of the MBean
+     * @throws IllegalStateException if they're already registered, or the name is taken
+     */
+    public synchronized ObjectName register(String name) {
+        if (objectName != null) {
+            throw new IllegalStateException("The metrics are already registered as " + objectName + ".");
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName registered = new ObjectName(DOMAIN + ":type=SolverMetrics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, registered);
+            objectName = registered;
+            return registered;
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalStateException("Other metrics are registered as " + name + ".", e);
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server, if they were registered. Called when the solver is stopped.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (InstanceNotFoundException e) {
+            // unregistered by someone else
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+        objectName = null;
+    }
+
+    /**
+     * @return the name of the MBean, or <code>null</code> if the metrics aren't registered
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Records a solve, whose latency is taken once the stage completes.
+     */
+    void solveStarted(CompletionStage<Boolean> completion) {
+        long start = solveStarted();
+        completion.whenComplete((value, exception) -> solveFinished(start, exception == null));
+    }
+
+    /**
+     * @return the start of the solve, to be passed to <code>solveFinished()</code>
+     */
+    long solveStarted() {
+        solvesStarted.increment();
+        return System.nanoTime();
+    }
+
+    void solveFinished(long start, boolean completed) {
+        long nanos = Math.max(System.nanoTime() - start, 1);
+        (completed ? solvesCompleted : solvesCancelled).increment();
+        latencyBuckets[Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos)].increment();
+        maxLatencyNanos.accumulate(nanos);
+    }
+
+    void taskSubmitted() {
+        tasksSubmitted.increment();
+    }
+
+    void taskStarted() {
+        tasksStarted.increment();
+        int live = liveTasks.incrementAndGet();
+        if (live > peakLiveTasks.get()) {
+            peakLiveTasks.accumulateAndGet(live, Math::max);
+        }
+    }
+
+    void taskFinished() {
+        liveTasks.decrementAndGet();
+    }
+
+    /**
+     * Records a task that was submitted but never started.
+     *
+     * @param isLeaf whether the task was to evaluate a leaf, which is then skipped
+     */
+    void taskDropped(boolean isLeaf) {
+        tasksDropped.increment();
+        if (isLeaf) {
+            leavesSkipped.increment();
+        }
+    }
+
+    void nodeEvaluated() {
+        nodesEvaluated.increment();
+    }
+
+    void leafEvaluated() {
+        leavesEvaluated.increment();
+    }
+
+    void leafSkipped() {
+        leavesSkipped.increment();
+    }
+
+    void leavesSkipped(int count) {
+        leavesSkipped.add(count);
+    }
+
+    void nodeCancelled() {
+        cancellations.increment();
+    }
+
+    @Override
+    public long getSolvesStarted() {
+        return solvesStarted.sum();
+    }
+
+    @Override
+    public long getSolvesCompleted() {
+        return solvesCompleted.sum();
+    }
+
+    @Override
+    public long getSolvesCancelled() {
+        return solvesCancelled.sum();
+    }
+
+    @Override
+    public long getTasksSubmitted() {
+        return tasksSubmitted.sum();
+    }
+
+    @Override
+    public long getQueuedTasks() {
+        // read in the reverse order of the updates, so that a task in flight isn't counted negatively
+        long done = tasksStarted.sum() + tasksDropped.sum();
+        return Math.max(tasksSubmitted.sum() - done, 0);
+    }
+
+    @Override
+    public int getAdmissionQueueDepth() {
+        return admissionQueueDepth.getAsInt();
+    }
+
+    @Override
+    public long getNodesEvaluated() {
+        return nodesEvaluated.sum();
+    }
+
+    @Override
+    public long getLeavesEvaluated() {
+        return leavesEvaluated.sum();
+    }
+
+    @Override
+    public long getLeavesSkipped() {
+        return leavesSkipped.sum();
+    }
+
+    @Override
+    public long getCancellations() {
+        return cancellations.sum();
+    }
+
+    @Override
+    public int getLiveTasks() {
+        return liveTasks.get();
+    }
+
+    @Override
+    public int getPeakLiveTasks() {
+        return peakLiveTasks.get();
+    }
+
+    @Override
+    public long[] getSolveLatencyHistogram() {
+        long[] histogram = new long[LATENCY_BUCKETS];
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            histogram[i] = latencyBuckets[i].sum();
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getSolveLatencyMedianNanos() {
+        return getSolveLatencyPercentileNanos(0.5);
+    }
+
+    @Override
+    public long getSolveLatencyP99Nanos() {
+        return getSolveLatencyPercentileNanos(0.99);
+    }
+
+    @Override
+    public long getSolveLatencyMaxNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    /**
+     * @param fraction between 0 and 1
+     * @return an upper bound of the latency of the given fraction of the solves, at most twice the exact one,
+     *         or 0 if nothing was solved
+     */
+    public long getSolveLatencyPercentileNanos(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("The fraction must be between 0 and 1.");
+        }
+        long[] histogram = getSolveLatencyHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(fraction * total), 1);
+        long seen = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                long upperBound = i == LATENCY_BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                return Math.min(upperBound, getSolveLatencyMaxNanos());
+            }
+        }
+        return getSolveLatencyMaxNanos();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder counter : new LongAdder[]{solvesStarted, solvesCompleted, solvesCancelled, tasksSubmitted,
+                tasksStarted, tasksDropped, nodesEvaluated, leavesEvaluated, leavesSkipped, cancellations}) {
+            counter.reset();
+        }
+        for (LongAdder bucket : latencyBuckets) {
+            bucket.reset();
+        }
+        maxLatencyNanos.reset();
+        peakLiveTasks.set(liveTasks.get());
+    }
+}
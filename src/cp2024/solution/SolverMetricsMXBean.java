@@ -0,0 +1,67 @@
+package cp2024.solution;
+
+/**
+ * The management interface of {@link SolverMetrics}, as published over JMX.
+ */
+public interface SolverMetricsMXBean {
+    long getSolvesStarted();
+
+    long getSolvesCompleted();
+
+    /**
+     * @return the solves that ended without a value: cancelled, timed out or stopped
+     */
+    long getSolvesCancelled();
+
+    long getTasksSubmitted();
+
+    /**
+     * @return the tasks submitted that haven't started yet, nor were dropped
+     */
+    long getQueuedTasks();
+
+    /**
+     * @return the circuits held back by the admission limits of the solver
+     */
+    int getAdmissionQueueDepth();
+
+    long getNodesEvaluated();
+
+    long getLeavesEvaluated();
+
+    /**
+     * @return the leaves whose <code>getValue()</code> was never called, because their values were no longer needed.
+     *         Solvers that expand the circuit as they go only count the leaves they reached,
+     *         since listing the leaves of a skipped subtree might block
+     */
+    long getLeavesSkipped();
+
+    /**
+     * @return the nodes whose evaluation was cancelled once their values were no longer needed,
+     *         including the leaves that were interrupted
+     */
+    long getCancellations();
+
+    /**
+     * @return the tasks running at the moment, which for thread-per-task solvers is the number of their threads
+     */
+    int getLiveTasks();
+
+    int getPeakLiveTasks();
+
+    /**
+     * @return the number of solves whose latency was in <code>[2^i, 2^(i+1))</code> nanoseconds, at index <code>i</code>
+     */
+    long[] getSolveLatencyHistogram();
+
+    long getSolveLatencyMedianNanos();
+
+    long getSolveLatencyP99Nanos();
+
+    long getSolveLatencyMaxNanos();
+
+    /**
+     * Zeroes all the counters and the histogram. The peak of the live tasks starts over from the current number.
+     */
+    void reset();
+}
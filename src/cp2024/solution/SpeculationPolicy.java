@@ -0,0 +1,66 @@
+package cp2024.solution;
+
+/**
+ * Decides whether a {@link ParallelCircuitSolver} evaluates the branches of an IF node before its condition is known.
+ * Speculating lowers the latency of the IF node, but one of the branches is always wasted work,
+ * which slows down everything else when the solver is saturated.
+ */
+public interface SpeculationPolicy {
+    /**
+     * Evaluates the condition and both branches at once, and sets the value as soon as both branches are equal.
+     */
+    SpeculationPolicy EAGER = busyLeaves -> true;
+
+    /**
+     * Evaluates only the condition, and then only the branch it chooses.
+     */
+    SpeculationPolicy CONDITION_FIRST = busyLeaves -> false;
+
+    /**
+     * Speculates only while fewer leaves are being evaluated than there are available processors.
+     */
+    SpeculationPolicy LOAD_AWARE = loadAware(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Called once per IF node whose condition isn't trivial, right before its arguments are submitted.
+     *
+     * @param busyLeaves the number of leaves the solver is evaluating at the moment, in all its computations
+     * @return whether to evaluate the branches together with the condition
+     */
+    boolean speculate(int busyLeaves);
+
+    /**
+     * Used only when the branches are speculated.
+     *
+     * @return whether to set the value of the IF node as soon as both branches are known and equal,
+     * without waiting for the condition, which is then cancelled
+     */
+    default boolean shortcutEqualBranches() {
+        return true;
+    }
+
+    /**
+     * @param idleLeafSlots the number of leaves that can be evaluated at once before the solver counts as saturated
+     * @return a policy that speculates only below that number of busy leaves
+     */
+    static SpeculationPolicy loadAware(int idleLeafSlots) {
+        return busyLeaves -> busyLeaves < idleLeafSlots;
+    }
+
+    /**
+     * @return a policy that speculates like the given one, but always waits for the condition
+     */
+    static SpeculationPolicy withoutEqualBranchesShortcut(SpeculationPolicy policy) {
+        return new SpeculationPolicy() {
+            @Override
+            public boolean speculate(int busyLeaves) {
+                return policy.speculate(busyLeaves);
+            }
+
+            @Override
+            public boolean shortcutEqualBranches() {
+                return false;
+            }
+        };
+    }
+}